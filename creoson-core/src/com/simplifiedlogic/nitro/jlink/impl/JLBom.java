@@ -19,6 +19,7 @@
 package com.simplifiedlogic.nitro.jlink.impl;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 import com.ptc.cipjava.jxthrowable;
@@ -26,16 +27,22 @@ import com.ptc.pfc.pfcFeature.FeatureStatus;
 import com.ptc.pfc.pfcFeature.FeatureType;
 import com.ptc.pfc.pfcModel.ModelType;
 import com.simplifiedlogic.nitro.jlink.calls.assembly.CallAssembly;
+import com.simplifiedlogic.nitro.jlink.calls.assembly.CallComponentPath;
+import com.simplifiedlogic.nitro.jlink.calls.base.CallTransform3D;
 import com.simplifiedlogic.nitro.jlink.calls.componentfeat.CallComponentFeat;
 import com.simplifiedlogic.nitro.jlink.calls.feature.CallFeature;
 import com.simplifiedlogic.nitro.jlink.calls.feature.CallFeatures;
 import com.simplifiedlogic.nitro.jlink.calls.model.CallModel;
 import com.simplifiedlogic.nitro.jlink.calls.model.CallModelDescriptor;
+import com.simplifiedlogic.nitro.jlink.calls.seq.CallIntSeq;
 import com.simplifiedlogic.nitro.jlink.calls.session.CallSession;
 import com.simplifiedlogic.nitro.jlink.calls.solid.CallSolid;
 import com.simplifiedlogic.nitro.jlink.data.AbstractJLISession;
 import com.simplifiedlogic.nitro.jlink.data.BomChild;
+import com.simplifiedlogic.nitro.jlink.data.BomTable;
 import com.simplifiedlogic.nitro.jlink.data.GetPathsOutput;
+import com.simplifiedlogic.nitro.jlink.data.RecordSink;
+import com.simplifiedlogic.nitro.jlink.data.RequestDeadline;
 import com.simplifiedlogic.nitro.jlink.data.SimpRepData;
 import com.simplifiedlogic.nitro.jlink.intf.DebugLogging;
 import com.simplifiedlogic.nitro.jlink.intf.IJLBom;
@@ -51,6 +58,16 @@ public class JLBom implements IJLBom {
 
 	public static final boolean verbose = false;
 
+	/**
+	 * System property which turns on composing component transforms in Java; if set to
+	 * "true", each component's transform is worked out from its placement in its own 
+	 * sub-assembly instead of being read from Creo using its full component path.
+	 * Composing the transforms assumes that a sub-assembly places its components the same 
+	 * way everywhere it is used, which does not hold for flexible components, and J-Link 
+	 * gives no way to find those; so it is off unless the assembly is known to have none.
+	 */
+	public static final String COMPOSE_TRANSFORMS_PROP = "sli.bom.compose_transforms";
+
     /* (non-Javadoc)
 	 * @see com.simplifiedlogic.nitro.jlink.impl.IJLBom#getPaths(java.lang.String, boolean, boolean, boolean, boolean, java.lang.String)
 	 */
@@ -65,13 +82,48 @@ public class JLBom implements IJLBom {
 	        boolean incSimpRep, 
 	        String sessionId) throws JLIException {
 
+        return getPaths(modelname, skeleton, paths, toplevel, incTransform, transformAsTable, excludeInactive, incSimpRep, COMPACT_NO, sessionId);
+    }
+    	
+    /* (non-Javadoc)
+	 * @see com.simplifiedlogic.nitro.jlink.impl.IJLBom#getPaths(java.lang.String, boolean, boolean, boolean, boolean, com.simplifiedlogic.nitro.rpc.JLISession)
+	 */
+    public GetPathsOutput getPaths(
+	        String modelname,
+	        boolean skeleton, 
+	        boolean paths,
+	        boolean toplevel,
+	        boolean incTransform,
+	        boolean transformAsTable, 
+	        boolean excludeInactive,
+	        boolean incSimpRep, 
+	        AbstractJLISession sess) throws JLIException {
+
+        return getPaths(modelname, skeleton, paths, toplevel, incTransform, transformAsTable, excludeInactive, incSimpRep, COMPACT_NO, sess);
+    }
+
+    /* (non-Javadoc)
+	 * @see com.simplifiedlogic.nitro.jlink.intf.IJLBom#getPaths(java.lang.String, boolean, boolean, boolean, boolean, boolean, boolean, boolean, boolean, java.lang.String)
+	 */
+    public GetPathsOutput getPaths(
+	        String modelname,
+	        boolean skeleton, 
+	        boolean paths,
+	        boolean toplevel,
+	        boolean incTransform,
+	        boolean transformAsTable, 
+	        boolean excludeInactive,
+	        boolean incSimpRep, 
+	        boolean compact, 
+	        String sessionId) throws JLIException {
+
         JLISession sess = JLISession.getSession(sessionId);
         
-        return getPaths(modelname, skeleton, paths, toplevel, incTransform, transformAsTable, excludeInactive, incSimpRep, sess);
+        return getPaths(modelname, skeleton, paths, toplevel, incTransform, transformAsTable, excludeInactive, incSimpRep, compact, sess);
     }
     	
     /* (non-Javadoc)
-	 * @see com.simplifiedlogic.nitro.jlink.impl.IJLBom#getPaths(java.lang.String, boolean, boolean, boolean, boolean, com.simplifiedlogic.nitro.rpc.JLISession)
+	 * @see com.simplifiedlogic.nitro.jlink.intf.IJLBom#getPaths(java.lang.String, boolean, boolean, boolean, boolean, boolean, boolean, boolean, boolean, com.simplifiedlogic.nitro.jlink.data.AbstractJLISession)
 	 */
     public GetPathsOutput getPaths(
 	        String modelname,
@@ -82,6 +134,7 @@ public class JLBom implements IJLBom {
 	        boolean transformAsTable, 
 	        boolean excludeInactive,
 	        boolean incSimpRep, 
+	        boolean compact, 
 	        AbstractJLISession sess) throws JLIException {
     	
 		DebugLogging.sendDebugMessage("bom.get_paths: " + modelname, NitroConstants.DEBUG_KEY);
@@ -129,9 +182,23 @@ public class JLBom implements IJLBom {
 	        	System.out.println("================================================");
 	        	System.out.println("Exporting BOM for "+out.getModelname());
 	        }
-	        walkGetPaths(session, (CallAssembly)solid, solid, dummy, "  ", "root", curPath, 0, skeleton, toplevel, paths, incTransform, transformAsTable, excludeInactive, simpRep, SimpRepData.DEFAULT_UNKNOWN);
+	        // the compact table is already small, so it is returned whole rather than streamed
+	        BomTable table = compact ? new BomTable(paths, incTransform) : null;
+	        BomCollector collector = new BomCollector(table==null ? RecordSink.getCurrent() : null, table);
+	        WalkCache cache = new WalkCache();
+	        double[] transform = null;
+	        if (incTransform && "true".equalsIgnoreCase(System.getProperty(COMPOSE_TRANSFORMS_PROP)))
+	        	transform = JLMatrixMaker.identity();
+	        walkGetPaths(session, (CallAssembly)solid, solid, null, cache, dummy, -1, collector, "  ", "root", curPath, 0, transform, skeleton, toplevel, paths, incTransform, transformAsTable, excludeInactive, simpRep, SimpRepData.DEFAULT_UNKNOWN);
+	        if (cache.expansions>0)
+	        	DebugLogging.sendDebugMessage("bom.get_paths: expanded " + cache.expansions + " repeated sub-assemblies from cache, saving " + cache.served + " J-Link calls", NitroConstants.DEBUG_KEY);
 	
-	    	out.setRoot(dummy);
+	        if (table!=null) {
+	        	table.trim();
+	        	out.setTable(table);
+	        }
+	        else
+	        	out.setRoot(dummy);
 	        
 	        return out;
     	}
@@ -153,11 +220,16 @@ public class JLBom implements IJLBom {
      * @param session The Creo session
      * @param baseAssembly The original assembly that the walk started from, used for calculating the 3D transforms
      * @param wrapping_solid The current solid being visited in the assembly 
-     * @param parent The output data object which represents the current solid
+     * @param key The file name of the current solid, used to look up its components in the cache; null for the top-level assembly
+     * @param cache Components of the sub-assemblies which have already been visited
+     * @param parent The output data object which represents the current solid; null if the output is a table
+     * @param parentRow The table row which represents the current solid, or -1 for the top-level assembly
+     * @param collector Receives the components which are found
      * @param indent The indentation level for debugging output
-     * @param base_seq The sequence path for the current solid
+     * @param base_seq The sequence path for the current solid; not used if the output is a table
      * @param curPath The component path for the current solid
      * @param pathlen The length of the component path; this allows you to use a portion of the component path
+     * @param transform The placement of the current solid in the baseAssembly, as 16 values in row order; null if transforms are read from Creo for each component
      * @param skeleton Whether to report and walk skeleton components in the output
      * @param toplevel Whether to only report the top-level components, and not walk sub-assemblies
      * @param paths Whether to return component paths
@@ -171,20 +243,24 @@ public class JLBom implements IJLBom {
     private void walkGetPaths(CallSession session, 
     		CallAssembly baseAssembly, 
     		CallSolid wrapping_solid, 
+    		String key, 
+    		WalkCache cache, 
     		BomChild parent, 
+    		int parentRow, 
+    		BomCollector collector, 
     		String indent, 
     		String base_seq, 
     		List<Integer> curPath, int pathlen, 
+    		double[] transform, 
     		boolean skeleton, boolean toplevel, boolean paths, 
     		boolean incTransform, boolean transformAsTable, boolean excludeInactive, 
     		SimpRepData simpRep,
     		int simpRepDefault) throws JLIException,jxthrowable {
     	
         // TODO: (10/29/2013) Skip over PRO_MDL_CE_SOLID components encountered, otherwise app may crash with no error.
-        CallFeatures components = wrapping_solid.listFeaturesByType(Boolean.FALSE, FeatureType.FEATTYPE_COMPONENT);
-        if (components==null)
-            return;
-        int len = components.getarraysize();
+        BomTable table = collector.getTable();
+        List<ComponentInfo> components = cache.getComponents(wrapping_solid, key);
+        int len = components.size();
         if (len==0) return;
         if (verbose)
         	System.out.println(indent + "processing " + wrapping_solid.getFileName() + ", " + len + " child components");
@@ -200,7 +276,7 @@ public class JLBom implements IJLBom {
         	}
         }
 
-        CallComponentFeat component;
+        ComponentInfo component;
         CallModelDescriptor desc = null;
         int type;
         String newseq;
@@ -208,16 +284,14 @@ public class JLBom implements IJLBom {
         String filename;
         int id=0;
         int seq=0;
-        CallFeature feat;
         for (int i=0; i<len; i++) {
-        	feat = components.get(i);
-        	if (!(feat instanceof CallComponentFeat))
-        		continue;
-            component = (CallComponentFeat)feat;
+        	// stop between components if the request has run out of time
+        	RequestDeadline.checkCurrent();
+            component = components.get(i);
             try {
-            	int status = component.getStatus();
+            	int status = component.getStatus(cache);
             	if (verbose)
-                	System.out.println(indent + "Comp ID:" + component.getId() + ", status=" + status);
+                	System.out.println(indent + "Comp ID:" + component.getId(cache) + ", status=" + status);
                 if (status!=FeatureStatus._FEAT_ACTIVE) {
                 	if (!excludeInactive) {
                         if (status!=FeatureStatus._FEAT_INACTIVE && status!=FeatureStatus._FEAT_UNREGENERATED) {
@@ -234,7 +308,7 @@ public class JLBom implements IJLBom {
                 }
 //                System.out.println("model item type: " + component.getFeatType() + " feature type: " + component.getFeatTypeName());
 //              try {
-                  desc = component.getModelDescr();
+                  desc = component.getModelDescr(cache);
 //              }
 //              catch (XToolkitCantOpen e) {
                   /*
@@ -265,9 +339,9 @@ public class JLBom implements IJLBom {
                 }
                 childModel = null;
                 if (!skeleton) {
-                	childModel = session.getModelFromDescr(desc);
+                	childModel = component.getModel(session, cache);
                     if (childModel instanceof CallSolid) {
-                        boolean skel = ((CallSolid)childModel).getIsSkeleton();
+                        boolean skel = component.getIsSkeleton(cache);
                         if (skel) {
                         	if (verbose)
                             	System.out.println(indent + "    Skipping skeleton");
@@ -275,11 +349,12 @@ public class JLBom implements IJLBom {
                         }
                     }
                 }
-                type = desc.getType();
+                type = component.getType(cache);
     
-                newseq = base_seq + '.' + ++seq;
+                ++seq;
+                newseq = table==null ? base_seq + '.' + seq : null;
                 if (paths || incTransform || simpRep!=null) {
-                    id = component.getId();
+                    id = component.getId(cache);
                     if (curPath.size()>pathlen)
                         curPath.set(pathlen, new Integer(id));
                     else
@@ -312,53 +387,351 @@ public class JLBom implements IJLBom {
                 	}
                 }
                 
-                filename = desc.getFileName();
+                filename = component.getFileName(cache);
     
-                BomChild child = new BomChild();
-                
-                child.setSequencePath(newseq);
-                child.setFilename(filename.toUpperCase());
-                if (paths) {
-                	List<Integer> newPath = new ArrayList<Integer>();
-                	for (int k=0; k<pathlen+1; k++) {
-                		newPath.add(curPath.get(k));
+                double[] childTransform = null;
+                CallTransform3D featTrans = null;
+                if (incTransform) {
+                	if (transform!=null && wrapping_solid instanceof CallAssembly) {
+                		// compose the component's placement in this solid with this solid's placement
+                		childTransform = JLMatrixMaker.multiply(component.getPlacement((CallAssembly)wrapping_solid, cache), transform);
+                	}
+                	else {
+                		featTrans = JlinkUtils.genTransformTable2(baseAssembly, curPath, pathlen+1);
+	                	if (transform!=null || table!=null)
+	                		childTransform = JLMatrixMaker.toArray(featTrans);
                 	}
-                    child.setComponentPath(newPath);
-                    // System.out.println(filename.toUpperCase() + " " + newseq + " (" + newpath + ") (" + genPath(curPath, pathlen+1) + ")");
                 }
-                if (incTransform) {
-                	if (transformAsTable)
-                		child.setTransformTable(JlinkUtils.genTransformTable(baseAssembly, curPath, pathlen+1));
-                	else
-                		child.setTransform(JLMatrixMaker.create(JlinkUtils.genTransformTable2(baseAssembly, curPath, pathlen+1)));
+
+                BomChild child = null;
+                int row = -1;
+                if (table!=null) {
+                	row = table.add(parentRow, filename, seq);
+                	if (paths)
+                		table.setId(row, id);
+                	if (incTransform)
+                		table.setTransform(row, childTransform);
+                }
+                else {
+	                child = new BomChild();
+	                
+	                child.setSequencePath(newseq);
+	                child.setFilename(filename.toUpperCase());
+	                if (paths) {
+	                	List<Integer> newPath = new ArrayList<Integer>();
+	                	for (int k=0; k<pathlen+1; k++) {
+	                		newPath.add(curPath.get(k));
+	                	}
+	                    child.setComponentPath(newPath);
+	                    // System.out.println(filename.toUpperCase() + " " + newseq + " (" + newpath + ") (" + genPath(curPath, pathlen+1) + ")");
+	                }
+	                if (incTransform) {
+	                	if (featTrans!=null) {
+		                	if (transformAsTable)
+		                		child.setTransformTable(JLMatrixMaker.writeTransformTable(featTrans));
+		                	else
+		                		child.setTransform(JLMatrixMaker.create(featTrans));
+	                	}
+	                	else {
+		                	if (transformAsTable)
+		                		child.setTransformTable(JLMatrixMaker.writeTransformTable(childTransform));
+		                	else
+		                		child.setTransform(JLMatrixMaker.create(childTransform));
+	                	}
+	                }
+	                child.setSimpRep(subRepName);
                 }
-                child.setSimpRep(subRepName);
 
                 if (verbose)
                 	System.out.println(indent + "Adding component to BOM: "+filename);
-                parent.add(child);
+                // a sub-assembly may be removed below if the simp rep excludes its whole contents
+                if (child!=null)
+                	collector.add(parent, child, simpRep!=null && !toplevel && type==ModelType._MDL_ASSEMBLY);
                 
                 // recurse into the child components
                 if (!toplevel && type==ModelType._MDL_ASSEMBLY) {
                     if (childModel==null)
-                    	childModel = session.getModelFromDescr(desc);
+                    	childModel = component.getModel(session, cache);
                     if (childModel!=null && childModel instanceof CallSolid) {
                     	if (verbose)
-                        	System.out.println(indent + "checking children for " + child.getFilename());
-                        walkGetPaths(session, baseAssembly, (CallSolid)childModel, child, indent+"   ", newseq, curPath, pathlen+1, skeleton, toplevel, paths, incTransform, transformAsTable, excludeInactive, simpRep, simpRepDefault);
+                        	System.out.println(indent + "checking children for " + filename);
+                        walkGetPaths(session, baseAssembly, (CallSolid)childModel, filename, cache, child, row, collector, indent+"   ", newseq, curPath, pathlen+1, transform!=null ? childTransform : null, skeleton, toplevel, paths, incTransform, transformAsTable, excludeInactive, simpRep, simpRepDefault);
                     }
-                    if (child.numChildren()==0) {
+                    if (!collector.hasChildren(child, row)) {
                     	if (simpRep!=null && simpRep.excludesDescendant(curPath.subList(0, pathlen+1))) { // sure we need the second clause?
                     		if (verbose)
                             	System.out.println(indent + "Removing child component from BOM: "+filename);
-                    		parent.remove(child);
+                    		collector.remove(parent, child, row);
                     	}
                     }
+                    collector.finish(child);
                 }
             }
             catch (jxthrowable jxe) {
-        		throw JlinkUtils.createException(jxe, "A PTC error has occurred when retrieving model " + component.getModelDescr().getFileName());
+        		throw JlinkUtils.createException(jxe, "A PTC error has occurred when retrieving model " + component.component.getModelDescr().getFileName());
             }
         }
     }
+
+    /**
+     * Components of the sub-assemblies visited during one BOM walk, keyed by file name.
+     * A sub-assembly which is used more than once in the assembly only has its components
+     * read from Creo the first time; later occurrences are walked from the cache, and only 
+     * their component paths, sequence numbers and transforms are worked out again.
+     * The placement of each component in its sub-assembly is also kept, so the transforms 
+     * of later occurrences can be composed without asking Creo when that is turned on.
+     */
+    private static class WalkCache {
+    	private HashMap<String, List<ComponentInfo>> assemblies = new HashMap<String, List<ComponentInfo>>();
+    	/**
+    	 * Number of sub-assembly occurrences walked from the cache
+    	 */
+    	int expansions = 0;
+    	/**
+    	 * Number of J-Link calls answered from the cache
+    	 */
+    	int served = 0;
+    	
+    	/**
+    	 * Get the components of a solid
+    	 * @param solid The solid
+    	 * @param key The file name of the solid, or null to always read the components from Creo
+    	 * @return The components
+    	 * @throws jxthrowable
+    	 */
+    	List<ComponentInfo> getComponents(CallSolid solid, String key) throws jxthrowable {
+    		List<ComponentInfo> list = key!=null ? assemblies.get(key) : null;
+    		if (list!=null) {
+    			expansions++;
+    			// the list call, and the get call for each component
+    			served += list.size() + 1;
+    			return list;
+    		}
+    		list = new ArrayList<ComponentInfo>();
+            CallFeatures features = solid.listFeaturesByType(Boolean.FALSE, FeatureType.FEATTYPE_COMPONENT);
+            if (features!=null) {
+            	int len = features.getarraysize();
+            	CallFeature feat;
+            	for (int i=0; i<len; i++) {
+            		feat = features.get(i);
+            		if (feat instanceof CallComponentFeat)
+            			list.add(new ComponentInfo((CallComponentFeat)feat));
+            	}
+            }
+            if (key!=null)
+            	assemblies.put(key, list);
+            return list;
+    	}
+    }
+    
+    /**
+     * A component of a sub-assembly, and the information about it which has been 
+     * read from Creo so far.  Each value is read the first time it is needed.
+     */
+    private static class ComponentInfo {
+    	CallComponentFeat component;
+    	private Integer status = null;
+    	private Integer id = null;
+    	private CallModelDescriptor desc = null;
+    	private boolean descLoaded = false;
+    	private CallModel model = null;
+    	private boolean modelLoaded = false;
+    	private Boolean skeleton = null;
+    	private Integer type = null;
+    	private String filename = null;
+    	private double[] placement = null;
+    	
+    	ComponentInfo(CallComponentFeat component) {
+    		this.component = component;
+    	}
+    	
+    	int getStatus(WalkCache cache) throws jxthrowable {
+    		if (status==null)
+    			status = new Integer(component.getStatus());
+    		else
+    			cache.served++;
+    		return status.intValue();
+    	}
+    	
+    	int getId(WalkCache cache) throws jxthrowable {
+    		if (id==null)
+    			id = new Integer(component.getId());
+    		else
+    			cache.served++;
+    		return id.intValue();
+    	}
+    	
+    	CallModelDescriptor getModelDescr(WalkCache cache) throws jxthrowable {
+    		if (!descLoaded) {
+    			desc = component.getModelDescr();
+    			descLoaded = true;
+    		}
+    		else
+    			cache.served++;
+    		return desc;
+    	}
+    	
+    	CallModel getModel(CallSession session, WalkCache cache) throws jxthrowable {
+    		if (!modelLoaded) {
+    			model = session.getModelFromDescr(desc);
+    			modelLoaded = true;
+    		}
+    		else
+    			cache.served++;
+    		return model;
+    	}
+    	
+    	boolean getIsSkeleton(WalkCache cache) throws jxthrowable {
+    		if (skeleton==null)
+    			skeleton = Boolean.valueOf(((CallSolid)model).getIsSkeleton());
+    		else
+    			cache.served++;
+    		return skeleton.booleanValue();
+    	}
+    	
+    	int getType(WalkCache cache) throws jxthrowable {
+    		if (type==null)
+    			type = new Integer(desc.getType());
+    		else
+    			cache.served++;
+    		return type.intValue();
+    	}
+    	
+    	String getFileName(WalkCache cache) throws jxthrowable {
+    		if (filename==null)
+    			filename = desc.getFileName();
+    		else
+    			cache.served++;
+    		return filename;
+    	}
+    	
+    	/**
+    	 * Get the placement of the component in the assembly which directly contains it
+    	 * @param assembly The assembly which directly contains the component
+    	 * @param cache The walk cache
+    	 * @return The placement, as 16 values in row order
+    	 * @throws jxthrowable
+    	 */
+    	double[] getPlacement(CallAssembly assembly, WalkCache cache) throws jxthrowable {
+    		if (placement==null) {
+    	        CallIntSeq seq = CallIntSeq.create();
+    	        seq.set(0, getId(cache));
+    	        CallComponentPath path = CallComponentPath.create(assembly, seq);
+    	        placement = JLMatrixMaker.toArray(path.getTransform(true));
+    		}
+    		else
+    			cache.served++;
+    		return placement;
+    	}
+    }
+
+    /**
+     * Collects the components found by walkGetPaths.  Normally each component is added 
+     * to its parent's list of children.  When the results are being streamed, components
+     * are sent to the record sink instead, so that only the current branch is kept in memory.
+     * When the output is a table, walkGetPaths adds the components to the table itself, and
+     * the collector only checks and removes rows.
+     * 
+     * <p>Sub-assemblies which might still be removed from the BOM are held back until one of 
+     * their children is sent, or until the walk of the sub-assembly is finished, so that the 
+     * records still come out in the same order as the regular BOM.
+     */
+    private static class BomCollector {
+    	/**
+    	 * The sink for streamed results, or null if results are not being streamed
+    	 */
+    	private RecordSink sink;
+    	/**
+    	 * Sub-assemblies which have not been sent yet, from the top of the current branch down
+    	 */
+    	private List<BomChild> pending = new ArrayList<BomChild>();
+    	/**
+    	 * The table which receives the components, or null if the output is a hierarchy
+    	 */
+    	private BomTable table;
+    	
+    	public BomCollector(RecordSink sink, BomTable table) {
+    		this.sink = sink;
+    		this.table = table;
+    	}
+    	
+    	/**
+    	 * @return The table which receives the components, or null if the output is a hierarchy
+    	 */
+    	public BomTable getTable() {
+    		return table;
+    	}
+    	
+    	/**
+    	 * Add a component to the BOM
+    	 * @param parent The parent component
+    	 * @param child The new component
+    	 * @param defer Whether the component might be removed once its children are walked
+    	 * @throws JLIException
+    	 */
+    	public void add(BomChild parent, BomChild child, boolean defer) throws JLIException {
+    		if (sink==null) {
+    			parent.add(child);
+    			return;
+    		}
+    		if (defer) {
+    			pending.add(child);
+    			return;
+    		}
+    		flush();
+    		sink.add(child);
+    	}
+    	
+    	/**
+    	 * Check whether any children have been added for a component
+    	 * @param child The component to check
+    	 * @param row The component's table row, if the output is a table
+    	 * @return Whether the component has any children in the BOM
+    	 */
+    	public boolean hasChildren(BomChild child, int row) {
+    		if (table!=null)
+    			// any rows after the component's are its descendants
+    			return table.size()>row+1;
+    		if (sink==null)
+    			return child.numChildren()>0;
+    		return !isPending(child);
+    	}
+    	
+    	/**
+    	 * Remove a component from the BOM; it must not have any children.
+    	 * @param parent The parent component
+    	 * @param child The component to remove
+    	 * @param row The component's table row, if the output is a table
+    	 */
+    	public void remove(BomChild parent, BomChild child, int row) {
+    		if (table!=null)
+    			table.truncate(row);
+    		else if (sink==null)
+    			parent.remove(child);
+    		else if (isPending(child))
+    			pending.remove(pending.size()-1);
+    	}
+    	
+    	/**
+    	 * Called when the walk of a sub-assembly is finished.  If it is still being 
+    	 * held back, it is kept in the BOM and sent now.
+    	 * @param child The sub-assembly
+    	 * @throws JLIException
+    	 */
+    	public void finish(BomChild child) throws JLIException {
+    		if (sink!=null && isPending(child))
+    			flush();
+    	}
+    	
+    	private boolean isPending(BomChild child) {
+    		return pending.size()>0 && pending.get(pending.size()-1)==child;
+    	}
+    	
+    	private void flush() throws JLIException {
+    		for (BomChild child : pending) {
+    			sink.add(child);
+    		}
+    		pending.clear();
+    	}
+    }
 }
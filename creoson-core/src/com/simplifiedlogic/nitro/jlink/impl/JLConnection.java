@@ -20,14 +20,18 @@ package com.simplifiedlogic.nitro.jlink.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 import com.ptc.cipjava.jxthrowable;
 import com.simplifiedlogic.nitro.jlink.intf.DebugLogging;
 import com.simplifiedlogic.nitro.jlink.data.AbstractJLISession;
+import com.simplifiedlogic.nitro.jlink.data.ConnectionStats;
 import com.simplifiedlogic.nitro.jlink.data.JLStatus;
+import com.simplifiedlogic.nitro.jlink.data.SessionStats;
 import com.simplifiedlogic.nitro.jlink.intf.IJLConnection;
 import com.simplifiedlogic.nitro.rpc.JLIException;
 import com.simplifiedlogic.nitro.rpc.JLISession;
+import com.simplifiedlogic.nitro.util.ConnectionPool;
 import com.simplifiedlogic.nitro.util.JLConnectionUtil;
 
 /**
@@ -38,6 +42,14 @@ public class JLConnection implements IJLConnection {
 
     public String defaultCommandLog = null;
 
+    /**
+     * Start the standby Creo pool, if one is configured, so that it is warm by the time
+     * the first session asks for Creo
+     */
+    public JLConnection() {
+    	JLConnectionUtil.startStandby();
+    }
+
     /* (non-Javadoc)
 	 * @see com.simplifiedlogic.nitro.jlink.impl.IJLConnection#connect(java.lang.String, java.lang.String)
 	 */
@@ -140,6 +152,53 @@ public class JLConnection implements IJLConnection {
 		return JLISession.getSession(sessionId);
 	}
 
+	/* (non-Javadoc)
+	 * @see com.simplifiedlogic.nitro.jlink.intf.IJLConnection#getConnectionKey(java.lang.String)
+	 */
+	@Override
+	public String getConnectionKey(String sessionId) {
+		String connId = null;
+		JLISession sess = JLISession.getSession(sessionId);
+		if (sess!=null) {
+			connId = sess.getExistingConnectionId();
+			if (connId==null && !JLConnectionUtil.isSingleConnect() && JLConnectionUtil.getConnectionKey(null)!=null) {
+				// pin the session now, so that its first request runs on the lane for 
+				// the connection it will actually use
+				try {
+					connId = sess.getConnectionId();
+				}
+				catch (JLIException e) {
+					connId = null;
+				}
+			}
+		}
+		return JLConnectionUtil.getConnectionKey(connId);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.simplifiedlogic.nitro.jlink.intf.IJLConnection#getConnectionStats()
+	 */
+	@Override
+	public List<ConnectionStats> getConnectionStats() {
+		return JLConnectionUtil.getConnectionStats();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.simplifiedlogic.nitro.jlink.intf.IJLConnection#getSessionStats()
+	 */
+	@Override
+	public SessionStats getSessionStats() {
+		return JLISession.getStats();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.simplifiedlogic.nitro.jlink.intf.IJLConnection#addConnectionListener(com.simplifiedlogic.nitro.util.ConnectionPool.Listener)
+	 */
+	@Override
+	public void addConnectionListener(ConnectionPool.Listener listener) {
+		JLConnectionUtil.addConnectionListener(listener);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.simplifiedlogic.nitro.jlink.intf.IJLConnection#startProe(java.lang.String, java.lang.String, int, boolean, java.lang.String)
 	 */
@@ -174,6 +233,9 @@ public class JLConnection implements IJLConnection {
         try {
 	        String connId = JLConnectionUtil.startProe(null, startDir, startCommand, retries, useDesktop);
 	        if (sess!=null) {
+	        	if (sess instanceof JLISession)
+	        		JLConnectionUtil.closeAsyncConnection(((JLISession)sess).getExistingConnectionId());
+	        	JLConnectionUtil.pinConnection(connId);
 	        	sess.setConnectionId(connId);
 	        }
 	        
@@ -206,7 +268,17 @@ public class JLConnection implements IJLConnection {
 	@Override
     public void stopProe(AbstractJLISession sess) throws JLIException {
 		try {
-			JLConnectionUtil.stopProe();
+			if (JLConnectionUtil.isSingleConnect())
+				JLConnectionUtil.stopProe();
+			else {
+				// with a pool, only stop the session's own Creo; the others belong to other clients
+				String connId = null;
+				if (sess instanceof JLISession)
+					connId = ((JLISession)sess).getExistingConnectionId();
+				if (connId==null)
+					throw new JLIException("The session is not using a Creo session, so there is none to stop");
+				JLConnectionUtil.stopProe(connId);
+			}
 			
 			JLISession.deleteSession(sess);
     	}
@@ -63,6 +63,7 @@ import com.simplifiedlogic.nitro.jlink.data.AbstractJLISession;
 import com.simplifiedlogic.nitro.jlink.data.FeatSelectData;
 import com.simplifiedlogic.nitro.jlink.data.FeatureData;
 import com.simplifiedlogic.nitro.jlink.data.ParameterData;
+import com.simplifiedlogic.nitro.jlink.data.RecordSink;
 import com.simplifiedlogic.nitro.jlink.intf.DebugLogging;
 import com.simplifiedlogic.nitro.jlink.intf.IJLFeature;
 import com.simplifiedlogic.nitro.jlink.intf.IJLParameter;
@@ -205,6 +206,7 @@ public class JLFeature implements IJLFeature {
 	        looper.setStatusPattern(featureStatus);
 	        looper.setTypePattern(featureType);
 	        looper.setIncludeUnnamed(includeUnnamed);
+	        looper.sink = RecordSink.getCurrent();
 	  
 	        looper.loop(solid);
 	        
@@ -1560,6 +1562,10 @@ public class JLFeature implements IJLFeature {
          * The output list of feature data
          */
         public Vector<FeatureData> output = null;
+        /**
+         * If not null, feature data is sent here instead of being added to the output list
+         */
+        public RecordSink sink = null;
         
         /* (non-Javadoc)
          * @see com.simplifiedlogic.nitro.util.FeatureLooper#loopAction(com.simplifiedlogic.nitro.jlink.calls.feature.CallFeature)
@@ -1600,6 +1606,10 @@ public class JLFeature implements IJLFeature {
                 if (no!=null)
                 	outvals.setFeatureNumber(no.intValue());
             }
+            if (sink!=null) {
+            	sink.add(outvals);
+            	return;
+            }
             if (output==null)
                 output = new Vector<FeatureData>();
             output.add(outvals);
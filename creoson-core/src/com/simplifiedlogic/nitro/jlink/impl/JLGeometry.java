@@ -39,6 +39,7 @@ import com.simplifiedlogic.nitro.jlink.data.AbstractJLISession;
 import com.simplifiedlogic.nitro.jlink.data.ContourData;
 import com.simplifiedlogic.nitro.jlink.data.EdgeData;
 import com.simplifiedlogic.nitro.jlink.data.JLBox;
+import com.simplifiedlogic.nitro.jlink.data.RecordSink;
 import com.simplifiedlogic.nitro.jlink.data.SurfaceData;
 import com.simplifiedlogic.nitro.jlink.intf.DebugLogging;
 import com.simplifiedlogic.nitro.jlink.intf.IJLGeometry;
@@ -147,6 +148,7 @@ public class JLGeometry implements IJLGeometry {
 	        CallModel m = JlinkUtils.getFile(session, filename, true);
 	        
 	        SurfaceLooper looper = new SurfaceLooper();
+	        looper.sink = RecordSink.getCurrent();
 	  
 	        looper.loop(m);
 	        
@@ -267,6 +269,10 @@ public class JLGeometry implements IJLGeometry {
     	 * An output list of surface data
     	 */
     	public List<SurfaceData> result = new Vector<SurfaceData>();
+    	/**
+    	 * If not null, surface data is sent here instead of being added to the output list
+    	 */
+    	public RecordSink sink = null;
     	
         /**
          * Constructor needed to initialize model item type
@@ -292,7 +298,10 @@ public class JLGeometry implements IJLGeometry {
 	        	sdata.setMinExtent(JLPointMaker.create(extents.get(0)));
 	        	sdata.setMaxExtent(JLPointMaker.create(extents.get(1)));
 	
-	        	result.add(sdata);
+	        	if (sink!=null)
+	        		sink.add(sdata);
+	        	else
+	        		result.add(sdata);
         	}
         	
         	return false;
@@ -37,6 +37,7 @@ import com.simplifiedlogic.nitro.jlink.data.ParameterCollFileData;
 import com.simplifiedlogic.nitro.jlink.data.ParameterData;
 import com.simplifiedlogic.nitro.jlink.data.ParameterDeleteData;
 import com.simplifiedlogic.nitro.jlink.data.ParameterDesignateData;
+import com.simplifiedlogic.nitro.jlink.data.RecordSink;
 import com.simplifiedlogic.nitro.jlink.intf.DebugLogging;
 import com.simplifiedlogic.nitro.jlink.intf.IJLParameter;
 import com.simplifiedlogic.nitro.rpc.JLIException;
@@ -457,6 +458,7 @@ public class JLParameter implements IJLParameter {
 	        looper.paramNames = paramNames;
 	        looper.encoded = encoded;
 	        looper.valuePattern = valuePattern;
+	        looper.sink = RecordSink.getCurrent();
 
 	        looper.loop();
 	        if (looper.output==null)
@@ -1141,6 +1143,10 @@ public class JLParameter implements IJLParameter {
          * An output list of parameter data
          */
         public Vector<ParameterData> output = null;
+        /**
+         * If not null, parameter data is sent here instead of being added to the output list
+         */
+        RecordSink sink = null;
 
     	/* (non-Javadoc)
     	 * @see com.simplifiedlogic.nitro.util.ModelLooper#loopAction(com.simplifiedlogic.nitro.jlink.calls.model.CallModel)
@@ -1161,14 +1167,17 @@ public class JLParameter implements IJLParameter {
 
 	        looper.loop(m);
 	        if (looper.output!=null) {
-	        	if (output==null) {
+	        	if (output==null && sink==null) {
 	        		output = new Vector<ParameterData>();
 	        	}
 	        	String ownerName = m.getFileName();
 	        	for (ParameterData param : looper.output) {
 		        	if (ownerName!=null)
 		        		param.setOwnerName(ownerName);
-	        		output.add(param);
+		        	if (sink!=null)
+		        		sink.add(param);
+		        	else
+		        		output.add(param);
 	        	}
 	        }
 			return false;
@@ -102,6 +102,7 @@ import com.simplifiedlogic.nitro.rpc.JLISession;
 import com.simplifiedlogic.nitro.rpc.JlinkConnectException;
 import com.simplifiedlogic.nitro.util.JLConnectionUtil;
 import com.simplifiedlogic.nitro.util.JLMatrixMaker;
+import com.simplifiedlogic.nitro.util.NameMatcher;
 
 /**
  * Useful utility functions related to interacting with JLink.
@@ -340,6 +341,8 @@ public class JlinkUtils {
      * @return The resulting JLIException.  Connection-related errors will be returned as JlinkConnectException
      */
     public static JLIException createException(Exception e, String msg) {
+    	if (e instanceof XToolkitCommError)
+    		JLConnectionUtil.connectionFailed();
         if (e instanceof XToolkitNotFound || e instanceof XToolkitCommError)
         	return new JlinkConnectException(ptcError(e, msg), e);
         else
@@ -353,6 +356,8 @@ public class JlinkUtils {
      * @return The resulting JLIException.  Connection-related errors will be returned as JlinkConnectException
      */
     public static JLIException createBareException(Exception e, String msg) {
+    	if (e instanceof XToolkitCommError)
+    		JLConnectionUtil.connectionFailed();
         if (e instanceof XToolkitNotFound || e instanceof XToolkitCommError)
         	return new JlinkConnectException(msg);
         else
@@ -1304,12 +1309,12 @@ public class JlinkUtils {
      * @param param The Creo parameter data
      * @param out The JShell parameter data output by the method
      * @param encoded Whether to return the parameter value as a byte array
-     * @param valuePtn A pattern to filter the value for
+     * @param valuePtn A compiled pattern to filter the value for
      * @return True if the parameter data was found, false if the parameter was not found or did not match the filter
      * @throws JLIException
      * @throws jxthrowable
      */
-    public static boolean getParamInfo(CallModel model, CallParameterOwner m, CallParameter param, ParameterData out, boolean encoded, Pattern valuePtn) throws JLIException,jxthrowable {
+    public static boolean getParamInfo(CallModel model, CallParameterOwner m, CallParameter param, ParameterData out, boolean encoded, NameMatcher valuePtn) throws JLIException,jxthrowable {
         if (param==null || out==null)
             return false;
         
@@ -1673,6 +1678,21 @@ public class JlinkUtils {
     	return type;
 	}
 
+    /**
+     * Check whether a string matches a compiled search pattern
+     * @param text The string to validate
+     * @param valuePtn The search pattern, from NameMatcher.compileValue()
+     * @return true if the string matches the pattern, or if the pattern is null
+     */
+    public static boolean checkValueFilter(String text, NameMatcher valuePtn) {
+        if (valuePtn!=null) {
+			if (text==null || text.trim().length()==0)
+				return false;
+			return valuePtn.matches(text.replace('\n', ' '));
+        }
+        return true;
+    }
+
     /**
      * Check whether a string matches a search pattern
      * @param text The string to validate
@@ -27,22 +27,55 @@ import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.simplifiedlogic.nitro.jlink.data.AbstractJLISession;
+import com.simplifiedlogic.nitro.jlink.data.SessionStats;
+import com.simplifiedlogic.nitro.jlink.impl.NitroConstants;
+import com.simplifiedlogic.nitro.jlink.intf.DebugLogging;
 import com.simplifiedlogic.nitro.util.JLConnectionUtil;
 
 /**
  * This represents a JShell session object.  It also has static functionality for keeping track
  * of all session objects in memory.
  * 
+ * <p>Sessions which have not been used for longer than the time in the system property
+ * sli.session.ttl (in milliseconds) are deleted by a background thread, along with their
+ * external processes and their use of a Creo connection.  This covers clients which crash
+ * without disconnecting.  The default of 0 keeps sessions until they are disconnected.
+ * 
  * @author Adam Andrews
  */
 public class JLISession extends AbstractJLISession {
 
+	public static final String SESSION_TTL_PROP = "sli.session.ttl";
+	
     /**
      * Container for all sessions currently in memory
      */
-    private static Hashtable<String, JLISession> sessionMap = new Hashtable<String, JLISession>();
+    private static ConcurrentHashMap<String, JLISession> sessionMap = new ConcurrentHashMap<String, JLISession>();
+
+    /**
+     * The sessions using each Creo connection, keyed by connection ID
+     */
+    private static ConcurrentHashMap<String, ConcurrentHashMap<JLISession, Boolean>> connIndex = 
+    	new ConcurrentHashMap<String, ConcurrentHashMap<JLISession, Boolean>>();
+
+    /**
+     * Idle time after which a session is deleted, or 0 to keep sessions
+     */
+    private static final long sessionTtl = Long.getLong(SESSION_TTL_PROP, 0L).longValue();
+    
+    /**
+     * Number of sessions deleted for being idle
+     */
+    private static AtomicLong reaped = new AtomicLong();
+    
+    static {
+    	if (sessionTtl>0)
+    		startReaper();
+    }
 
     private static Random random = new Random();
     
@@ -50,9 +83,14 @@ public class JLISession extends AbstractJLISession {
     public static final int SESSION_TYPE_PROE = 1;
     
 	private String sessionId = "";
-    private String connId = null;
+    /**
+     * The session's Creo connection; it is only changed while holding the session's lock, 
+     * so that concurrent first requests for a session pin it only once
+     */
+    private volatile String connId = null;
     private int sessionType = SESSION_TYPE_NONE;
-    private long lastUsed = System.currentTimeMillis();
+    private long created = System.currentTimeMillis();
+    private volatile long lastUsed = created;
     private String commandLog = null;
     private int proeVersion = 0;
     
@@ -80,7 +118,7 @@ public class JLISession extends AbstractJLISession {
      * Create a new session and keep track of it internally
      * @return The new session object
      */
-    public synchronized static JLISession createSession() {
+    public static JLISession createSession() {
         JLISession sess = new JLISession();
         sessionMap.put(sess.getSessionId(), sess);
         
@@ -92,10 +130,10 @@ public class JLISession extends AbstractJLISession {
      * @param sessionId The ID for the session to retrieve
      * @return The session object, or null if one does not exist
      */
-    public synchronized static JLISession getSession(String sessionId) {
+    public static JLISession getSession(String sessionId) {
         if (sessionId==null)
             return null;
-        JLISession sess = (JLISession)sessionMap.get(sessionId); 
+        JLISession sess = sessionMap.get(sessionId); 
         if (sess != null)
             sess.setLastUsed(System.currentTimeMillis());
         
@@ -107,10 +145,13 @@ public class JLISession extends AbstractJLISession {
      * @param sess The session object to delete
      * @throws JLIException
      */
-    public synchronized static void deleteSession(AbstractJLISession sess) throws JLIException {
+    public static void deleteSession(AbstractJLISession sess) throws JLIException {
         if (sess!=null) {
-        	if (sess.getSessionId()!=null)
-        		sessionMap.remove(sess.getSessionId());
+        	if (sess.getSessionId()!=null) {
+        		// only the caller which removes the session cleans it up
+        		if (sessionMap.remove(sess.getSessionId())==null)
+        			return;
+        	}
             if (sess instanceof JLISession) {
 	            ((JLISession)sess).cleanSession();
 	            ((JLISession)sess).setSessionId(null);
@@ -136,26 +177,124 @@ public class JLISession extends AbstractJLISession {
      * @param deadConnId The Creo connection ID
      * @throws JLIException
      */
-    public synchronized static void disconnectSessions(String deadConnId) throws JLIException {
+    public static void disconnectSessions(String deadConnId) throws JLIException {
         if (deadConnId==null)
             return;
-        Enumeration<String> ids = sessionMap.keys();
-        Object id;
-        JLISession sess;
-        while (ids.hasMoreElements()) {
-            id = ids.nextElement();
-            sess = (JLISession)sessionMap.get(id);
-            if (deadConnId.equals(sess.getConnectionId()))
-                deleteSession(sess);
-        }
+        ConcurrentHashMap<JLISession, Boolean> sessions = connIndex.get(deadConnId);
+        if (sessions==null)
+        	return;
+        for (JLISession sess : sessions.keySet())
+        	deleteSession(sess);
+        connIndex.remove(deadConnId, sessions);
+    }
+
+    /**
+     * Get the number and ages of the sessions in memory
+     * @return The session statistics
+     */
+    public static SessionStats getStats() {
+    	SessionStats stats = new SessionStats();
+    	long now = System.currentTimeMillis();
+    	int count = 0;
+    	long oldest = 0;
+    	long idlest = 0;
+    	for (JLISession sess : sessionMap.values()) {
+    		count++;
+    		oldest = Math.max(oldest, now - sess.created);
+    		idlest = Math.max(idlest, now - sess.lastUsed);
+    	}
+    	stats.setSessions(count);
+    	stats.setConnections(connIndex.size());
+    	stats.setOldestAge(oldest);
+    	stats.setLongestIdle(idlest);
+    	stats.setReaped(reaped.get());
+    	stats.setTtl(sessionTtl);
+    	return stats;
+    }
+
+    /**
+     * Start the background thread which deletes idle sessions
+     */
+    private static void startReaper() {
+    	// check a few times per TTL, but no more than once a second or less than once a minute
+    	final long interval = Math.min(60000L, Math.max(1000L, sessionTtl / 4));
+    	Thread t = new Thread("creoson-session-reaper") {
+    		public void run() {
+    			while (true) {
+    				try {
+    					Thread.sleep(interval);
+    				}
+    				catch (InterruptedException e) {
+    					return;
+    				}
+    				reapIdleSessions(System.currentTimeMillis() - sessionTtl);
+    			}
+    		}
+    	};
+    	t.setDaemon(true);
+    	t.start();
+    }
+
+    /**
+     * Delete the sessions which have not been used since a given time, and kill
+     * their external processes
+     * @param cutoff The time in milliseconds since the epoch
+     */
+    private static void reapIdleSessions(long cutoff) {
+    	for (JLISession sess : sessionMap.values()) {
+    		// a session which is still running a request or job is not idle, however long it takes
+    		if (sess.lastUsed>=cutoff || sess.isInUse())
+    			continue;
+    		try {
+    			sess.killSessionProcesses();
+    			String id = sess.getSessionId();
+    			deleteSession(sess);
+    			reaped.incrementAndGet();
+    			DebugLogging.sendDebugMessage("Deleted idle session " + id, NitroConstants.DEBUG_KEY);
+    		}
+    		catch (Exception e) {
+    			DebugLogging.sendDebugMessage("Unable to delete idle session: " + e.getMessage(), NitroConstants.DEBUG_KEY);
+    		}
+    	}
+    }
+
+    /**
+     * Add this session to the index of sessions for its Creo connection
+     */
+    private void indexConnection() {
+    	if (connId==null)
+    		return;
+    	ConcurrentHashMap<JLISession, Boolean> sessions = connIndex.get(connId);
+    	if (sessions==null) {
+    		ConcurrentHashMap<JLISession, Boolean> newSessions = new ConcurrentHashMap<JLISession, Boolean>();
+    		sessions = connIndex.putIfAbsent(connId, newSessions);
+    		if (sessions==null)
+    			sessions = newSessions;
+    	}
+    	sessions.put(this, Boolean.TRUE);
+    }
+
+    /**
+     * Remove this session from the index of sessions for its Creo connection
+     */
+    private void unindexConnection() {
+    	if (connId==null)
+    		return;
+    	ConcurrentHashMap<JLISession, Boolean> sessions = connIndex.get(connId);
+    	if (sessions!=null) {
+    		sessions.remove(this);
+    		if (sessions.isEmpty())
+    			connIndex.remove(connId, sessions);
+    	}
     }
 
     /**
      * Clean up a session prior to deleting it.  This includes closing the Creo connection.
      * @throws JLIException
      */
-    public void cleanSession() throws JLIException {
+    public synchronized void cleanSession() throws JLIException {
         if (connId != null) {
+        	unindexConnection();
            	JLConnectionUtil.closeAsyncConnection(connId);
             connId = null;
         }
@@ -168,24 +307,41 @@ public class JLISession extends AbstractJLISession {
      * Create a new Async connection to Creo.
      * @throws JLIException
      */
-    public void setConnection() throws JLIException {
+    public synchronized void setConnection() throws JLIException {
+    	unindexConnection();
        	connId = JLConnectionUtil.makeAsyncConnection();
+       	indexConnection();
     }
     
     /* (non-Javadoc)
      * @see com.simplifiedlogic.nitro.jlink.data.AbstractJLISession#getConnectionId()
      */
     public String getConnectionId() throws JLIException {
-        if (connId==null)
-            setConnection();
+    	String id = connId;
+    	if (id!=null)
+    		return id;
+    	synchronized (this) {
+	        if (connId==null)
+	            setConnection();
+	        return connId;
+    	}
+    }
+
+    /**
+     * Get the Creo connection ID without creating a new connection
+     * @return The Creo connection ID, or null if the session has no connection yet
+     */
+    public String getExistingConnectionId() {
         return connId;
     }
 
     /* (non-Javadoc)
      * @see com.simplifiedlogic.nitro.jlink.data.AbstractJLISession#setConnectionId(java.lang.String)
      */
-    public void setConnectionId(String connId) {
+    public synchronized void setConnectionId(String connId) {
+    	unindexConnection();
         this.connId = connId;
+        indexConnection();
     }
     
 	/* (non-Javadoc)
@@ -203,6 +359,15 @@ public class JLISession extends AbstractJLISession {
 		this.sessionId = sessionId;
 	}
 
+    /**
+     * Mark the end of a use of the session, and count the session as used at that time
+     * @see com.simplifiedlogic.nitro.jlink.data.AbstractJLISession#endUse()
+     */
+    public void endUse() {
+        super.endUse();
+        setLastUsed(System.currentTimeMillis());
+    }
+
     /**
      * @return Get the last-used time
      */
@@ -309,12 +474,7 @@ public class JLISession extends AbstractJLISession {
      * Kill all processes in all sessions
      */
     public static void killAllProcesses() {
-        if (sessionMap==null || sessionMap.size()==0)
-            return;
-        Enumeration<String> keys = sessionMap.keys();
-        while (keys.hasMoreElements()) {
-            String id = (String)keys.nextElement();
-            JLISession sess = (JLISession)sessionMap.get(id);
+        for (JLISession sess : sessionMap.values()) {
             sess.killSessionProcesses();
         }
     }
@@ -361,6 +521,8 @@ public class JLISession extends AbstractJLISession {
         if (text==null || logfile==null)
             return;
 
+        // written directly rather than through AsyncLog: the file is named by the client, 
+        // so it is neither rotated nor allowed to drop entries, and no thread is kept for it
         OutputStream os = new FileOutputStream(logfile, true);
         os.write(text.toString().getBytes(Charset.forName("UTF-8")));
         os.write("\n".getBytes(Charset.forName("UTF-8")));
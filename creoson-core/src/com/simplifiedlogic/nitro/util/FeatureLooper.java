@@ -23,6 +23,7 @@ import com.ptc.pfc.pfcFeature.FeatureType;
 import com.simplifiedlogic.nitro.jlink.calls.feature.CallFeature;
 import com.simplifiedlogic.nitro.jlink.calls.feature.CallFeatures;
 import com.simplifiedlogic.nitro.jlink.calls.solid.CallSolid;
+import com.simplifiedlogic.nitro.jlink.data.RequestDeadline;
 import com.simplifiedlogic.nitro.jlink.impl.JLFeature;
 import com.simplifiedlogic.nitro.jlink.impl.JlinkUtils;
 import com.simplifiedlogic.nitro.jlink.impl.NitroUtils;
@@ -45,6 +46,8 @@ public abstract class FeatureLooper extends LooperBase {
     private boolean isNamePattern = false;
     private boolean isTypePattern = false;
     private boolean isStatusPattern = false;
+    private NameMatcher typeMatcher = null;
+    private NameMatcher statusMatcher = null;
     private boolean visibleOnly = true; // default to true, but can be overridden 
     
     /**
@@ -117,6 +120,7 @@ public abstract class FeatureLooper extends LooperBase {
             int len = featList.getarraysize();
             CallFeature feat = null;
             for (int i=0; i<len; i++) {
+                RequestDeadline.checkCurrent();
                 currentStatus = null;
                 currentType = null;
                 currentName = null;
@@ -157,9 +161,7 @@ public abstract class FeatureLooper extends LooperBase {
     private boolean checkStatus(CallFeature feat) throws jxthrowable {
         if (statusPattern!=null) {
             currentStatus = JlinkUtils.translateFeatureStatus(feat.getStatus());
-            if (isStatusPattern && !currentStatus.toLowerCase().matches(statusPattern))
-                return false;
-            if (!isStatusPattern && !currentStatus.equalsIgnoreCase(statusPattern))
+            if (!statusMatcher.matches(currentStatus))
                 return false;
         }
         return true;
@@ -174,9 +176,7 @@ public abstract class FeatureLooper extends LooperBase {
     private boolean checkType(CallFeature feat) throws jxthrowable {
         if (typePattern!=null) {
             currentType = feat.getFeatTypeName();
-            if (isTypePattern && !currentType.toLowerCase().matches(typePattern))
-                return false;
-            if (!isTypePattern && !currentType.equalsIgnoreCase(typePattern))
+            if (!typeMatcher.matches(currentType))
                 return false;
         }
         return true;
@@ -209,6 +209,7 @@ public abstract class FeatureLooper extends LooperBase {
             this.statusPattern = NitroUtils.transformPattern(statusPattern.toLowerCase());
         else
             this.statusPattern = statusPattern;
+        this.statusMatcher = NameMatcher.compile(statusPattern);
 	}
 	/**
 	 * @return The feature type pattern filter (supports wildcards)
@@ -225,6 +226,7 @@ public abstract class FeatureLooper extends LooperBase {
             this.typePattern = NitroUtils.transformPattern(typePattern.toLowerCase());
         else
             this.typePattern = typePattern;
+        this.typeMatcher = NameMatcher.compile(typePattern);
 	}
 
     protected void processObjectByName(String name) throws JLIException,jxthrowable {
@@ -23,6 +23,7 @@ import com.simplifiedlogic.nitro.jlink.calls.family.CallFamilyMember;
 import com.simplifiedlogic.nitro.jlink.calls.family.CallFamilyTableColumns;
 import com.simplifiedlogic.nitro.jlink.calls.family.CallFamilyTableRow;
 import com.simplifiedlogic.nitro.jlink.calls.family.CallFamilyTableRows;
+import com.simplifiedlogic.nitro.jlink.data.RequestDeadline;
 import com.simplifiedlogic.nitro.jlink.impl.JlinkUtils;
 import com.simplifiedlogic.nitro.jlink.impl.NitroUtils;
 import com.simplifiedlogic.nitro.rpc.JLIException;
@@ -40,6 +41,10 @@ public abstract class InstanceLooper {
     private boolean getColumns = false;
 
     private boolean isNamePattern = false;
+    /**
+     * Compiled form of the name filter
+     */
+    private NameMatcher nameMatcher = null;
     protected String currentName = null;
     
     /**
@@ -70,6 +75,7 @@ public abstract class InstanceLooper {
         int sz = rows.getarraysize();
         CallFamilyTableRow onerow;
         for (int i=0; i<sz; i++) {
+            RequestDeadline.checkCurrent();
             currentName = null;
             onerow = rows.get(i);
             if (onerow==null) continue;
@@ -105,14 +111,9 @@ public abstract class InstanceLooper {
      * @throws jxthrowable
      */
     private boolean checkName(CallFamilyTableRow onerow) throws jxthrowable {
-        if (namePattern!=null) {
+        if (nameMatcher!=null) {
             currentName = onerow.getInstanceName();
-            if (currentName==null)
-                return false;
-            if (isNamePattern && !currentName.toLowerCase().matches(namePattern))
-                return false;
-            if (!isNamePattern && !currentName.equalsIgnoreCase(namePattern))
-                return false;
+            return nameMatcher.matches(currentName);
         }
         return true;
     }
@@ -133,6 +134,7 @@ public abstract class InstanceLooper {
             this.namePattern = NitroUtils.transformPattern(namePattern.toLowerCase());
         else
             this.namePattern = namePattern;
+        this.nameMatcher = NameMatcher.compile(namePattern);
     }
 
 	/**
@@ -20,14 +20,15 @@ package com.simplifiedlogic.nitro.util;
 
 import java.awt.Desktop;
 import java.io.File;
-import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.ptc.cipjava.jxthrowable;
 import com.ptc.pfc.pfcExceptions.XToolkitAmbiguous;
 import com.simplifiedlogic.nitro.jlink.calls.asyncconnection.CallAsyncConnection;
 import com.simplifiedlogic.nitro.jlink.calls.asyncconnection.CallConnectionId;
 import com.simplifiedlogic.nitro.jlink.calls.session.CallSession;
+import com.simplifiedlogic.nitro.jlink.data.ConnectionStats;
 import com.simplifiedlogic.nitro.jlink.impl.JLGlobal;
 import com.simplifiedlogic.nitro.jlink.impl.JlinkUtils;
 import com.simplifiedlogic.nitro.jlink.impl.NitroConstants;
@@ -48,15 +49,70 @@ public class JLConnectionUtil implements NitroConstants {
 	 */
 	public static final String JLINK_CONN_TIMEOUT_PROP		= "sli.jlink.timeout";
 	
+	/**
+	 * System property for the number of Creo sessions to run.  Defaults to 1, which keeps a 
+	 * single Creo connection which all JShell sessions share.
+	 */
+	public static final String POOL_SIZE_PROP				= "sli.creo.pool.size";
+	
+	/**
+	 * System property for the command line used to start additional Creo sessions for the pool.
+	 * If it is not set, the pool only grows when Creo is started through creo.start_creo.
+	 */
+	public static final String POOL_START_PROP				= "sli.creo.pool.start";
+	
+	/**
+	 * System property for the number of Creo sessions to keep started and connected in the
+	 * background, ready to hand out.  Defaults to 0, which turns the standby pool off.
+	 * Standby sessions are started with the command in POOL_START_PROP.
+	 */
+	public static final String STANDBY_PROP					= "sli.creo.standby";
+	
+	/**
+	 * System property for the number of JShell sessions a standby Creo may serve before it
+	 * is stopped and replaced.  Defaults to 0, for no limit.
+	 */
+	public static final String STANDBY_JOBS_PROP			= "sli.creo.standby.jobs";
+	
+	/**
+	 * System property for the memory growth in MB after which a standby Creo is stopped and
+	 * replaced.  Defaults to 0, for no limit.
+	 */
+	public static final String STANDBY_GROWTH_PROP			= "sli.creo.standby.growth";
+	
+	/**
+	 * System property for how long a Creo connection may sit idle, in milliseconds, before it
+	 * is checked with an extra call to Creo before it is next used.  Defaults to 30000.  
+	 * 0 checks the connection before every use.
+	 */
+	public static final String PROBE_IDLE_PROP				= "sli.jlink.probe.idle";
+	
+    /**
+     * Pool of current Creo connections
+     */
+    private static ConnectionPool<CallAsyncConnection> pool = new ConnectionPool<CallAsyncConnection>(
+    		new AsyncConnectionFactory(), Integer.getInteger(POOL_SIZE_PROP, 1).intValue());
+    
     /**
-     * Collection of current Creo connections
+     * Creo sessions kept ready in the background, or null if there is no standby pool
      */
-    private static Hashtable<String, CallAsyncConnection> connections = new Hashtable<String, CallAsyncConnection>();
+    private static volatile StandbyManager<CallAsyncConnection> standby = null;
     
     /**
-     * Whether to maintain only a single shared connection to Creo or to allow multiple connections
+     * Liveness of each Creo connection, keyed by connection ID
      */
-    private static final boolean SINGLE_CONNECT = true;
+    private static ConcurrentHashMap<String, Liveness> liveness = new ConcurrentHashMap<String, Liveness>();
+    
+    /**
+     * The connection most recently handed out on each thread, so that a connection error
+     * can be charged to the right connection
+     */
+    private static ThreadLocal<String> currentConnId = new ThreadLocal<String>();
+    
+    /**
+     * Idle time after which a connection is checked before it is used
+     */
+    private static final long probeIdle = Long.getLong(PROBE_IDLE_PROP, 30000L).longValue();
     
     /**
      * Current connection timeout
@@ -106,57 +162,178 @@ public class JLConnectionUtil implements NitroConstants {
      */
     public static CallAsyncConnection getConnection(String connId) {
         if (connId==null) return null;
-        CallAsyncConnection async = (CallAsyncConnection)connections.get(connId);
+        CallAsyncConnection async = pool.get(connId);
         return async;
     }
     
+    /**
+     * Get the ID of the connection which will actually service a request, without
+     * opening a new connection.  If the caller has no connection yet, the least loaded
+     * connection in the pool is returned instead.
+     * @param connId The caller's Creo connection ID (optional)
+     * @return The Creo connection ID, or null if there are no connections
+     */
+    public static String getConnectionKey(String connId) {
+        if (connId!=null)
+            return connId;
+        return pool.getKey();
+    }
+    
+    /**
+     * Whether there is only one Creo connection, shared by all sessions
+     * @return True if the pool size is 1
+     */
+    public static boolean isSingleConnect() {
+    	return pool.getMaxSize()==1;
+    }
+    
+    /**
+     * Mark a session as using a connection, so that new sessions are sent to less busy connections
+     * @param connId The Creo connection ID
+     */
+    public static void pinConnection(String connId) {
+    	if (connId!=null) {
+    		pool.pin(connId);
+    		if (standby!=null)
+    			standby.recordJob(connId);
+    	}
+    }
+    
+    /**
+     * Start the standby pool, if one is configured.  It is safe to call this more than once.
+     */
+    public static synchronized void startStandby() {
+    	if (standby!=null)
+    		return;
+    	int count = Integer.getInteger(STANDBY_PROP, 0).intValue();
+    	if (count<=0)
+    		return;
+    	if (System.getProperty(POOL_START_PROP)==null) {
+    		System.err.println("A standby Creo pool needs a start command in " + POOL_START_PROP);
+    		return;
+    	}
+    	standby = new StandbyManager<CallAsyncConnection>(new StandbyLauncher(), count, 
+    			Integer.getInteger(STANDBY_JOBS_PROP, 0).intValue(), 
+    			Long.getLong(STANDBY_GROWTH_PROP, 0).longValue() * 1024L * 1024L);
+    	standby.start();
+    }
+    
+    /**
+     * Get health and usage information for each Creo connection in the pool
+     * @return The connection information
+     */
+    public static List<ConnectionStats> getConnectionStats() {
+    	return pool.getStats();
+    }
+    
+    /**
+     * Add a listener to be told when a Creo connection is removed, because Creo was 
+     * stopped or found dead
+     * @param listener The listener
+     */
+    public static void addConnectionListener(ConnectionPool.Listener listener) {
+    	pool.addListener(listener);
+    }
+    
     /**
      * Get the Creo session for a connection.  If no connection can be retrieved from
-     * internal memory, it returns null.  If the connection's session is invalid,
-     * it tries to make a new connection to Creo and return the session for that.
+     * internal memory, it returns null.  
+     * 
+     * <p>The connection is only checked with an extra call to Creo if it has been idle for 
+     * longer than PROBE_IDLE_PROP, or if a call on it has failed with a connection error 
+     * since it was last used; otherwise the calls the caller makes are trusted to show 
+     * whether it is alive.  If the check fails, it tries to make a new connection to Creo 
+     * and returns the session for that; with a pool of several Creos, the dead connection 
+     * is removed from the pool instead.  Only callers of the same connection wait for each
+     * other while it is checked.
      *  
      * @param connId The connection ID
      * @return The Creo session object for that connection 
      * @throws JLIException
      */
-    public synchronized static CallSession getJLSession(String connId) throws JLIException {
+    public static CallSession getJLSession(String connId) throws JLIException {
         CallAsyncConnection async = getConnection(connId);
         if (async==null) return null;
+        Liveness live = getLiveness(connId);
+        currentConnId.set(connId);
         try {
-            CallSession sess = async.getSession();
-            try {
-                sess.getCurrentDirectory();
-            }
-            catch (jxthrowable jxe) {
-                // if failure, try to make a new connection
-                createConnectionEntry(connId);
-                async = getConnection(connId);
-                sess = async.getSession();
-            }
-            return sess;
+        	synchronized (live) {
+	            CallSession sess = async.getSession();
+	            long now = System.currentTimeMillis();
+	            if (live.failed || now - live.lastUsed >= probeIdle) {
+		            try {
+		                sess.getCurrentDirectory();
+		            }
+		            catch (jxthrowable jxe) {
+		                pool.setHealthy(connId, false);
+		                if (!isSingleConnect()) {
+		                	// a plain connect could attach to any of the pool's other Creos, 
+		                	// so the dead connection is dropped instead of being reconnected
+		                	JLISession.disconnectSessions(connId);
+		                	pool.remove(connId);
+		                	liveness.remove(connId);
+		                	throw new JlinkConnectException("The Creo session for this connection is no longer running");
+		                }
+		                // if failure, try to make a new connection
+		                createConnectionEntry(connId);
+		                async = getConnection(connId);
+		                sess = async.getSession();
+		            }
+		            live.failed = false;
+	            }
+	            live.lastUsed = now;
+	            return sess;
+        	}
         } catch (Exception ex) {
             ex.printStackTrace();
             throw JlinkUtils.createBareException(ex, "Could not get Creo Session ID");
         }
     }
+    
+    /**
+     * Record that a call to Creo failed with a connection error, so that the connection
+     * most recently handed out on this thread is checked and reconnected before it is 
+     * next used
+     */
+    public static void connectionFailed() {
+    	String connId = currentConnId.get();
+    	if (connId==null)
+    		return;
+    	Liveness live = liveness.get(connId);
+    	if (live!=null)
+    		live.failed = true;
+    	pool.setHealthy(connId, false);
+    }
+    
+    /**
+     * Get the liveness record for a connection, creating it if needed
+     * @param connId The connection ID
+     * @return The liveness record
+     */
+    private static Liveness getLiveness(String connId) {
+    	Liveness live = liveness.get(connId);
+    	if (live==null) {
+    		Liveness newLive = new Liveness();
+    		live = liveness.putIfAbsent(connId, newLive);
+    		if (live==null)
+    			live = newLive;
+    	}
+    	return live;
+    }
 
     /**
-     * Make a new Async connection to Creo; if SINGLE_CONNECT=true and there is
-     * an existing connection, it returns that. 
-     * @return The Async connection
+     * Get a Creo connection for a new session from the pool.  If the pool is empty, a new
+     * Async connection is made to the running Creo; if every connection already has sessions
+     * and the pool has room, a new Creo may be started.  Otherwise the session shares the 
+     * connection with the fewest sessions.
+     * @return The Creo connection ID, which the session is pinned to
      * @throws JLIException
      */
     public static String makeAsyncConnection() throws JLIException {
-
-        if (SINGLE_CONNECT) {
-            Enumeration<String> keys = connections.keys();
-            if (keys.hasMoreElements()) {
-                return (String)keys.nextElement();
-            }
-        }
-        
         try {
-            String connId = createConnectionEntry(null);
+            String connId = pool.acquire();
+            if (standby!=null)
+            	standby.recordJob(connId);
             return connId;
         }
         catch (XToolkitAmbiguous ex) {
@@ -186,17 +363,18 @@ public class JLConnectionUtil implements NitroConstants {
 
         if (connId==null)
             connId = getNewConnId(async);
-        connections.put(connId, async);
+        pool.put(connId, async);
 //        session = async.GetSession();
         
         return connId;
     }
     
     /**
-     * Close a Creo Async connection.  This function also issues a System.gc() 
-     * to clean up memory.
+     * Release a session's use of a Creo Async connection.  The connection stays open in the
+     * pool for other sessions; it is only closed when Creo is stopped, or when it was a standby
+     * Creo which has reached its job or memory limit and has no sessions left.
      * 
-     * @param connId The connection ID to close
+     * @param connId The connection ID to release
      * @throws JLIException
      */
     public static void closeAsyncConnection(String connId) throws JLIException {
@@ -204,30 +382,16 @@ public class JLConnectionUtil implements NitroConstants {
         if (connId==null)
             return;
         
-        if (SINGLE_CONNECT) {
-            // TODO: decrease list of users of the connection?
-            return;
-        }
-        else {
-        
-	        CallAsyncConnection async = connections.get(connId);
-	        if (async==null)
-	            return;
-	        try {
-	            JLGlobal.loadLibrary(); 
-	
-	            connections.remove(connId);
-	            System.out.println("GC on close connection!");
-	        	long start = System.currentTimeMillis();
-	    		DebugLogging.sendTimerMessage("System,gc", 0, NitroConstants.DEBUG_JLINK_KEY);
-	            System.gc();
-	            DebugLogging.sendTimerMessage("System.gc", start, NitroConstants.DEBUG_CONNECT_KEY);
-	            async.disconnect(new Integer(1000)); 
-	        }
-	        catch(Exception ex){
-	            ex.printStackTrace();
-	            throw JlinkUtils.createBareException(ex, "Could not disconnect async connection");
-	        }
+        int remaining = pool.release(connId);
+        StandbyManager<CallAsyncConnection> mgr = standby;
+        if (mgr!=null && remaining==0) {
+        	CallAsyncConnection async = pool.get(connId);
+        	if (async!=null && mgr.shouldRecycle(connId, async)) {
+        		pool.remove(connId);
+        		liveness.remove(connId);
+        		mgr.recycle(connId, async);
+        		System.out.println("Recycled standby Creo " + connId + ": " + mgr.getStatus());
+        	}
         }
     }
     
@@ -245,8 +409,24 @@ public class JLConnectionUtil implements NitroConstants {
      * @throws Exception
      */
     public static String startProe(String connId, String path, String cmd, int retries, boolean useDesktop) throws JLIException,jxthrowable,Exception {
-        if (SINGLE_CONNECT && isRunning())
-            throw new JLIException("Creo is already running");
+        if (isSingleConnect()) {
+        	if (isRunning())
+        		throw new JLIException("Creo is already running");
+        }
+        else if (pool.isFull())
+            throw new JLIException("All " + pool.getMaxSize() + " Creo sessions are already running");
+
+        // hand out a standby Creo if one is ready, rather than waiting for a new one to start
+        StandbyManager<CallAsyncConnection> mgr = standby;
+        if (mgr!=null) {
+        	CallAsyncConnection async = mgr.take();
+        	if (async!=null) {
+                if (connId==null)
+                    connId = getNewConnId(async);
+                pool.put(connId, async);
+                return connId;
+        	}
+        }
 
         if (path!=null) {
             if (!path.endsWith("/") && !path.endsWith("\\"))
@@ -264,6 +444,10 @@ public class JLConnectionUtil implements NitroConstants {
         // we're doing this because AsyncConnection_Start() freezes up when running a .bat file,
         // and the UG troubleshooting steps don't seem to help
         if (cmd.trim().toLowerCase().endsWith(".bat")) {
+        	// a Creo started from a .bat file can only be found with a plain connect, which 
+        	// cannot tell it apart from any other Creo already running for the pool
+        	if (!isSingleConnect() && (!pool.getIds().isEmpty() || standby!=null))
+        		throw new JLIException("Creo cannot be started from a .bat file while other pooled Creo sessions are running");
         	if (useDesktop && Desktop.isDesktopSupported()) {
         		File dir = new File(path);
 //        		String oldDir = System.getProperty("user.dir");
@@ -313,7 +497,7 @@ public class JLConnectionUtil implements NitroConstants {
     
             if (connId==null)
                 connId = getNewConnId(async);
-            connections.put(connId, async);
+            pool.put(connId, async);
         }
         
         return connId;
@@ -326,10 +510,7 @@ public class JLConnectionUtil implements NitroConstants {
      * @throws jxthrowable
      */
     public static void stopProe() throws JLIException, jxthrowable {
-        Enumeration<String> ids = connections.keys();
-        String id;
-        while (ids.hasMoreElements()) {
-            id = ids.nextElement().toString();
+        for (String id : pool.getIds()) {
             stopProe(id);
         }
     }
@@ -341,12 +522,13 @@ public class JLConnectionUtil implements NitroConstants {
      * @throws jxthrowable
      */
     public static void stopProe(String connId) throws JLIException,jxthrowable {
-        CallAsyncConnection async = connections.get(connId);
+        CallAsyncConnection async = pool.get(connId);
         if (async!=null) {
             JLGlobal.loadLibrary(); 
             
             JLISession.disconnectSessions(connId);
-            connections.remove(connId);
+            pool.remove(connId);
+            liveness.remove(connId);
             if (async.isRunning())
                 async.end();
         }
@@ -355,57 +537,67 @@ public class JLConnectionUtil implements NitroConstants {
     
     /**
      * Check whether a Creo connection is connected to an active Creo session.
-     * If SINGLE_CONNECT=true and the connection is not running, it tries to 
+     * If there is a single shared connection and it is not running, it tries to 
      * open a new connection.
      * @param connId The Creo connection ID
      * @return Whether the connection is running
      * @throws jxthrowable
      */
     public static boolean isRunning(String connId) throws jxthrowable {
-        if (SINGLE_CONNECT)
+        if (isSingleConnect())
             return isRunning();
         else {
 	        if (connId==null)
 	            return isRunning();
 	        
-	        CallAsyncConnection async = connections.get(connId);
+	        CallAsyncConnection async = pool.get(connId);
 	        if (async==null)
 	            return false;
 	
 	        JLGlobal.loadLibrary(); 
 	        
 	        boolean running = async.isRunning();
+	        pool.setHealthy(connId, running);
 	        return running;
         }
     }
 
     /**
      * Check whether any of the Creo connections are connected to an active 
-     * Creo session.  If none are running it attempts to make a new connection.
+     * Creo session.  If none are running and there is only one connection, it 
+     * attempts to make a new connection.
      * @return Whether any connection is running
      */
     public static boolean isRunning() {
         try {
             JLGlobal.loadLibrary(); 
 
-            Enumeration<String> keys = connections.keys();
             CallAsyncConnection async = null;
-            Object id = null;
-            while (keys.hasMoreElements()) {
-                id = keys.nextElement();
-                async = (CallAsyncConnection)connections.get(id);
+            for (String id : pool.getIds()) {
+                async = pool.get(id);
+                if (async==null)
+                	continue;
                 if (async.isRunning()) {
                     return true;
                 }
                 else {
-                    JLISession.disconnectSessions(id.toString());
-                    connections.remove(id);
+                    JLISession.disconnectSessions(id);
+                    pool.remove(id);
+                    liveness.remove(id);
                 }
             }
 
+            // the only other Creos running are standby ones, which are handed out when started
+            if (standby!=null)
+            	return false;
+            // a plain connect could attach to any of several running Creos, so a pool 
+            // only gets new connections through makeAsyncConnection
+            if (!isSingleConnect())
+            	return false;
+
             async = CallAsyncConnection.connect(null, null, null, new Integer(10));
             if (async!=null) {
-                connections.put(getNewConnId(async), async);
+                pool.put(getNewConnId(async), async);
                 return true;
             }
             else
@@ -444,4 +636,93 @@ public class JLConnectionUtil implements NitroConstants {
     	}
     	return connectionTimeout;
     }
+    
+    /**
+     * Makes Creo Async connections for the connection pool
+     */
+    private static class AsyncConnectionFactory implements ConnectionPool.Factory<CallAsyncConnection> {
+
+		public CallAsyncConnection connect() throws Exception {
+	        JLGlobal.loadLibrary();
+	        StandbyManager<CallAsyncConnection> mgr = standby;
+	        if (mgr!=null) {
+	        	CallAsyncConnection async = mgr.take();
+	        	if (async!=null)
+	        		return async;
+	        }
+	        // with several Creos running a plain connect could attach to any of them, 
+	        // so start one of the pool's own when possible
+	        if (!isSingleConnect() && canStart())
+	        	return CallAsyncConnection.start(System.getProperty(POOL_START_PROP), null);
+	        return CallAsyncConnection.connect(null, null, null, new Integer(getConnectionTimeout()));
+		}
+
+		public boolean canStart() {
+			return System.getProperty(POOL_START_PROP)!=null;
+		}
+
+		public CallAsyncConnection start() throws Exception {
+	        JLGlobal.loadLibrary();
+	        StandbyManager<CallAsyncConnection> mgr = standby;
+	        if (mgr!=null) {
+	        	CallAsyncConnection async = mgr.take();
+	        	if (async!=null)
+	        		return async;
+	        }
+	        // starting through J-Link returns the connection for that particular Creo, 
+	        // which a plain connect cannot pick out once several are running
+	        return CallAsyncConnection.start(System.getProperty(POOL_START_PROP), null);
+		}
+
+		public String getId(CallAsyncConnection conn) throws Exception {
+			return getNewConnId(conn);
+		}
+    }
+    
+    /**
+     * When a Creo connection was last used, and whether a call on it has failed since
+     */
+    private static class Liveness {
+    	volatile long lastUsed = 0;
+    	volatile boolean failed = false;
+    }
+    
+    /**
+     * Starts and stops standby Creo sessions.  J-Link gives no handle on the Creo process,
+     * so its memory is not known and only the job limit applies.
+     */
+    private static class StandbyLauncher implements StandbyManager.Launcher<CallAsyncConnection> {
+
+		public CallAsyncConnection launch() throws Exception {
+	        JLGlobal.loadLibrary();
+	        return CallAsyncConnection.start(System.getProperty(POOL_START_PROP), null);
+		}
+
+		public String getId(CallAsyncConnection conn) throws Exception {
+			return getNewConnId(conn);
+		}
+
+		public boolean isRunning(CallAsyncConnection conn) {
+			try {
+				return conn.isRunning();
+			}
+			catch (Throwable e) {
+				return false;
+			}
+		}
+
+		public void stop(CallAsyncConnection conn) {
+			try {
+				if (conn.isRunning())
+					conn.end();
+			}
+			catch (Throwable e) {
+				System.err.println("Unable to stop a standby Creo: " + e.getMessage());
+			}
+		}
+
+		public long getMemory(CallAsyncConnection conn) {
+			return -1;
+		}
+    }
 }
@@ -371,28 +371,60 @@ public class JLMatrixMaker {
      * @throws JLIException
      */
     public static JLTransform writeTransformTable(CallTransform3D featTrans) throws JLIException {
-        JLTransform xf = new JLTransform();
         try {
+        	double[] m = new double[16];
 	        CallVector3D v;
 	        v = featTrans.getXAxis();
-	        xf.xvector = new JLPoint(v.get(0), v.get(1), v.get(2));
-	        double m00 = v.get(0);
-	        double m10 = v.get(1);
-	        double m20 = v.get(2);
+	        m[0] = v.get(0);
+	        m[1] = v.get(1);
+	        m[2] = v.get(2);
 	        
 	        v = featTrans.getYAxis();
-	        xf.yvector = new JLPoint(v.get(0), v.get(1), v.get(2));
-	        double m11 = v.get(1);
+	        m[4] = v.get(0);
+	        m[5] = v.get(1);
+	        m[6] = v.get(2);
 	
 	        v = featTrans.getZAxis();
-	        xf.zvector = new JLPoint(v.get(0), v.get(1), v.get(2));
-	        double m02 = v.get(0);
-	        double m12 = v.get(1);
-	        double m22 = v.get(2);
+	        m[8] = v.get(0);
+	        m[9] = v.get(1);
+	        m[10] = v.get(2);
 	        
 	        CallPoint3D origin = featTrans.getOrigin();
-	        xf.origin = new JLPoint(origin.get(0), origin.get(1), origin.get(2));
+	        m[12] = origin.get(0);
+	        m[13] = origin.get(1);
+	        m[14] = origin.get(2);
+	        m[15] = 1.0;
 	        
+	        return writeTransformTable(m);
+        }
+        catch (jxthrowable jxe) {
+        	throw new JLIException(JlinkUtils.ptcError(jxe, "A PTC error has occurred when retrieving a Transform matrix"), jxe);
+        }
+    }
+    
+    /**
+     * Convert a transform matrix held as an array to a JLTransform
+     * @param m The matrix, as 16 values in row order; rows 0-2 are the X, Y and Z axes and row 3 is the origin
+     * @return The JShell transform created
+     */
+    public static JLTransform writeTransformTable(double[] m) {
+        JLTransform xf = new JLTransform();
+        xf.xvector = new JLPoint(m[0], m[1], m[2]);
+        double m00 = m[0];
+        double m10 = m[1];
+        double m20 = m[2];
+        
+        xf.yvector = new JLPoint(m[4], m[5], m[6]);
+        double m11 = m[5];
+
+        xf.zvector = new JLPoint(m[8], m[9], m[10]);
+        double m02 = m[8];
+        double m12 = m[9];
+        double m22 = m[10];
+        
+        xf.origin = new JLPoint(m[12], m[13], m[14]);
+        
+        {
 	        // calculate angles
 	        double heading, attitude, bank;
 	        if (m10 > 0.998) { // singularity at north pole
@@ -414,12 +446,76 @@ public class JLMatrixMaker {
 	        xf.xrot = new Double(radiansToDegrees(bank));
 	        xf.yrot = new Double(radiansToDegrees(heading));
 	        xf.zrot = new Double(radiansToDegrees(attitude));
-        
-	        return xf;
         }
-        catch (jxthrowable jxe) {
-        	throw new JLIException(JlinkUtils.ptcError(jxe, "A PTC error has occurred when retrieving a Transform matrix"), jxe);
+        return xf;
+    }
+    
+    /**
+     * Get an identity matrix held as an array
+     * @return The matrix, as 16 values in row order
+     */
+    public static double[] identity() {
+    	double[] m = new double[16];
+    	m[0] = 1.0;
+    	m[5] = 1.0;
+    	m[10] = 1.0;
+    	m[15] = 1.0;
+    	return m;
+    }
+    
+    /**
+     * Copy a Creo Transform3D's matrix into an array
+     * @param trans The Creo transform
+     * @return The matrix, as 16 values in row order
+     * @throws jxthrowable
+     */
+    public static double[] toArray(CallTransform3D trans) throws jxthrowable {
+    	CallMatrix3D matrix = trans.getMatrix();
+    	double[] m = new double[16];
+        for (int i=0; i<4; i++) {
+            for (int k=0; k<4; k++) {
+                m[i*4+k] = matrix.get(i, k);
+            }
         }
+        return m;
+    }
+    
+    /**
+     * Create a JLMatrix from a matrix held as an array
+     * @param m The matrix, as 16 values in row order
+     * @return The resulting JShell matrix
+     */
+    public static JLMatrix create(double[] m) {
+        JLMatrix jm = new JLMatrix();
+        for (int i=0; i<4; i++) {
+            for (int k=0; k<4; k++) {
+                jm.set(i, k, m[i*4+k]);
+            }
+        }
+        return jm;
+    }
+    
+    /**
+     * Multiply two matrices held as arrays.  Creo transforms apply to row vectors, so the
+     * placement of a component in the top-level assembly is multiply(local, parent), where 
+     * local places the component in its own assembly and parent places that assembly
+     * in the top-level assembly.
+     * @param a The first matrix, as 16 values in row order
+     * @param b The second matrix, as 16 values in row order
+     * @return A new matrix holding a x b
+     */
+    public static double[] multiply(double[] a, double[] b) {
+    	double[] c = new double[16];
+    	for (int i=0; i<16; i+=4) {
+    		double a0 = a[i];
+    		double a1 = a[i+1];
+    		double a2 = a[i+2];
+    		double a3 = a[i+3];
+    		for (int k=0; k<4; k++) {
+    			c[i+k] = a0*b[k] + a1*b[4+k] + a2*b[8+k] + a3*b[12+k];
+    		}
+    	}
+    	return c;
     }
     
     /**
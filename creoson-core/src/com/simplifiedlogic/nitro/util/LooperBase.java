@@ -50,6 +50,14 @@ public abstract class LooperBase {
      * List of flags indicating whether any of the nameList entries are patterns (have wildcards)
      */
     protected boolean[] isNameEntryPattern = null;
+    /**
+     * Compiled name filter
+     */
+    private NameMatcher nameMatcher = null;
+    /**
+     * Compiled list of name filters
+     */
+    private NameMatcher nameListMatcher = null;
     /**
      * Key for debugging
      */
@@ -78,6 +86,8 @@ public abstract class LooperBase {
     protected boolean checkName(String name, boolean includeUnnamed) {
         if (name==null)
             return includeUnnamed;
+        if (nameMatcher!=null)
+        	return nameMatcher.matches(name);
         if (namePattern!=null) {
 	        if (isNamePattern && !name.toLowerCase().matches(namePattern))
 	            return false;
@@ -107,6 +117,8 @@ public abstract class LooperBase {
             return true;
         if (name==null)
             return includeUnnamed;
+        if (nameListMatcher!=null)
+        	return nameListMatcher.matches(name);
         int len = nameList.length;
         // check all non-wildcard entries
         for (int i=0; i<len; i++) {
@@ -141,6 +153,7 @@ public abstract class LooperBase {
             this.namePattern = NitroUtils.transformPattern(namePattern.toLowerCase());
         else
             this.namePattern = namePattern;
+        this.nameMatcher = NameMatcher.compile(namePattern);
     }
 
     /**
@@ -156,12 +169,14 @@ public abstract class LooperBase {
     public void setNameList(List nameList) {
         this.namePattern = null;
         this.isNamePattern = false;
+        this.nameMatcher = null;
         if (nameList!=null) {
             setNameList(nameList.toArray());
         }
         else {
             isNamePattern=false;
             this.nameList = null;
+            this.nameListMatcher = null;
         }
     }
     
@@ -171,6 +186,8 @@ public abstract class LooperBase {
     public void setNameList(Object[] nameArray) {
         this.namePattern = null;
         this.isNamePattern = false;
+        this.nameMatcher = null;
+        this.nameListMatcher = NameMatcher.compileList(nameArray);
         if (nameArray!=null) {
             int len = nameArray.length;
             this.nameList = new String[len];
@@ -218,6 +235,8 @@ public abstract class LooperBase {
      */
     public void setIsNamePattern(boolean isNamePattern) {
         this.isNamePattern = isNamePattern;
+        // the filter is now read as given, so it can no longer use its compiled form
+        this.nameMatcher = null;
     }
 
 	public String getDebugKey() {
@@ -22,6 +22,7 @@ import com.ptc.cipjava.jxthrowable;
 import com.simplifiedlogic.nitro.jlink.calls.part.CallMaterial;
 import com.simplifiedlogic.nitro.jlink.calls.part.CallMaterials;
 import com.simplifiedlogic.nitro.jlink.calls.part.CallPart;
+import com.simplifiedlogic.nitro.jlink.data.RequestDeadline;
 import com.simplifiedlogic.nitro.rpc.JLIException;
 
 /**
@@ -73,6 +74,7 @@ public abstract class MaterialLooper extends LooperBase {
             int len = matlList.getarraysize();
             CallMaterial matl = null;
             for (int i=0; i<len; i++) {
+                RequestDeadline.checkCurrent();
                 currentName = null;
                 matl = matlList.get(i);
 
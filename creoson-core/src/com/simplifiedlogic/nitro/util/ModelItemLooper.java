@@ -25,6 +25,7 @@ import com.ptc.pfc.pfcModelItem.ModelItemType;
 import com.simplifiedlogic.nitro.jlink.calls.model.CallModel;
 import com.simplifiedlogic.nitro.jlink.calls.modelitem.CallModelItem;
 import com.simplifiedlogic.nitro.jlink.calls.modelitem.CallModelItems;
+import com.simplifiedlogic.nitro.jlink.data.RequestDeadline;
 import com.simplifiedlogic.nitro.jlink.impl.JlinkUtils;
 import com.simplifiedlogic.nitro.jlink.impl.NitroUtils;
 import com.simplifiedlogic.nitro.rpc.JLIException;
@@ -43,6 +44,10 @@ public abstract class ModelItemLooper {
     private String namePattern = null;
     private String[] nameList = null;
     private boolean isNamePattern = false;
+    /**
+     * Compiled form of the name filter or list of name filters
+     */
+    private NameMatcher nameMatcher = null;
 
     /**
      * The name of the current item in the loop
@@ -92,6 +97,7 @@ public abstract class ModelItemLooper {
             CallModelItem item = null;
             int id;
             for (int i=0; i<nameList.length; i++) {
+                RequestDeadline.checkCurrent();
                 found[i] = false;
                 currentName = null;
                 if (searchType==ModelItemType.ITEM_DIMENSION) {
@@ -127,6 +133,7 @@ public abstract class ModelItemLooper {
                     int len = itemList.getarraysize();
                     item = null;
                     for (int i=0; i<len; i++) {
+                        RequestDeadline.checkCurrent();
                         item = itemList.get(i);
                         currentName = item.getName();
 
@@ -163,6 +170,7 @@ public abstract class ModelItemLooper {
             int len = itemList.getarraysize();
             CallModelItem item = null;
             for (int i=0; i<len; i++) {
+                RequestDeadline.checkCurrent();
                 currentName = null;
                 item = itemList.get(i);
 
@@ -193,12 +201,9 @@ public abstract class ModelItemLooper {
      * @throws jxthrowable
      */
     public boolean checkName(CallModelItem item) throws jxthrowable {
-        if (namePattern!=null) {
+        if (nameMatcher!=null) {
             currentName = item.getName();
-            if (isNamePattern && !currentName.toLowerCase().matches(namePattern))
-                return false;
-            if (!isNamePattern && !currentName.equalsIgnoreCase(namePattern))
-                return false;
+            return nameMatcher.matches(currentName);
         }
         return true;
     }
@@ -217,6 +222,7 @@ public abstract class ModelItemLooper {
         if (namePattern!=null && namePattern.indexOf(' ')!=-1) {
             this.namePattern = null;
             this.nameList = namePattern.split(" ");
+            this.nameMatcher = NameMatcher.compileList(this.nameList);
             return;
         }
         isNamePattern = NitroUtils.isPattern(namePattern);
@@ -224,6 +230,7 @@ public abstract class ModelItemLooper {
             this.namePattern = NitroUtils.transformPattern(namePattern.toLowerCase());
         else
             this.namePattern = namePattern;
+        this.nameMatcher = NameMatcher.compile(namePattern);
     }
 
     /**
@@ -253,6 +260,7 @@ public abstract class ModelItemLooper {
     public void setNameList(List<String> nameList) {
         this.namePattern = null;
         this.isNamePattern = false;
+        this.nameMatcher = nameList!=null ? NameMatcher.compileList(nameList.toArray()) : null;
         if (nameList!=null) {
             int len = nameList.size();
             this.nameList = new String[len];
@@ -24,6 +24,7 @@ import com.simplifiedlogic.nitro.jlink.calls.model.CallModel;
 import com.simplifiedlogic.nitro.jlink.calls.model.CallModels;
 import com.simplifiedlogic.nitro.jlink.calls.model2d.CallModel2D;
 import com.simplifiedlogic.nitro.jlink.calls.session.CallSession;
+import com.simplifiedlogic.nitro.jlink.data.RequestDeadline;
 import com.simplifiedlogic.nitro.jlink.impl.JlinkUtils;
 import com.simplifiedlogic.nitro.jlink.intf.DebugLogging;
 import com.simplifiedlogic.nitro.rpc.JLIException;
@@ -61,6 +62,7 @@ public abstract class ModelLooper extends LooperBase {
         singleOp = false;
         if (nameList!=null && !isNamePattern) {
             for (int i=0; i<nameList.length; i++) {
+                RequestDeadline.checkCurrent();
                 currentName = null;
                 processObjectByName(nameList[i]);
             }
@@ -85,6 +87,7 @@ public abstract class ModelLooper extends LooperBase {
         int sz = models.getarraysize();
         CallModel m;
         for (int i=0; i<sz; i++) {
+            RequestDeadline.checkCurrent();
             currentName = null;
             start = System.currentTimeMillis();
             m = models.get(i);
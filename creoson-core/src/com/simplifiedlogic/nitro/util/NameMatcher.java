@@ -0,0 +1,236 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.simplifiedlogic.nitro.jlink.impl.NitroUtils;
+
+/**
+ * A compiled name filter, which checks names against a user-provided name or pattern
+ * without building a regular expression for each name.  All matching is case-insensitive.
+ *
+ * <p>A filter is compiled to the cheapest matcher that gives the same result as matching
+ * the lower-cased name against the regular expression from NitroUtils.transformPattern():
+ * <ul>
+ * <li>A name without wildcards is compared directly</li>
+ * <li>A pattern using only * and ? wildcards is matched without a regular expression</li>
+ * <li>Any other pattern, such as one with alternatives or character classes, is matched
+ * with a regular expression which is compiled once</li>
+ * </ul>
+ * A list of filters matches a name if any of its entries does; the plain names in the
+ * list are kept in a hash set.
+ *
+ * @author Adam Andrews
+ *
+ */
+public abstract class NameMatcher {
+
+	/**
+	 * Characters which make a pattern need a regular expression
+	 */
+	private static final String REGEX_CHARS = "|[](){}+^$\\,";
+
+	/**
+	 * Check whether a name matches the filter
+	 * @param name The name to check
+	 * @return Whether the name matches; false if the name is null
+	 */
+	public abstract boolean matches(String name);
+
+	/**
+	 * Compile a single name filter
+	 * @param pattern The name or pattern, as given by the user
+	 * @return The matcher, or null if the pattern is null
+	 */
+	public static NameMatcher compile(String pattern) {
+		if (pattern==null)
+			return null;
+		if (!NitroUtils.isPattern(pattern))
+			return new ExactMatcher(pattern);
+		String lower = pattern.toLowerCase();
+		if (isGlob(lower))
+			return new GlobMatcher(lower);
+		return new RegexMatcher(Pattern.compile(NitroUtils.transformPattern(lower)));
+	}
+
+	/**
+	 * Compile a value filter.  Unlike a name filter, a value without wildcards is still
+	 * read as a regular expression, as value filters always have been.
+	 * @param pattern The value or pattern, as given by the user
+	 * @return The matcher, or null if the pattern is null
+	 */
+	public static NameMatcher compileValue(String pattern) {
+		if (pattern==null)
+			return null;
+		String lower = pattern.toLowerCase();
+		if (isGlob(lower))
+			return new GlobMatcher(lower);
+		return new RegexMatcher(Pattern.compile(NitroUtils.transformPattern(lower)));
+	}
+
+	/**
+	 * Compile a list of name filters.  A name matches the list if it matches any entry.
+	 * @param patterns The names or patterns, as given by the user
+	 * @return The matcher, or null if the list is null
+	 */
+	public static NameMatcher compileList(Object[] patterns) {
+		if (patterns==null)
+			return null;
+		Set<String> names = new HashSet<String>();
+		List<NameMatcher> matchers = new ArrayList<NameMatcher>();
+		for (Object o : patterns) {
+			if (o==null)
+				continue;
+			String pattern = o.toString();
+			if (NitroUtils.isPattern(pattern))
+				matchers.add(compile(pattern));
+			else
+				names.add(pattern.toLowerCase());
+		}
+		if (matchers.size()==0 && names.size()==1)
+			return new ExactMatcher(names.iterator().next());
+		if (matchers.size()==1 && names.size()==0)
+			return matchers.get(0);
+		return new ListMatcher(names, matchers.toArray(new NameMatcher[matchers.size()]));
+	}
+
+	/**
+	 * Check whether a lower-cased pattern only uses the * and ? wildcards
+	 * @param pattern The pattern
+	 * @return Whether the pattern can be matched without a regular expression
+	 */
+	private static boolean isGlob(String pattern) {
+		int len = pattern.length();
+		for (int i=0; i<len; i++) {
+			if (REGEX_CHARS.indexOf(pattern.charAt(i))>=0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Matches a single name without wildcards
+	 */
+	private static class ExactMatcher extends NameMatcher {
+		private String name;
+
+		ExactMatcher(String name) {
+			this.name = name;
+		}
+
+		public boolean matches(String s) {
+			return s!=null && s.equalsIgnoreCase(name);
+		}
+	}
+
+	/**
+	 * Matches a pattern which only uses the * and ? wildcards
+	 */
+	private static class GlobMatcher extends NameMatcher {
+		private char[] pattern;
+
+		/**
+		 * @param pattern The lower-cased pattern
+		 */
+		GlobMatcher(String pattern) {
+			this.pattern = pattern.toCharArray();
+		}
+
+		public boolean matches(String s) {
+			if (s==null)
+				return false;
+			int slen = s.length();
+			int plen = pattern.length;
+			int si = 0;
+			int pi = 0;
+			// position after the last * seen, and the name position it was tried at
+			int starPi = -1;
+			int starSi = 0;
+			while (si<slen) {
+				if (pi<plen && pattern[pi]=='*') {
+					starPi = ++pi;
+					starSi = si;
+				}
+				else if (pi<plen && (pattern[pi]=='?' || pattern[pi]==Character.toLowerCase(s.charAt(si)))) {
+					pi++;
+					si++;
+				}
+				else if (starPi>=0) {
+					// let the last * take one more character and try again
+					pi = starPi;
+					si = ++starSi;
+				}
+				else
+					return false;
+			}
+			while (pi<plen && pattern[pi]=='*')
+				pi++;
+			return pi==plen;
+		}
+	}
+
+	/**
+	 * Matches a pattern with a precompiled regular expression
+	 */
+	private static class RegexMatcher extends NameMatcher {
+		private Pattern pattern;
+
+		RegexMatcher(Pattern pattern) {
+			this.pattern = pattern;
+		}
+
+		public boolean matches(String s) {
+			return s!=null && pattern.matcher(s.toLowerCase()).matches();
+		}
+	}
+
+	/**
+	 * Matches any of a set of plain names or a list of patterns
+	 */
+	private static class ListMatcher extends NameMatcher {
+		private Set<String> names;
+		private NameMatcher[] matchers;
+
+		/**
+		 * @param names The lower-cased plain names
+		 * @param matchers The matchers for the patterns
+		 */
+		ListMatcher(Set<String> names, NameMatcher[] matchers) {
+			this.names = names;
+			this.matchers = matchers;
+		}
+
+		public boolean matches(String s) {
+			if (s==null)
+				return false;
+			if (names.size()>0 && names.contains(s.toLowerCase()))
+				return true;
+			for (NameMatcher m : matchers) {
+				if (m.matches(s))
+					return true;
+			}
+			return false;
+		}
+	}
+}
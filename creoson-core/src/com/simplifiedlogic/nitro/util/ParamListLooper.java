@@ -19,7 +19,6 @@
 package com.simplifiedlogic.nitro.util;
 
 import java.util.Vector;
-import java.util.regex.Pattern;
 
 import com.ptc.cipjava.jxthrowable;
 import com.simplifiedlogic.nitro.jlink.calls.model.CallModel;
@@ -56,7 +55,7 @@ public class ParamListLooper extends ParamLooper {
     public CallParameterOwner owner;
 
 	private String valuePattern;
-	private Pattern valuePtn;
+	private NameMatcher valuePtn;
     
     /**
      * @param valuePattern The parameter value filter
@@ -64,7 +63,7 @@ public class ParamListLooper extends ParamLooper {
     public void setValuePattern(String valuePattern) {
     	if (valuePattern!=null) {
             this.valuePattern = NitroUtils.transformPattern(valuePattern.toLowerCase());
-            this.valuePtn = Pattern.compile(this.valuePattern);
+            this.valuePtn = NameMatcher.compileValue(valuePattern);
     	}
     }
 
@@ -24,6 +24,7 @@ import com.ptc.cipjava.jxthrowable;
 import com.simplifiedlogic.nitro.jlink.calls.modelitem.CallParameter;
 import com.simplifiedlogic.nitro.jlink.calls.modelitem.CallParameterOwner;
 import com.simplifiedlogic.nitro.jlink.calls.modelitem.CallParameters;
+import com.simplifiedlogic.nitro.jlink.data.RequestDeadline;
 import com.simplifiedlogic.nitro.jlink.impl.JlinkUtils;
 import com.simplifiedlogic.nitro.jlink.impl.NitroUtils;
 import com.simplifiedlogic.nitro.rpc.JLIException;
@@ -40,6 +41,10 @@ public abstract class ParamLooper {
     private String namePattern = null;
     private String[] nameList = null;
     private boolean isNamePattern = false;
+    /**
+     * Compiled form of the name filter or list of name filters
+     */
+    private NameMatcher nameMatcher = null;
     
     /**
      * The name of the current parameter in the loop
@@ -64,6 +69,7 @@ public abstract class ParamLooper {
         if (nameList!=null && !isNamePattern) {
         	CallParameter p;
         	for (int i=0; i<nameList.length; i++) {
+                RequestDeadline.checkCurrent();
                 currentName = null;
                 p = m.getParam(nameList[i]);
                 if (p!=null) {
@@ -81,6 +87,7 @@ public abstract class ParamLooper {
         int sz = params.getarraysize();
         CallParameter p;
         for (int i=0; i<sz; i++) {
+            RequestDeadline.checkCurrent();
             currentName = null;
             p = params.get(i);
             if (p==null) continue;
@@ -115,14 +122,9 @@ public abstract class ParamLooper {
      * @throws jxthrowable
      */
     private boolean checkName(CallParameter p) throws jxthrowable {
-        if (namePattern!=null) {
+        if (nameMatcher!=null) {
             currentName = p.getName();
-            if (currentName==null)
-                return false;
-            if (isNamePattern && !currentName.toLowerCase().matches(namePattern))
-                return false;
-            if (!isNamePattern && !currentName.equalsIgnoreCase(namePattern))
-                return false;
+            return nameMatcher.matches(currentName);
         }
         return true;
     }
@@ -135,6 +137,8 @@ public abstract class ParamLooper {
     }
 
     /**
+     * Set the name filter.  A filter containing spaces is read as a list of names or
+     * patterns, and a parameter is included if it matches any entry in the list.
      * @param namePattern The name filter
      */
     public void setNamePattern(String namePattern) {
@@ -142,6 +146,7 @@ public abstract class ParamLooper {
     		this.namePattern = null;
     		this.isNamePattern = false;
     		this.nameList = namePattern.split(" ");
+    		this.nameMatcher = NameMatcher.compileList(this.nameList);
 			int len = this.nameList.length;
 			for (int i=0; i<len; i++) {
 				if (NitroUtils.isPattern(this.nameList[i])) {
@@ -156,6 +161,7 @@ public abstract class ParamLooper {
             this.namePattern = NitroUtils.transformPattern(namePattern.toLowerCase());
         else
             this.namePattern = namePattern;
+        this.nameMatcher = NameMatcher.compile(namePattern);
     }
 
 	/**
@@ -166,11 +172,13 @@ public abstract class ParamLooper {
 	}
 
 	/**
+	 * Set a list of name filters.  A parameter is included if it matches any entry in the list.
 	 * @param nameList The list of name filters
 	 */
 	public void setNameList(List<String> nameList) {
 		this.namePattern = null;
 		this.isNamePattern = false;
+		this.nameMatcher = nameList!=null ? NameMatcher.compileList(nameList.toArray()) : null;
 		if (nameList!=null) {
 			int len = nameList.size();
 			this.nameList = new String[len];
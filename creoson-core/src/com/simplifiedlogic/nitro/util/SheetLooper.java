@@ -20,6 +20,7 @@ package com.simplifiedlogic.nitro.util;
 
 import com.ptc.cipjava.jxthrowable;
 import com.simplifiedlogic.nitro.jlink.calls.model2d.CallModel2D;
+import com.simplifiedlogic.nitro.jlink.data.RequestDeadline;
 import com.simplifiedlogic.nitro.rpc.JLIException;
 
 /**
@@ -52,6 +53,7 @@ public abstract class SheetLooper {
         int lastSheet = curSheet;
         if (sheetno==0) {
         	for (int i=0; i<numSheets; i++) {
+        		RequestDeadline.checkCurrent();
         		lastSheet = i+1;
 	        	drawing.setCurrentSheetNumber(lastSheet);
 
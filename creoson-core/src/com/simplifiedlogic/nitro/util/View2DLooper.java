@@ -24,6 +24,7 @@ import com.ptc.pfc.pfcExceptions.XToolkitGeneralError;
 import com.simplifiedlogic.nitro.jlink.calls.model2d.CallModel2D;
 import com.simplifiedlogic.nitro.jlink.calls.view2d.CallView2D;
 import com.simplifiedlogic.nitro.jlink.calls.view2d.CallView2Ds;
+import com.simplifiedlogic.nitro.jlink.data.RequestDeadline;
 import com.simplifiedlogic.nitro.jlink.impl.JlinkUtils;
 import com.simplifiedlogic.nitro.jlink.intf.DebugLogging;
 import com.simplifiedlogic.nitro.rpc.JLIException;
@@ -85,6 +86,7 @@ public abstract class View2DLooper extends LooperBase {
         int sz = views.getarraysize();
         CallView2D view;
         for (int i=0; i<sz; i++) {
+            RequestDeadline.checkCurrent();
             currentName = null;
             start = System.currentTimeMillis();
             view = views.get(i);
@@ -20,6 +20,7 @@ package com.simplifiedlogic.nitro.util;
 
 import com.ptc.cipjava.jxthrowable;
 import com.ptc.pfc.pfcExceptions.XToolkitCantOpen;
+import com.simplifiedlogic.nitro.jlink.data.RequestDeadline;
 import com.simplifiedlogic.nitro.jlink.intf.DebugLogging;
 import com.simplifiedlogic.nitro.jlink.calls.model.CallModel;
 import com.simplifiedlogic.nitro.jlink.calls.view.CallView;
@@ -63,6 +64,7 @@ public abstract class ViewLooper extends LooperBase {
         singleOp = false;
         if (nameList!=null && !isNamePattern) {
             for (int i=0; i<nameList.length; i++) {
+                RequestDeadline.checkCurrent();
                 currentName = null;
                 processObjectByName(nameList[i]);
             }
@@ -80,6 +82,7 @@ public abstract class ViewLooper extends LooperBase {
         int sz = views.getarraysize();
         CallView view;
         for (int i=0; i<sz; i++) {
+            RequestDeadline.checkCurrent();
             currentName = null;
             start = System.currentTimeMillis();
             view = views.get(i);
@@ -22,6 +22,7 @@ import com.ptc.cipjava.jxthrowable;
 import com.ptc.pfc.pfcSession.FileListOpt;
 import com.simplifiedlogic.nitro.jlink.calls.seq.CallStringSeq;
 import com.simplifiedlogic.nitro.jlink.calls.session.CallSession;
+import com.simplifiedlogic.nitro.jlink.data.RequestDeadline;
 import com.simplifiedlogic.nitro.jlink.impl.JlinkUtils;
 import com.simplifiedlogic.nitro.rpc.JLIException;
 
@@ -58,6 +59,7 @@ public abstract class WorkspaceFileLooper {
         int sz = files.getarraysize();
         String fileUrl;
         for (int i=0; i<sz; i++) {
+            RequestDeadline.checkCurrent();
             fileUrl = files.get(i);
             if (fileUrl==null) continue;
             String name = JlinkUtils.stripWindchillUrl(fileUrl);
@@ -0,0 +1,232 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.simplifiedlogic.nitro.jlink.data.JLMatrix;
+import com.simplifiedlogic.nitro.jlink.data.JLPoint;
+import com.simplifiedlogic.nitro.jlink.data.JLTransform;
+
+/**
+ * Numerical tests for the array matrix math in JLMatrixMaker, which the BOM uses to
+ * compose a component's transform from the placements of each level of its path.
+ *
+ * <p>The composed transforms are checked against a reference which does what J-Link's
+ * ComponentPath.GetTransform does for a full path: it carries the component's origin
+ * and axes up through each level of the path, one placement at a time.
+ *
+ * @author Adam Andrews
+ */
+public class JLMatrixMakerTest {
+
+	private static final double TOLERANCE = 1e-9;
+
+	@Test
+	public void testMultiplyByIdentity() {
+		Random rand = new Random(1);
+		double[] a = toArray(randomPlacement(rand));
+		assertArrayEquals(a, JLMatrixMaker.multiply(a, JLMatrixMaker.identity()), 0.0);
+		assertArrayEquals(a, JLMatrixMaker.multiply(JLMatrixMaker.identity(), a), 0.0);
+	}
+
+	@Test
+	public void testKnownTwoLevelPath() {
+		// the sub-assembly is turned 90 degrees about Z and moved 100 along X
+		double[] parent = JLMatrixMaker.identity();
+		set(parent, 0, 0, 1, 0);
+		set(parent, 1, -1, 0, 0);
+		set(parent, 2, 0, 0, 1);
+		set(parent, 3, 100, 0, 0);
+		// the part sits 10 along the sub-assembly's X axis
+		double[] local = JLMatrixMaker.identity();
+		set(local, 3, 10, 0, 0);
+
+		double[] m = JLMatrixMaker.multiply(local, parent);
+		assertArrayEquals(new double[] {
+				0, 1, 0, 0,
+				-1, 0, 0, 0,
+				0, 0, 1, 0,
+				100, 10, 0, 1
+		}, m, TOLERANCE);
+	}
+
+	@Test
+	public void testComposedMatchesPathOnSyntheticTrees() {
+		Random rand = new Random(20240501);
+		for (int tree=0; tree<20; tree++) {
+			Node root = randomTree(rand, 0, 5);
+			checkTree(root, JLMatrixMaker.identity(), new ArrayList<double[]>());
+		}
+	}
+
+	@Test
+	public void testMultiplyMatchesDot() {
+		Random rand = new Random(7);
+		for (int i=0; i<50; i++) {
+			double[] local = toArray(randomPlacement(rand));
+			double[] parent = toArray(randomPlacement(rand));
+
+			// dot(m1, m2) replaces m1 with m2 x m1
+			JLMatrix m = JLMatrixMaker.create(parent);
+			JLMatrixMaker.dot(m, JLMatrixMaker.create(local));
+
+			assertArrayEquals(toArray(m), JLMatrixMaker.multiply(local, parent), TOLERANCE);
+		}
+	}
+
+	@Test
+	public void testWriteTransformTableFromComposed() {
+		Random rand = new Random(42);
+		for (int i=0; i<50; i++) {
+			double[] m = JLMatrixMaker.multiply(toArray(randomPlacement(rand)), toArray(randomPlacement(rand)));
+			JLTransform xf = JLMatrixMaker.writeTransformTable(m);
+			assertPoint(m, 0, xf.xvector);
+			assertPoint(m, 4, xf.yvector);
+			assertPoint(m, 8, xf.zvector);
+			assertPoint(m, 12, xf.origin);
+
+			// the product of two rigid placements is still a rotation
+			for (int r=0; r<3; r++) {
+				for (int s=0; s<3; s++) {
+					double dot = m[r*4]*m[s*4] + m[r*4+1]*m[s*4+1] + m[r*4+2]*m[s*4+2];
+					assertEquals(r==s ? 1.0 : 0.0, dot, TOLERANCE);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Walk a tree the way the BOM does, composing each component's transform from its
+	 * parent's, and compare it with the transform for the component's full path
+	 * @param node The current node
+	 * @param transform The composed transform of the node
+	 * @param path The placements from the root down to the node
+	 */
+	private static void checkTree(Node node, double[] transform, List<double[]> path) {
+		for (Node child : node.children) {
+			double[] childTransform = JLMatrixMaker.multiply(child.placement, transform);
+			path.add(child.placement);
+			assertArrayEquals("depth " + path.size(), pathTransform(path), childTransform, TOLERANCE);
+			checkTree(child, childTransform, path);
+			path.remove(path.size()-1);
+		}
+	}
+
+	/**
+	 * Work out the transform for a full component path by carrying the component's origin
+	 * and axis end points up through each placement, from the component to the top
+	 * @param path The placements from the top-level assembly down to the component
+	 * @return The transform, as 16 values in row order
+	 */
+	private static double[] pathTransform(List<double[]> path) {
+		double[][] points = new double[][] {
+				{ 1, 0, 0 }, { 0, 1, 0 }, { 0, 0, 1 }, { 0, 0, 0 }
+		};
+		for (int level=path.size()-1; level>=0; level--) {
+			double[] p = path.get(level);
+			for (int i=0; i<points.length; i++)
+				points[i] = transformPoint(p, points[i]);
+		}
+		double[] m = new double[16];
+		for (int i=0; i<3; i++) {
+			for (int k=0; k<3; k++)
+				m[i*4+k] = points[i][k] - points[3][k];
+		}
+		for (int k=0; k<3; k++)
+			m[12+k] = points[3][k];
+		m[15] = 1.0;
+		return m;
+	}
+
+	/**
+	 * Place a point with a transform: x*xaxis + y*yaxis + z*zaxis + origin
+	 */
+	private static double[] transformPoint(double[] m, double[] pt) {
+		double[] out = new double[3];
+		for (int k=0; k<3; k++)
+			out[k] = pt[0]*m[k] + pt[1]*m[4+k] + pt[2]*m[8+k] + m[12+k];
+		return out;
+	}
+
+	/**
+	 * Make a random placement from rotation angles and an origin, as a client would
+	 * pass to an assemble call
+	 */
+	private static JLMatrix randomPlacement(Random rand) {
+		JLTransform xf = new JLTransform();
+		xf.xrot = new Double(rand.nextDouble()*360 - 180);
+		xf.yrot = new Double(rand.nextDouble()*360 - 180);
+		xf.zrot = new Double(rand.nextDouble()*360 - 180);
+		xf.origin = new JLPoint(rand.nextDouble()*1000 - 500, rand.nextDouble()*1000 - 500, rand.nextDouble()*1000 - 500);
+		try {
+			return JLMatrixMaker.create(xf);
+		}
+		catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static Node randomTree(Random rand, int depth, int maxDepth) {
+		Node node = new Node();
+		node.placement = toArray(randomPlacement(rand));
+		if (depth<maxDepth) {
+			int count = 1 + rand.nextInt(3);
+			for (int i=0; i<count; i++)
+				node.children.add(randomTree(rand, depth+1, maxDepth));
+		}
+		return node;
+	}
+
+	private static double[] toArray(JLMatrix jm) {
+		double[] m = new double[16];
+		for (int i=0; i<4; i++) {
+			for (int k=0; k<4; k++)
+				m[i*4+k] = jm.get(i, k);
+		}
+		return m;
+	}
+
+	private static void set(double[] m, int row, double x, double y, double z) {
+		m[row*4] = x;
+		m[row*4+1] = y;
+		m[row*4+2] = z;
+	}
+
+	private static void assertPoint(double[] m, int offset, JLPoint pt) {
+		assertEquals(m[offset], pt.getX(), TOLERANCE);
+		assertEquals(m[offset+1], pt.getY(), TOLERANCE);
+		assertEquals(m[offset+2], pt.getZ(), TOLERANCE);
+	}
+
+	/**
+	 * A component in a synthetic assembly tree
+	 */
+	private static class Node {
+		double[] placement;
+		List<Node> children = new ArrayList<Node>();
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.simplifiedlogic.nitro.jlink.impl.NitroUtils;
+
+/**
+ * Tests that NameMatcher gives the same answers as the filtering it replaced, which
+ * lower-cased each name and matched it against NitroUtils.transformPattern() with
+ * String.matches(), or compared it with equalsIgnoreCase() if the filter had no wildcards.
+ *
+ * @author Adam Andrews
+ */
+public class NameMatcherTest {
+
+	/**
+	 * Filter, name, and whether the name should match
+	 */
+	private static final Object[][] CASES = {
+		// exact names
+		{ "ABC", "abc", true },
+		{ "abc", "ABC", true },
+		{ "abc", "abcd", false },
+		{ "a,b", "b", false },
+		{ "a+b", "a+b", true },
+		{ "a+b", "aab", false },
+		{ "part.prt", "PART.PRT", true },
+		// * and ? wildcards
+		{ "A*", "abcd", true },
+		{ "A*", "bc", false },
+		{ "*", "", true },
+		{ "**", "abc", true },
+		{ "*_DESC", "PARAM_1_DESC", true },
+		{ "PARAM_1*_DESC", "PARAM_12_DESC", true },
+		{ "PARAM_1*_DESC", "PARAM_1_DESC", true },
+		{ "PARAM_1*_DESC", "PARAM_2_DESC", false },
+		{ "?BC", "abc", true },
+		{ "?BC", "bc", false },
+		{ "a?c*", "ABCDEF", true },
+		{ "a*b*c", "aXbYc", true },
+		{ "a*b*c", "aXbYcd", false },
+		{ "*.prt", "part.prt", true },
+		{ "*.prt", "partxprt", false },
+		{ "part.pr?", "partxprt", false },
+		// alternatives and character classes
+		{ "A|B", "b", true },
+		{ "A|B", "ab", false },
+		{ "abc|x*", "X1", true },
+		{ "abc|x*", "abcd", false },
+		{ "[ab]*", "bc", true },
+		{ "[ab]*", "x1", false },
+		{ "[a-c]?c", "BXC", true },
+		{ "[a-c]?c", "dxc", false },
+		{ "*.asm|*.prt", "BOX.ASM", true },
+		{ "*.asm|*.prt", "box.drw", false },
+	};
+
+	private static final String[] NAMES = {
+		"", "a", "b", "bc", "abc", "ABC", "abcd", "aab", "a+b", "a,b", "x1", "X1",
+		"PARAM_1_DESC", "PARAM_12_DESC", "PARAM_2_DESC", "part.prt", "PARTXPRT",
+		"BOX.ASM", "box.drw", "aXbYc", "BXC",
+	};
+
+	@Test
+	public void testCases() {
+		for (Object[] c : CASES) {
+			String pattern = (String)c[0];
+			String name = (String)c[1];
+			boolean expected = ((Boolean)c[2]).booleanValue();
+			String msg = pattern + " / " + name;
+			assertEquals(msg, expected, oldMatch(pattern, name));
+			assertEquals(msg, expected, NameMatcher.compile(pattern).matches(name));
+		}
+	}
+
+	@Test
+	public void testAllCasePatternsAgainstAllNames() {
+		for (Object[] c : CASES) {
+			String pattern = (String)c[0];
+			NameMatcher matcher = NameMatcher.compile(pattern);
+			for (String name : NAMES)
+				assertEquals(pattern + " / " + name, oldMatch(pattern, name), matcher.matches(name));
+		}
+	}
+
+	@Test
+	public void testValueFilters() {
+		// a value filter is always a regular expression, even without wildcards
+		for (Object[] c : CASES) {
+			String pattern = (String)c[0];
+			NameMatcher matcher = NameMatcher.compileValue(pattern);
+			for (String name : NAMES)
+				assertEquals(pattern + " / " + name, oldRegexMatch(pattern, name), matcher.matches(name));
+		}
+		assertEquals(true, NameMatcher.compileValue("a+b").matches("aab"));
+	}
+
+	@Test
+	public void testLists() {
+		String[][] lists = {
+			{ "abc" },
+			{ "abc", "x1" },
+			{ "abc", "x*" },
+			{ "A|B", "part.prt" },
+			// ParamLooper splits a filter such as "PARAM_1* PARAM_2_DESC" into a list
+			{ "PARAM_1*", "PARAM_2_DESC" },
+			{ "[ab]*", "*.asm", "X1" },
+			{ "*" },
+		};
+		for (String[] list : lists) {
+			NameMatcher matcher = NameMatcher.compileList(list);
+			for (String name : NAMES) {
+				boolean expected = false;
+				for (String pattern : list)
+					expected = expected || oldMatch(pattern, name);
+				assertEquals(join(list) + " / " + name, expected, matcher.matches(name));
+			}
+		}
+	}
+
+	@Test
+	public void testNulls() {
+		assertNull(NameMatcher.compile(null));
+		assertNull(NameMatcher.compileValue(null));
+		assertNull(NameMatcher.compileList(null));
+		assertFalse(NameMatcher.compile("abc").matches(null));
+		assertFalse(NameMatcher.compile("a*").matches(null));
+		assertFalse(NameMatcher.compile("a|b").matches(null));
+		assertFalse(NameMatcher.compileList(new Object[] { "a", "b*", null }).matches(null));
+		assertEquals(true, NameMatcher.compileList(new Object[] { "a", "b*", null }).matches("B2"));
+	}
+
+	@Test
+	public void testRandomGlobs() {
+		Random rand = new Random(12345);
+		String patternChars = "abA.*?";
+		String nameChars = "abAB.x";
+		for (int i=0; i<20000; i++) {
+			String pattern = randomString(rand, patternChars, 1 + rand.nextInt(6));
+			String name = randomString(rand, nameChars, rand.nextInt(8));
+			assertEquals(pattern + " / " + name, oldMatch(pattern, name), NameMatcher.compile(pattern).matches(name));
+		}
+	}
+
+	/**
+	 * Match a name the way the loopers did before NameMatcher
+	 */
+	private static boolean oldMatch(String pattern, String name) {
+		if (NitroUtils.isPattern(pattern))
+			return oldRegexMatch(pattern, name);
+		return name.equalsIgnoreCase(pattern);
+	}
+
+	private static boolean oldRegexMatch(String pattern, String name) {
+		return name.toLowerCase().matches(NitroUtils.transformPattern(pattern.toLowerCase()));
+	}
+
+	private static String randomString(Random rand, String chars, int len) {
+		StringBuilder buf = new StringBuilder(len);
+		for (int i=0; i<len; i++)
+			buf.append(chars.charAt(rand.nextInt(chars.length())));
+		return buf.toString();
+	}
+
+	private static String join(String[] list) {
+		StringBuilder buf = new StringBuilder();
+		for (String s : list) {
+			if (buf.length()>0)
+				buf.append(' ');
+			buf.append(s);
+		}
+		return buf.toString();
+	}
+}
@@ -19,6 +19,7 @@
 package com.simplifiedlogic.nitro.jlink.data;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.simplifiedlogic.nitro.rpc.JLIException;
 
@@ -30,6 +31,11 @@ import com.simplifiedlogic.nitro.rpc.JLIException;
  */
 public abstract class AbstractJLISession {
 
+	/**
+	 * Number of requests and jobs which are using the session
+	 */
+	private AtomicInteger inUse = new AtomicInteger();
+
     /**
      * When a function is executed, this function will write the request to a command log file
      * @param cmd The generic request  structure
@@ -74,4 +80,26 @@ public abstract class AbstractJLISession {
      * @param proeVersion The Creo version value
      */
 	public abstract void setProeVersion(int proeVersion);
+
+	/**
+	 * Mark the session as used by a request or job, so that it is not deleted as idle 
+	 * until endUse() is called
+	 */
+	public void beginUse() {
+		inUse.incrementAndGet();
+	}
+
+	/**
+	 * Mark the end of a use started by beginUse()
+	 */
+	public void endUse() {
+		inUse.decrementAndGet();
+	}
+
+	/**
+	 * @return Whether any request or job is using the session
+	 */
+	public boolean isInUse() {
+		return inUse.get()>0;
+	}
 }
@@ -0,0 +1,220 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jlink.data;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A BOM hierarchy held as columns of primitive values instead of a tree of BomChild 
+ * objects, for large assemblies.
+ * 
+ * <p>Each component is one row.  Rows are in the same order as a walk of the BOM 
+ * hierarchy, so a component's children follow it directly.  For each row the table holds:
+ * <ul>
+ * <li>the index of the component's file name in the name table; each name is stored once</li>
+ * <li>the row of the component's parent, or -1 for a component of the top-level assembly</li>
+ * <li>the component's sequence number within its parent; the sequence path is the parent's 
+ * sequence path plus this number</li>
+ * <li>optionally, the component's ID; the component path is the parent's component path
+ * plus this ID</li>
+ * <li>optionally, the component's 3D transform, as 12 values: the X, Y and Z axes and the 
+ * origin</li>
+ * </ul>
+ * 
+ * @author Adam Andrews
+ *
+ */
+public class BomTable implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Number of values stored for each transform
+	 */
+	public static final int TRANSFORM_SIZE = 12;
+	
+	private static final int INITIAL_CAPACITY = 64;
+
+	private List<String> names = new ArrayList<String>();
+	private transient HashMap<String, Integer> nameIndex;
+	private int size = 0;
+	private int[] files;
+	private int[] parents;
+	private int[] seqs;
+	private int[] ids;
+	private double[] transforms;
+
+	/**
+	 * @param incIds Whether to store component IDs
+	 * @param incTransforms Whether to store 3D transforms
+	 */
+	public BomTable(boolean incIds, boolean incTransforms) {
+		files = new int[INITIAL_CAPACITY];
+		parents = new int[INITIAL_CAPACITY];
+		seqs = new int[INITIAL_CAPACITY];
+		if (incIds)
+			ids = new int[INITIAL_CAPACITY];
+		if (incTransforms)
+			transforms = new double[INITIAL_CAPACITY * TRANSFORM_SIZE];
+	}
+
+	/**
+	 * Add a component to the end of the table
+	 * @param parent The row of the component's parent, or -1 for a component of the top-level assembly
+	 * @param filename The component's file name; it will be stored in upper case
+	 * @param seq The component's sequence number within its parent
+	 * @return The row of the new component
+	 */
+	public int add(int parent, String filename, int seq) {
+		if (size==files.length)
+			grow(size*2);
+		if (nameIndex==null) {
+			// the index is not serialized, so rebuild it if needed
+			nameIndex = new HashMap<String, Integer>();
+			for (int i=0; i<names.size(); i++)
+				nameIndex.put(names.get(i), Integer.valueOf(i));
+		}
+		String name = filename.toUpperCase();
+		Integer index = nameIndex.get(name);
+		if (index==null) {
+			index = Integer.valueOf(names.size());
+			names.add(name);
+			nameIndex.put(name, index);
+		}
+		files[size] = index.intValue();
+		parents[size] = parent;
+		seqs[size] = seq;
+		return size++;
+	}
+
+	/**
+	 * Set the component ID for a row; ignored if the table does not store IDs
+	 * @param row The row
+	 * @param id The component ID
+	 */
+	public void setId(int row, int id) {
+		if (ids!=null)
+			ids[row] = id;
+	}
+
+	/**
+	 * Set the 3D transform for a row; ignored if the table does not store transforms
+	 * @param row The row
+	 * @param m The transform matrix, as 16 values in row order; rows 0-2 are the X, Y and Z axes and row 3 is the origin
+	 */
+	public void setTransform(int row, double[] m) {
+		if (transforms==null || m==null)
+			return;
+		int pos = row * TRANSFORM_SIZE;
+		for (int i=0; i<4; i++) {
+			transforms[pos++] = m[i*4];
+			transforms[pos++] = m[i*4+1];
+			transforms[pos++] = m[i*4+2];
+		}
+	}
+
+	/**
+	 * Remove rows from the end of the table.  The names used by the removed rows 
+	 * stay in the name table.
+	 * @param size The number of rows to keep
+	 */
+	public void truncate(int size) {
+		if (size<this.size)
+			this.size = size;
+	}
+
+	/**
+	 * @return The number of rows in the table
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Shrink the columns to the number of rows, once the table is complete
+	 */
+	public void trim() {
+		if (files.length!=size)
+			grow(size);
+	}
+
+	private void grow(int capacity) {
+		files = resize(files, capacity);
+		parents = resize(parents, capacity);
+		seqs = resize(seqs, capacity);
+		if (ids!=null)
+			ids = resize(ids, capacity);
+		if (transforms!=null) {
+			double[] newTransforms = new double[capacity * TRANSFORM_SIZE];
+			System.arraycopy(transforms, 0, newTransforms, 0, size * TRANSFORM_SIZE);
+			transforms = newTransforms;
+		}
+	}
+
+	private int[] resize(int[] array, int capacity) {
+		int[] newArray = new int[capacity];
+		System.arraycopy(array, 0, newArray, 0, size);
+		return newArray;
+	}
+
+	/**
+	 * @return The file names used by the components, each stored once
+	 */
+	public List<String> getNames() {
+		return names;
+	}
+	/**
+	 * @return For each row, the index of the component's file name in the name table.  
+	 * The array may be longer than the table until trim() is called.
+	 */
+	public int[] getFiles() {
+		return files;
+	}
+	/**
+	 * @return For each row, the row of the component's parent, or -1 for a component of the top-level assembly.
+	 * The array may be longer than the table until trim() is called.
+	 */
+	public int[] getParents() {
+		return parents;
+	}
+	/**
+	 * @return For each row, the component's sequence number within its parent.
+	 * The array may be longer than the table until trim() is called.
+	 */
+	public int[] getSeqs() {
+		return seqs;
+	}
+	/**
+	 * @return For each row, the component's ID; null if the table does not store IDs.
+	 * The array may be longer than the table until trim() is called.
+	 */
+	public int[] getIds() {
+		return ids;
+	}
+	/**
+	 * @return For each row, TRANSFORM_SIZE values of the component's 3D transform; null if the table does not store transforms.
+	 * The array may be longer than the table until trim() is called.
+	 */
+	public double[] getTransforms() {
+		return transforms;
+	}
+}
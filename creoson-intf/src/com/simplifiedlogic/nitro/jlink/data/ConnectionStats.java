@@ -0,0 +1,111 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jlink.data;
+
+import java.io.Serializable;
+
+/**
+ * Health and usage information for one Creo connection in the connection pool
+ * @author Adam Andrews
+ *
+ */
+public class ConnectionStats implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private String connectionId;
+	private int sessions;
+	private long uses;
+	private int failures;
+	private boolean healthy;
+	private long created;
+
+	/**
+	 * @return The Creo connection ID
+	 */
+	public String getConnectionId() {
+		return connectionId;
+	}
+	/**
+	 * @param connectionId The Creo connection ID
+	 */
+	public void setConnectionId(String connectionId) {
+		this.connectionId = connectionId;
+	}
+	/**
+	 * @return Number of JShell sessions pinned to the connection
+	 */
+	public int getSessions() {
+		return sessions;
+	}
+	/**
+	 * @param sessions Number of JShell sessions pinned to the connection
+	 */
+	public void setSessions(int sessions) {
+		this.sessions = sessions;
+	}
+	/**
+	 * @return Number of times the connection has been used
+	 */
+	public long getUses() {
+		return uses;
+	}
+	/**
+	 * @param uses Number of times the connection has been used
+	 */
+	public void setUses(long uses) {
+		this.uses = uses;
+	}
+	/**
+	 * @return Number of times the connection was found broken and had to be reconnected
+	 */
+	public int getFailures() {
+		return failures;
+	}
+	/**
+	 * @param failures Number of times the connection was found broken and had to be reconnected
+	 */
+	public void setFailures(int failures) {
+		this.failures = failures;
+	}
+	/**
+	 * @return Whether the last use of the connection succeeded
+	 */
+	public boolean isHealthy() {
+		return healthy;
+	}
+	/**
+	 * @param healthy Whether the last use of the connection succeeded
+	 */
+	public void setHealthy(boolean healthy) {
+		this.healthy = healthy;
+	}
+	/**
+	 * @return Time the connection was added to the pool, in milliseconds since the epoch
+	 */
+	public long getCreated() {
+		return created;
+	}
+	/**
+	 * @param created Time the connection was added to the pool, in milliseconds since the epoch
+	 */
+	public void setCreated(long created) {
+		this.created = created;
+	}
+}
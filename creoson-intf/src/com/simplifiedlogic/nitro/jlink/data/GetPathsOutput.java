@@ -33,6 +33,7 @@ public class GetPathsOutput implements Serializable {
 	String modelname;
 	String generic;
 	BomChild root;
+	BomTable table;
 	boolean hasSimpRep;
 	
 	/**
@@ -71,6 +72,18 @@ public class GetPathsOutput implements Serializable {
 	public void setRoot(BomChild root) {
 		this.root = root;
 	}
+	/**
+	 * @return The BOM hierarchy as a table, if the compact output was requested; the root is null in that case
+	 */
+	public BomTable getTable() {
+		return table;
+	}
+	/**
+	 * @param table The BOM hierarchy as a table, if the compact output was requested
+	 */
+	public void setTable(BomTable table) {
+		this.table = table;
+	}
 	/**
 	 * @return Whether the assembly has an active Simplified Rep
 	 */
@@ -0,0 +1,66 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jlink.data;
+
+import com.simplifiedlogic.nitro.rpc.JLIException;
+
+/**
+ * Receiver for list results which are streamed to the client as they are found,
+ * instead of being collected into a list and returned all at once.
+ * 
+ * <p>A sink is bound to the thread which is executing the request.  Functions which 
+ * support streaming check for a current sink, and if one is present they pass each 
+ * result record to it and return an empty list.
+ * 
+ * @author Adam Andrews
+ *
+ */
+public abstract class RecordSink {
+
+	/**
+	 * The sink for the request running on the current thread
+	 */
+	private static ThreadLocal<RecordSink> current = new ThreadLocal<RecordSink>();
+	
+	/**
+	 * Get the sink for the request running on the current thread
+	 * @return The record sink, or null if results are not being streamed
+	 */
+	public static RecordSink getCurrent() {
+		return current.get();
+	}
+	
+	/**
+	 * Set the sink for the request running on the current thread
+	 * @param sink The record sink, or null to stop streaming results
+	 */
+	public static void setCurrent(RecordSink sink) {
+		if (sink==null)
+			current.remove();
+		else
+			current.set(sink);
+	}
+	
+	/**
+	 * Send one result record to the client
+	 * @param record The result record
+	 * @throws JLIException if the record could not be sent, for example if the client has disconnected
+	 */
+	public abstract void add(Object record) throws JLIException;
+}
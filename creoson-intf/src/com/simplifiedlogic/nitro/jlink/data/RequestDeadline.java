@@ -0,0 +1,110 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jlink.data;
+
+import com.simplifiedlogic.nitro.rpc.JLITimeoutException;
+
+/**
+ * Deadline and cancellation flag for a running request.
+ * 
+ * <p>A deadline is bound to the thread which is executing the request.  Long-running 
+ * loops and recursive walks call checkCurrent() between Creo calls, so that a request 
+ * which has run out of time, or whose client has gone away, stops at the next safe point 
+ * instead of holding up the requests queued behind it.
+ * 
+ * @author Adam Andrews
+ *
+ */
+public class RequestDeadline {
+
+	/**
+	 * The deadline for the request running on the current thread
+	 */
+	private static ThreadLocal<RequestDeadline> current = new ThreadLocal<RequestDeadline>();
+	
+	/**
+	 * Absolute time at which the request expires, or 0 for no time limit
+	 */
+	private long expires;
+	
+	private volatile boolean cancelled = false;
+	
+	/**
+	 * @param timeoutMs Time allowed for the request, in milliseconds from now; 0 or less for no time limit
+	 */
+	public RequestDeadline(long timeoutMs) {
+		if (timeoutMs>0)
+			expires = System.currentTimeMillis() + timeoutMs;
+	}
+	
+	/**
+	 * Get the deadline for the request running on the current thread
+	 * @return The deadline, or null if the request has none
+	 */
+	public static RequestDeadline getCurrent() {
+		return current.get();
+	}
+	
+	/**
+	 * Set the deadline for the request running on the current thread
+	 * @param deadline The deadline, or null to clear it
+	 */
+	public static void setCurrent(RequestDeadline deadline) {
+		if (deadline==null)
+			current.remove();
+		else
+			current.set(deadline);
+	}
+	
+	/**
+	 * Stop the request running on the current thread if it has passed its deadline or 
+	 * has been cancelled.  Does nothing if the request has no deadline.
+	 * @throws JLITimeoutException if the request should stop
+	 */
+	public static void checkCurrent() throws JLITimeoutException {
+		RequestDeadline deadline = current.get();
+		if (deadline!=null)
+			deadline.check();
+	}
+	
+	/**
+	 * Stop the request if it has passed its deadline or has been cancelled
+	 * @throws JLITimeoutException if the request should stop
+	 */
+	public void check() throws JLITimeoutException {
+		if (cancelled)
+			throw new JLITimeoutException("Request was cancelled");
+		if (expires>0 && System.currentTimeMillis()>expires)
+			throw new JLITimeoutException("Request passed its deadline");
+	}
+	
+	/**
+	 * Cancel the request; it will stop at its next check
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	/**
+	 * @return Whether the request has been cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jlink.data;
+
+import java.io.Serializable;
+
+/**
+ * Counts and ages of the JShell sessions held in memory
+ * @author Adam Andrews
+ *
+ */
+public class SessionStats implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private int sessions;
+	private int connections;
+	private long oldestAge;
+	private long longestIdle;
+	private long reaped;
+	private long ttl;
+
+	/**
+	 * @return Number of JShell sessions in memory
+	 */
+	public int getSessions() {
+		return sessions;
+	}
+	/**
+	 * @param sessions Number of JShell sessions in memory
+	 */
+	public void setSessions(int sessions) {
+		this.sessions = sessions;
+	}
+	/**
+	 * @return Number of Creo connections which have sessions
+	 */
+	public int getConnections() {
+		return connections;
+	}
+	/**
+	 * @param connections Number of Creo connections which have sessions
+	 */
+	public void setConnections(int connections) {
+		this.connections = connections;
+	}
+	/**
+	 * @return Age of the oldest session, in milliseconds
+	 */
+	public long getOldestAge() {
+		return oldestAge;
+	}
+	/**
+	 * @param oldestAge Age of the oldest session, in milliseconds
+	 */
+	public void setOldestAge(long oldestAge) {
+		this.oldestAge = oldestAge;
+	}
+	/**
+	 * @return Longest time any session has gone unused, in milliseconds
+	 */
+	public long getLongestIdle() {
+		return longestIdle;
+	}
+	/**
+	 * @param longestIdle Longest time any session has gone unused, in milliseconds
+	 */
+	public void setLongestIdle(long longestIdle) {
+		this.longestIdle = longestIdle;
+	}
+	/**
+	 * @return Number of sessions deleted for being idle
+	 */
+	public long getReaped() {
+		return reaped;
+	}
+	/**
+	 * @param reaped Number of sessions deleted for being idle
+	 */
+	public void setReaped(long reaped) {
+		this.reaped = reaped;
+	}
+	/**
+	 * @return Idle time after which sessions are deleted, in milliseconds, or 0 if they are kept
+	 */
+	public long getTtl() {
+		return ttl;
+	}
+	/**
+	 * @param ttl Idle time after which sessions are deleted, in milliseconds, or 0 if they are kept
+	 */
+	public void setTtl(long ttl) {
+		this.ttl = ttl;
+	}
+}
@@ -19,6 +19,7 @@
 package com.simplifiedlogic.nitro.jlink.data;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Vector;
 
@@ -31,6 +32,10 @@ import java.util.Vector;
  * the rep, and the listed items are included.
  * <p>If defaultExclude=false (the default), then any components not listed are included in 
  * the rep, and the listed items are excluded. 
+ * <p>The component paths are looked up through a tree of component IDs, which is
+ * built the first time the rep is queried and rebuilt after the rep is changed, so 
+ * a lookup takes time in proportion to the depth of the path rather than the size 
+ * of the rep.
  * @author Adam Andrews
  *
  */
@@ -47,6 +52,7 @@ public class SimpRepData {
 	private boolean defaultExclude;
 	private List<List<Integer>> items;
 	private List<SimpRepData> subItems;
+	private transient PathNode index;
 	
 	/**
 	 * Add a new component to the representation
@@ -56,6 +62,7 @@ public class SimpRepData {
 		if (items==null)
 			items = new Vector<List<Integer>>();
 		items.add(path);
+		index = null;
 	}
 	
 	/**
@@ -68,6 +75,7 @@ public class SimpRepData {
 			subItems = new Vector<SimpRepData>();
 		data.setPath(path);
 		subItems.add(data);
+		index = null;
 	}
 
 	/**
@@ -79,16 +87,22 @@ public class SimpRepData {
 		if (containsItem(path)) 
 			return !defaultExclude;
 		else {
-			if (subItems!=null) {
-				for (SimpRepData rep : subItems) {
-					List<Integer> subpath = rep.getPath();
-					if (isSubpath(path, subpath) && path.size()>subpath.size()) {
-						List<Integer> newpath = trimSubpath(path, rep);
-						if (rep.excludes(newpath))
-							return true;
-						else
-							return false; // ??
+			if (subItems!=null && subItems.size()>0) {
+				// use the first nested rep in the list which contains the component
+				PathNode node = getIndex();
+				SimpRepData first = null;
+				int firstPos = -1;
+				int len = path.size();
+				for (int i=0; i<len && node!=null; i++) {
+					if (node.reps!=null && (first==null || node.repPos<firstPos)) {
+						first = node.reps.get(0);
+						firstPos = node.repPos;
 					}
+					node = node.child(path.get(i));
+				}
+				if (first!=null) {
+					List<Integer> newpath = trimSubpath(path, first);
+					return first.excludes(newpath);
 				}
 			}
 			return defaultExclude;
@@ -121,14 +135,19 @@ public class SimpRepData {
 			ret = !defaultExclude;
 		else {
 //			ret = defaultExclude;
-			if (subItems!=null) {
-				for (SimpRepData rep : subItems) {
-					List<Integer> subpath = rep.getPath();
-					if (isSubpath(path, subpath)) {
-						List<Integer> newpath = trimSubpath(path, rep);
-						if (rep.excludesDescendant(newpath))
-							return true;
+			if (subItems!=null && subItems.size()>0) {
+				// check every nested rep which contains the component, or is the component
+				PathNode node = getIndex();
+				int len = path.size();
+				for (int i=0; node!=null; i++) {
+					if (node.reps!=null) {
+						for (SimpRepData rep : node.reps) {
+							List<Integer> newpath = trimSubpath(path, rep);
+							if (rep.excludesDescendant(newpath))
+								return true;
+						}
 					}
+					node = i<len ? node.child(path.get(i)) : null;
 				}
 			}
 			return defaultExclude;
@@ -136,17 +155,6 @@ public class SimpRepData {
 		return ret;
 	}
 
-	private boolean isSubpath(List<Integer> fullpath, List<Integer> subpath) {
-		if (subpath.size()>fullpath.size())
-			return false;
-		int len = subpath.size();
-		for (int i=0; i<len; i++) {
-			if (!subpath.get(i).equals(fullpath.get(i)))
-				return false;
-		}
-		return true;
-	}
-
 //	public boolean hasOwnSubRep(List<Integer> path) {
 //		if (containsItem(path))
 //			return true;
@@ -175,20 +183,8 @@ public class SimpRepData {
 		if (path==null || items==null || items.size()==0)
 			return false;
 		else {
-			for (List<Integer> item : items) {
-				if (item.size()!=path.size())
-					continue;
-				int len = path.size();
-				boolean valid=true;
-				for (int i=0; i<len; i++) 
-					if (!item.get(i).equals(path.get(i))) {
-						valid=false;
-						break;
-					}
-				if (valid)
-					return true;
-			}
-			return false;
+			PathNode node = findNode(path);
+			return node!=null && node.item;
 		}
 	}
 	
@@ -202,20 +198,8 @@ public class SimpRepData {
 		if (path==null || subItems==null || subItems.size()==0)
 			return null;
 		else {
-			for (SimpRepData rep : subItems) {
-				if (rep.path.size()!=path.size())
-					continue;
-				int len = path.size();
-				boolean valid=true;
-				for (int i=0; i<len; i++) 
-					if (!rep.path.get(i).equals(path.get(i))) {
-						valid=false;
-						break;
-					}
-				if (valid)
-					return rep;
-			}
-			return null;
+			PathNode node = findNode(path);
+			return node!=null && node.reps!=null ? node.reps.get(0) : null;
 		}
 	}
 	
@@ -267,25 +251,19 @@ public class SimpRepData {
 	private SimpRepData findClosestSubItem(List<Integer> path) {
 		if (subItems==null || subItems.size()==0)
 			return null;
-		SimpRepData rep = containsNestedRep(path);
-		if (rep!=null)
-			return rep;
-		if (path.size()==1)
-			return null;
+		if (path.size()==0)
+			return containsNestedRep(path);
 
-		// no exact match, so look for the next shortest one
-		List<Integer> newpath = new ArrayList<Integer>();
-		for (int i=0; i<path.size()-1; i++) {
-			newpath.add(path.get(i));
+		// walk down the path, keeping the last nested rep passed
+		SimpRepData rep = null;
+		PathNode node = getIndex();
+		for (Integer id : path) {
+			node = node.child(id);
+			if (node==null)
+				break;
+			if (node.reps!=null)
+				rep = node.reps.get(0);
 		}
-		do {
-			rep = containsNestedRep(newpath);
-			if (rep!=null) {
-				return rep;
-			}
-			newpath.remove(newpath.size()-1);
-		} while (newpath.size()>0);
-
 		return rep;
 	}
 	
@@ -335,12 +313,7 @@ public class SimpRepData {
 	}
 	
 	private List<Integer> trimSubpath(List<Integer> path, SimpRepData rep) {
-		List<Integer> subpath = rep.getPath();
-		List<Integer> newpath = new ArrayList<Integer>();
-		for (int i=subpath.size(); i<path.size(); i++) {
-			newpath.add(path.get(i));
-		}
-		return newpath;
+		return path.subList(rep.getPath().size(), path.size());
 	}
 
 	/**
@@ -374,21 +347,9 @@ public class SimpRepData {
 		if (path==null || items==null || items.size()==0)
 			return false;
 		else {
-			for (List<Integer> item : items) {
-				// ignore any items with shorter paths (higher level) or same length paths (same level)
-				if (item.size()<=path.size()) 
-					continue;
-				int len = path.size();
-				boolean valid=true;
-				for (int i=0; i<len; i++) 
-					if (!item.get(i).equals(path.get(i))) {
-						valid=false;
-						break;
-					}
-				if (valid)
-					return true;
-			}
-			return false;
+			// items with shorter paths (higher level) or same length paths (same level) don't count
+			PathNode node = findNode(path);
+			return node!=null && node.itemBelow;
 		}
 	}
 	
@@ -430,6 +391,7 @@ public class SimpRepData {
 	 */
 	public void setItems(List<List<Integer>> items) {
 		this.items = items;
+		index = null;
 	}
 
 	/**
@@ -460,5 +422,94 @@ public class SimpRepData {
 
 	public void setSubItems(List<SimpRepData> subItems) {
 		this.subItems = subItems;
+		index = null;
+	}
+
+	/**
+	 * Find the index node for a component path
+	 * @param path The component path
+	 * @return The node, or null if no item or nested rep is at or below the path
+	 */
+	private PathNode findNode(List<Integer> path) {
+		PathNode node = getIndex();
+		int len = path.size();
+		for (int i=0; i<len && node!=null; i++)
+			node = node.child(path.get(i));
+		return node;
+	}
+
+	/**
+	 * Get the index of the rep's component paths, building it if needed
+	 * @return The root node of the index
+	 */
+	private PathNode getIndex() {
+		if (index==null) {
+			PathNode root = new PathNode();
+			if (items!=null) {
+				for (List<Integer> item : items) {
+					PathNode node = root;
+					for (Integer id : item) {
+						node.itemBelow = true;
+						node = node.addChild(id);
+					}
+					node.item = true;
+				}
+			}
+			if (subItems!=null) {
+				int pos = 0;
+				for (SimpRepData rep : subItems) {
+					PathNode node = root;
+					for (Integer id : rep.getPath())
+						node = node.addChild(id);
+					if (node.reps==null) {
+						node.reps = new ArrayList<SimpRepData>(1);
+						node.repPos = pos;
+					}
+					node.reps.add(rep);
+					pos++;
+				}
+			}
+			index = root;
+		}
+		return index;
+	}
+
+	/**
+	 * A node in the index of the rep's component paths; each node is one component ID
+	 * along a path.
+	 */
+	private static class PathNode {
+		HashMap<Integer, PathNode> children;
+		/**
+		 * Whether an item's path ends at this node
+		 */
+		boolean item;
+		/**
+		 * Whether an item's path continues below this node
+		 */
+		boolean itemBelow;
+		/**
+		 * The nested reps whose paths end at this node, in the order they were added
+		 */
+		List<SimpRepData> reps;
+		/**
+		 * The position of the first of those reps in the list of nested reps
+		 */
+		int repPos;
+
+		PathNode child(Integer id) {
+			return children!=null ? children.get(id) : null;
+		}
+
+		PathNode addChild(Integer id) {
+			if (children==null)
+				children = new HashMap<Integer, PathNode>();
+			PathNode node = children.get(id);
+			if (node==null) {
+				node = new PathNode();
+				children.put(id, node);
+			}
+			return node;
+		}
 	}
 }
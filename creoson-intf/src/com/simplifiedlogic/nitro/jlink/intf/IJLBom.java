@@ -38,6 +38,8 @@ public interface IJLBom {
 	public static final boolean EXCLUDEINACTIVE_NO = false;
 	public static final boolean INCSIMPREP_YES = true;
 	public static final boolean INCSIMPREP_NO = false;
+	public static final boolean COMPACT_YES = true;
+	public static final boolean COMPACT_NO = false;
 	
 	public GetPathsOutput getPaths(String modelname, boolean skeleton,
 			boolean paths, boolean toplevel, boolean incTransform, 
@@ -51,4 +53,18 @@ public interface IJLBom {
 			boolean excludeInactive, boolean incSimpRep,  
 			AbstractJLISession sess) throws JLIException;
 
+	public GetPathsOutput getPaths(String modelname, boolean skeleton,
+			boolean paths, boolean toplevel, boolean incTransform, 
+	        boolean transformAsTable, 
+			boolean excludeInactive, boolean incSimpRep, 
+			boolean compact, 
+			String sessionId) throws JLIException;
+
+	public GetPathsOutput getPaths(String modelname, boolean skeleton,
+			boolean paths, boolean toplevel, boolean incTransform, 
+	        boolean transformAsTable, 
+			boolean excludeInactive, boolean incSimpRep,  
+			boolean compact, 
+			AbstractJLISession sess) throws JLIException;
+
 }
\ No newline at end of file
@@ -18,9 +18,14 @@
  */
 package com.simplifiedlogic.nitro.jlink.intf;
 
+import java.util.List;
+
 import com.simplifiedlogic.nitro.jlink.data.AbstractJLISession;
+import com.simplifiedlogic.nitro.jlink.data.ConnectionStats;
 import com.simplifiedlogic.nitro.jlink.data.JLStatus;
+import com.simplifiedlogic.nitro.jlink.data.SessionStats;
 import com.simplifiedlogic.nitro.rpc.JLIException;
+import com.simplifiedlogic.nitro.util.ConnectionPool;
 
 public interface IJLConnection {
 
@@ -44,4 +49,8 @@ public interface IJLConnection {
 	public void killProe() throws JLIException;
 	
 	public AbstractJLISession getSession(String sessionId);
+	public String getConnectionKey(String sessionId);
+	public List<ConnectionStats> getConnectionStats();
+	public SessionStats getSessionStats();
+	public void addConnectionListener(ConnectionPool.Listener listener);
 }
\ No newline at end of file
@@ -0,0 +1,379 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A log file which is written by a background thread, so that logging does not 
+ * slow down the thread which is handling a request.
+ * 
+ * <p>Messages are put into a bounded in-memory buffer and written to the file by the
+ * log's writer thread.  If the buffer is full, the message is dropped and counted instead 
+ * of making the caller wait.  The file is rotated when it reaches a maximum size or age;
+ * rotated files are renamed with a numeric suffix (.1 being the newest).
+ * 
+ * <p>Each log keeps its thread for the life of the server, so this is only meant for the
+ * server's own fixed set of logs, not for files named by clients.
+ * 
+ * <p>Logs are shared by file name, and are configured by these system properties:
+ * <ul>
+ * <li>sli.log.buffer - the number of messages which may wait to be written (default 10000)
+ * <li>sli.log.maxsize - the size in bytes at which the file is rotated (default 10 MB)
+ * <li>sli.log.maxage - the age in minutes at which the file is rotated (default 0, no limit)
+ * <li>sli.log.files - the number of rotated files to keep (default 5)
+ * <li>sli.log.truncate - the longest message body which is logged in full, or 0 for no 
+ * limit (default 64 KB).  Responses are copied for the log only up to this size, so a 
+ * limit of 0 keeps a full copy of every response, however large, until it is written.
+ * </ul>
+ * 
+ * @author Adam Andrews
+ */
+public class AsyncLog {
+
+	private static final String BUFFER_PROP		= "sli.log.buffer";
+	private static final String MAXSIZE_PROP	= "sli.log.maxsize";
+	private static final String MAXAGE_PROP		= "sli.log.maxage";
+	private static final String FILES_PROP		= "sli.log.files";
+	private static final String TRUNCATE_PROP	= "sli.log.truncate";
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * All open logs, keyed by absolute file path
+	 */
+	private static Hashtable<String, AsyncLog> logs = new Hashtable<String, AsyncLog>();
+	
+	private static int truncateLimit = getIntProperty(TRUNCATE_PROP, 64 * 1024);
+
+	static {
+		// write out anything still in the buffers when the server exits
+		Runtime.getRuntime().addShutdownHook(new Thread("async-log-shutdown") {
+			public void run() {
+				for (AsyncLog log : getLogs()) {
+					log.drain();
+				}
+			}
+		});
+	}
+	
+	private File file;
+	private String lineEnd;
+	private ArrayBlockingQueue<Entry> queue;
+	private long maxSize;
+	private long maxAge;
+	private int maxFiles;
+	
+	private Writer writer = null;
+	private long fileSize = 0;
+	private long openedAt = 0;
+	
+	private AtomicLong written = new AtomicLong();
+	private AtomicLong dropped = new AtomicLong();
+	private AtomicLong rotations = new AtomicLong();
+	private AtomicLong errors = new AtomicLong();
+
+	/**
+	 * Get the log for a file, creating it if it does not exist yet
+	 * @param path The path of the log file
+	 * @param lineEnd The line ending to write after each message
+	 * @param append Whether to add to an existing file; if false, an existing file is rotated out of the way
+	 * @return The log
+	 */
+	public static AsyncLog getLog(String path, String lineEnd, boolean append) {
+		String key = new File(path).getAbsolutePath();
+		synchronized (logs) {
+			AsyncLog log = logs.get(key);
+			if (log==null) {
+				log = new AsyncLog(new File(key), lineEnd, append);
+				logs.put(key, log);
+			}
+			return log;
+		}
+	}
+	
+	/**
+	 * @return All of the logs which have been opened
+	 */
+	public static List<AsyncLog> getLogs() {
+		synchronized (logs) {
+			return new ArrayList<AsyncLog>(logs.values());
+		}
+	}
+	
+	/**
+	 * Shorten a large message body for logging.  If the body is longer than the
+	 * sli.log.truncate limit, only the beginning is kept, followed by its full 
+	 * length and a hash so that it can still be identified.
+	 * @param body The message body
+	 * @return The body, or a shortened version of it
+	 */
+	public static String truncate(String body) {
+		if (body==null || truncateLimit<=0 || body.length()<=truncateLimit)
+			return body;
+		return truncated(body.substring(0, truncateLimit), body.length(), Integer.toHexString(body.hashCode()));
+	}
+
+	/**
+	 * Format the log text for a message body which has been shortened
+	 * @param head The beginning of the body
+	 * @param length The full length of the body
+	 * @param hash A hash of the full body
+	 * @return The text to log
+	 */
+	public static String truncated(String head, long length, String hash) {
+		return head + "... [truncated, length=" + length + " hash=" + hash + "]";
+	}
+
+	/**
+	 * @return The longest message body which is logged in full, or 0 if there is no limit
+	 */
+	public static int getTruncateLimit() {
+		return truncateLimit;
+	}
+
+	private AsyncLog(File file, String lineEnd, boolean append) {
+		this.file = file;
+		this.lineEnd = lineEnd;
+		this.queue = new ArrayBlockingQueue<Entry>(getIntProperty(BUFFER_PROP, 10000));
+		this.maxSize = getIntProperty(MAXSIZE_PROP, 10 * 1024 * 1024);
+		this.maxAge = getIntProperty(MAXAGE_PROP, 0) * 60000L;
+		this.maxFiles = getIntProperty(FILES_PROP, 5);
+		
+		if (!append && file.exists() && file.length()>0)
+			rotateFiles();
+		
+		Thread t = new Thread("async-log-" + file.getName()) {
+			public void run() {
+				writeLoop();
+			}
+		};
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	/**
+	 * Add a message to the log, preceded by the current time
+	 * @param msg The message
+	 */
+	public void log(String msg) {
+		add(new Entry(System.currentTimeMillis(), msg));
+	}
+	
+	/**
+	 * Add a message to the log as-is
+	 * @param text The message
+	 */
+	public void write(String text) {
+		add(new Entry(0, text));
+	}
+	
+	private void add(Entry entry) {
+		if (!queue.offer(entry))
+			dropped.incrementAndGet();
+	}
+
+	/**
+	 * @return The path of the log file
+	 */
+	public String getPath() {
+		return file.getPath();
+	}
+	/**
+	 * @return The number of messages waiting to be written
+	 */
+	public int getQueued() {
+		return queue.size();
+	}
+	/**
+	 * @return The number of messages which have been written
+	 */
+	public long getWritten() {
+		return written.get();
+	}
+	/**
+	 * @return The number of messages which were dropped because the buffer was full
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+	/**
+	 * @return The number of times the file has been rotated
+	 */
+	public long getRotations() {
+		return rotations.get();
+	}
+	/**
+	 * @return The number of messages which could not be written because of file errors
+	 */
+	public long getErrors() {
+		return errors.get();
+	}
+	
+	/**
+	 * Main loop for the writer thread
+	 */
+	private void writeLoop() {
+		List<Entry> batch = new ArrayList<Entry>();
+		while (true) {
+			try {
+				Entry entry = queue.poll(1, TimeUnit.SECONDS);
+				if (entry!=null) {
+					batch.add(entry);
+					queue.drainTo(batch);
+				}
+				writeBatch(batch);
+				batch.clear();
+			}
+			catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Write out everything that is waiting in the buffer
+	 */
+	private void drain() {
+		List<Entry> batch = new ArrayList<Entry>();
+		queue.drainTo(batch);
+		writeBatch(batch);
+	}
+	
+	/**
+	 * Write a batch of messages to the file, rotating it as needed.  The file is flushed 
+	 * at the end of each batch; an empty batch just checks whether the file is too old.
+	 * @param batch The messages to write
+	 */
+	private synchronized void writeBatch(List<Entry> batch) {
+		try {
+			if (writer!=null && maxAge>0 && System.currentTimeMillis()-openedAt>=maxAge)
+				rotate();
+			for (Entry entry : batch) {
+				if (writer!=null && fileSize>=maxSize)
+					rotate();
+				if (writer==null)
+					open();
+				String text = entry.format(lineEnd);
+				writer.write(text);
+				// close enough for rotation purposes, without encoding the text twice
+				fileSize += text.length();
+				written.incrementAndGet();
+			}
+			if (writer!=null && batch.size()>0)
+				writer.flush();
+		}
+		catch (IOException e) {
+			errors.addAndGet(batch.size());
+			System.err.println("Error writing to log " + file.getPath() + ": " + e.getLocalizedMessage());
+			closeWriter();
+		}
+	}
+	
+	private void open() throws IOException {
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (dir!=null && !dir.exists())
+			dir.mkdirs();
+		writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), UTF8));
+		fileSize = file.length();
+		openedAt = System.currentTimeMillis();
+	}
+	
+	private void closeWriter() {
+		if (writer!=null) {
+			try {
+				writer.close();
+			}
+			catch (IOException e) {
+			}
+			writer = null;
+		}
+	}
+	
+	private void rotate() {
+		closeWriter();
+		rotateFiles();
+		rotations.incrementAndGet();
+	}
+	
+	/**
+	 * Rename the current file to .1, shifting older files up by one and deleting the oldest
+	 */
+	private void rotateFiles() {
+		if (maxFiles<=0) {
+			file.delete();
+			return;
+		}
+		File oldest = new File(file.getPath() + "." + maxFiles);
+		if (oldest.exists())
+			oldest.delete();
+		for (int i=maxFiles-1; i>=1; i--) {
+			File f = new File(file.getPath() + "." + i);
+			if (f.exists())
+				f.renameTo(new File(file.getPath() + "." + (i+1)));
+		}
+		if (!file.renameTo(new File(file.getPath() + ".1")))
+			file.delete();
+	}
+
+	private static int getIntProperty(String prop, int dflt) {
+		String str = System.getProperty(prop);
+		if (str!=null) {
+			try {
+				return Integer.parseInt(str.trim());
+			}
+			catch (NumberFormatException e) {
+				System.err.println("Invalid value for " + prop + ": " + str);
+			}
+		}
+		return dflt;
+	}
+	
+	/**
+	 * A message waiting to be written
+	 */
+	private static class Entry {
+		private long time;
+		private String msg;
+		
+		public Entry(long time, String msg) {
+			this.time = time;
+			this.msg = msg;
+		}
+		
+		public String format(String lineEnd) {
+			if (time==0)
+				return msg + lineEnd;
+			return new Timestamp(time).toString() + ": " + msg + lineEnd;
+		}
+	}
+}
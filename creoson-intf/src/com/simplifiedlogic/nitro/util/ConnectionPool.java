@@ -0,0 +1,391 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.simplifiedlogic.nitro.jlink.data.ConnectionStats;
+
+/**
+ * A pool of connections to Creo processes.
+ *
+ * <p>Each JShell session is pinned to one connection for its lifetime, so that the models
+ * it opens stay in the same Creo.  A new session is given the connection with the fewest
+ * sessions; if every connection is in use and the pool is not full, a new Creo is started
+ * for it when the factory supports that.  Connections stay in the pool when their sessions
+ * end, since starting Creo is expensive; they are only removed when Creo is stopped or
+ * found dead.
+ *
+ * <p>The pool does not talk to Creo itself; that is done by its Factory, so the pool can
+ * be used with a fake factory outside of Creo.
+ *
+ * @author Adam Andrews
+ *
+ * @param <C> The connection class
+ */
+public class ConnectionPool<C> {
+
+	/**
+	 * Creates and checks the connections for a pool
+	 * @param <C> The connection class
+	 */
+	public interface Factory<C> {
+		/**
+		 * Connect to a Creo which is already running
+		 * @return The new connection
+		 * @throws Exception if there is no Creo to connect to
+		 */
+		public C connect() throws Exception;
+
+		/**
+		 * @return Whether the factory is able to start new Creo processes
+		 */
+		public boolean canStart();
+
+		/**
+		 * Start a new Creo process and connect to it
+		 * @return The new connection
+		 * @throws Exception if Creo could not be started
+		 */
+		public C start() throws Exception;
+
+		/**
+		 * Get the ID for a connection
+		 * @param conn The connection
+		 * @return The connection's ID
+		 * @throws Exception
+		 */
+		public String getId(C conn) throws Exception;
+	}
+
+	/**
+	 * Told when a connection leaves the pool
+	 */
+	public interface Listener {
+		/**
+		 * Called after a connection has been removed from the pool
+		 * @param id The connection ID
+		 */
+		public void removed(String id);
+	}
+
+	private Factory<C> factory;
+	private int maxSize;
+
+	/**
+	 * Connections keyed by connection ID, in the order they were added
+	 */
+	private LinkedHashMap<String, Entry<C>> entries = new LinkedHashMap<String, Entry<C>>();
+
+	/**
+	 * Listeners told when connections are removed
+	 */
+	private List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+	/**
+	 * Number of Creo processes which are being started for the pool
+	 */
+	private int starting = 0;
+	
+	/**
+	 * Whether a connection is being made to a running Creo for an empty pool
+	 */
+	private boolean connecting = false;
+
+	/**
+	 * @param factory The factory which makes connections for the pool
+	 * @param maxSize The most connections to keep in the pool
+	 */
+	public ConnectionPool(Factory<C> factory, int maxSize) {
+		this.factory = factory;
+		this.maxSize = maxSize<1 ? 1 : maxSize;
+	}
+
+	/**
+	 * @return The most connections the pool will hold
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return The number of connections in the pool
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return Whether the pool holds as many connections as it may, counting ones being started
+	 */
+	public synchronized boolean isFull() {
+		return entries.size() + starting >= maxSize;
+	}
+
+	/**
+	 * Get a connection, and count the use
+	 * @param id The connection ID
+	 * @return The connection, or null if it is not in the pool
+	 */
+	public synchronized C get(String id) {
+		if (id==null)
+			return null;
+		Entry<C> entry = entries.get(id);
+		if (entry==null)
+			return null;
+		entry.uses++;
+		return entry.conn;
+	}
+
+	/**
+	 * Add a connection to the pool, or replace the connection for an ID which is already
+	 * in the pool.  A replaced connection keeps its sessions, and counts as a failure.
+	 * @param id The connection ID
+	 * @param conn The connection
+	 */
+	public synchronized void put(String id, C conn) {
+		Entry<C> entry = entries.get(id);
+		if (entry==null) {
+			entry = new Entry<C>(id);
+			entries.put(id, entry);
+		}
+		else
+			entry.failures++;
+		entry.conn = conn;
+		entry.healthy = true;
+	}
+
+	/**
+	 * Remove a connection from the pool
+	 * @param id The connection ID
+	 * @return The connection, or null if it was not in the pool
+	 */
+	public C remove(String id) {
+		Entry<C> entry;
+		synchronized (this) {
+			entry = entries.remove(id);
+		}
+		if (entry==null)
+			return null;
+		for (Listener listener : listeners)
+			listener.removed(id);
+		return entry.conn;
+	}
+
+	/**
+	 * Add a listener to be told when connections are removed from the pool
+	 * @param listener The listener
+	 */
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * @return The IDs of the connections in the pool
+	 */
+	public synchronized List<String> getIds() {
+		return new ArrayList<String>(entries.keySet());
+	}
+
+	/**
+	 * Get the connection which a request without a pinned connection would use,
+	 * without pinning or creating one
+	 * @return The connection ID, or null if the pool is empty
+	 */
+	public synchronized String getKey() {
+		Entry<C> entry = leastLoaded();
+		return entry!=null ? entry.id : null;
+	}
+
+	/**
+	 * Get a connection for a new session, and pin the session to it.  The pool connects to
+	 * a running Creo if it is empty, and starts a new Creo if every connection already has
+	 * a session and there is room.  Creo is connected to or started without holding the
+	 * pool, so that other callers are not held up while that happens.
+	 * @return The connection ID
+	 * @throws Exception if there was no connection and one could not be made
+	 */
+	public String acquire() throws Exception {
+		Entry<C> best;
+		synchronized (this) {
+			// wait for another caller which is already connecting an empty pool
+			while (connecting && entries.isEmpty())
+				wait();
+			best = leastLoaded();
+			if (best==null) {
+				connecting = true;
+				starting++;
+			}
+			else if (best.sessions==0 || isFull() || !factory.canStart())
+				return pin(best.id);
+			else
+				starting++;
+		}
+		
+		if (best==null) {
+			// an empty pool connects to whatever Creo is running
+			C conn = null;
+			Exception error = null;
+			try {
+				conn = factory.connect();
+			}
+			catch (Exception e) {
+				error = e;
+			}
+			synchronized (this) {
+				starting--;
+				connecting = false;
+				notifyAll();
+				if (conn==null)
+					throw error!=null ? error : new Exception("No Creo connection is available");
+				return pin(add(conn));
+			}
+		}
+
+		// start a new Creo without holding the pool, since it takes a while
+		C conn = null;
+		try {
+			conn = factory.start();
+		}
+		catch (Exception e) {
+			System.err.println("Unable to start a new Creo for the connection pool: " + e.getMessage());
+		}
+		synchronized (this) {
+			starting--;
+			if (conn!=null)
+				return pin(add(conn));
+			// fall back to sharing a running Creo
+			best = leastLoaded();
+			if (best==null)
+				throw new Exception("No Creo connection is available");
+			return pin(best.id);
+		}
+	}
+
+	/**
+	 * Pin a session to a connection
+	 * @param id The connection ID
+	 * @return The connection ID
+	 */
+	public synchronized String pin(String id) {
+		Entry<C> entry = entries.get(id);
+		if (entry!=null)
+			entry.sessions++;
+		return id;
+	}
+
+	/**
+	 * Unpin a session from a connection.  The connection stays in the pool.
+	 * @param id The connection ID
+	 * @return The number of sessions still pinned to the connection, or -1 if it is not in the pool
+	 */
+	public synchronized int release(String id) {
+		Entry<C> entry = entries.get(id);
+		if (entry==null)
+			return -1;
+		if (entry.sessions>0)
+			entry.sessions--;
+		return entry.sessions;
+	}
+
+	/**
+	 * Record whether a connection is working
+	 * @param id The connection ID
+	 * @param healthy Whether the last use of the connection succeeded
+	 */
+	public synchronized void setHealthy(String id, boolean healthy) {
+		Entry<C> entry = entries.get(id);
+		if (entry!=null)
+			entry.healthy = healthy;
+	}
+
+	/**
+	 * @return Health and usage information for each connection in the pool
+	 */
+	public synchronized List<ConnectionStats> getStats() {
+		List<ConnectionStats> list = new ArrayList<ConnectionStats>();
+		for (Entry<C> entry : entries.values()) {
+			ConnectionStats stats = new ConnectionStats();
+			stats.setConnectionId(entry.id);
+			stats.setSessions(entry.sessions);
+			stats.setUses(entry.uses);
+			stats.setFailures(entry.failures);
+			stats.setHealthy(entry.healthy);
+			stats.setCreated(entry.created);
+			list.add(stats);
+		}
+		return list;
+	}
+
+	/**
+	 * Add a new connection to the pool
+	 * @param conn The connection
+	 * @return The connection ID
+	 * @throws Exception
+	 */
+	private synchronized String add(C conn) throws Exception {
+		String id = factory.getId(conn);
+		put(id, conn);
+		return id;
+	}
+
+	/**
+	 * Find the healthy connection with the fewest sessions, and the fewest uses among those.
+	 * If no connection is healthy, the least loaded of all is used.
+	 * @return The connection entry, or null if the pool is empty
+	 */
+	private Entry<C> leastLoaded() {
+		Entry<C> best = null;
+		for (Entry<C> entry : entries.values()) {
+			if (best==null || entry.compareLoad(best)<0)
+				best = entry;
+		}
+		return best;
+	}
+
+	/**
+	 * A connection in the pool
+	 */
+	private static class Entry<C> {
+		String id;
+		C conn;
+		int sessions = 0;
+		long uses = 0;
+		int failures = 0;
+		boolean healthy = true;
+		long created = System.currentTimeMillis();
+
+		Entry(String id) {
+			this.id = id;
+		}
+
+		int compareLoad(Entry<C> o) {
+			if (healthy!=o.healthy)
+				return healthy ? -1 : 1;
+			if (sessions!=o.sessions)
+				return sessions<o.sessions ? -1 : 1;
+			if (uses!=o.uses)
+				return uses<o.uses ? -1 : 1;
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,291 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a number of Creo processes started and connected in the background, so that a
+ * request for a new Creo can be given one at once instead of waiting for Creo to start.
+ *
+ * <p>Whenever a standby process is handed out, a new one is started to take its place.
+ * A process which has been handed out is recycled (stopped) once it has served a given
+ * number of jobs, or once its memory has grown by a given amount since it was handed out,
+ * if the launcher can report its memory.
+ *
+ * <p>The manager does not talk to Creo itself; that is done by its Launcher, so the
+ * lifecycle can be run against a fake launcher outside of Creo.
+ *
+ * @author Adam Andrews
+ *
+ * @param <C> The connection class
+ */
+public class StandbyManager<C> {
+
+	/**
+	 * Starts and stops the processes for a standby manager
+	 * @param <C> The connection class
+	 */
+	public interface Launcher<C> {
+		/**
+		 * Start a new Creo process and connect to it.  This may take a long time.
+		 * @return The connection to the new process
+		 * @throws Exception if the process could not be started
+		 */
+		public C launch() throws Exception;
+
+		/**
+		 * Get the ID for a connection
+		 * @param conn The connection
+		 * @return The connection's ID
+		 * @throws Exception
+		 */
+		public String getId(C conn) throws Exception;
+
+		/**
+		 * @param conn The connection
+		 * @return Whether the connection's process is still running
+		 */
+		public boolean isRunning(C conn);
+
+		/**
+		 * Stop a process
+		 * @param conn The connection to the process
+		 */
+		public void stop(C conn);
+
+		/**
+		 * @param conn The connection
+		 * @return The memory used by the connection's process in bytes, or -1 if it is not known
+		 */
+		public long getMemory(C conn);
+	}
+
+	private Launcher<C> launcher;
+	private int count;
+	private int maxJobs;
+	private long maxGrowth;
+
+	/**
+	 * Processes which are ready to be handed out
+	 */
+	private LinkedBlockingQueue<C> ready = new LinkedBlockingQueue<C>();
+
+	/**
+	 * Number of processes being started
+	 */
+	private int launching = 0;
+
+	/**
+	 * Usage of each process which has been handed out, keyed by connection ID
+	 */
+	private ConcurrentHashMap<String, Usage> usage = new ConcurrentHashMap<String, Usage>();
+
+	private AtomicLong launched = new AtomicLong();
+	private AtomicLong handedOut = new AtomicLong();
+	private AtomicLong recycled = new AtomicLong();
+	private AtomicLong failures = new AtomicLong();
+
+	private boolean stopped = false;
+
+	/**
+	 * @param launcher The launcher which starts and stops processes
+	 * @param count The number of processes to keep ready
+	 * @param maxJobs The number of jobs after which a process is recycled, or 0 for no limit
+	 * @param maxGrowth The memory growth in bytes after which a process is recycled, or 0 for no limit
+	 */
+	public StandbyManager(Launcher<C> launcher, int count, int maxJobs, long maxGrowth) {
+		this.launcher = launcher;
+		this.count = count;
+		this.maxJobs = maxJobs;
+		this.maxGrowth = maxGrowth;
+	}
+
+	/**
+	 * Start filling the standby pool in the background
+	 */
+	public void start() {
+		refill();
+	}
+
+	/**
+	 * Stop all standby processes which have not been handed out, and stop refilling
+	 */
+	public void stop() {
+		synchronized (this) {
+			stopped = true;
+		}
+		C conn;
+		while ((conn = ready.poll())!=null)
+			launcher.stop(conn);
+	}
+
+	/**
+	 * Take a ready process, and start another to replace it
+	 * @return The connection to the process, or null if none is ready
+	 */
+	public C take() {
+		C conn;
+		while ((conn = ready.poll())!=null) {
+			if (launcher.isRunning(conn))
+				break;
+			// the process died while waiting
+			failures.incrementAndGet();
+		}
+		refill();
+		if (conn==null)
+			return null;
+		try {
+			String id = launcher.getId(conn);
+			usage.put(id, new Usage(launcher.getMemory(conn)));
+		}
+		catch (Exception e) {
+		}
+		handedOut.incrementAndGet();
+		return conn;
+	}
+
+	/**
+	 * Record that a process has been given a job
+	 * @param id The connection ID
+	 */
+	public void recordJob(String id) {
+		Usage u = id!=null ? usage.get(id) : null;
+		if (u!=null)
+			u.jobs++;
+	}
+
+	/**
+	 * Check whether a process has done enough work that it should be recycled
+	 * @param id The connection ID
+	 * @param conn The connection
+	 * @return True if the process was handed out by this manager and has reached its job or memory limit
+	 */
+	public boolean shouldRecycle(String id, C conn) {
+		Usage u = id!=null ? usage.get(id) : null;
+		if (u==null)
+			return false;
+		if (maxJobs>0 && u.jobs>=maxJobs)
+			return true;
+		if (maxGrowth>0 && u.baseMemory>=0) {
+			long mem = launcher.getMemory(conn);
+			if (mem>=0 && mem - u.baseMemory>maxGrowth)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Stop a process which has been handed out; a fresh one is already waiting or being
+	 * started in its place
+	 * @param id The connection ID
+	 * @param conn The connection
+	 */
+	public void recycle(String id, C conn) {
+		if (id!=null)
+			usage.remove(id);
+		recycled.incrementAndGet();
+		launcher.stop(conn);
+		refill();
+	}
+
+	/**
+	 * @return Number of processes ready to be handed out
+	 */
+	public int getReady() {
+		return ready.size();
+	}
+
+	/**
+	 * @return Number of processes being started
+	 */
+	public synchronized int getLaunching() {
+		return launching;
+	}
+
+	/**
+	 * @return A one-line summary of the manager's state
+	 */
+	public String getStatus() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("standby_ready=").append(getReady());
+		buf.append(" standby_launching=").append(getLaunching());
+		buf.append(" standby_target=").append(count);
+		buf.append(" launched=").append(launched.get());
+		buf.append(" handed_out=").append(handedOut.get());
+		buf.append(" recycled=").append(recycled.get());
+		buf.append(" failures=").append(failures.get());
+		return buf.toString();
+	}
+
+	/**
+	 * Start enough processes in the background to bring the standby pool up to its count.
+	 * Processes are started one at a time, since starting several Creos at once slows
+	 * them all down.
+	 */
+	private void refill() {
+		synchronized (this) {
+			if (stopped || launching>0 || ready.size()>=count)
+				return;
+			launching++;
+		}
+		Thread t = new Thread("creoson-standby") {
+			public void run() {
+				while (true) {
+					C conn = null;
+					try {
+						conn = launcher.launch();
+						launched.incrementAndGet();
+					}
+					catch (Exception e) {
+						failures.incrementAndGet();
+						System.err.println("Unable to start a standby Creo: " + e.getMessage());
+					}
+					synchronized (StandbyManager.this) {
+						if (conn!=null && !stopped)
+							ready.add(conn);
+						else if (conn!=null)
+							launcher.stop(conn);
+						// give up on this round after a failure, rather than retrying in a tight loop
+						if (conn==null || stopped || ready.size()>=count) {
+							launching--;
+							return;
+						}
+					}
+				}
+			}
+		};
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/**
+	 * Usage of a process which has been handed out
+	 */
+	private static class Usage {
+		volatile int jobs = 0;
+		long baseMemory;
+
+		Usage(long baseMemory) {
+			this.baseMemory = baseMemory;
+		}
+	}
+}
@@ -0,0 +1,265 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.simplifiedlogic.nitro.jlink.data.ConnectionStats;
+
+/**
+ * Tests for ConnectionPool, run against a fake factory so that no Creo is needed.
+ *
+ * @author Adam Andrews
+ */
+public class ConnectionPoolTest {
+
+	@Test
+	public void testEmptyPoolConnectsToRunningCreo() throws Exception {
+		FakeFactory factory = new FakeFactory(true);
+		ConnectionPool<String> pool = new ConnectionPool<String>(factory, 2);
+
+		String id = pool.acquire();
+		assertEquals("creo1", id);
+		assertEquals(1, factory.connects.get());
+		assertEquals(0, factory.starts.get());
+		assertEquals(1, sessions(pool, id));
+	}
+
+	@Test
+	public void testSessionStaysOnItsConnection() throws Exception {
+		ConnectionPool<String> pool = new ConnectionPool<String>(new FakeFactory(true), 3);
+
+		String first = pool.acquire();
+		String second = pool.acquire();
+		assertTrue(!first.equals(second));
+		// each session keeps getting the connection it was pinned to
+		for (int i=0; i<5; i++) {
+			assertEquals("conn:" + first, pool.get(first));
+			assertEquals("conn:" + second, pool.get(second));
+		}
+		assertEquals(1, sessions(pool, first));
+		assertEquals(1, sessions(pool, second));
+	}
+
+	@Test
+	public void testBusyPoolStartsNewCreo() throws Exception {
+		FakeFactory factory = new FakeFactory(true);
+		ConnectionPool<String> pool = new ConnectionPool<String>(factory, 2);
+
+		assertEquals("creo1", pool.acquire());
+		assertEquals("creo2", pool.acquire());
+		assertEquals(1, factory.connects.get());
+		assertEquals(1, factory.starts.get());
+		assertTrue(pool.isFull());
+
+		// a full pool shares the least loaded connection
+		String third = pool.acquire();
+		assertEquals(1, factory.starts.get());
+		assertEquals(2, sessions(pool, third));
+	}
+
+	@Test
+	public void testPoolWithoutStarterSharesConnection() throws Exception {
+		FakeFactory factory = new FakeFactory(false);
+		ConnectionPool<String> pool = new ConnectionPool<String>(factory, 4);
+
+		assertEquals("creo1", pool.acquire());
+		assertEquals("creo1", pool.acquire());
+		assertEquals(0, factory.starts.get());
+		assertEquals(1, pool.size());
+		assertEquals(2, sessions(pool, "creo1"));
+	}
+
+	@Test
+	public void testReleasedConnectionIsReused() throws Exception {
+		FakeFactory factory = new FakeFactory(true);
+		ConnectionPool<String> pool = new ConnectionPool<String>(factory, 2);
+
+		String id = pool.acquire();
+		assertEquals(0, pool.release(id));
+		assertEquals(1, pool.size());
+
+		// an idle connection is used before starting another Creo
+		assertEquals(id, pool.acquire());
+		assertEquals(0, factory.starts.get());
+		assertEquals(-1, pool.release("unknown"));
+	}
+
+	@Test
+	public void testUnhealthyConnectionIsAvoided() throws Exception {
+		ConnectionPool<String> pool = new ConnectionPool<String>(new FakeFactory(true), 2);
+
+		String first = pool.acquire();
+		String second = pool.acquire();
+		pool.release(first);
+		pool.release(second);
+		pool.setHealthy(first, false);
+		assertEquals(second, pool.getKey());
+		assertEquals(second, pool.acquire());
+
+		// a connection which is replaced counts a failure but keeps its sessions
+		pool.put(second, "conn:replaced");
+		assertEquals("conn:replaced", pool.get(second));
+		assertEquals(1, sessions(pool, second));
+		assertEquals(1, stats(pool, second).getFailures());
+	}
+
+	@Test
+	public void testFailedStartSharesRunningCreo() throws Exception {
+		FakeFactory factory = new FakeFactory(true);
+		factory.failStart = true;
+		ConnectionPool<String> pool = new ConnectionPool<String>(factory, 2);
+
+		assertEquals("creo1", pool.acquire());
+		assertEquals("creo1", pool.acquire());
+		assertEquals(1, pool.size());
+		assertTrue(!pool.isFull());
+	}
+
+	@Test
+	public void testFailedConnectIsReported() throws Exception {
+		FakeFactory factory = new FakeFactory(true);
+		factory.failConnect = true;
+		ConnectionPool<String> pool = new ConnectionPool<String>(factory, 2);
+		try {
+			pool.acquire();
+			fail("acquire should fail when there is no Creo to connect to");
+		}
+		catch (Exception e) {
+			assertEquals("no creo", e.getMessage());
+		}
+		assertEquals(0, pool.size());
+		assertTrue(!pool.isFull());
+	}
+
+	@Test
+	public void testRemoveTellsListeners() throws Exception {
+		ConnectionPool<String> pool = new ConnectionPool<String>(new FakeFactory(false), 2);
+		final List<String> removed = new ArrayList<String>();
+		pool.addListener(new ConnectionPool.Listener() {
+			public void removed(String id) {
+				removed.add(id);
+			}
+		});
+
+		String id = pool.acquire();
+		assertEquals("conn:" + id, pool.remove(id));
+		assertNull(pool.remove(id));
+		assertEquals(1, removed.size());
+		assertEquals(id, removed.get(0));
+		assertNull(pool.get(id));
+		assertNull(pool.getKey());
+	}
+
+	@Test
+	public void testConcurrentAcquireConnectsOnce() throws Exception {
+		final FakeFactory factory = new FakeFactory(false);
+		factory.delay = 100;
+		final ConnectionPool<String> pool = new ConnectionPool<String>(factory, 2);
+		final int threads = 8;
+		final String[] ids = new String[threads];
+		final CountDownLatch go = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		for (int i=0; i<threads; i++) {
+			final int n = i;
+			new Thread() {
+				public void run() {
+					try {
+						go.await();
+						ids[n] = pool.acquire();
+					}
+					catch (Exception e) {
+					}
+					done.countDown();
+				}
+			}.start();
+		}
+		go.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+
+		assertEquals(1, factory.connects.get());
+		for (String id : ids)
+			assertEquals("creo1", id);
+		assertEquals(threads, sessions(pool, "creo1"));
+	}
+
+	private static int sessions(ConnectionPool<String> pool, String id) {
+		return stats(pool, id).getSessions();
+	}
+
+	private static ConnectionStats stats(ConnectionPool<String> pool, String id) {
+		for (ConnectionStats stats : pool.getStats()) {
+			if (stats.getConnectionId().equals(id))
+				return stats;
+		}
+		throw new AssertionError("No connection " + id);
+	}
+
+	/**
+	 * A factory whose connections are strings of the form "conn:creoN"
+	 */
+	private static class FakeFactory implements ConnectionPool.Factory<String> {
+		AtomicInteger connects = new AtomicInteger();
+		AtomicInteger starts = new AtomicInteger();
+		AtomicInteger created = new AtomicInteger();
+		boolean canStart;
+		boolean failConnect = false;
+		boolean failStart = false;
+		long delay = 0;
+
+		FakeFactory(boolean canStart) {
+			this.canStart = canStart;
+		}
+
+		public String connect() throws Exception {
+			connects.incrementAndGet();
+			if (delay>0)
+				Thread.sleep(delay);
+			if (failConnect)
+				throw new Exception("no creo");
+			return "conn:creo" + created.incrementAndGet();
+		}
+
+		public boolean canStart() {
+			return canStart;
+		}
+
+		public String start() throws Exception {
+			starts.incrementAndGet();
+			if (failStart)
+				throw new Exception("start failed");
+			return "conn:creo" + created.incrementAndGet();
+		}
+
+		public String getId(String conn) throws Exception {
+			return conn.substring("conn:".length());
+		}
+	}
+}
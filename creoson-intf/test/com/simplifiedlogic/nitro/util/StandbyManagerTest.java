@@ -0,0 +1,244 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for StandbyManager, run against a fake launcher so that no Creo is needed.
+ * The manager starts its processes on a background thread, so the tests wait for
+ * it to settle before checking its state.
+ *
+ * @author Adam Andrews
+ */
+public class StandbyManagerTest {
+
+	private static final long WAIT_MS = 5000;
+
+	private StandbyManager<String> manager;
+
+	@After
+	public void tearDown() {
+		if (manager!=null)
+			manager.stop();
+	}
+
+	@Test
+	public void testStartFillsToCount() throws Exception {
+		FakeLauncher launcher = new FakeLauncher();
+		manager = new StandbyManager<String>(launcher, 2, 0, 0);
+		manager.start();
+
+		waitForIdle(manager, 2);
+		assertEquals(2, launcher.launches.get());
+	}
+
+	@Test
+	public void testTakeRefills() throws Exception {
+		FakeLauncher launcher = new FakeLauncher();
+		manager = new StandbyManager<String>(launcher, 2, 0, 0);
+		manager.start();
+		waitForIdle(manager, 2);
+
+		assertEquals("creo1", manager.take());
+		waitForIdle(manager, 2);
+		assertEquals(3, launcher.launches.get());
+
+		assertEquals("creo2", manager.take());
+		assertEquals("creo3", manager.take());
+		waitForIdle(manager, 2);
+		assertEquals(5, launcher.launches.get());
+	}
+
+	@Test
+	public void testTakeSkipsDeadProcess() throws Exception {
+		FakeLauncher launcher = new FakeLauncher();
+		manager = new StandbyManager<String>(launcher, 2, 0, 0);
+		manager.start();
+		waitForIdle(manager, 2);
+
+		launcher.running.remove("creo1");
+		assertEquals("creo2", manager.take());
+		assertTrue(manager.getStatus().contains(" failures=1"));
+		waitForIdle(manager, 2);
+	}
+
+	@Test
+	public void testTakeWithNothingReady() throws Exception {
+		FakeLauncher launcher = new FakeLauncher();
+		manager = new StandbyManager<String>(launcher, 1, 0, 0);
+
+		// not started yet, so nothing is ready, but taking starts a refill
+		assertNull(manager.take());
+		waitForIdle(manager, 1);
+		assertEquals("creo1", manager.take());
+	}
+
+	@Test
+	public void testRecycleAfterMaxJobs() throws Exception {
+		FakeLauncher launcher = new FakeLauncher();
+		manager = new StandbyManager<String>(launcher, 1, 3, 0);
+		manager.start();
+		waitForIdle(manager, 1);
+
+		String conn = manager.take();
+		for (int i=0; i<2; i++) {
+			manager.recordJob(conn);
+			assertFalse(manager.shouldRecycle(conn, conn));
+		}
+		manager.recordJob(conn);
+		assertTrue(manager.shouldRecycle(conn, conn));
+
+		manager.recycle(conn, conn);
+		assertTrue(launcher.stopped.contains(conn));
+		// once recycled, the process is no longer tracked
+		assertFalse(manager.shouldRecycle(conn, conn));
+		assertTrue(manager.getStatus().contains(" recycled=1"));
+		waitForIdle(manager, 1);
+	}
+
+	@Test
+	public void testRecycleOnMemoryGrowth() throws Exception {
+		FakeLauncher launcher = new FakeLauncher();
+		launcher.memory = 1000;
+		manager = new StandbyManager<String>(launcher, 1, 0, 500);
+		manager.start();
+		waitForIdle(manager, 1);
+
+		String conn = manager.take();
+		launcher.memoryOf.put(conn, 1400L);
+		assertFalse(manager.shouldRecycle(conn, conn));
+		launcher.memoryOf.put(conn, 1600L);
+		assertTrue(manager.shouldRecycle(conn, conn));
+	}
+
+	@Test
+	public void testUnknownMemoryNeverRecycles() throws Exception {
+		FakeLauncher launcher = new FakeLauncher();
+		launcher.memory = -1;
+		manager = new StandbyManager<String>(launcher, 1, 0, 500);
+		manager.start();
+		waitForIdle(manager, 1);
+
+		String conn = manager.take();
+		for (int i=0; i<10; i++)
+			manager.recordJob(conn);
+		assertFalse(manager.shouldRecycle(conn, conn));
+		// a process the manager did not hand out is never recycled
+		assertFalse(manager.shouldRecycle("other", "other"));
+	}
+
+	@Test
+	public void testFailedLaunchStopsRound() throws Exception {
+		FakeLauncher launcher = new FakeLauncher();
+		launcher.fail = true;
+		manager = new StandbyManager<String>(launcher, 2, 0, 0);
+		manager.start();
+
+		waitForIdle(manager, 0);
+		// a failure ends the round instead of retrying in a loop
+		assertEquals(1, launcher.launches.get());
+		assertTrue(manager.getStatus().contains(" failures=1"));
+
+		launcher.fail = false;
+		assertNull(manager.take());
+		waitForIdle(manager, 2);
+	}
+
+	@Test
+	public void testStopStopsReadyProcesses() throws Exception {
+		FakeLauncher launcher = new FakeLauncher();
+		manager = new StandbyManager<String>(launcher, 2, 0, 0);
+		manager.start();
+		waitForIdle(manager, 2);
+
+		manager.stop();
+		assertEquals(0, manager.getReady());
+		assertEquals(2, launcher.stopped.size());
+		assertNull(manager.take());
+		assertEquals(0, manager.getLaunching());
+		assertEquals(2, launcher.launches.get());
+	}
+
+	/**
+	 * Wait for the manager to finish starting processes, and check how many are ready
+	 * @param manager The standby manager
+	 * @param ready The number of processes which should be ready
+	 * @throws InterruptedException
+	 */
+	private static void waitForIdle(StandbyManager<String> manager, int ready) throws InterruptedException {
+		long end = System.currentTimeMillis() + WAIT_MS;
+		while ((manager.getLaunching()>0 || manager.getReady()!=ready) && System.currentTimeMillis()<end)
+			Thread.sleep(10);
+		assertEquals(0, manager.getLaunching());
+		assertEquals(ready, manager.getReady());
+	}
+
+	/**
+	 * A launcher whose connections are strings of the form "creoN"
+	 */
+	private static class FakeLauncher implements StandbyManager.Launcher<String> {
+		AtomicInteger launches = new AtomicInteger();
+		Map<String, Boolean> running = new ConcurrentHashMap<String, Boolean>();
+		List<String> stopped = Collections.synchronizedList(new ArrayList<String>());
+		Map<String, Long> memoryOf = new ConcurrentHashMap<String, Long>();
+		volatile boolean fail = false;
+		long memory = -1;
+
+		public String launch() throws Exception {
+			int n = launches.incrementAndGet();
+			if (fail)
+				throw new Exception("launch failed");
+			String conn = "creo" + n;
+			running.put(conn, Boolean.TRUE);
+			return conn;
+		}
+
+		public String getId(String conn) throws Exception {
+			return conn;
+		}
+
+		public boolean isRunning(String conn) {
+			return running.containsKey(conn);
+		}
+
+		public void stop(String conn) {
+			running.remove(conn);
+			stopped.add(conn);
+		}
+
+		public long getMemory(String conn) {
+			Long mem = memoryOf.get(conn);
+			return mem!=null ? mem.longValue() : memory;
+		}
+	}
+}
@@ -32,6 +32,13 @@ import com.fasterxml.jackson.annotation.JsonInclude.Include;
  * <p>The "echo" property is a legacy property that will cause the original JSON string to 
  * be passed back to the client in the response, in addition to the regular function output.
  * 
+ * <p>The "stream" property requests that list results be sent as newline-delimited JSON,
+ * one record per line as they are found, followed by the regular response on the last line.
+ * 
+ * <p>The "deadlineMs" property gives the number of milliseconds the client is willing to wait.
+ * A request which is still waiting or running after that time is stopped at the next safe 
+ * point and returns a timeout status.
+ * 
  * @author Adam Andrews
  *
  */
@@ -46,6 +53,10 @@ public class BaseRequest {
 	private String function;
 	@JsonInclude(Include.NON_DEFAULT)
 	private boolean echo;
+	@JsonInclude(Include.NON_DEFAULT)
+	private boolean stream;
+	@JsonInclude(Include.NON_DEFAULT)
+	private long deadlineMs;
 	@JsonInclude(Include.NON_EMPTY)
 	private Hashtable<String, Object> data;
 	
@@ -128,6 +139,34 @@ public class BaseRequest {
 	public void setEcho(boolean echo) {
 		this.echo = echo;
 	}
+	/**
+	 * Get the stream property
+	 * @return True if list results are to be streamed to the client
+	 */
+	public boolean isStream() {
+		return stream;
+	}
+	/**
+	 * Set the stream property
+	 * @param stream True if list results are to be streamed to the client
+	 */
+	public void setStream(boolean stream) {
+		this.stream = stream;
+	}
+	/**
+	 * Get the deadline property
+	 * @return The time allowed for the request in milliseconds, or 0 for no limit
+	 */
+	public long getDeadlineMs() {
+		return deadlineMs;
+	}
+	/**
+	 * Set the deadline property
+	 * @param deadlineMs The time allowed for the request in milliseconds, or 0 for no limit
+	 */
+	public void setDeadlineMs(long deadlineMs) {
+		this.deadlineMs = deadlineMs;
+	}
 	/**
 	 * Get the function-specific input data
 	 * @return The input data as a generic Hashtable object
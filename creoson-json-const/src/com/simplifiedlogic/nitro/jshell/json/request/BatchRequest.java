@@ -0,0 +1,91 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jshell.json.request;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * This is the structure for a batch of JSON requests which are executed in order
+ * in a single call.  Each entry in "requests" has the same format as a regular request.
+ * 
+ * <p>The "sessionId" property is used for any request in the batch which does not 
+ * have its own session ID.  If "stopOnError" is set, the batch stops at the first 
+ * request which returns an error, and the remaining requests are not run.
+ * 
+ * @author Adam Andrews
+ *
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BatchRequest {
+
+	@JsonInclude(Include.NON_NULL)
+	private String sessionId;
+	@JsonInclude(Include.NON_DEFAULT)
+	private boolean stopOnError;
+	@JsonInclude(Include.NON_EMPTY)
+	private List<BaseRequest> requests;
+	
+	/**
+	 * Get the session ID shared by the requests in the batch
+	 * @return The session ID
+	 */
+	public String getSessionId() {
+		return sessionId;
+	}
+	/**
+	 * Set the session ID shared by the requests in the batch
+	 * @param sessionId The session ID
+	 */
+	public void setSessionId(String sessionId) {
+		this.sessionId = sessionId;
+	}
+	/**
+	 * Get the stop-on-error flag
+	 * @return True if the batch should stop at the first error
+	 */
+	public boolean isStopOnError() {
+		return stopOnError;
+	}
+	/**
+	 * Set the stop-on-error flag
+	 * @param stopOnError True if the batch should stop at the first error
+	 */
+	public void setStopOnError(boolean stopOnError) {
+		this.stopOnError = stopOnError;
+	}
+	/**
+	 * Get the list of requests
+	 * @return The requests, in the order they will be executed
+	 */
+	public List<BaseRequest> getRequests() {
+		return requests;
+	}
+	/**
+	 * Set the list of requests
+	 * @param requests The requests, in the order they will be executed
+	 */
+	public void setRequests(List<BaseRequest> requests) {
+		this.requests = requests;
+	}
+	
+}
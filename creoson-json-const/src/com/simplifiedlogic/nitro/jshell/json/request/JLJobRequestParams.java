@@ -0,0 +1,45 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jshell.json.request;
+
+/**
+ * Constants defining the JSON request parameters for the job command
+ * 
+ * @author Adam Andrews
+ */
+public interface JLJobRequestParams {
+
+	// command name
+    public static final String COMMAND = "job";
+
+    // function names
+    public static final String FUNC_SUBMIT = "submit";
+    public static final String FUNC_STATUS = "status";
+    public static final String FUNC_WAIT   = "wait";
+    public static final String FUNC_CANCEL = "cancel";
+    public static final String FUNC_LIST   = "list";
+    
+    // request fields
+    public static final String PARAM_JOB_ID		= "job_id";
+    public static final String PARAM_COMMAND	= "command";
+    public static final String PARAM_FUNCTION	= "function";
+    public static final String PARAM_DATA		= "data";
+    public static final String PARAM_TIMEOUT	= "timeout";
+
+}
@@ -0,0 +1,91 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jshell.json.response;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * This is the structure returned for a batch request.  The "responses" property
+ * contains one regular response for each request that was executed, in order.  
+ * 
+ * <p>The "status" property reports errors with the batch as a whole; errors for 
+ * individual requests are reported in their own responses.  If the batch was 
+ * stopped on an error, "responses" will be shorter than the list of requests.
+ * 
+ * @author Adam Andrews
+ *
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BatchResponse {
+
+	@JsonInclude(Include.NON_NULL)
+	private ServiceStatus status;
+	// this is a replacement sessionid in case it has changed
+	@JsonInclude(Include.NON_NULL)
+	private String sessionId;
+	@JsonInclude
+	private List<BaseResponse> responses;
+	
+	/**
+	 * Get the status object for the batch as a whole
+	 * @return The status object
+	 */
+	public ServiceStatus getStatus() {
+		return status;
+	}
+	/**
+	 * Set the status object for the batch as a whole
+	 * @param status The status object
+	 */
+	public void setStatus(ServiceStatus status) {
+		this.status = status;
+	}
+	/**
+	 * Get the new (replacement) session ID
+	 * @return The new session ID
+	 */
+	public String getSessionId() {
+		return sessionId;
+	}
+	/**
+	 * Set the new (replacement) session ID
+	 * @param sessionId The new session ID
+	 */
+	public void setSessionId(String sessionId) {
+		this.sessionId = sessionId;
+	}
+	/**
+	 * Get the responses for the requests which were executed
+	 * @return The responses, in request order
+	 */
+	public List<BaseResponse> getResponses() {
+		return responses;
+	}
+	/**
+	 * Set the responses for the requests which were executed
+	 * @param responses The responses, in request order
+	 */
+	public void setResponses(List<BaseResponse> responses) {
+		this.responses = responses;
+	}
+}
@@ -33,5 +33,12 @@ public interface JLBomResponseParams {
     public static final String OUTPUT_CHILDREN = "children";
     public static final String OUTPUT_TRANSFORM = "transform";
     public static final String OUTPUT_HAS_SIMPREP	= "has_simprep";
+    public static final String OUTPUT_TABLE    = "table";
+    public static final String OUTPUT_NAMES    = "names";
+    public static final String OUTPUT_FILES    = "files";
+    public static final String OUTPUT_PARENTS  = "parents";
+    public static final String OUTPUT_SEQS     = "seqs";
+    public static final String OUTPUT_IDS      = "ids";
+    public static final String OUTPUT_TRANSFORMS = "transforms";
 
 }
@@ -39,6 +39,9 @@ public class ServiceStatus {
 	public static final String PARAM_ERROR 		= "error";
 	public static final String PARAM_MESSAGE 	= "message";
 	public static final String PARAM_EXPIRED 	= "expired";
+	public static final String PARAM_BUSY 		= "busy";
+	public static final String PARAM_RETRY_AFTER	= "retryAfterMs";
+	public static final String PARAM_TIMEOUT 	= "timeout";
 	
 	@JsonInclude
 	private boolean error;
@@ -46,6 +49,12 @@ public class ServiceStatus {
 	private String message;
 	@JsonInclude(Include.NON_DEFAULT)
 	private boolean expired;
+	@JsonInclude(Include.NON_DEFAULT)
+	private boolean busy;
+	@JsonInclude(Include.NON_DEFAULT)
+	private long retryAfterMs;
+	@JsonInclude(Include.NON_DEFAULT)
+	private boolean timeout;
 	
 	/**
 	 * Construct a new status object with an error message.  This will
@@ -75,6 +84,38 @@ public class ServiceStatus {
 		return status;
 	}
 	
+	/**
+	 * Construct a new status object for a request which was refused because the server 
+	 * is busy.  This will set the error flag and the busy flag.
+	 * 
+	 * @param msg The text of the error message
+	 * @param retryAfterMs Suggested time for the client to wait before retrying, in milliseconds
+	 * @return The new ServiceStatus object
+	 */
+	public static ServiceStatus busy(String msg, long retryAfterMs) {
+		ServiceStatus status = new ServiceStatus();
+		status.setError(true);
+		status.setMessage(msg + "; retry after " + retryAfterMs + " ms");
+		status.setBusy(true);
+		status.setRetryAfterMs(retryAfterMs);
+		return status;
+	}
+	
+	/**
+	 * Construct a new status object for a request which was stopped because it passed
+	 * its deadline or was cancelled.  This will set the error flag and the timeout flag.
+	 * 
+	 * @param msg The text of the error message
+	 * @return The new ServiceStatus object
+	 */
+	public static ServiceStatus timeout(String msg) {
+		ServiceStatus status = new ServiceStatus();
+		status.setError(true);
+		status.setMessage(msg);
+		status.setTimeout(true);
+		return status;
+	}
+	
 	/**
 	 * Default constructor
 	 */
@@ -123,5 +164,47 @@ public class ServiceStatus {
 	public void setExpired(boolean expired) {
 		this.expired = expired;
 	}
+	/**
+	 * Get the busy flag
+	 * @return The busy flag
+	 */
+	public boolean isBusy() {
+		return busy;
+	}
+	/**
+	 * Set the busy flag
+	 * @param busy True if the request was refused because the server is busy
+	 */
+	public void setBusy(boolean busy) {
+		this.busy = busy;
+	}
+	/**
+	 * Get the suggested delay before retrying a busy request
+	 * @return The delay in milliseconds
+	 */
+	public long getRetryAfterMs() {
+		return retryAfterMs;
+	}
+	/**
+	 * Set the suggested delay before retrying a busy request
+	 * @param retryAfterMs The delay in milliseconds
+	 */
+	public void setRetryAfterMs(long retryAfterMs) {
+		this.retryAfterMs = retryAfterMs;
+	}
+	/**
+	 * Get the timeout flag
+	 * @return The timeout flag
+	 */
+	public boolean isTimeout() {
+		return timeout;
+	}
+	/**
+	 * Set the timeout flag
+	 * @param timeout True if the request was stopped because it passed its deadline or was cancelled
+	 */
+	public void setTimeout(boolean timeout) {
+		this.timeout = timeout;
+	}
 	
 }
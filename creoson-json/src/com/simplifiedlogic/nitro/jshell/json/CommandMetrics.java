@@ -0,0 +1,254 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jshell.json;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Always-on request metrics for each command and function: request and error counts,
+ * requests in flight, request and response sizes, and a latency histogram.
+ *
+ * <p>Each command/function pair has its own set of atomic counters, so recording a
+ * request takes no locks and, once the pair has been seen, allocates nothing.  The
+ * metrics are reported in the Prometheus text format by format().
+ *
+ * @author Adam Andrews
+ *
+ */
+public class CommandMetrics {
+
+	/**
+	 * Upper bounds of the latency histogram buckets, in milliseconds.  A final bucket
+	 * holds everything slower than the last bound.
+	 */
+	private static final long[] BUCKETS_MS = new long[] {
+		1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 300000
+	};
+
+	/**
+	 * Most functions which are tracked for one command; further function names are
+	 * counted together, so that a client cannot grow the table without limit
+	 */
+	private static final int MAX_FUNCTIONS = 200;
+
+	/**
+	 * Function name used once a command has MAX_FUNCTIONS functions
+	 */
+	private static final String OTHER_FUNCTION = "_other";
+
+	private static CommandMetrics instance = new CommandMetrics();
+
+	/**
+	 * Metrics keyed by command name and then by function name
+	 */
+	private ConcurrentHashMap<String, ConcurrentHashMap<String, Metric>> commands =
+		new ConcurrentHashMap<String, ConcurrentHashMap<String, Metric>>();
+
+	/**
+	 * Get the shared metrics
+	 * @return The metrics
+	 */
+	public static CommandMetrics getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Get the metrics for a command and function, creating them the first time they are used
+	 * @param command The command name
+	 * @param function The function name
+	 * @return The metrics for the function
+	 */
+	public Metric getMetric(String command, String function) {
+		ConcurrentHashMap<String, Metric> functions = commands.get(command);
+		if (functions==null) {
+			ConcurrentHashMap<String, Metric> newFunctions = new ConcurrentHashMap<String, Metric>();
+			functions = commands.putIfAbsent(command, newFunctions);
+			if (functions==null)
+				functions = newFunctions;
+		}
+		Metric metric = functions.get(function);
+		if (metric==null) {
+			if (functions.size()>=MAX_FUNCTIONS) {
+				function = OTHER_FUNCTION;
+				metric = functions.get(function);
+				if (metric!=null)
+					return metric;
+			}
+			Metric newMetric = new Metric(command, function);
+			metric = functions.putIfAbsent(function, newMetric);
+			if (metric==null)
+				metric = newMetric;
+		}
+		return metric;
+	}
+
+	/**
+	 * Write all metrics in the Prometheus text exposition format
+	 * @return The formatted metrics
+	 */
+	public String format() {
+		List<Metric> list = new ArrayList<Metric>();
+		for (ConcurrentHashMap<String, Metric> functions : commands.values()) {
+			list.addAll(functions.values());
+		}
+		Collections.sort(list);
+
+		StringBuilder buf = new StringBuilder();
+		buf.append("# HELP creoson_requests_total Requests handled.\n");
+		buf.append("# TYPE creoson_requests_total counter\n");
+		for (Metric m : list)
+			m.appendValue(buf, "creoson_requests_total", m.requests.get());
+		buf.append("# HELP creoson_errors_total Requests which returned an error status.\n");
+		buf.append("# TYPE creoson_errors_total counter\n");
+		for (Metric m : list)
+			m.appendValue(buf, "creoson_errors_total", m.errors.get());
+		buf.append("# HELP creoson_in_flight Requests currently being handled.\n");
+		buf.append("# TYPE creoson_in_flight gauge\n");
+		for (Metric m : list)
+			m.appendValue(buf, "creoson_in_flight", m.inFlight.get());
+		buf.append("# HELP creoson_request_bytes_total Size of request bodies.\n");
+		buf.append("# TYPE creoson_request_bytes_total counter\n");
+		for (Metric m : list)
+			m.appendValue(buf, "creoson_request_bytes_total", m.bytesIn.get());
+		buf.append("# HELP creoson_response_bytes_total Size of response bodies, before compression.\n");
+		buf.append("# TYPE creoson_response_bytes_total counter\n");
+		for (Metric m : list)
+			m.appendValue(buf, "creoson_response_bytes_total", m.bytesOut.get());
+		buf.append("# HELP creoson_request_duration_seconds Time to handle a request, including time waiting for Creo.\n");
+		buf.append("# TYPE creoson_request_duration_seconds histogram\n");
+		for (Metric m : list)
+			m.appendHistogram(buf, "creoson_request_duration_seconds");
+		return buf.toString();
+	}
+
+	/**
+	 * The counters for a single command and function
+	 */
+	public static class Metric implements Comparable<Metric> {
+		private String command;
+		private String function;
+		private AtomicLong requests = new AtomicLong();
+		private AtomicLong errors = new AtomicLong();
+		private AtomicInteger inFlight = new AtomicInteger();
+		private AtomicLong bytesIn = new AtomicLong();
+		private AtomicLong bytesOut = new AtomicLong();
+		private AtomicLong totalNanos = new AtomicLong();
+		private AtomicLongArray buckets = new AtomicLongArray(BUCKETS_MS.length + 1);
+
+		private Metric(String command, String function) {
+			this.command = command;
+			this.function = function;
+		}
+
+		/**
+		 * Record the start of a request
+		 * @return The start time, to be passed to finish()
+		 */
+		public long start() {
+			inFlight.incrementAndGet();
+			return System.nanoTime();
+		}
+
+		/**
+		 * Record the end of a request
+		 * @param start The start time returned by start()
+		 * @param error Whether the request returned an error
+		 */
+		public void finish(long start, boolean error) {
+			long nanos = System.nanoTime() - start;
+			inFlight.decrementAndGet();
+			requests.incrementAndGet();
+			if (error)
+				errors.incrementAndGet();
+			totalNanos.addAndGet(nanos);
+			int i = 0;
+			while (i<BUCKETS_MS.length && nanos>BUCKETS_MS[i] * 1000000L)
+				i++;
+			buckets.incrementAndGet(i);
+		}
+
+		/**
+		 * Drop a request which was started with start() without recording it, because
+		 * it is going to be run and recorded again
+		 */
+		public void abandon() {
+			inFlight.decrementAndGet();
+		}
+
+		/**
+		 * Record the size of a request and its response
+		 * @param in The size of the request body in bytes
+		 * @param out The size of the response body in bytes
+		 */
+		public void addBytes(long in, long out) {
+			bytesIn.addAndGet(in);
+			bytesOut.addAndGet(out);
+		}
+
+		public int compareTo(Metric o) {
+			int ret = command.compareTo(o.command);
+			if (ret==0)
+				ret = function.compareTo(o.function);
+			return ret;
+		}
+
+		private void appendLabels(StringBuilder buf) {
+			buf.append("command=\"").append(escape(command));
+			buf.append("\",function=\"").append(escape(function)).append('"');
+		}
+
+		private void appendValue(StringBuilder buf, String name, long value) {
+			buf.append(name).append('{');
+			appendLabels(buf);
+			buf.append("} ").append(value).append('\n');
+		}
+
+		private void appendHistogram(StringBuilder buf, String name) {
+			// histogram buckets are cumulative
+			long count = 0;
+			for (int i=0; i<=BUCKETS_MS.length; i++) {
+				count += buckets.get(i);
+				buf.append(name).append("_bucket{");
+				appendLabels(buf);
+				buf.append(",le=\"");
+				if (i<BUCKETS_MS.length)
+					buf.append(BUCKETS_MS[i] / 1000.0);
+				else
+					buf.append("+Inf");
+				buf.append("\"} ").append(count).append('\n');
+			}
+			buf.append(name).append("_sum{");
+			appendLabels(buf);
+			buf.append("} ").append(totalNanos.get() / 1.0e9).append('\n');
+			buf.append(name).append("_count{");
+			appendLabels(buf);
+			buf.append("} ").append(count).append('\n');
+		}
+
+		private static String escape(String s) {
+			return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+		}
+	}
+}
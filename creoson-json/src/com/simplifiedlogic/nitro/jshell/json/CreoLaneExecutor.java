@@ -0,0 +1,408 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jshell.json;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs work against Creo on one ordered, single-threaded "lane" per Creo connection.
+ *
+ * <p>J-Link only allows one call at a time on an async connection, so every request
+ * which may touch Creo is funneled through the lane for its connection ID.  Requests
+ * which are not yet bound to a connection go through the default lane.  Callers block
+ * until their task has run, so parsing and serialization stay on the caller's thread.
+ *
+ * <p>The default lane is only used while there is no Creo connection at all.  A task 
+ * queued there which finds a connection when it starts should move to that connection's
+ * lane (see JShellJsonHandler.runOnLane), so that it does not run alongside it.
+ *
+ * <p>A lane's thread ends when the lane has been idle for a while, and a lane is removed 
+ * when its connection is removed, so lanes do not build up as Creo is reconnected.
+ *
+ * <p>Each lane admits a limited number of waiting tasks (sli.lane.queue).  A task which 
+ * arrives when its lane is full, or which has not started within sli.lane.maxwait 
+ * milliseconds, is refused with a LaneBusyException so that the client can back off and 
+ * retry, rather than waiting until it times out.
+ *
+ * @author Adam Andrews
+ *
+ */
+public class CreoLaneExecutor {
+
+	/**
+	 * Lane key used for requests which do not have a Creo connection
+	 */
+	public static final String DEFAULT_LANE = "default";
+
+	/**
+	 * System property for the number of tasks which may wait on one lane
+	 */
+	public static final String QUEUE_PROP = "sli.lane.queue";
+	/**
+	 * System property for the longest time in milliseconds a task may wait for its lane; 0 for no limit
+	 */
+	public static final String MAXWAIT_PROP = "sli.lane.maxwait";
+
+	public static final int DEFAULT_QUEUE = 20;
+	public static final int DEFAULT_MAXWAIT = 0;
+	
+	/**
+	 * Bounds for the suggested retry delay given to refused tasks, in milliseconds
+	 */
+	private static final long MIN_RETRY_MS = 100;
+	private static final long MAX_RETRY_MS = 60000;
+	
+	/**
+	 * How long an idle lane keeps its thread, in milliseconds
+	 */
+	private static final long KEEPALIVE_MS = 60000;
+
+	private static CreoLaneExecutor instance = new CreoLaneExecutor();
+
+	/**
+	 * Lanes currently in use, keyed by Creo connection ID
+	 */
+	private ConcurrentHashMap<String, Lane> lanes = new ConcurrentHashMap<String, Lane>();
+	
+	private int maxQueue = getIntProperty(QUEUE_PROP, DEFAULT_QUEUE);
+	private long maxWait = getIntProperty(MAXWAIT_PROP, DEFAULT_MAXWAIT);
+
+	/**
+	 * Get the shared lane executor
+	 * @return The lane executor
+	 */
+	public static CreoLaneExecutor getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Run a task on the lane for a Creo connection and wait for it to complete.  The 
+	 * task is subject to the lane's admission limits.
+	 *
+	 * @param connId The Creo connection ID; if null, the default lane is used
+	 * @param task The task to run
+	 * @return The result of the task
+	 * @throws LaneBusyException if the lane is full or the task waited too long to start
+	 * @throws Exception if the task throws an exception, it is re-thrown here
+	 */
+	public <T> T execute(String connId, Callable<T> task) throws Exception {
+		return execute(connId, task, true);
+	}
+
+	/**
+	 * Run a task on the lane for a Creo connection and wait for it to complete.
+	 *
+	 * @param connId The Creo connection ID; if null, the default lane is used
+	 * @param task The task to run
+	 * @param admit Whether to apply the lane's admission limits; false for background 
+	 * work which is already limited and has no client waiting on it
+	 * @return The result of the task
+	 * @throws LaneBusyException if the lane is full or the task waited too long to start
+	 * @throws Exception if the task throws an exception, it is re-thrown here
+	 */
+	public <T> T execute(String connId, Callable<T> task, boolean admit) throws Exception {
+		// set by whichever comes first: the lane starting the task, or the caller giving up on it
+		AtomicBoolean claimed = new AtomicBoolean();
+		Lane lane;
+		Future<T> future;
+		while (true) {
+			lane = getLane(connId);
+			if (admit && maxQueue>0 && lane.waiting.get()>=maxQueue) {
+				lane.rejected.incrementAndGet();
+				throw new LaneBusyException("Creo is busy; " + lane.waiting.get() + " requests are waiting", 
+						lane.estimateRetry());
+			}
+			try {
+				future = lane.submit(task, claimed);
+				break;
+			}
+			catch (RejectedExecutionException e) {
+				// the lane was removed after it was looked up; use a new one
+				lanes.remove(lane.key, lane);
+			}
+		}
+		try {
+			if (admit && maxWait>0) {
+				try {
+					return future.get(maxWait, TimeUnit.MILLISECONDS);
+				}
+				catch (TimeoutException e) {
+					// give up only if the task has not started; otherwise let it finish
+					if (claimed.compareAndSet(false, true)) {
+						lane.waiting.decrementAndGet();
+						lane.rejected.incrementAndGet();
+						throw new LaneBusyException("Creo is busy; the request waited " + maxWait + " ms without starting", 
+								lane.estimateRetry());
+					}
+				}
+			}
+			return future.get();
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception)
+				throw (Exception)cause;
+			if (cause instanceof Error)
+				throw (Error)cause;
+			throw e;
+		}
+	}
+
+	/**
+	 * Get a snapshot of the statistics for all lanes
+	 * @return The lane statistics
+	 */
+	public List<LaneStats> getStats() {
+		List<LaneStats> out = new ArrayList<LaneStats>();
+		for (Lane lane : lanes.values()) {
+			out.add(lane.getStats());
+		}
+		return out;
+	}
+
+	/**
+	 * Remove the lane for a Creo connection which has gone away.  Tasks already 
+	 * waiting on the lane are still run.
+	 * @param connId The Creo connection ID
+	 */
+	public void removeLane(String connId) {
+		if (connId==null || DEFAULT_LANE.equals(connId))
+			return;
+		Lane lane = lanes.remove(connId);
+		if (lane!=null)
+			lane.executor.shutdown();
+	}
+
+	/**
+	 * Get or create the lane for a Creo connection
+	 * @param connId The Creo connection ID
+	 * @return The lane
+	 */
+	private Lane getLane(String connId) {
+		if (connId==null)
+			connId = DEFAULT_LANE;
+		Lane lane = lanes.get(connId);
+		if (lane==null) {
+			Lane newLane = new Lane(connId);
+			lane = lanes.putIfAbsent(connId, newLane);
+			if (lane==null)
+				lane = newLane;
+			else
+				newLane.executor.shutdown();
+		}
+		return lane;
+	}
+
+	private static int getIntProperty(String prop, int dflt) {
+		String val = System.getProperty(prop);
+		if (val!=null) {
+			try {
+				return Integer.parseInt(val.trim());
+			}
+			catch (NumberFormatException e) {
+				System.err.println("Invalid value for " + prop + ": " + val);
+			}
+		}
+		return dflt;
+	}
+
+	/**
+	 * A single-threaded, ordered executor for one Creo connection, with
+	 * timing statistics.
+	 */
+	private static class Lane {
+		private String key;
+		private ThreadPoolExecutor executor;
+		private AtomicInteger waiting = new AtomicInteger();
+		private AtomicLong rejected = new AtomicLong();
+		private AtomicLong completed = new AtomicLong();
+		private AtomicLong totalWait = new AtomicLong();
+		private AtomicLong maxWait = new AtomicLong();
+		private AtomicLong totalRun = new AtomicLong();
+		private AtomicLong maxRun = new AtomicLong();
+
+		public Lane(String key) {
+			this.key = key;
+			final String threadName = "creo-lane-" + key;
+			executor = new ThreadPoolExecutor(1, 1, KEEPALIVE_MS, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, threadName);
+							t.setDaemon(true);
+							return t;
+						}
+					});
+			executor.allowCoreThreadTimeOut(true);
+		}
+
+		/**
+		 * Queue a task on the lane
+		 * @param task The task to run
+		 * @param claimed Flag which the lane sets when it starts the task; if the caller 
+		 * has already set it, the task has been abandoned and is skipped
+		 * @return The future for the task's result
+		 */
+		public <T> Future<T> submit(final Callable<T> task, final AtomicBoolean claimed) {
+			final long queued = System.currentTimeMillis();
+			waiting.incrementAndGet();
+			try {
+				return executor.submit(new Callable<T>() {
+					public T call() throws Exception {
+						if (!claimed.compareAndSet(false, true))
+							return null;
+						waiting.decrementAndGet();
+						long start = System.currentTimeMillis();
+						record(totalWait, maxWait, start - queued);
+						try {
+							return task.call();
+						}
+						finally {
+							record(totalRun, maxRun, System.currentTimeMillis() - start);
+							completed.incrementAndGet();
+						}
+					}
+				});
+			}
+			catch (RejectedExecutionException e) {
+				waiting.decrementAndGet();
+				throw e;
+			}
+		}
+
+		/**
+		 * Estimate how long a refused client should wait before retrying, from the 
+		 * average run time and the number of tasks ahead of it
+		 * @return The suggested delay in milliseconds
+		 */
+		public long estimateRetry() {
+			long count = completed.get();
+			long avg = count>0 ? totalRun.get() / count : 1000;
+			long est = avg * (waiting.get() + 1);
+			return Math.max(MIN_RETRY_MS, Math.min(MAX_RETRY_MS, est));
+		}
+
+		private static void record(AtomicLong total, AtomicLong max, long value) {
+			total.addAndGet(value);
+			long cur;
+			while (value > (cur = max.get())) {
+				if (max.compareAndSet(cur, value))
+					break;
+			}
+		}
+
+		public LaneStats getStats() {
+			LaneStats stats = new LaneStats();
+			stats.key = key;
+			stats.queueDepth = waiting.get();
+			stats.active = executor.getActiveCount() > 0;
+			stats.completed = completed.get();
+			stats.totalWaitMs = totalWait.get();
+			stats.maxWaitMs = maxWait.get();
+			stats.totalRunMs = totalRun.get();
+			stats.maxRunMs = maxRun.get();
+			stats.rejected = rejected.get();
+			return stats;
+		}
+	}
+
+	/**
+	 * Point-in-time statistics for a single lane
+	 */
+	public static class LaneStats {
+		private String key;
+		private int queueDepth;
+		private boolean active;
+		private long completed;
+		private long totalWaitMs;
+		private long maxWaitMs;
+		private long totalRunMs;
+		private long maxRunMs;
+		private long rejected;
+
+		/**
+		 * @return The Creo connection ID for the lane
+		 */
+		public String getKey() {
+			return key;
+		}
+		/**
+		 * @return The number of tasks waiting to run on the lane
+		 */
+		public int getQueueDepth() {
+			return queueDepth;
+		}
+		/**
+		 * @return Whether a task is currently running on the lane
+		 */
+		public boolean isActive() {
+			return active;
+		}
+		/**
+		 * @return The number of tasks which have finished on the lane
+		 */
+		public long getCompleted() {
+			return completed;
+		}
+		/**
+		 * @return Total time tasks spent waiting on the lane, in milliseconds
+		 */
+		public long getTotalWaitMs() {
+			return totalWaitMs;
+		}
+		/**
+		 * @return Longest time a task spent waiting on the lane, in milliseconds
+		 */
+		public long getMaxWaitMs() {
+			return maxWaitMs;
+		}
+		/**
+		 * @return Total time tasks spent running on the lane, in milliseconds
+		 */
+		public long getTotalRunMs() {
+			return totalRunMs;
+		}
+		/**
+		 * @return Longest time a task spent running on the lane, in milliseconds
+		 */
+		public long getMaxRunMs() {
+			return maxRunMs;
+		}
+		/**
+		 * @return The number of tasks which were refused because the lane was busy
+		 */
+		public long getRejected() {
+			return rejected;
+		}
+	}
+}
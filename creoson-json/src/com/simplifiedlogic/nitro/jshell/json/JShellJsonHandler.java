@@ -18,12 +18,29 @@
  */
 package com.simplifiedlogic.nitro.jshell.json;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.simplifiedlogic.nitro.jlink.data.AbstractJLISession;
+import com.simplifiedlogic.nitro.jlink.data.ConnectionStats;
+import com.simplifiedlogic.nitro.jlink.data.RecordSink;
+import com.simplifiedlogic.nitro.jlink.data.RequestDeadline;
+import com.simplifiedlogic.nitro.jlink.data.SessionStats;
+import com.simplifiedlogic.nitro.jlink.intf.IJLConnection;
 import com.simplifiedlogic.nitro.jlink.intf.JShellProvider;
 import com.simplifiedlogic.nitro.jshell.json.handler.JLJsonBomHandler;
 import com.simplifiedlogic.nitro.jshell.json.handler.JLJsonCommandHandler;
@@ -36,16 +53,21 @@ import com.simplifiedlogic.nitro.jshell.json.handler.JLJsonFeatureHandler;
 import com.simplifiedlogic.nitro.jshell.json.handler.JLJsonFileHandler;
 import com.simplifiedlogic.nitro.jshell.json.handler.JLJsonGeometryHandler;
 import com.simplifiedlogic.nitro.jshell.json.handler.JLJsonInterfaceHandler;
+import com.simplifiedlogic.nitro.jshell.json.handler.JLJsonJobHandler;
 import com.simplifiedlogic.nitro.jshell.json.handler.JLJsonLayerHandler;
 import com.simplifiedlogic.nitro.jshell.json.handler.JLJsonNoteHandler;
 import com.simplifiedlogic.nitro.jshell.json.handler.JLJsonParameterHandler;
 import com.simplifiedlogic.nitro.jshell.json.handler.JLJsonViewHandler;
 import com.simplifiedlogic.nitro.jshell.json.handler.JLJsonWindchillHandler;
 import com.simplifiedlogic.nitro.jshell.json.request.BaseRequest;
+import com.simplifiedlogic.nitro.jshell.json.request.BatchRequest;
 import com.simplifiedlogic.nitro.jshell.json.response.BaseResponse;
+import com.simplifiedlogic.nitro.jshell.json.response.BatchResponse;
 import com.simplifiedlogic.nitro.jshell.json.response.JLConnectResponseParams;
 import com.simplifiedlogic.nitro.jshell.json.response.ServiceStatus;
 import com.simplifiedlogic.nitro.rpc.JLIException;
+import com.simplifiedlogic.nitro.rpc.JLITimeoutException;
+import com.simplifiedlogic.nitro.util.ConnectionPool;
 
 /**
  * This is the main entry point for the JSON wrapper for the JShell library.
@@ -64,6 +86,13 @@ public class JShellJsonHandler {
 	 */
 	public static final boolean alwaysIncludeStatus = true;
 
+	/**
+	 * MIME type for a regular JSON response
+	 */
+	public static final String CONTENT_TYPE = "application/json";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
 	/**
 	 * The collection of function handlers for the various function families.  Keyed by command name.
 	 */
@@ -74,6 +103,43 @@ public class JShellJsonHandler {
 	 */
 	private ObjectMapper mapper = new ObjectMapper();
 	
+	/**
+	 * Pre-built reader and writer for standard requests and responses, so that the 
+	 * type lookups are not repeated for every request
+	 */
+	private ObjectReader requestReader = WireFormat.JSON.getRequestReader();
+	private ObjectWriter responseWriter = WireFormat.JSON.getResponseWriter();
+	
+	/**
+	 * Connection layer, used to find which Creo connection will service a request
+	 */
+	private IJLConnection connection = null;
+	
+	/**
+	 * Executor which serializes requests for each Creo connection
+	 */
+	CreoLaneExecutor lanes = CreoLaneExecutor.getInstance();
+	
+	/**
+	 * Runs requests which have been submitted as background jobs
+	 */
+	private JobManager jobs = null;
+	
+	/**
+	 * Request counts, sizes and timings for each command and function
+	 */
+	private CommandMetrics metrics = CommandMetrics.getInstance();
+	
+	/**
+	 * Lets identical read requests share a single run
+	 */
+	private RequestCoalescer coalescer = RequestCoalescer.getInstance();
+	
+	/**
+	 * Results of read-only model queries, for as long as the model is unchanged
+	 */
+	private ResponseCache cache = ResponseCache.getInstance();
+	
 	public JShellJsonHandler() {
     	File file = getLibraryFile();
     	// do this instead of loading it ourselves, because it needs to be loaded 
@@ -86,6 +152,13 @@ public class JShellJsonHandler {
 		JShellProvider jp = JShellProvider.getInstance();
 		jp.initializeStandalone();
 		if (jp!=null) {
+			connection = jp.getJLConnection();
+			// drop the lane for a Creo connection once it has gone away
+			connection.addConnectionListener(new ConnectionPool.Listener() {
+				public void removed(String id) {
+					lanes.removeLane(id);
+				}
+			});
 			// assemble the collection of function handlers
 			commands.put(JLJsonConnectionHandler.COMMAND, new JLJsonConnectionHandler(jp.getJLConnection()));
 			commands.put(JLJsonFileHandler.COMMAND, new JLJsonFileHandler(jp.getJLFile()));
@@ -102,6 +175,8 @@ public class JShellJsonHandler {
 			commands.put(JLJsonWindchillHandler.COMMAND, new JLJsonWindchillHandler(jp.getJLWindchill()));
 			commands.put(JLJsonDimensionHandler.COMMAND, new JLJsonDimensionHandler(jp.getJLDimension()));
 			commands.put(JLJsonBomHandler.COMMAND, new JLJsonBomHandler(jp.getJLBom()));
+			jobs = new JobManager(this);
+			commands.put(JLJsonJobHandler.COMMAND, new JLJsonJobHandler(jobs));
 		}
 
 	}
@@ -112,19 +187,34 @@ public class JShellJsonHandler {
 	 * @return The JSON response string
 	 */
 	public String handleRequest(String reqString) {
+		return handleRequest(reqString, null);
+	}
+	
+	/**
+	 * Handle a JSON request and return its results.
+	 * 
+	 * <p>If the request has its "stream" property set and an output is given, list results are 
+	 * written to the output as newline-delimited JSON while the request runs, followed by the 
+	 * regular response on the last line.
+	 * 
+	 * @param reqString The JSON request string
+	 * @param stream The output for streamed results; may be null if streaming is not supported by the caller
+	 * @return The JSON response string, or null if the response was streamed to the output
+	 */
+	public String handleRequest(String reqString, StreamOutput stream) {
 		BaseRequest req = null;
 		BaseResponse output = null;
 		
 		// turn the JSON string into a standard request object
 		try {
 			// parse json
-			req = (BaseRequest)mapper.readValue(reqString, BaseRequest.class);
+			req = requestReader.readValue(reqString);
 		}
 		catch (Exception e) {
 			output = new BaseResponse();
 			createError(output, "Invalid JSON input: " + reqString);
 			try {
-				return mapper.writeValueAsString(output);
+				return responseWriter.writeValueAsString(output);
 			}
 			catch (Exception ex) {
 				ex.printStackTrace();
@@ -133,7 +223,227 @@ public class JShellJsonHandler {
 		}
 
 		// pass the request to the handler and receive a response
-		output = handleRequest(req);
+		output = runRequest(req, reqString, stream);
+		if (output==null)
+			return null;
+
+		// turn the response object into a JSON string and return
+		try {
+			// unparse json
+			String resp = responseWriter.writeValueAsString(output);
+			return resp;
+		}
+		catch (Exception e) {
+			createError(output, "Invalid JSON output: " + reqString);
+			try {
+				return responseWriter.writeValueAsString(output);
+			}
+			catch (Exception ex) {
+				ex.printStackTrace();
+				return null;
+			}
+		}
+		
+	}
+
+	/**
+	 * Handle a JSON request read from an input stream, and write its results to an output stream.
+	 * The output stream is closed when the response has been written.
+	 * 
+	 * @param in The JSON request, encoded as UTF-8
+	 * @param out The output for the JSON response
+	 * @throws IOException if the request could not be read or the response could not be written
+	 */
+	public void handleRequest(InputStream in, final OutputStream out) throws IOException {
+		// requests are small, and the original text is needed for echo and error messages
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[2048];
+		int len;
+		while ((len = in.read(buffer))>0) {
+			bos.write(buffer, 0, len);
+		}
+		handleRequest(bos.toByteArray(), new StreamOutput() {
+			public OutputStream open(String contentType) throws IOException {
+				return out;
+			}
+		});
+	}
+
+	/**
+	 * Handle a JSON request given as UTF-8 bytes, and write its results directly to an output.
+	 * Unlike handleRequest(String, StreamOutput), neither the request nor the response is 
+	 * converted to a string along the way.
+	 * 
+	 * <p>The output is opened with CONTENT_TYPE for a regular response, or with the 
+	 * newline-delimited JSON type if the request has its "stream" property set.
+	 * 
+	 * @param data The JSON request, encoded as UTF-8
+	 * @param stream The output for the response
+	 * @throws IOException if the response could not be written
+	 */
+	public void handleRequest(byte[] data, StreamOutput stream) throws IOException {
+		handleRequest(data, WireFormat.JSON, WireFormat.JSON, stream);
+	}
+
+	/**
+	 * Handle a request in a given wire format, and write its results directly to an output
+	 * in the same or another format.  The request and response objects are the same for 
+	 * every format.
+	 * 
+	 * <p>The output is opened with the response format's content type for a regular response.
+	 * Streamed results are always written as newline-delimited JSON.
+	 * 
+	 * @param data The encoded request
+	 * @param format The format of the request; must be available
+	 * @param responseFormat The format for the response; must be available
+	 * @param stream The output for the response
+	 * @throws IOException if the response could not be written
+	 */
+	public void handleRequest(byte[] data, WireFormat format, WireFormat responseFormat, StreamOutput stream) throws IOException {
+		BaseRequest req = null;
+		BaseResponse output = null;
+		ObjectWriter writer = responseFormat.getResponseWriter();
+		
+		// turn the encoded bytes into a standard request object
+		try {
+			// parse request
+			req = format.getRequestReader().readValue(data);
+		}
+		catch (Exception e) {
+			output = new BaseResponse();
+			if (format.isBinary())
+				createError(output, "Invalid " + format.getName() + " input: " + e.getMessage());
+			else
+				createError(output, "Invalid JSON input: " + new String(data, UTF8));
+			writer.writeValue(stream.open(responseFormat.getContentType()), output);
+			return;
+		}
+
+		// a binary request is echoed back as its JSON equivalent
+		String reqString = null;
+		if (req.isEcho())
+			reqString = format.isBinary() ? mapper.writeValueAsString(req) : new String(data, UTF8);
+
+		// identical read requests which arrive together share a single run
+		if (requiresCreo(req)) {
+			String flightKey = coalescer.getKey(getConnectionKey(req.getSessionId()), req, responseFormat);
+			if (flightKey!=null) {
+				runSharedRequest(req, data.length, flightKey, responseFormat, stream);
+				return;
+			}
+		}
+
+		// count the bytes written, for the request's metrics
+		CountingStreamOutput counted = new CountingStreamOutput(stream);
+
+		// pass the request to the handler and receive a response
+		output = runRequest(req, reqString, counted);
+		if (output!=null) {
+			// write the response object straight to the output; this closes the output
+			writer.writeValue(counted.open(responseFormat.getContentType()), output);
+		}
+		if (req.getCommand()!=null && req.getFunction()!=null && commands.containsKey(req.getCommand()))
+			metrics.getMetric(req.getCommand(), req.getFunction()).addBytes(data.length, counted.getCount());
+	}
+
+	/**
+	 * Run a read-only request, or wait for an identical request which is already running 
+	 * and send its response.  If the running request fails, the request is run on its own.
+	 * 
+	 * @param req The request
+	 * @param size The size of the encoded request in bytes
+	 * @param flightKey The request's key from the request coalescer
+	 * @param responseFormat The format for the response
+	 * @param stream The output for the response
+	 * @throws IOException if the response could not be written
+	 */
+	private void runSharedRequest(BaseRequest req, int size, String flightKey, WireFormat responseFormat, StreamOutput stream) throws IOException {
+		ObjectWriter writer = responseFormat.getResponseWriter();
+		CommandMetrics.Metric metric = metrics.getMetric(req.getCommand(), req.getFunction());
+		RequestCoalescer.Flight flight = coalescer.join(flightKey);
+		byte[] bytes = null;
+
+		if (!flight.isLeader()) {
+			long start = metric.start();
+			BaseResponse output = null;
+			try {
+				if (!flight.await(req.getDeadlineMs())) {
+					output = new BaseResponse();
+					output.setStatus(ServiceStatus.timeout("Request deadline of " + req.getDeadlineMs() + " ms passed"));
+				}
+				else
+					bytes = flight.getResponse();
+			}
+			catch (InterruptedException e) {
+				// the thread is being stopped, so do not go on to call Creo
+				Thread.currentThread().interrupt();
+				output = new BaseResponse();
+				createError(output, "Request was interrupted while waiting for an identical request");
+			}
+			if (output!=null) {
+				bytes = writer.writeValueAsBytes(output);
+				metric.finish(start, true);
+			}
+			else if (bytes!=null)
+				metric.finish(start, flight.isError());
+			else {
+				// the leader failed; the request is run and recorded on its own below
+				metric.abandon();
+			}
+			coalescer.recordFollower(output==null && bytes!=null && !flight.isError());
+		}
+
+		if (bytes==null) {
+			// lead the run, or run alone if the leader failed
+			boolean error = true;
+			try {
+				BaseResponse output = runRequest(req, null, null);
+				error = output.getStatus()!=null && output.getStatus().getError();
+				bytes = writer.writeValueAsBytes(output);
+			}
+			finally {
+				if (flight.isLeader())
+					coalescer.complete(flight, bytes, error);
+			}
+		}
+
+		OutputStream out = stream.open(responseFormat.getContentType());
+		try {
+			out.write(bytes);
+		}
+		finally {
+			out.close();
+		}
+		metric.addBytes(size, bytes.length);
+	}
+
+	/**
+	 * Run a parsed JSON request, streaming its results if it asks for that and the caller 
+	 * supports it.
+	 * 
+	 * @param req The request
+	 * @param reqString The original request text, used if the request asks to have it echoed
+	 * @param stream The output for streamed results; may be null if streaming is not supported by the caller
+	 * @return The response, or null if the response was streamed to the output
+	 */
+	private BaseResponse runRequest(BaseRequest req, String reqString, StreamOutput stream) {
+		// start the streamed response, if one was requested
+		JsonRecordSink sink = null;
+		if (stream!=null && req.isStream() && req.getCommand()!=null) {
+			JLJsonCommandHandler handler = commands.get(req.getCommand());
+			if (handler!=null) {
+				try {
+					sink = new JsonRecordSink(mapper, stream.open(JsonRecordSink.CONTENT_TYPE), handler, req.getFunction());
+				}
+				catch (IOException e) {
+					e.printStackTrace();
+					return null;
+				}
+			}
+		}
+
+		// pass the request to the handler and receive a response
+		BaseResponse output = handleRequest(req, true, sink);
 		if (output==null)
 			output = new BaseResponse();
 		if (output.getStatus()==null)
@@ -142,6 +452,55 @@ public class JShellJsonHandler {
 		if (req.isEcho())
 			output.setEchoString(reqString);
 
+		if (sink!=null) {
+			// the regular response is the last line of the streamed output
+			try {
+				sink.writeLine(output);
+			}
+			catch (Exception e) {
+				e.printStackTrace();
+			}
+			finally {
+				try {
+					sink.close();
+				}
+				catch (IOException e) {
+				}
+			}
+			return null;
+		}
+		return output;
+	}
+
+	/**
+	 * Handle a JSON batch request and return its results
+	 * @param reqString The JSON batch request string
+	 * @return The JSON batch response string
+	 */
+	public String handleBatchRequest(String reqString) {
+		BatchRequest req = null;
+		BatchResponse output = null;
+		
+		// turn the JSON string into a batch request object
+		try {
+			// parse json
+			req = mapper.readValue(reqString, BatchRequest.class);
+		}
+		catch (Exception e) {
+			output = new BatchResponse();
+			output.setStatus(ServiceStatus.error("Invalid JSON input: " + reqString));
+			try {
+				return mapper.writeValueAsString(output);
+			}
+			catch (Exception ex) {
+				ex.printStackTrace();
+				return null;
+			}
+		}
+
+		// run the requests and receive the responses
+		output = handleBatchRequest(req);
+
 		// turn the response object into a JSON string and return
 		try {
 			// unparse json
@@ -149,7 +508,8 @@ public class JShellJsonHandler {
 			return resp;
 		}
 		catch (Exception e) {
-			createError(output, "Invalid JSON output: " + reqString);
+			output.setResponses(null);
+			output.setStatus(ServiceStatus.error("Invalid JSON output: " + reqString));
 			try {
 				return mapper.writeValueAsString(output);
 			}
@@ -158,7 +518,129 @@ public class JShellJsonHandler {
 				return null;
 			}
 		}
+	}
+
+	/**
+	 * Handle a batch of standard requests.  The requests are run in order, each on the lane
+	 * for its own session's Creo connection.  Consecutive requests for the same connection
+	 * are run as one task on its lane, without any other requests interleaved between them.
+	 * An error in one request is reported in its response and does not stop the batch, 
+	 * unless the batch's stopOnError flag is set.
+	 * 
+	 * @param batch The batch request
+	 * @return The batch response, containing one response for each request that was run
+	 */
+	public BatchResponse handleBatchRequest(final BatchRequest batch) {
+		final BatchResponse resp = new BatchResponse();
+		
+		if (batch==null || batch.getRequests()==null || batch.getRequests().size()==0) {
+			resp.setStatus(ServiceStatus.error("Batch request does not contain any requests"));
+			return resp;
+		}
+		
+		try {
+			runBatch(batch, resp);
+			ServiceStatus status = new ServiceStatus();
+			status.setError(false);
+			resp.setStatus(status);
+		}
+		catch (LaneBusyException e) {
+			resp.setStatus(ServiceStatus.busy(e.getMessage(), e.getRetryAfterMs()));
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			resp.setStatus(ServiceStatus.error("Error handling batch request: " + e.getMessage()));
+		}
+		return resp;
+	}
+
+	/**
+	 * Run each request in a batch and collect the responses.  If a request returns a new
+	 * session ID, it is used for the rest of the requests in the batch.
+	 * 
+	 * <p>A request may use a different Creo connection than the one before it, for example 
+	 * after a connection.connect or when it names its own session, so the lane is looked up 
+	 * again for each request and the batch moves to the new lane when it changes.
+	 * 
+	 * @param batch The batch request
+	 * @param resp The batch response to receive the results
+	 * @throws Exception if a lane refused the rest of the batch or failed
+	 */
+	private void runBatch(BatchRequest batch, BatchResponse resp) throws Exception {
+		BatchRun run = new BatchRun(batch, resp);
+		while (!run.isDone()) {
+			run.connKey = getConnectionKey(run.nextSessionId());
+			lanes.execute(run.connKey, run);
+		}
+	}
+	
+	/**
+	 * Runs the requests of a batch, for as long as they use the same Creo connection
+	 */
+	private class BatchRun implements Callable<Object> {
+		private BatchRequest batch;
+		private BatchResponse resp;
+		private List<BaseRequest> requests;
+		private List<BaseResponse> responses;
+		private String sessionId;
+		private boolean stopped = false;
+		/**
+		 * The connection for the lane the requests are being run on
+		 */
+		String connKey;
+		
+		BatchRun(BatchRequest batch, BatchResponse resp) {
+			this.batch = batch;
+			this.resp = resp;
+			this.requests = batch.getRequests();
+			this.responses = new ArrayList<BaseResponse>(requests.size());
+			this.sessionId = batch.getSessionId();
+			resp.setResponses(responses);
+		}
+		
+		/**
+		 * @return Whether every request has been run, or the batch has stopped on an error
+		 */
+		boolean isDone() {
+			return stopped || responses.size()>=requests.size();
+		}
+		
+		/**
+		 * @return The session ID which the next request will run under
+		 */
+		String nextSessionId() {
+			BaseRequest req = requests.get(responses.size());
+			if (req!=null && req.getSessionId()!=null)
+				return req.getSessionId();
+			return sessionId;
+		}
 		
+		public Object call() throws Exception {
+			// queued on the default lane before there was a connection; let runBatch 
+			// move the batch to its connection's lane
+			if (connKey==null && getConnectionKey(nextSessionId())!=null)
+				return null;
+			do {
+				BaseRequest req = requests.get(responses.size());
+				if (req!=null && req.getSessionId()==null)
+					req.setSessionId(sessionId);
+				
+				BaseResponse output = handleRequest(req, false, null);
+				responses.add(output);
+				
+				if (output.getSessionId()!=null) {
+					sessionId = output.getSessionId();
+					resp.setSessionId(sessionId);
+				}
+				if (batch.isStopOnError() && output.getStatus()!=null && output.getStatus().getError())
+					stopped = true;
+			} while (!isDone() && sameConnection(getConnectionKey(nextSessionId())));
+			return null;
+		}
+		
+		private boolean sameConnection(String key) {
+			return connKey==null ? key==null : connKey.equals(key);
+		}
 	}
 
 	/**
@@ -167,6 +649,98 @@ public class JShellJsonHandler {
 	 * @return The response in the form of a standard response object
 	 */
 	public BaseResponse handleRequest(BaseRequest req) {
+		return handleRequest(req, true, null, null, null);
+	}
+	
+	/**
+	 * Handle a standard request on the lane for a known Creo connection, and return its results.
+	 * This is used by callers which keep the same session for many requests, so that the 
+	 * session does not have to be looked up for each request.
+	 * @param req The request in the form of a standard request object
+	 * @param connKey The Creo connection ID for the request's session, from getConnectionKey(); 
+	 * if null, it is looked up from the request's session
+	 * @return The response in the form of a standard response object
+	 */
+	public BaseResponse handleRequest(BaseRequest req, String connKey) {
+		return handleRequest(req, true, connKey, null, null);
+	}
+	
+	/**
+	 * Handle a standard request on the lane for a known Creo connection, with a deadline
+	 * which the caller may cancel, and return its results.
+	 * @param req The request in the form of a standard request object
+	 * @param connKey The Creo connection ID for the request's session, from getConnectionKey(); 
+	 * if null, it is looked up from the request's session
+	 * @param deadline The request's deadline; if null, one is created from the request's deadlineMs property
+	 * @return The response in the form of a standard response object
+	 */
+	public BaseResponse handleRequest(BaseRequest req, String connKey, RequestDeadline deadline) {
+		return handleRequest(req, true, connKey, null, deadline);
+	}
+	
+	/**
+	 * Check whether a request will be run on the lane for its Creo connection.  Requests 
+	 * which do not call Creo may run at the same time as other requests.
+	 * @param req The request
+	 * @return True if the request may call Creo
+	 */
+	public boolean requiresCreo(BaseRequest req) {
+		if (req==null || req.getCommand()==null)
+			return false;
+		JLJsonCommandHandler handler = commands.get(req.getCommand());
+		return handler!=null && handler.requiresCreo();
+	}
+	
+	/**
+	 * Handle a standard request by passing it on to a handler class, and return its results
+	 * @param req The request in the form of a standard request object
+	 * @param useLane Whether to run the handler on the lane for the request's Creo connection;
+	 * false if the caller is already running on a lane
+	 * @param sink The sink for streamed results, or null if results are not being streamed
+	 * @return The response in the form of a standard response object
+	 */
+	BaseResponse handleRequest(BaseRequest req, boolean useLane, RecordSink sink) {
+		return handleRequest(req, useLane, null, sink, null);
+	}
+	
+	/**
+	 * Handle a standard request by passing it on to a handler class, and return its results
+	 * @param req The request in the form of a standard request object
+	 * @param useLane Whether to run the handler on the lane for the request's Creo connection;
+	 * false if the caller is already running on a lane
+	 * @param connKey The Creo connection ID for the request, or null to look it up from the request's session
+	 * @param sink The sink for streamed results, or null if results are not being streamed
+	 * @param deadline The request's deadline, or null to create one from the request
+	 * @return The response in the form of a standard response object
+	 */
+	private BaseResponse handleRequest(BaseRequest req, boolean useLane, String connKey, RecordSink sink, RequestDeadline deadline) {
+		// only requests for known commands are measured, so that bad requests cannot flood the metrics
+		if (req==null || req.getCommand()==null || req.getFunction()==null || !commands.containsKey(req.getCommand()))
+			return dispatchRequest(req, useLane, connKey, sink, deadline);
+
+		CommandMetrics.Metric metric = metrics.getMetric(req.getCommand(), req.getFunction());
+		long start = metric.start();
+		BaseResponse resp = null;
+		try {
+			resp = dispatchRequest(req, useLane, connKey, sink, deadline);
+		}
+		finally {
+			metric.finish(start, resp==null || (resp.getStatus()!=null && resp.getStatus().getError()));
+		}
+		return resp;
+	}
+	
+	/**
+	 * Validate a standard request and pass it on to its handler class, and return its results
+	 * @param req The request in the form of a standard request object
+	 * @param useLane Whether to run the handler on the lane for the request's Creo connection;
+	 * false if the caller is already running on a lane
+	 * @param connKey The Creo connection ID for the request, or null to look it up from the request's session
+	 * @param sink The sink for streamed results, or null if results are not being streamed
+	 * @param deadline The request's deadline, or null to create one from the request
+	 * @return The response in the form of a standard response object
+	 */
+	private BaseResponse dispatchRequest(final BaseRequest req, boolean useLane, String connKey, final RecordSink sink, RequestDeadline deadline) {
 		BaseResponse resp = new BaseResponse();
 		
 		// check for empty or invalid request
@@ -180,7 +754,7 @@ public class JShellJsonHandler {
 			return resp;
 		}
 		
-		JLJsonCommandHandler handler = commands.get(req.getCommand());
+		final JLJsonCommandHandler handler = commands.get(req.getCommand());
 		// check for invalid command
 		if (handler==null) {
 			createError(resp, "Invalid command: " + req.getCommand());
@@ -192,9 +766,26 @@ public class JShellJsonHandler {
 			return resp;
 		}
 		
+		// the deadline counts from when the request arrives, so time spent waiting for Creo is included
+		final RequestDeadline reqDeadline = deadline!=null ? deadline : new RequestDeadline(req.getDeadlineMs());
+		
+		// keep the session from being deleted as idle while the request waits or runs
+		AbstractJLISession sess = beginUse(req.getSessionId());
 		try {
-			// pass the request to an external handler
-			Hashtable<String, Object> output = handler.handleFunction(req.getSessionId(), req.getFunction(), req.getData());
+			// pass the request to an external handler, on the lane for its Creo connection
+			Hashtable<String, Object> output;
+			if (useLane && handler.requiresCreo()) {
+				if (connKey==null)
+					connKey = getConnectionKey(req.getSessionId());
+				final String laneKey = connKey;
+				output = runOnLane(connKey, req.getSessionId(), new Callable<Hashtable<String, Object>>() {
+					public Hashtable<String, Object> call() throws Exception {
+						return callHandler(handler, req, laneKey, sink, reqDeadline);
+					}
+				}, true);
+			}
+			else
+				output = callHandler(handler, req, connKey, sink, reqDeadline);
 
 			if (output!=null) {
 				// special handling for when a new session ID is returned in the data; 
@@ -218,6 +809,12 @@ public class JShellJsonHandler {
 				resp.setStatus(status);
 			}
 		}
+		catch (JLITimeoutException e) {
+			resp.setStatus(ServiceStatus.timeout(e.getMessage()));
+		}
+		catch (LaneBusyException e) {
+			resp.setStatus(ServiceStatus.busy(e.getMessage(), e.getRetryAfterMs()));
+		}
 		catch (JLIException e) {
 			createError(resp, e.getMessage());
 		}
@@ -228,10 +825,140 @@ public class JShellJsonHandler {
 				msg = "Unexpected null value";
 			createError(resp, "Error handling request: " + msg);
 		}
+		finally {
+			if (sess!=null)
+				sess.endUse();
+		}
 		
 		return resp;
 	}
 	
+	/**
+	 * Mark a session as in use, so that it is not deleted as idle.  The caller must 
+	 * call endUse() on the returned session when it is done.
+	 * @param sessionId The session ID (optional)
+	 * @return The session, or null if there is no such session
+	 */
+	AbstractJLISession beginUse(String sessionId) {
+		if (connection==null || sessionId==null)
+			return null;
+		AbstractJLISession sess = connection.getSession(sessionId);
+		if (sess!=null)
+			sess.beginUse();
+		return sess;
+	}
+	
+	/**
+	 * Pass a request to its function handler, with the record sink and deadline bound to the 
+	 * current thread.  A request which has already passed its deadline is not started.
+	 * 
+	 * <p>Results of cacheable read-only functions are taken from the response cache when 
+	 * they are still current; any other function which calls Creo invalidates the cached 
+	 * results for its Creo connection.
+	 * 
+	 * @param handler The function handler
+	 * @param req The request
+	 * @param connKey The Creo connection ID for the request, or null to look it up from the request's session
+	 * @param sink The sink for streamed results, or null if results are not being streamed
+	 * @param deadline The request's deadline
+	 * @return The results of the function
+	 * @throws JLIException
+	 */
+	private Hashtable<String, Object> callHandler(JLJsonCommandHandler handler, BaseRequest req, String connKey, RecordSink sink, RequestDeadline deadline) throws JLIException {
+		deadline.check();
+
+		String cacheKey = null;
+		long version = 0;
+		boolean changes = false;
+		if (handler.requiresCreo()) {
+			if (connKey==null)
+				connKey = getConnectionKey(req.getSessionId());
+			if (sink==null)
+				cacheKey = cache.getKey(connKey, req);
+			if (cacheKey!=null) {
+				Hashtable<String, Object> output = cache.get(connKey, cacheKey);
+				if (output!=null)
+					return output;
+				version = cache.getVersion(connKey);
+			}
+			else if (!ReadOnlyFunctions.isReadOnly(req.getCommand(), req.getFunction())) {
+				changes = true;
+				cache.invalidate(connKey);
+			}
+		}
+
+		RecordSink.setCurrent(sink);
+		RequestDeadline.setCurrent(deadline);
+		try {
+			Hashtable<String, Object> output = handler.handleFunction(req.getSessionId(), req.getFunction(), req.getData());
+			if (cacheKey!=null)
+				cache.put(connKey, cacheKey, version, output);
+			return output;
+		}
+		finally {
+			RecordSink.setCurrent(null);
+			RequestDeadline.setCurrent(null);
+			// invalidate again, in case a result was read while the change was being made
+			if (changes)
+				cache.invalidate(connKey);
+		}
+	}
+	
+	/**
+	 * Run a task on the lane for a Creo connection.  A task which is queued on the default
+	 * lane because there is no connection yet is moved to its connection's lane if one has
+	 * been made by the time it starts, so that it does not run alongside that lane.
+	 * @param connKey The Creo connection ID, or null for the default lane
+	 * @param sessionId The session ID for the task, used to find its connection later
+	 * @param task The task to run
+	 * @param admit Whether to apply the lane's admission limits
+	 * @return The result of the task
+	 * @throws Exception if the lane refused the task, or the task failed
+	 */
+	<T> T runOnLane(String connKey, final String sessionId, final Callable<T> task, boolean admit) throws Exception {
+		if (connKey!=null)
+			return lanes.execute(connKey, task, admit);
+		return lanes.execute(null, new Callable<T>() {
+			public T call() throws Exception {
+				String key = getConnectionKey(sessionId);
+				if (key!=null)
+					return lanes.execute(key, task, false);
+				return task.call();
+			}
+		}, admit);
+	}
+	
+	/**
+	 * Get the ID of the Creo connection which will service a session's requests
+	 * @param sessionId The session ID (optional)
+	 * @return The Creo connection ID, or null if there is none
+	 */
+	public String getConnectionKey(String sessionId) {
+		if (connection==null)
+			return null;
+		return connection.getConnectionKey(sessionId);
+	}
+	
+	/**
+	 * Get health and usage information for each Creo connection in the pool
+	 * @return The connection information; empty if there is no connection layer
+	 */
+	public List<ConnectionStats> getConnectionStats() {
+		if (connection==null)
+			return new ArrayList<ConnectionStats>();
+		return connection.getConnectionStats();
+	}
+	
+	/**
+	 * Get the number and ages of the JShell sessions in memory
+	 * @return The session statistics, or null if there is no connection layer
+	 */
+	public SessionStats getSessionStats() {
+		if (connection==null)
+			return null;
+		return connection.getSessionStats();
+	}
+	
 	/**
 	 * Generate an error status return
 	 * @param resp The response object to receive the error status
@@ -250,4 +977,34 @@ public class JShellJsonHandler {
 		
 		return new File(filename);
 	}
+
+	/**
+	 * Wrapper for a response output which counts the bytes written to it
+	 */
+	private static class CountingStreamOutput implements StreamOutput {
+		private StreamOutput stream;
+		private long count = 0;
+
+		public CountingStreamOutput(StreamOutput stream) {
+			this.stream = stream;
+		}
+
+		public OutputStream open(String contentType) throws IOException {
+			return new FilterOutputStream(stream.open(contentType)) {
+				public void write(int b) throws IOException {
+					out.write(b);
+					count++;
+				}
+
+				public void write(byte[] b, int off, int len) throws IOException {
+					out.write(b, off, len);
+					count += len;
+				}
+			};
+		}
+
+		public long getCount() {
+			return count;
+		}
+	}
 }
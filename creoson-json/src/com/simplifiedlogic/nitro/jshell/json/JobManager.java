@@ -0,0 +1,372 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jshell.json;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.simplifiedlogic.nitro.jlink.data.AbstractJLISession;
+import com.simplifiedlogic.nitro.jshell.json.request.BaseRequest;
+import com.simplifiedlogic.nitro.jshell.json.response.BaseResponse;
+import com.simplifiedlogic.nitro.jshell.json.response.JLJobResponseParams;
+import com.simplifiedlogic.nitro.jshell.json.response.ServiceStatus;
+
+/**
+ * Runs requests as background jobs, for functions which may take longer than 
+ * an HTTP client is willing to wait.
+ * 
+ * <p>A submitted job is given an ID immediately, and is then run on the lane for its 
+ * Creo connection like any other request.  Clients can poll the job's state, wait for 
+ * it to finish, or cancel it while it is still queued.  The results of finished jobs 
+ * are kept until they are pushed out of the job history.
+ * 
+ * <p>Jobs are not subject to the lanes' admission limits, since no client is waiting on
+ * them; instead the number of jobs waiting for a job thread is limited (sli.job.queue), 
+ * and a job submitted when the queue is full is refused as busy.
+ * 
+ * @author Adam Andrews
+ *
+ */
+public class JobManager implements JLJobResponseParams {
+
+	/**
+	 * System property for the number of jobs which may run at once
+	 */
+	public static final String THREADS_PROP = "sli.job.threads";
+	/**
+	 * System property for the number of finished jobs to keep
+	 */
+	public static final String HISTORY_PROP = "sli.job.history";
+	/**
+	 * System property for the number of jobs which may wait for a job thread
+	 */
+	public static final String QUEUE_PROP = "sli.job.queue";
+	
+	public static final int DEFAULT_THREADS = 4;
+	public static final int DEFAULT_HISTORY = 100;
+	public static final int DEFAULT_QUEUE = 100;
+	
+	/**
+	 * Suggested delay before retrying a job which was refused, in milliseconds
+	 */
+	private static final long RETRY_MS = 5000;
+
+	private JShellJsonHandler handler;
+	private ThreadPoolExecutor executor;
+	private int maxHistory;
+	private AtomicLong nextId = new AtomicLong(1);
+	
+	/**
+	 * All known jobs, keyed by job ID, in the order they were submitted
+	 */
+	private Map<String, Job> jobs = new LinkedHashMap<String, Job>();
+	/**
+	 * IDs of finished jobs, oldest first
+	 */
+	private LinkedList<String> history = new LinkedList<String>();
+
+	/**
+	 * @param handler The JSON handler which runs the job requests
+	 */
+	public JobManager(JShellJsonHandler handler) {
+		this.handler = handler;
+		this.maxHistory = getIntProperty(HISTORY_PROP, DEFAULT_HISTORY);
+		int threads = getIntProperty(THREADS_PROP, DEFAULT_THREADS);
+		int maxQueue = getIntProperty(QUEUE_PROP, DEFAULT_QUEUE);
+		final AtomicInteger count = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(maxQueue>0 ? maxQueue : Integer.MAX_VALUE),
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "creoson-job-" + count.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+	
+	/**
+	 * Submit a request to be run as a job
+	 * @param req The request to run
+	 * @return The new job
+	 * @throws LaneBusyException if too many jobs are already waiting
+	 */
+	public Job submit(BaseRequest req) throws LaneBusyException {
+		final Job job = new Job(String.valueOf(nextId.getAndIncrement()), req);
+		// the session stays in use until the job finishes, so it is not deleted as idle while queued
+		job.session = handler.beginUse(req.getSessionId());
+		synchronized (this) {
+			jobs.put(job.id, job);
+		}
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					runJob(job);
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			synchronized (this) {
+				jobs.remove(job.id);
+			}
+			if (job.session!=null)
+				job.session.endUse();
+			throw new LaneBusyException("Too many jobs are waiting; " + executor.getQueue().size() + " jobs are queued", RETRY_MS);
+		}
+		return job;
+	}
+	
+	/**
+	 * Get a job
+	 * @param jobId The job ID
+	 * @return The job, or null if it does not exist or has been pushed out of the history
+	 */
+	public synchronized Job getJob(String jobId) {
+		return jobs.get(jobId);
+	}
+	
+	/**
+	 * Get all known jobs
+	 * @return The jobs, in the order they were submitted
+	 */
+	public synchronized List<Job> getJobs() {
+		return new ArrayList<Job>(jobs.values());
+	}
+	
+	/**
+	 * Cancel a job which has not started running yet
+	 * @param jobId The job ID
+	 * @return Whether the job was cancelled
+	 */
+	public boolean cancel(String jobId) {
+		Job job = getJob(jobId);
+		if (job==null || !job.cancel())
+			return false;
+		finished(job);
+		return true;
+	}
+	
+	/**
+	 * Run a job on the lane for its Creo connection
+	 * @param job The job to run
+	 */
+	private void runJob(final Job job) {
+		if (job.isFinished())
+			return;
+		BaseResponse resp;
+		try {
+			String sessionId = job.req.getSessionId();
+			resp = handler.runOnLane(handler.getConnectionKey(sessionId), sessionId, new Callable<BaseResponse>() {
+				public BaseResponse call() throws Exception {
+					// the job may have been cancelled while it was waiting for the lane
+					if (!job.start())
+						return null;
+					return handler.handleRequest(job.req, false, null);
+				}
+			}, false);
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			resp = new BaseResponse();
+			resp.setStatus(ServiceStatus.error("Error running job: " + e.getMessage()));
+			// the job may not have started, if the error came before it reached its lane
+			if (job.fail(resp))
+				finished(job);
+			return;
+		}
+		if (resp!=null && job.finish(resp))
+			finished(job);
+	}
+	
+	/**
+	 * Add a finished job to the history, and drop the oldest finished jobs if the history is full
+	 * @param job The finished job
+	 */
+	private synchronized void finished(Job job) {
+		if (job.session!=null)
+			job.session.endUse();
+		history.addLast(job.id);
+		while (history.size()>maxHistory) {
+			jobs.remove(history.removeFirst());
+		}
+	}
+	
+	private static int getIntProperty(String prop, int dflt) {
+		String val = System.getProperty(prop);
+		if (val!=null) {
+			try {
+				return Integer.parseInt(val.trim());
+			}
+			catch (NumberFormatException e) {
+				System.err.println("Invalid value for " + prop + ": " + val);
+			}
+		}
+		return dflt;
+	}
+	
+	/**
+	 * A request which is being run in the background
+	 */
+	public static class Job {
+		private String id;
+		private BaseRequest req;
+		private String state = STATE_QUEUED;
+		private long submitted;
+		private long started;
+		private long ended;
+		private BaseResponse result;
+		/**
+		 * The session the job runs under, which is marked as in use until the job finishes
+		 */
+		private AbstractJLISession session;
+		
+		private Job(String id, BaseRequest req) {
+			this.id = id;
+			this.req = req;
+			this.submitted = System.currentTimeMillis();
+		}
+		
+		private synchronized boolean start() {
+			if (state!=STATE_QUEUED)
+				return false;
+			state = STATE_RUNNING;
+			started = System.currentTimeMillis();
+			return true;
+		}
+		
+		private synchronized boolean finish(BaseResponse resp) {
+			if (state!=STATE_RUNNING)
+				return false;
+			result = resp;
+			if (resp.getStatus()!=null && resp.getStatus().getError())
+				state = STATE_FAILED;
+			else
+				state = STATE_DONE;
+			ended = System.currentTimeMillis();
+			notifyAll();
+			return true;
+		}
+		
+		/**
+		 * Fail a job which is queued or running, because it could not be run
+		 * @param resp The error response
+		 * @return Whether the job was failed; false if it had already finished
+		 */
+		private synchronized boolean fail(BaseResponse resp) {
+			if (state!=STATE_QUEUED && state!=STATE_RUNNING)
+				return false;
+			result = resp;
+			state = STATE_FAILED;
+			ended = System.currentTimeMillis();
+			notifyAll();
+			return true;
+		}
+		
+		private synchronized boolean cancel() {
+			if (state!=STATE_QUEUED)
+				return false;
+			state = STATE_CANCELLED;
+			ended = System.currentTimeMillis();
+			notifyAll();
+			return true;
+		}
+		
+		/**
+		 * Wait for the job to finish
+		 * @param timeout The maximum time to wait, in milliseconds
+		 * @return Whether the job is finished
+		 * @throws InterruptedException
+		 */
+		public synchronized boolean waitFor(long timeout) throws InterruptedException {
+			long until = System.currentTimeMillis() + timeout;
+			long remaining = timeout;
+			while (!isFinished() && remaining>0) {
+				wait(remaining);
+				remaining = until - System.currentTimeMillis();
+			}
+			return isFinished();
+		}
+		
+		/**
+		 * @return Whether the job has finished, failed or been cancelled
+		 */
+		public synchronized boolean isFinished() {
+			return state==STATE_DONE || state==STATE_FAILED || state==STATE_CANCELLED;
+		}
+
+		/**
+		 * @return The job ID
+		 */
+		public String getId() {
+			return id;
+		}
+		/**
+		 * @return The command being run by the job
+		 */
+		public String getCommand() {
+			return req.getCommand();
+		}
+		/**
+		 * @return The function being run by the job
+		 */
+		public String getFunction() {
+			return req.getFunction();
+		}
+		/**
+		 * @return The job's state; one of the JLJobResponseParams.STATE_* values
+		 */
+		public synchronized String getState() {
+			return state;
+		}
+		/**
+		 * @return How long the job waited before it started to run, in milliseconds
+		 */
+		public synchronized long getWaitMs() {
+			if (started>0)
+				return started - submitted;
+			return (ended>0 ? ended : System.currentTimeMillis()) - submitted;
+		}
+		/**
+		 * @return How long the job has been running, in milliseconds
+		 */
+		public synchronized long getRunMs() {
+			if (started==0)
+				return 0;
+			return (ended>0 ? ended : System.currentTimeMillis()) - started;
+		}
+		/**
+		 * @return The response from the job's request, or null if the job has not finished
+		 */
+		public synchronized BaseResponse getResult() {
+			return result;
+		}
+	}
+}
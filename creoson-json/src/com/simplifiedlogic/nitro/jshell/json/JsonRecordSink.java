@@ -0,0 +1,107 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jshell.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simplifiedlogic.nitro.jlink.data.RecordSink;
+import com.simplifiedlogic.nitro.jlink.data.RequestDeadline;
+import com.simplifiedlogic.nitro.jshell.json.handler.JLJsonCommandHandler;
+import com.simplifiedlogic.nitro.rpc.JLIException;
+
+/**
+ * Record sink which writes each result record to the client as one line of 
+ * newline-delimited JSON (NDJSON).
+ * 
+ * <p>Records are converted to their JSON form by the function's handler, and each line 
+ * is flushed as soon as it is written so that the client can process the results while
+ * the request is still running.
+ * 
+ * @author Adam Andrews
+ *
+ */
+public class JsonRecordSink extends RecordSink {
+
+	/**
+	 * MIME type for newline-delimited JSON
+	 */
+	public static final String CONTENT_TYPE = "application/x-ndjson";
+	
+	private JLJsonCommandHandler handler;
+	private String function;
+	private JsonGenerator gen;
+	
+	/**
+	 * @param mapper The object mapper used to write JSON
+	 * @param os The output stream for the response
+	 * @param handler The handler for the function being streamed
+	 * @param function The name of the function being streamed
+	 * @throws IOException
+	 */
+	public JsonRecordSink(ObjectMapper mapper, OutputStream os, JLJsonCommandHandler handler, String function) throws IOException {
+		this.handler = handler;
+		this.function = function;
+		this.gen = mapper.getFactory().createGenerator(os, JsonEncoding.UTF8);
+		// each value is terminated by a newline instead of separated by a space
+		gen.setRootValueSeparator(null);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.simplifiedlogic.nitro.jlink.data.RecordSink#add(java.lang.Object)
+	 */
+	public void add(Object record) throws JLIException {
+		Map<String, Object> rec = handler.convertRecord(function, record);
+		if (rec==null)
+			return;
+		try {
+			writeLine(rec);
+		}
+		catch (IOException e) {
+			// the client has gone away, so stop the request at its next check
+			RequestDeadline deadline = RequestDeadline.getCurrent();
+			if (deadline!=null)
+				deadline.cancel();
+			throw new JLIException("Error streaming results: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Write one object as a line of JSON and flush it to the client
+	 * @param obj The object to write
+	 * @throws IOException
+	 */
+	public void writeLine(Object obj) throws IOException {
+		gen.writeObject(obj);
+		gen.writeRaw('\n');
+		gen.flush();
+	}
+	
+	/**
+	 * Close the JSON generator and the underlying output stream
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		gen.close();
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jshell.json;
+
+import com.simplifiedlogic.nitro.rpc.JLIException;
+
+/**
+ * Thrown when a request is refused because the lane for its Creo connection, or 
+ * the job queue, is too busy to accept it.
+ *
+ * @author Adam Andrews
+ *
+ */
+public class LaneBusyException extends JLIException {
+
+	private static final long serialVersionUID = 1L;
+
+	private long retryAfterMs;
+
+	/**
+	 * @param message The error message
+	 * @param retryAfterMs Suggested time for the client to wait before retrying, in milliseconds
+	 */
+	public LaneBusyException(String message, long retryAfterMs) {
+		super(message);
+		this.retryAfterMs = retryAfterMs;
+	}
+
+	/**
+	 * @return Suggested time for the client to wait before retrying, in milliseconds
+	 */
+	public long getRetryAfterMs() {
+		return retryAfterMs;
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jshell.json;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.simplifiedlogic.nitro.jshell.json.request.JLBomRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.request.JLCreoRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.request.JLDimensionRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.request.JLDrawingRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.request.JLFamilyTableRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.request.JLFeatureRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.request.JLFileRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.request.JLGeometryRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.request.JLLayerRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.request.JLNoteRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.request.JLParameterRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.request.JLViewRequestParams;
+
+/**
+ * The functions which only read from Creo and have no side effects, so that
+ * identical calls may share results.
+ *
+ * @author Adam Andrews
+ *
+ */
+public class ReadOnlyFunctions {
+
+	/**
+	 * Read-only functions, as "command.function"
+	 */
+	private static final Set<String> functions = new HashSet<String>();
+
+	static {
+		add(JLBomRequestParams.COMMAND, JLBomRequestParams.FUNC_GET_PATHS);
+
+		add(JLCreoRequestParams.COMMAND, JLCreoRequestParams.FUNC_PWD);
+		add(JLCreoRequestParams.COMMAND, JLCreoRequestParams.FUNC_LIST_DIRS);
+		add(JLCreoRequestParams.COMMAND, JLCreoRequestParams.FUNC_LIST_FILES);
+		add(JLCreoRequestParams.COMMAND, JLCreoRequestParams.FUNC_GET_CONFIG);
+		add(JLCreoRequestParams.COMMAND, JLCreoRequestParams.FUNC_GET_STD_COLOR);
+
+		add(JLDimensionRequestParams.COMMAND, JLDimensionRequestParams.FUNC_LIST);
+		add(JLDimensionRequestParams.COMMAND, JLDimensionRequestParams.FUNC_LIST_DETAIL);
+
+		add(JLDrawingRequestParams.COMMAND, JLDrawingRequestParams.FUNC_GET_CUR_MODEL);
+		add(JLDrawingRequestParams.COMMAND, JLDrawingRequestParams.FUNC_GET_CUR_SHEET);
+		add(JLDrawingRequestParams.COMMAND, JLDrawingRequestParams.FUNC_GET_NUM_SHEETS);
+		add(JLDrawingRequestParams.COMMAND, JLDrawingRequestParams.FUNC_GET_SHEET_SCALE);
+		add(JLDrawingRequestParams.COMMAND, JLDrawingRequestParams.FUNC_GET_SHEET_SIZE);
+		add(JLDrawingRequestParams.COMMAND, JLDrawingRequestParams.FUNC_GET_SHEET_FORMAT);
+		add(JLDrawingRequestParams.COMMAND, JLDrawingRequestParams.FUNC_GET_VIEW_LOC);
+		add(JLDrawingRequestParams.COMMAND, JLDrawingRequestParams.FUNC_GET_VIEW_SCALE);
+		add(JLDrawingRequestParams.COMMAND, JLDrawingRequestParams.FUNC_GET_VIEW_SHEET);
+		add(JLDrawingRequestParams.COMMAND, JLDrawingRequestParams.FUNC_LIST_MODELS);
+		add(JLDrawingRequestParams.COMMAND, JLDrawingRequestParams.FUNC_LIST_VIEWS);
+		add(JLDrawingRequestParams.COMMAND, JLDrawingRequestParams.FUNC_LIST_VIEW_DETAILS);
+		add(JLDrawingRequestParams.COMMAND, JLDrawingRequestParams.FUNC_LIST_SYMBOLS);
+		add(JLDrawingRequestParams.COMMAND, JLDrawingRequestParams.FUNC_VIEW_BOUND_BOX);
+		add(JLDrawingRequestParams.COMMAND, JLDrawingRequestParams.FUNC_IS_SYMBOL_DEF_LOADED);
+
+		add(JLFamilyTableRequestParams.COMMAND, JLFamilyTableRequestParams.FUNC_EXISTS);
+		add(JLFamilyTableRequestParams.COMMAND, JLFamilyTableRequestParams.FUNC_LIST);
+		add(JLFamilyTableRequestParams.COMMAND, JLFamilyTableRequestParams.FUNC_LIST_TREE);
+		add(JLFamilyTableRequestParams.COMMAND, JLFamilyTableRequestParams.FUNC_GET_HEADER);
+		add(JLFamilyTableRequestParams.COMMAND, JLFamilyTableRequestParams.FUNC_GET_ROW);
+		add(JLFamilyTableRequestParams.COMMAND, JLFamilyTableRequestParams.FUNC_GET_CELL);
+		add(JLFamilyTableRequestParams.COMMAND, JLFamilyTableRequestParams.FUNC_GET_PARENTS);
+
+		add(JLFeatureRequestParams.COMMAND, JLFeatureRequestParams.FUNC_LIST);
+		add(JLFeatureRequestParams.COMMAND, JLFeatureRequestParams.FUNC_PARAM_EXISTS);
+		add(JLFeatureRequestParams.COMMAND, JLFeatureRequestParams.FUNC_LIST_PARAMS);
+		add(JLFeatureRequestParams.COMMAND, JLFeatureRequestParams.FUNC_LIST_PATTERN_FEATURES);
+		add(JLFeatureRequestParams.COMMAND, JLFeatureRequestParams.FUNC_LIST_GROUP_FEATURES);
+
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_GET_ACTIVE);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_LIST);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_EXISTS);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_GET_FILEINFO);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_RELATIONS_GET);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_POST_REGEN_RELATIONS_GET);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_IS_ACTIVE);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_HAS_INSTANCES);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_LIST_INSTANCES);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_MASSPROPS);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_GET_LENGTH_UNITS);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_GET_MASS_UNITS);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_GET_UNIT_SYSTEM);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_GET_TRANSFORM);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_LIST_SIMP_REPS);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_GET_CUR_MATL);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_GET_CUR_MATL_WILDCARD);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_LIST_MATERIALS);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_LIST_MATERIALS_WILDCARD);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_GET_ACCURACY);
+
+		add(JLGeometryRequestParams.COMMAND, JLGeometryRequestParams.FUNC_BOUND_BOX);
+		add(JLGeometryRequestParams.COMMAND, JLGeometryRequestParams.FUNC_GET_SURFACES);
+		add(JLGeometryRequestParams.COMMAND, JLGeometryRequestParams.FUNC_GET_EDGES);
+
+		add(JLLayerRequestParams.COMMAND, JLLayerRequestParams.FUNC_LIST);
+		add(JLLayerRequestParams.COMMAND, JLLayerRequestParams.FUNC_EXISTS);
+
+		add(JLNoteRequestParams.COMMAND, JLNoteRequestParams.FUNC_GET);
+		add(JLNoteRequestParams.COMMAND, JLNoteRequestParams.FUNC_LIST);
+		add(JLNoteRequestParams.COMMAND, JLNoteRequestParams.FUNC_EXISTS);
+
+		add(JLParameterRequestParams.COMMAND, JLParameterRequestParams.FUNC_LIST);
+		add(JLParameterRequestParams.COMMAND, JLParameterRequestParams.FUNC_EXISTS);
+
+		add(JLViewRequestParams.COMMAND, JLViewRequestParams.FUNC_LIST);
+		add(JLViewRequestParams.COMMAND, JLViewRequestParams.FUNC_LIST_EXPLODED);
+	}
+
+	private static void add(String command, String function) {
+		functions.add(command + "." + function);
+	}
+
+	/**
+	 * Check whether a function only reads from Creo
+	 * @param command The command name
+	 * @param function The function name
+	 * @return True if the function has no side effects
+	 */
+	public static boolean isReadOnly(String command, String function) {
+		if (command==null || function==null)
+			return false;
+		return functions.contains(command + "." + function);
+	}
+}
@@ -0,0 +1,228 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jshell.json;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.simplifiedlogic.nitro.jshell.json.request.BaseRequest;
+
+/**
+ * Lets identical read-only requests which arrive at the same time share a single run.
+ *
+ * <p>The first request for a given Creo connection, session, command, function and data 
+ * becomes the leader and runs normally.  Requests which arrive while it is running wait for it and
+ * are sent a copy of its encoded response, instead of each being queued on the Creo lane.
+ * Only the functions listed in ReadOnlyFunctions are shared.
+ *
+ * <p>Sharing can be turned off with the system property sli.coalesce=false.
+ *
+ * @author Adam Andrews
+ *
+ */
+public class RequestCoalescer {
+
+	/**
+	 * System property which turns request sharing on or off
+	 */
+	public static final String ENABLED_PROP = "sli.coalesce";
+
+	private static RequestCoalescer instance = new RequestCoalescer();
+
+	private boolean enabled = !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROP));
+
+	/**
+	 * Requests which are currently running, keyed by request key
+	 */
+	private ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<String, Flight>();
+
+	/**
+	 * Writes request data with its keys sorted, so that equal data gives equal keys
+	 */
+	private ObjectWriter keyWriter = new ObjectMapper().writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Get the shared request coalescer
+	 * @return The request coalescer
+	 */
+	public static RequestCoalescer getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Get the key which identifies identical requests
+	 * @param connKey The Creo connection ID for the request
+	 * @param req The request
+	 * @param format The format of the response
+	 * @return The key, or null if the request may not be shared
+	 */
+	public String getKey(String connKey, BaseRequest req, WireFormat format) {
+		if (!enabled || connKey==null || req.isStream() || req.isEcho())
+			return null;
+		if (!ReadOnlyFunctions.isReadOnly(req.getCommand(), req.getFunction()))
+			return null;
+		try {
+			String data = req.getData()==null ? "" : keyWriter.writeValueAsString(req.getData());
+			return connKey + "|" + req.getSessionId() + "|" + format.getName() + "|" + req.getCommand() + "." + req.getFunction() + "|" + data;
+		}
+		catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Join the run for a request.  If no identical request is running, the caller becomes
+	 * its leader and must call complete() when it is done.
+	 * @param key The request key from getKey()
+	 * @return The run for the request
+	 */
+	public Flight join(String key) {
+		Flight flight = flights.get(key);
+		if (flight==null) {
+			Flight newFlight = new Flight(key);
+			flight = flights.putIfAbsent(key, newFlight);
+			if (flight==null) {
+				misses.incrementAndGet();
+				newFlight.leader = true;
+				return newFlight;
+			}
+		}
+		return new Flight(flight);
+	}
+
+	/**
+	 * Record how a request which waited on a leader ended
+	 * @param shared Whether it was sent the leader's successful response; if not, it is 
+	 * counted as having run on its own
+	 */
+	public void recordFollower(boolean shared) {
+		if (shared)
+			hits.incrementAndGet();
+		else
+			misses.incrementAndGet();
+	}
+
+	/**
+	 * Finish a run and hand its response to the requests waiting on it
+	 * @param flight The run, which must be the leader
+	 * @param response The encoded response, or null if the leader failed; the waiting
+	 * requests then run on their own
+	 * @param error Whether the response has an error status
+	 */
+	public void complete(Flight flight, byte[] response, boolean error) {
+		flights.remove(flight.key, flight);
+		flight.response = response;
+		flight.error = error;
+		flight.done.countDown();
+	}
+
+	/**
+	 * @return The number of requests which were sent another request's successful response
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return The number of shareable requests which ran on their own
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Write the counters in the Prometheus text exposition format
+	 * @return The formatted counters
+	 */
+	public String format() {
+		StringBuilder buf = new StringBuilder();
+		buf.append("# HELP creoson_coalesce_hits_total Read requests which were sent the successful response of an identical running request.\n");
+		buf.append("# TYPE creoson_coalesce_hits_total counter\n");
+		buf.append("creoson_coalesce_hits_total ").append(hits.get()).append('\n');
+		buf.append("# HELP creoson_coalesce_misses_total Shareable read requests which ran on their own.\n");
+		buf.append("# TYPE creoson_coalesce_misses_total counter\n");
+		buf.append("creoson_coalesce_misses_total ").append(misses.get()).append('\n');
+		return buf.toString();
+	}
+
+	/**
+	 * A run of a request which identical requests may share
+	 */
+	public static class Flight {
+		private String key;
+		private boolean leader = false;
+		private CountDownLatch done;
+		private volatile byte[] response;
+		private volatile boolean error;
+		private Flight shared;
+
+		private Flight(String key) {
+			this.key = key;
+			this.done = new CountDownLatch(1);
+			this.shared = this;
+		}
+
+		private Flight(Flight shared) {
+			this.key = shared.key;
+			this.shared = shared;
+		}
+
+		/**
+		 * @return Whether this request runs the shared request
+		 */
+		public boolean isLeader() {
+			return leader;
+		}
+
+		/**
+		 * Wait for the leader to finish
+		 * @param timeoutMs Longest time to wait in milliseconds, or 0 for no limit
+		 * @return False if the time limit passed before the leader finished
+		 * @throws InterruptedException
+		 */
+		public boolean await(long timeoutMs) throws InterruptedException {
+			if (timeoutMs>0)
+				return shared.done.await(timeoutMs, TimeUnit.MILLISECONDS);
+			shared.done.await();
+			return true;
+		}
+
+		/**
+		 * @return The leader's encoded response, or null if the leader failed
+		 */
+		public byte[] getResponse() {
+			return shared.response;
+		}
+
+		/**
+		 * @return Whether the leader's response has an error status
+		 */
+		public boolean isError() {
+			return shared.error;
+		}
+	}
+}
@@ -0,0 +1,283 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jshell.json;
+
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.simplifiedlogic.nitro.jshell.json.request.BaseRequest;
+import com.simplifiedlogic.nitro.jshell.json.request.JLBomRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.request.JLDimensionRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.request.JLFamilyTableRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.request.JLFeatureRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.request.JLFileRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.request.JLGeometryRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.request.JLParameterRequestParams;
+
+/**
+ * A bounded cache of the results of read-only model queries, such as mass properties,
+ * bounding boxes, parameter lists and BOM paths.
+ *
+ * <p>Each Creo connection has a version number which is increased before and after any
+ * function which may change Creo's state, and a cached result is only used while the
+ * version it was read at is still current.  Any change therefore invalidates every cached
+ * result for the connection; this is deliberately coarse, because a change to a part also
+ * changes the assemblies which contain it, and finding those would cost more Creo calls
+ * than the cache saves.
+ *
+ * <p>Changes made interactively in Creo are not seen by CREOSON, so cached results also
+ * expire after a fixed time.  Until then a client may be given results from before such
+ * a change, so the cache is off unless sli.cache.size is set.
+ *
+ * <p>The cache is controlled by these system properties:
+ * <ul>
+ * <li>sli.cache.size - Most results to keep; 0 turns the cache off (default 0)</li>
+ * <li>sli.cache.ttl - Milliseconds a result may be used for (default 10000)</li>
+ * </ul>
+ *
+ * @author Adam Andrews
+ *
+ */
+public class ResponseCache {
+
+	public static final String SIZE_PROP = "sli.cache.size";
+	public static final String TTL_PROP = "sli.cache.ttl";
+
+	private static final int DEFAULT_SIZE = 0;
+	private static final long DEFAULT_TTL = 10000;
+
+	/**
+	 * Functions whose results are cached, as "command.function"
+	 */
+	private static final Set<String> functions = new HashSet<String>();
+
+	static {
+		add(JLBomRequestParams.COMMAND, JLBomRequestParams.FUNC_GET_PATHS);
+		add(JLDimensionRequestParams.COMMAND, JLDimensionRequestParams.FUNC_LIST);
+		add(JLDimensionRequestParams.COMMAND, JLDimensionRequestParams.FUNC_LIST_DETAIL);
+		add(JLFamilyTableRequestParams.COMMAND, JLFamilyTableRequestParams.FUNC_LIST);
+		add(JLFamilyTableRequestParams.COMMAND, JLFamilyTableRequestParams.FUNC_LIST_TREE);
+		add(JLFeatureRequestParams.COMMAND, JLFeatureRequestParams.FUNC_LIST);
+		add(JLFeatureRequestParams.COMMAND, JLFeatureRequestParams.FUNC_LIST_PARAMS);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_MASSPROPS);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_GET_TRANSFORM);
+		add(JLFileRequestParams.COMMAND, JLFileRequestParams.FUNC_LIST_SIMP_REPS);
+		add(JLGeometryRequestParams.COMMAND, JLGeometryRequestParams.FUNC_BOUND_BOX);
+		add(JLParameterRequestParams.COMMAND, JLParameterRequestParams.FUNC_LIST);
+	}
+
+	private static void add(String command, String function) {
+		functions.add(command + "." + function);
+	}
+
+	private static ResponseCache instance = new ResponseCache();
+
+	private int maxSize;
+	private long ttl;
+
+	/**
+	 * Cached results, least recently used first
+	 */
+	private LinkedHashMap<String, CachedResult> entries;
+
+	/**
+	 * Current version for each Creo connection
+	 */
+	private ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<String, AtomicLong>();
+
+	/**
+	 * Writes request data with its keys sorted, so that equal data gives equal keys
+	 */
+	private ObjectWriter keyWriter = new ObjectMapper().writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+	private AtomicLong evictions = new AtomicLong();
+
+	private ResponseCache() {
+		maxSize = Integer.getInteger(SIZE_PROP, DEFAULT_SIZE).intValue();
+		ttl = Long.getLong(TTL_PROP, DEFAULT_TTL).longValue();
+		entries = new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+				if (size()>maxSize) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Get the shared response cache
+	 * @return The response cache
+	 */
+	public static ResponseCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Get the cache key for a request
+	 * @param connKey The Creo connection ID for the request
+	 * @param req The request
+	 * @return The key, or null if the request's results are not cached
+	 */
+	public String getKey(String connKey, BaseRequest req) {
+		if (maxSize<=0 || connKey==null || req.isStream())
+			return null;
+		if (!functions.contains(req.getCommand() + "." + req.getFunction()))
+			return null;
+		try {
+			String data = req.getData()==null ? "" : keyWriter.writeValueAsString(req.getData());
+			return connKey + "|" + req.getCommand() + "." + req.getFunction() + "|" + data;
+		}
+		catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Get the current version for a Creo connection.  Read this before running a request
+	 * and pass it to put(), so that a change made while the request runs is not missed.
+	 * @param connKey The Creo connection ID
+	 * @return The connection's version
+	 */
+	public long getVersion(String connKey) {
+		return getCounter(connKey).get();
+	}
+
+	/**
+	 * Record that a function may have changed Creo's state, invalidating the cached results
+	 * for the connection
+	 * @param connKey The Creo connection ID
+	 */
+	public void invalidate(String connKey) {
+		if (connKey!=null)
+			getCounter(connKey).incrementAndGet();
+	}
+
+	/**
+	 * Get a cached result
+	 * @param connKey The Creo connection ID
+	 * @param key The request's key from getKey()
+	 * @return The cached result, or null if there is no current result
+	 */
+	public Hashtable<String, Object> get(String connKey, String key) {
+		long version = getVersion(connKey);
+		CachedResult entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+			if (entry!=null && (entry.version!=version || System.currentTimeMillis()>entry.expires)) {
+				entries.remove(key);
+				entry = null;
+			}
+		}
+		if (entry==null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return copy(entry.output);
+	}
+
+	/**
+	 * Store a result in the cache
+	 * @param connKey The Creo connection ID
+	 * @param key The request's key from getKey()
+	 * @param version The connection's version from before the request was run
+	 * @param output The request's result
+	 */
+	public void put(String connKey, String key, long version, Hashtable<String, Object> output) {
+		// a change was made while the request ran, so its result may already be stale
+		if (output==null || getVersion(connKey)!=version)
+			return;
+		CachedResult entry = new CachedResult();
+		entry.version = version;
+		entry.expires = System.currentTimeMillis() + ttl;
+		entry.output = copy(output);
+		synchronized (entries) {
+			entries.put(key, entry);
+		}
+	}
+
+	/**
+	 * Write the counters in the Prometheus text exposition format
+	 * @return The formatted counters
+	 */
+	public String format() {
+		int size;
+		synchronized (entries) {
+			size = entries.size();
+		}
+		StringBuilder buf = new StringBuilder();
+		buf.append("# HELP creoson_cache_hits_total Read requests answered from the response cache.\n");
+		buf.append("# TYPE creoson_cache_hits_total counter\n");
+		buf.append("creoson_cache_hits_total ").append(hits.get()).append('\n');
+		buf.append("# HELP creoson_cache_misses_total Cacheable read requests which had to call Creo.\n");
+		buf.append("# TYPE creoson_cache_misses_total counter\n");
+		buf.append("creoson_cache_misses_total ").append(misses.get()).append('\n');
+		buf.append("# HELP creoson_cache_evictions_total Results dropped to keep the cache within its size.\n");
+		buf.append("# TYPE creoson_cache_evictions_total counter\n");
+		buf.append("creoson_cache_evictions_total ").append(evictions.get()).append('\n');
+		buf.append("# HELP creoson_cache_entries Results currently in the response cache.\n");
+		buf.append("# TYPE creoson_cache_entries gauge\n");
+		buf.append("creoson_cache_entries ").append(size).append('\n');
+		return buf.toString();
+	}
+
+	private AtomicLong getCounter(String connKey) {
+		AtomicLong counter = versions.get(connKey);
+		if (counter==null) {
+			AtomicLong newCounter = new AtomicLong();
+			counter = versions.putIfAbsent(connKey, newCounter);
+			if (counter==null)
+				counter = newCounter;
+		}
+		return counter;
+	}
+
+	/**
+	 * Copy the top level of a result, since callers may add or remove values in it.
+	 * The values themselves are only read.
+	 * @param output The result
+	 * @return A copy of the result
+	 */
+	private static Hashtable<String, Object> copy(Hashtable<String, Object> output) {
+		return new Hashtable<String, Object>(output);
+	}
+
+	/**
+	 * A cached result
+	 */
+	private static class CachedResult {
+		long version;
+		long expires;
+		Hashtable<String, Object> output;
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jshell.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.simplifiedlogic.nitro.jshell.json.request.BaseRequest;
+import com.simplifiedlogic.nitro.jshell.json.response.BaseResponse;
+
+/**
+ * An encoding for CREOSON requests and responses.  Besides JSON, the binary Jackson
+ * formats CBOR and Smile may be used; they carry the same request and response objects,
+ * but numbers (such as geometry and transform values) are written in binary instead of
+ * as text.
+ *
+ * <p>The binary formats are only available if their Jackson dataformat jar
+ * (jackson-dataformat-cbor or jackson-dataformat-smile) is on the class path.
+ *
+ * @author Adam Andrews
+ *
+ */
+public class WireFormat {
+
+	/**
+	 * Standard JSON text
+	 */
+	public static final WireFormat JSON = new WireFormat("json", JShellJsonHandler.CONTENT_TYPE, null);
+
+	/**
+	 * Concise Binary Object Representation (RFC 8949)
+	 */
+	public static final WireFormat CBOR = new WireFormat("cbor", "application/cbor",
+			"com.fasterxml.jackson.dataformat.cbor.CBORFactory");
+
+	/**
+	 * Jackson's binary JSON format
+	 */
+	public static final WireFormat SMILE = new WireFormat("smile", "application/x-jackson-smile",
+			"com.fasterxml.jackson.dataformat.smile.SmileFactory");
+
+	private static final WireFormat[] formats = new WireFormat[] {JSON, CBOR, SMILE};
+
+	private String name;
+	private String contentType;
+	private String factoryClass;
+	private boolean loaded = false;
+	private ObjectMapper mapper;
+	private ObjectReader requestReader;
+	private ObjectWriter responseWriter;
+	private ObjectReader responseReader;
+
+	private WireFormat(String name, String contentType, String factoryClass) {
+		this.name = name;
+		this.contentType = contentType;
+		this.factoryClass = factoryClass;
+	}
+
+	/**
+	 * Find the format for a request's Content-Type header.  Any parameters on the
+	 * header (such as the charset) are ignored.  Only the binary formats are picked out 
+	 * by their media types; any other content type is read as JSON, as it always has been.
+	 * @param header The Content-Type header value; if null, JSON is assumed
+	 * @return The format
+	 */
+	public static WireFormat forContentType(String header) {
+		if (header==null)
+			return JSON;
+		String type = mediaType(header);
+		for (WireFormat format : formats) {
+			if (format.isBinary() && format.contentType.equals(type))
+				return format;
+		}
+		return JSON;
+	}
+
+	/**
+	 * Choose the format for a response from a request's Accept header.  The available
+	 * format with the highest quality value is used.  Wildcards match the request's own format.
+	 * @param header The Accept header value; if null, the request's format is used
+	 * @param requestFormat The format of the request
+	 * @return The format for the response
+	 */
+	public static WireFormat forAccept(String header, WireFormat requestFormat) {
+		if (header==null || header.trim().length()==0)
+			return requestFormat;
+		WireFormat best = null;
+		double bestQ = 0;
+		String[] items = header.split(",");
+		for (String item : items) {
+			String type = mediaType(item);
+			double q = quality(item);
+			WireFormat format = null;
+			if (type.equals("*/*") || type.equals("application/*"))
+				format = requestFormat;
+			else {
+				for (WireFormat f : formats) {
+					if (f.contentType.equals(type))
+						format = f;
+				}
+			}
+			if (format!=null && format.isAvailable() && q>bestQ) {
+				best = format;
+				bestQ = q;
+			}
+		}
+		return best!=null ? best : JSON;
+	}
+
+	/**
+	 * @return The short name of the format
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The MIME type of the format
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * @return Whether the format is binary rather than text
+	 */
+	public boolean isBinary() {
+		return factoryClass!=null;
+	}
+
+	/**
+	 * @return Whether the format can be used; binary formats need their Jackson dataformat jar
+	 */
+	public boolean isAvailable() {
+		load();
+		return mapper!=null;
+	}
+
+	/**
+	 * @return The reader for standard requests in this format, or null if the format is not available
+	 */
+	public ObjectReader getRequestReader() {
+		load();
+		return requestReader;
+	}
+
+	/**
+	 * @return The writer for standard responses in this format, or null if the format is not available
+	 */
+	public ObjectWriter getResponseWriter() {
+		load();
+		return responseWriter;
+	}
+
+	/**
+	 * @return The reader for standard responses in this format, or null if the format is not available
+	 */
+	public ObjectReader getResponseReader() {
+		load();
+		return responseReader;
+	}
+
+	/**
+	 * Create the object mapper for the format the first time it is needed.  The binary
+	 * factories are loaded by name so that their jars are not needed to build or run
+	 * the server.
+	 */
+	private synchronized void load() {
+		if (loaded)
+			return;
+		loaded = true;
+		try {
+			if (factoryClass==null)
+				mapper = new ObjectMapper();
+			else {
+				JsonFactory factory = (JsonFactory)Class.forName(factoryClass).getDeclaredConstructor().newInstance();
+				mapper = new ObjectMapper(factory);
+			}
+			requestReader = mapper.readerFor(BaseRequest.class);
+			responseWriter = mapper.writerFor(BaseResponse.class);
+			responseReader = mapper.readerFor(BaseResponse.class);
+		}
+		catch (ClassNotFoundException e) {
+			mapper = null;
+		}
+		catch (Exception e) {
+			System.err.println("Unable to load the " + name + " format: " + e.getMessage());
+			mapper = null;
+		}
+		catch (LinkageError e) {
+			System.err.println("Unable to load the " + name + " format: " + e.getMessage());
+			mapper = null;
+		}
+	}
+
+	/**
+	 * Get the media type from a header item, without its parameters
+	 * @param item The header item
+	 * @return The lower-case media type
+	 */
+	private static String mediaType(String item) {
+		int pos = item.indexOf(';');
+		if (pos>=0)
+			item = item.substring(0, pos);
+		return item.trim().toLowerCase();
+	}
+
+	/**
+	 * Get the quality value from an Accept header item
+	 * @param item The header item
+	 * @return The quality value, or 1 if there is none
+	 */
+	private static double quality(String item) {
+		String[] parts = item.split(";");
+		for (int i=1; i<parts.length; i++) {
+			String part = parts[i].trim();
+			if (part.startsWith("q=")) {
+				try {
+					return Double.parseDouble(part.substring(2).trim());
+				}
+				catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		return 1;
+	}
+}
@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.Vector;
 
 import com.simplifiedlogic.nitro.jlink.data.BomChild;
+import com.simplifiedlogic.nitro.jlink.data.BomTable;
 import com.simplifiedlogic.nitro.jlink.data.GetPathsOutput;
 import com.simplifiedlogic.nitro.jlink.data.JLTransform;
 import com.simplifiedlogic.nitro.jlink.intf.IJLBom;
@@ -69,8 +70,9 @@ public class JLJsonBomHandler extends JLJsonCommandHandler implements JLBomReque
         boolean incTransform = checkFlagParameter(input, PARAM_TRANSFORMS, false, false);
         boolean excludeInactive = checkFlagParameter(input, PARAM_EXCLUDE_INACTIVE, false, false);
         boolean incSimpRep = checkFlagParameter(input, PARAM_SIMPREP, false, false);
+        boolean compact = checkFlagParameter(input, PARAM_COMPACT, false, false);
 
-        GetPathsOutput result = bomHandler.getPaths(modelname, skeleton, paths, toplevel, incTransform, true, excludeInactive, incSimpRep, sessionId);
+        GetPathsOutput result = bomHandler.getPaths(modelname, skeleton, paths, toplevel, incTransform, true, excludeInactive, incSimpRep, compact, sessionId);
 		
 		Hashtable<String, Object> out = new Hashtable<String, Object>();
         if (result!=null) {
@@ -85,10 +87,36 @@ public class JLJsonBomHandler extends JLJsonCommandHandler implements JLBomReque
 				if (child!=null)
 					out.put(OUTPUT_CHILDREN, child);
 			}
+			if (result.getTable()!=null)
+				out.put(OUTPUT_TABLE, getBomTable(result.getTable()));
         }
 		return out;
 	}
 	
+	private Map<String, Object> getBomTable(BomTable table) {
+		// the columns are written out as they are, without a map for each component
+		Map<String, Object> rec = new Hashtable<String, Object>();
+		rec.put(OUTPUT_NAMES, table.getNames());
+		rec.put(OUTPUT_FILES, table.getFiles());
+		rec.put(OUTPUT_PARENTS, table.getParents());
+		rec.put(OUTPUT_SEQS, table.getSeqs());
+		if (table.getIds()!=null)
+			rec.put(OUTPUT_IDS, table.getIds());
+		if (table.getTransforms()!=null)
+			rec.put(OUTPUT_TRANSFORMS, table.getTransforms());
+		return rec;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.simplifiedlogic.nitro.jshell.json.handler.JLJsonCommandHandler#convertRecord(java.lang.String, java.lang.Object)
+	 */
+	public Map<String, Object> convertRecord(String function, Object record) {
+		// streamed BOM components are sent without children; their seq_path gives their position in the tree
+		if (FUNC_GET_PATHS.equals(function) && record instanceof BomChild)
+			return getBomChild((BomChild)record);
+		return null;
+	}
+
 	private Map<String, Object> getBomChild(BomChild node) {
 		if (node==null)
 			return null;
@@ -51,6 +51,32 @@ public abstract class JLJsonCommandHandler {
 	 */
 	public abstract Hashtable<String, Object> handleFunction(String sessionId, String function, Hashtable<String, Object> input) throws JLIException;
 
+	/**
+	 * Convert a single streamed result record to its JSON form.
+	 * 
+	 * <p>Functions which support streaming send their result records one at a time while the 
+	 * function is running; this method converts one of those records into the same form that 
+	 * it would have in the function's regular output list.
+	 * 
+	 * @param function The name of the function which produced the record.
+	 * @param record The result record.
+	 * @return The record converted for JSON output, or null if the function does not support streaming.
+	 */
+	public Map<String, Object> convertRecord(String function, Object record) {
+		return null;
+	}
+
+	/**
+	 * Whether the functions in this family may make calls to Creo.  Requests for these 
+	 * functions are run on the lane for their Creo connection; other requests are run 
+	 * directly on the caller's thread.
+	 * 
+	 * @return True if the functions may call Creo.
+	 */
+	public boolean requiresCreo() {
+		return true;
+	}
+
     /**
      * Get a parameter value from input data.
      * 
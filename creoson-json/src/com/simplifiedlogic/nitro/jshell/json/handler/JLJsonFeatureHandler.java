@@ -113,27 +113,43 @@ public class JLJsonFeatureHandler extends JLJsonCommandHandler implements JLFeat
         if (features!=null) {
 			Vector<Map<String, Object>> outFeats = new Vector<Map<String, Object>>();
 			out.put(OUTPUT_FEATLIST, outFeats);
-			Map<String, Object> outFeat = null;
 			for (FeatureData feat : features) {
-				outFeat = new Hashtable<String, Object>();
-				if (feat.getName()!=null)
-					outFeat.put(PARAM_NAME, feat.getName());
-				if (feat.getStatus()!=null)
-					outFeat.put(PARAM_STATUS, feat.getStatus());
-				if (feat.getFeatureType()!=null)
-					outFeat.put(PARAM_TYPE, feat.getFeatureType());
-				if (feat.getFeatureId()>0)
-					outFeat.put(OUTPUT_ID, Integer.valueOf(feat.getFeatureId()));
-				if (feat.getFeatureNumber()>0)
-					outFeat.put(OUTPUT_FEATNO, Integer.valueOf(feat.getFeatureNumber()));
-				
-				outFeats.add(outFeat);
+				outFeats.add(getFeatureMap(feat));
 			}
 			
         }
 		return out;
 	}
 
+	/* (non-Javadoc)
+	 * @see com.simplifiedlogic.nitro.jshell.json.handler.JLJsonCommandHandler#convertRecord(java.lang.String, java.lang.Object)
+	 */
+	public Map<String, Object> convertRecord(String function, Object record) {
+		if (FUNC_LIST.equals(function) && record instanceof FeatureData)
+			return getFeatureMap((FeatureData)record);
+		return null;
+	}
+
+	/**
+	 * Convert a feature's data to its JSON output form
+	 * @param feat The feature data
+	 * @return The feature data as a map
+	 */
+	private Map<String, Object> getFeatureMap(FeatureData feat) {
+		Map<String, Object> outFeat = new Hashtable<String, Object>();
+		if (feat.getName()!=null)
+			outFeat.put(PARAM_NAME, feat.getName());
+		if (feat.getStatus()!=null)
+			outFeat.put(PARAM_STATUS, feat.getStatus());
+		if (feat.getFeatureType()!=null)
+			outFeat.put(PARAM_TYPE, feat.getFeatureType());
+		if (feat.getFeatureId()>0)
+			outFeat.put(OUTPUT_ID, Integer.valueOf(feat.getFeatureId()));
+		if (feat.getFeatureNumber()>0)
+			outFeat.put(OUTPUT_FEATNO, Integer.valueOf(feat.getFeatureNumber()));
+		return outFeat;
+	}
+
 	private Hashtable<String, Object> actionListPatternFeatures(String sessionId, Hashtable<String, Object> input) throws JLIException {
 		
         String modelname = checkStringParameter(input, PARAM_MODEL, false);
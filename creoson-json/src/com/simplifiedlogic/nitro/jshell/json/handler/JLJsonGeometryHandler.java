@@ -90,25 +90,41 @@ public class JLJsonGeometryHandler extends JLJsonCommandHandler implements JLGeo
         if (surfaces!=null) {
 			Vector<Map<String, Object>> outSurfaces = new Vector<Map<String, Object>>();
 			out.put(OUTPUT_SURFLIST, outSurfaces);
-			Map<String, Object> outSurf = null;
 			for (SurfaceData surf : surfaces) {
-				outSurf = new Hashtable<String, Object>();
-				if (surf.getSurfaceId()>0)
-					outSurf.put(OUTPUT_SURFACE_ID, surf.getSurfaceId());
-				if (surf.getFeatureId()>0)
-					outSurf.put(OUTPUT_FEATURE_ID, surf.getFeatureId());
-				outSurf.put(OUTPUT_AREA, surf.getArea());
-				if (surf.getMinExtent()!=null)
-					outSurf.put(OUTPUT_MIN_EXTENT, writePoint(surf.getMinExtent()));
-				if (surf.getMaxExtent()!=null)
-					outSurf.put(OUTPUT_MAX_EXTENT, writePoint(surf.getMaxExtent()));
-				
-				outSurfaces.add(outSurf);
+				outSurfaces.add(getSurfaceMap(surf));
 			}
         }
     	return out;
 	}
 
+	/* (non-Javadoc)
+	 * @see com.simplifiedlogic.nitro.jshell.json.handler.JLJsonCommandHandler#convertRecord(java.lang.String, java.lang.Object)
+	 */
+	public Map<String, Object> convertRecord(String function, Object record) {
+		if (FUNC_GET_SURFACES.equals(function) && record instanceof SurfaceData)
+			return getSurfaceMap((SurfaceData)record);
+		return null;
+	}
+
+	/**
+	 * Convert a surface's data to its JSON output form
+	 * @param surf The surface data
+	 * @return The surface data as a map
+	 */
+	private Map<String, Object> getSurfaceMap(SurfaceData surf) {
+		Map<String, Object> outSurf = new Hashtable<String, Object>();
+		if (surf.getSurfaceId()>0)
+			outSurf.put(OUTPUT_SURFACE_ID, surf.getSurfaceId());
+		if (surf.getFeatureId()>0)
+			outSurf.put(OUTPUT_FEATURE_ID, surf.getFeatureId());
+		outSurf.put(OUTPUT_AREA, surf.getArea());
+		if (surf.getMinExtent()!=null)
+			outSurf.put(OUTPUT_MIN_EXTENT, writePoint(surf.getMinExtent()));
+		if (surf.getMaxExtent()!=null)
+			outSurf.put(OUTPUT_MAX_EXTENT, writePoint(surf.getMaxExtent()));
+		return outSurf;
+	}
+
 	private Hashtable<String, Object> actionGetEdges(String sessionId, Hashtable<String, Object> input) throws JLIException {
         String filename = checkStringParameter(input, PARAM_MODEL, false);
         List<Integer> idList = getIntArray(PARAM_SURFACE_IDS, checkParameter(input, PARAM_SURFACE_IDS, false));
@@ -0,0 +1,164 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jshell.json.handler;
+
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Vector;
+
+import com.simplifiedlogic.nitro.jshell.json.JobManager;
+import com.simplifiedlogic.nitro.jshell.json.request.BaseRequest;
+import com.simplifiedlogic.nitro.jshell.json.request.JLJobRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.response.JLJobResponseParams;
+import com.simplifiedlogic.nitro.rpc.JLIException;
+
+/**
+ * Handle JSON requests for "job" functions
+ * 
+ * @author Adam Andrews
+ *
+ */
+public class JLJsonJobHandler extends JLJsonCommandHandler implements JLJobRequestParams, JLJobResponseParams {
+
+	/**
+	 * Default time to wait for a job to finish, in milliseconds
+	 */
+	public static final int DEFAULT_TIMEOUT = 60000;
+	
+	private JobManager jobManager = null;
+
+	/**
+	 * @param jobManager
+	 */
+	public JLJsonJobHandler(JobManager jobManager) {
+		this.jobManager = jobManager;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.simplifiedlogic.nitro.jshell.json.handler.JLJsonCommandHandler#handleFunction(java.lang.String, java.lang.String, java.util.Hashtable)
+	 */
+	public Hashtable<String, Object> handleFunction(String sessionId, String function, Hashtable<String, Object> input) throws JLIException {
+		if (function==null)
+			return null;
+		
+		if (function.equals(FUNC_SUBMIT)) return actionSubmit(sessionId, input);
+		else if (function.equals(FUNC_STATUS)) return actionStatus(sessionId, input);
+		else if (function.equals(FUNC_WAIT)) return actionWait(sessionId, input);
+		else if (function.equals(FUNC_CANCEL)) return actionCancel(sessionId, input);
+		else if (function.equals(FUNC_LIST)) return actionList(sessionId, input);
+		else {
+			throw new JLIException("Unknown function name: " + function);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see com.simplifiedlogic.nitro.jshell.json.handler.JLJsonCommandHandler#requiresCreo()
+	 */
+	public boolean requiresCreo() {
+		// job functions only look at the job list, and must not wait behind the jobs themselves
+		return false;
+	}
+	
+	private Hashtable<String, Object> actionSubmit(String sessionId, Hashtable<String, Object> input) throws JLIException {
+        String command = checkStringParameter(input, PARAM_COMMAND, true);
+        String function = checkStringParameter(input, PARAM_FUNCTION, true);
+        Map<String, Object> data = checkMapParameter(input, PARAM_DATA, false);
+        
+        if (COMMAND.equals(command))
+        	throw new JLIException("Job functions cannot be run as jobs");
+        
+        BaseRequest req = new BaseRequest();
+        req.setSessionId(sessionId);
+        req.setCommand(command);
+        req.setFunction(function);
+        if (data!=null)
+        	req.setData(new Hashtable<String, Object>(data));
+        
+        // a refused job is reported as busy, like a full lane
+        JobManager.Job job = jobManager.submit(req);
+
+		Hashtable<String, Object> out = new Hashtable<String, Object>();
+		out.put(OUTPUT_JOB_ID, job.getId());
+		out.put(OUTPUT_STATE, job.getState());
+		return out;
+	}
+
+	private Hashtable<String, Object> actionStatus(String sessionId, Hashtable<String, Object> input) throws JLIException {
+        JobManager.Job job = getJob(input);
+        
+		return getJobStatus(job, true);
+	}
+
+	private Hashtable<String, Object> actionWait(String sessionId, Hashtable<String, Object> input) throws JLIException {
+        JobManager.Job job = getJob(input);
+        Integer timeout = checkIntParameter(input, PARAM_TIMEOUT, false, Integer.valueOf(DEFAULT_TIMEOUT));
+        
+        try {
+        	job.waitFor(timeout.longValue());
+        }
+        catch (InterruptedException e) {
+        	throw new JLIException("Interrupted while waiting for job " + job.getId());
+        }
+        
+		return getJobStatus(job, true);
+	}
+
+	private Hashtable<String, Object> actionCancel(String sessionId, Hashtable<String, Object> input) throws JLIException {
+        JobManager.Job job = getJob(input);
+        
+        boolean cancelled = jobManager.cancel(job.getId());
+
+		Hashtable<String, Object> out = getJobStatus(job, false);
+		out.put(OUTPUT_CANCELLED, Boolean.valueOf(cancelled));
+		return out;
+	}
+
+	private Hashtable<String, Object> actionList(String sessionId, Hashtable<String, Object> input) throws JLIException {
+		Hashtable<String, Object> out = new Hashtable<String, Object>();
+		Vector<Map<String, Object>> outJobs = new Vector<Map<String, Object>>();
+		out.put(OUTPUT_JOBLIST, outJobs);
+		for (JobManager.Job job : jobManager.getJobs()) {
+			outJobs.add(getJobStatus(job, false));
+		}
+		return out;
+	}
+	
+	private JobManager.Job getJob(Hashtable<String, Object> input) throws JLIException {
+        String jobId = checkStringParameter(input, PARAM_JOB_ID, true);
+        JobManager.Job job = jobManager.getJob(jobId);
+        if (job==null)
+        	throw new JLIException("Job not found: " + jobId);
+        return job;
+	}
+
+	private Hashtable<String, Object> getJobStatus(JobManager.Job job, boolean includeResult) {
+		Hashtable<String, Object> out = new Hashtable<String, Object>();
+		out.put(OUTPUT_JOB_ID, job.getId());
+		out.put(OUTPUT_STATE, job.getState());
+		if (job.getCommand()!=null)
+			out.put(OUTPUT_COMMAND, job.getCommand());
+		if (job.getFunction()!=null)
+			out.put(OUTPUT_FUNCTION, job.getFunction());
+		out.put(OUTPUT_WAIT_MS, Long.valueOf(job.getWaitMs()));
+		out.put(OUTPUT_RUN_MS, Long.valueOf(job.getRunMs()));
+		if (includeResult && job.getResult()!=null)
+			out.put(OUTPUT_RESULT, job.getResult());
+		return out;
+	}
+}
@@ -150,29 +150,45 @@ public class JLJsonParameterHandler extends JLJsonCommandHandler implements JLPa
         if (params!=null) {
 			Vector<Map<String, Object>> outParams = new Vector<Map<String, Object>>();
 			out.put(OUTPUT_PARAMLIST, outParams);
-			Map<String, Object> outParam = null;
 			for (ParameterData param : params) {
-				outParam = new Hashtable<String, Object>();
-				if (param.getName()!=null)
-					outParam.put(PARAM_NAME, param.getName());
-				if (param.getValue()!=null)
-					outParam.put(PARAM_VALUE, param.getValue());
-				if (param.getType()!=null)
-					outParam.put(PARAM_TYPE, param.getType());
-				outParam.put(PARAM_DESIGNATE, Boolean.valueOf(param.isDesignate()));
-				outParam.put(PARAM_ENCODED, Boolean.valueOf(param.isEncoded()));
-				if (param.getOwnerName()!=null)
-					outParam.put(OUTPUT_OWNER_NAME, param.getOwnerName());
-				if (param.getDescription()!=null)
-					outParam.put(PARAM_DESCRIPTION, param.getDescription());
-				
-				outParams.add(outParam);
+				outParams.add(getParameterMap(param));
 			}
 			
         }
 		return out;
 	}
 
+	/* (non-Javadoc)
+	 * @see com.simplifiedlogic.nitro.jshell.json.handler.JLJsonCommandHandler#convertRecord(java.lang.String, java.lang.Object)
+	 */
+	public Map<String, Object> convertRecord(String function, Object record) {
+		if (FUNC_LIST.equals(function) && record instanceof ParameterData)
+			return getParameterMap((ParameterData)record);
+		return null;
+	}
+
+	/**
+	 * Convert a parameter's data to its JSON output form
+	 * @param param The parameter data
+	 * @return The parameter data as a map
+	 */
+	private Map<String, Object> getParameterMap(ParameterData param) {
+		Map<String, Object> outParam = new Hashtable<String, Object>();
+		if (param.getName()!=null)
+			outParam.put(PARAM_NAME, param.getName());
+		if (param.getValue()!=null)
+			outParam.put(PARAM_VALUE, param.getValue());
+		if (param.getType()!=null)
+			outParam.put(PARAM_TYPE, param.getType());
+		outParam.put(PARAM_DESIGNATE, Boolean.valueOf(param.isDesignate()));
+		outParam.put(PARAM_ENCODED, Boolean.valueOf(param.isEncoded()));
+		if (param.getOwnerName()!=null)
+			outParam.put(OUTPUT_OWNER_NAME, param.getOwnerName());
+		if (param.getDescription()!=null)
+			outParam.put(PARAM_DESCRIPTION, param.getDescription());
+		return outParam;
+	}
+
 	private Hashtable<String, Object> actionExists(String sessionId, Hashtable<String, Object> input) throws JLIException {
         String filename = checkStringParameter(input, PARAM_MODEL, false);
         String namePattern = checkStringParameter(input, PARAM_NAME, false);
@@ -41,6 +41,7 @@ import com.simplifiedlogic.nitro.jshell.json.template.FunctionTemplate;
 public class JLJsonBomHelp extends JLJsonCommandHelp implements JLBomRequestParams, JLBomResponseParams {
 
 	public static final String OBJ_BOM_CHILD = "BomChild";
+	public static final String OBJ_BOM_TABLE = "BomTable";
 
 	/* (non-Javadoc)
 	 * @see com.simplifiedlogic.nitro.jshell.json.help.JLJsonCommandHelp#getCommand()
@@ -64,6 +65,7 @@ public class JLJsonBomHelp extends JLJsonCommandHelp implements JLBomRequestPara
 	public List<FunctionObject> getHelpObjects() {
 		List<FunctionObject> list = new ArrayList<FunctionObject>();
 		list.add(helpBomChild());
+		list.add(helpBomTable());
 		return list;
 	}
 	
@@ -110,6 +112,11 @@ public class JLJsonBomHelp extends JLJsonCommandHelp implements JLBomRequestPara
     	arg.setDefaultValue("false");
     	spec.addArgument(arg);
 
+    	arg = new FunctionArgument(PARAM_COMPACT, FunctionSpec.TYPE_BOOL);
+    	arg.setDescription("Whether to return the components as a table of columns instead of a hierarchy, which is much smaller for large assemblies");
+    	arg.setDefaultValue("false");
+    	spec.addArgument(arg);
+
     	ret = new FunctionReturn(PARAM_MODEL, FunctionSpec.TYPE_STRING);
     	ret.setDescription("Assembly file name");
     	spec.addReturn(ret);
@@ -122,6 +129,10 @@ public class JLJsonBomHelp extends JLJsonCommandHelp implements JLBomRequestPara
     	ret.setDescription("The hierarchy of component data, starting with the top-level assembly");
     	spec.addReturn(ret);
         
+    	ret = new FunctionReturn(OUTPUT_TABLE, FunctionSpec.TYPE_OBJECT, OBJ_BOM_TABLE);
+    	ret.setDescription("The component data as a table, if " + PARAM_COMPACT + " is true; " + OUTPUT_CHILDREN + " is not returned in that case");
+    	spec.addReturn(ret);
+        
     	ret = new FunctionReturn(OUTPUT_HAS_SIMPREP, FunctionSpec.TYPE_BOOL);
     	ret.setDescription("Whether the assembly has a Simplified Rep");
     	spec.addReturn(ret);
@@ -349,5 +360,41 @@ public class JLJsonBomHelp extends JLJsonCommandHelp implements JLBomRequestPara
 
         return obj;
     }
+    
+	private FunctionObject helpBomTable() {
+    	FunctionObject obj = new FunctionObject(OBJ_BOM_TABLE);
+    	obj.setDescription("Data for the components in a BOM hierarchy, as columns with one entry per component.  Components are listed in the same order as the BOM hierarchy, and a component's children follow it directly.");
+
+    	FunctionArgument arg;
+    	arg = new FunctionArgument(OUTPUT_NAMES, FunctionSpec.TYPE_ARRAY, FunctionSpec.TYPE_STRING);
+    	arg.setDescription("Model names used by the components; each name is listed once");
+    	arg.setRequired(true);
+    	obj.add(arg);
+
+    	arg = new FunctionArgument(OUTPUT_FILES, FunctionSpec.TYPE_ARRAY, FunctionSpec.TYPE_INTEGER);
+    	arg.setDescription("Position of each component's model name in the " + OUTPUT_NAMES + " list");
+    	arg.setRequired(true);
+    	obj.add(arg);
+
+    	arg = new FunctionArgument(OUTPUT_PARENTS, FunctionSpec.TYPE_ARRAY, FunctionSpec.TYPE_INTEGER);
+    	arg.setDescription("Position of each component's parent in the table, or -1 for a component of the top-level assembly");
+    	arg.setRequired(true);
+    	obj.add(arg);
+
+    	arg = new FunctionArgument(OUTPUT_SEQS, FunctionSpec.TYPE_ARRAY, FunctionSpec.TYPE_INTEGER);
+    	arg.setDescription("Sequence number of each component within its parent; the " + OUTPUT_SEQ_PATH + " is the parent's plus this number");
+    	arg.setRequired(true);
+    	obj.add(arg);
+
+    	arg = new FunctionArgument(OUTPUT_IDS, FunctionSpec.TYPE_ARRAY, FunctionSpec.TYPE_INTEGER);
+    	arg.setDescription("Component ID of each component, if " + PARAM_PATHS + " is true; the component path is the parent's plus this ID");
+    	obj.add(arg);
+
+    	arg = new FunctionArgument(OUTPUT_TRANSFORMS, FunctionSpec.TYPE_ARRAY, FunctionSpec.TYPE_DOUBLE);
+    	arg.setDescription("3D transform of each component, if " + PARAM_TRANSFORMS + " is true, as 12 values per component: the X, Y and Z axes and the origin");
+    	obj.add(arg);
+
+        return obj;
+    }
 
 }
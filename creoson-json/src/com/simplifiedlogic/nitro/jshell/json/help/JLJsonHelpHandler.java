@@ -49,6 +49,7 @@ public class JLJsonHelpHandler {
 		helps.add(new JLJsonFileHelp());
 		helps.add(new JLJsonGeometryHelp());
 		helps.add(new JLJsonInterfaceHelp());
+		helps.add(new JLJsonJobHelp());
 		helps.add(new JLJsonLayerHelp());
 		helps.add(new JLJsonNoteHelp());
 		helps.add(new JLJsonParameterHelp());
@@ -0,0 +1,333 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jshell.json.help;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.simplifiedlogic.nitro.jshell.json.handler.JLJsonJobHandler;
+import com.simplifiedlogic.nitro.jshell.json.request.JLJobRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.response.JLJobResponseParams;
+import com.simplifiedlogic.nitro.jshell.json.template.FunctionArgument;
+import com.simplifiedlogic.nitro.jshell.json.template.FunctionExample;
+import com.simplifiedlogic.nitro.jshell.json.template.FunctionObject;
+import com.simplifiedlogic.nitro.jshell.json.template.FunctionReturn;
+import com.simplifiedlogic.nitro.jshell.json.template.FunctionSpec;
+import com.simplifiedlogic.nitro.jshell.json.template.FunctionTemplate;
+
+/**
+ * Generate help doc for "job" functions
+ * 
+ * @author Adam Andrews
+ *
+ */
+public class JLJsonJobHelp extends JLJsonCommandHelp implements JLJobRequestParams, JLJobResponseParams {
+
+	public static final String OBJ_JOB_STATUS = "JobStatus";
+
+	/* (non-Javadoc)
+	 * @see com.simplifiedlogic.nitro.jshell.json.help.JLJsonCommandHelp#getCommand()
+	 */
+	public String getCommand() {
+		return COMMAND;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.simplifiedlogic.nitro.jshell.json.help.JLJsonCommandHelp#getHelp()
+	 */
+	public List<FunctionTemplate> getHelp() {
+		List<FunctionTemplate> list = new ArrayList<FunctionTemplate>();
+		list.add(helpCancel());
+		list.add(helpList());
+		list.add(helpStatus());
+		list.add(helpSubmit());
+		list.add(helpWait());
+		return list;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.simplifiedlogic.nitro.jshell.json.help.JLJsonCommandHelp#getHelpObjects()
+	 */
+	public List<FunctionObject> getHelpObjects() {
+		List<FunctionObject> list = new ArrayList<FunctionObject>();
+		list.add(helpJobStatus());
+		return list;
+	}
+	
+	private FunctionTemplate helpSubmit() {
+    	FunctionTemplate template = new FunctionTemplate(COMMAND, FUNC_SUBMIT);
+    	FunctionSpec spec = template.getSpec();
+    	spec.setFunctionDescription("Submit a request to run as a background job");
+    	spec.addFootnote("The function returns as soon as the job is queued; use " + FUNC_STATUS + " or " + FUNC_WAIT + " to get its results.");
+    	spec.addFootnote("Jobs run in order with the other requests for the same Creo session.");
+    	FunctionArgument arg;
+    	FunctionReturn ret;
+    	
+    	arg = new FunctionArgument(PARAM_COMMAND, FunctionSpec.TYPE_STRING);
+    	arg.setDescription("Command for the request to run");
+    	arg.setRequired(true);
+    	spec.addArgument(arg);
+
+    	arg = new FunctionArgument(PARAM_FUNCTION, FunctionSpec.TYPE_STRING);
+    	arg.setDescription("Function for the request to run");
+    	arg.setRequired(true);
+    	spec.addArgument(arg);
+
+    	arg = new FunctionArgument(PARAM_DATA, FunctionSpec.TYPE_OBJECT);
+    	arg.setDescription("Input data for the request to run");
+    	spec.addArgument(arg);
+
+    	ret = new FunctionReturn(OUTPUT_JOB_ID, FunctionSpec.TYPE_STRING);
+    	ret.setDescription("Job ID");
+    	spec.addReturn(ret);
+        
+    	ret = new FunctionReturn(OUTPUT_STATE, FunctionSpec.TYPE_STRING);
+    	ret.setDescription("Job state");
+    	spec.addReturn(ret);
+        
+    	FunctionExample ex;
+
+    	ex = new FunctionExample();
+    	ex.addInput(PARAM_COMMAND, "interface");
+    	ex.addInput(PARAM_FUNCTION, "export_file");
+    	Map<String, Object> rec = new OrderedMap<String, Object>();
+    	rec.put("file", "box.asm");
+    	rec.put("type", "STEP");
+    	ex.addInput(PARAM_DATA, rec);
+    	ex.addOutput(OUTPUT_JOB_ID, "12");
+    	ex.addOutput(OUTPUT_STATE, STATE_QUEUED);
+    	template.addExample(ex);
+
+        return template;
+	}
+
+	private FunctionTemplate helpStatus() {
+    	FunctionTemplate template = new FunctionTemplate(COMMAND, FUNC_STATUS);
+    	FunctionSpec spec = template.getSpec();
+    	spec.setFunctionDescription("Get the status of a background job");
+    	spec.addFootnote("Once a job has finished, its " + OUTPUT_RESULT + " is kept until it is pushed out of the job history.");
+    	FunctionArgument arg;
+    	
+    	arg = new FunctionArgument(PARAM_JOB_ID, FunctionSpec.TYPE_STRING);
+    	arg.setDescription("Job ID");
+    	arg.setRequired(true);
+    	spec.addArgument(arg);
+
+    	addJobStatusReturns(spec);
+        
+    	FunctionExample ex;
+
+    	ex = new FunctionExample();
+    	ex.addInput(PARAM_JOB_ID, "12");
+    	ex.addOutput(OUTPUT_JOB_ID, "12");
+    	ex.addOutput(OUTPUT_STATE, STATE_RUNNING);
+    	ex.addOutput(OUTPUT_COMMAND, "interface");
+    	ex.addOutput(OUTPUT_FUNCTION, "export_file");
+    	ex.addOutput(OUTPUT_WAIT_MS, 15);
+    	ex.addOutput(OUTPUT_RUN_MS, 42310);
+    	template.addExample(ex);
+
+        return template;
+	}
+
+	private FunctionTemplate helpWait() {
+    	FunctionTemplate template = new FunctionTemplate(COMMAND, FUNC_WAIT);
+    	FunctionSpec spec = template.getSpec();
+    	spec.setFunctionDescription("Wait for a background job to finish");
+    	spec.addFootnote("If the job does not finish within the timeout, the function returns the job's current status.");
+    	FunctionArgument arg;
+    	
+    	arg = new FunctionArgument(PARAM_JOB_ID, FunctionSpec.TYPE_STRING);
+    	arg.setDescription("Job ID");
+    	arg.setRequired(true);
+    	spec.addArgument(arg);
+
+    	arg = new FunctionArgument(PARAM_TIMEOUT, FunctionSpec.TYPE_INTEGER);
+    	arg.setDescription("Maximum time to wait, in milliseconds");
+    	arg.setDefaultValue(String.valueOf(JLJsonJobHandler.DEFAULT_TIMEOUT));
+    	spec.addArgument(arg);
+
+    	addJobStatusReturns(spec);
+        
+    	FunctionExample ex;
+
+    	ex = new FunctionExample();
+    	ex.addInput(PARAM_JOB_ID, "12");
+    	ex.addInput(PARAM_TIMEOUT, 30000);
+    	ex.addOutput(OUTPUT_JOB_ID, "12");
+    	ex.addOutput(OUTPUT_STATE, STATE_DONE);
+    	ex.addOutput(OUTPUT_COMMAND, "interface");
+    	ex.addOutput(OUTPUT_FUNCTION, "export_file");
+    	ex.addOutput(OUTPUT_WAIT_MS, 15);
+    	ex.addOutput(OUTPUT_RUN_MS, 61877);
+    	Map<String, Object> rec = new OrderedMap<String, Object>();
+    	Map<String, Object> rec2 = new OrderedMap<String, Object>();
+    	rec2.put("error", false);
+    	rec.put("status", rec2);
+    	rec2 = new OrderedMap<String, Object>();
+    	rec2.put("dirname", "C:/myfiles/parts");
+    	rec2.put("filename", "box.stp");
+    	rec.put("data", rec2);
+    	ex.addOutput(OUTPUT_RESULT, rec);
+    	template.addExample(ex);
+
+        return template;
+	}
+
+	private FunctionTemplate helpCancel() {
+    	FunctionTemplate template = new FunctionTemplate(COMMAND, FUNC_CANCEL);
+    	FunctionSpec spec = template.getSpec();
+    	spec.setFunctionDescription("Cancel a background job");
+    	spec.addFootnote("Only jobs which have not started running can be cancelled.");
+    	FunctionArgument arg;
+    	FunctionReturn ret;
+    	
+    	arg = new FunctionArgument(PARAM_JOB_ID, FunctionSpec.TYPE_STRING);
+    	arg.setDescription("Job ID");
+    	arg.setRequired(true);
+    	spec.addArgument(arg);
+
+    	ret = new FunctionReturn(OUTPUT_JOB_ID, FunctionSpec.TYPE_STRING);
+    	ret.setDescription("Job ID");
+    	spec.addReturn(ret);
+        
+    	ret = new FunctionReturn(OUTPUT_STATE, FunctionSpec.TYPE_STRING);
+    	ret.setDescription("Job state");
+    	spec.addReturn(ret);
+        
+    	ret = new FunctionReturn(OUTPUT_CANCELLED, FunctionSpec.TYPE_BOOL);
+    	ret.setDescription("Whether the job was cancelled");
+    	spec.addReturn(ret);
+        
+    	FunctionExample ex;
+
+    	ex = new FunctionExample();
+    	ex.addInput(PARAM_JOB_ID, "13");
+    	ex.addOutput(OUTPUT_JOB_ID, "13");
+    	ex.addOutput(OUTPUT_STATE, STATE_CANCELLED);
+    	ex.addOutput(OUTPUT_CANCELLED, true);
+    	template.addExample(ex);
+
+        return template;
+	}
+
+	private FunctionTemplate helpList() {
+    	FunctionTemplate template = new FunctionTemplate(COMMAND, FUNC_LIST);
+    	FunctionSpec spec = template.getSpec();
+    	spec.setFunctionDescription("List the background jobs which are queued, running, or in the job history");
+    	spec.addFootnote("The job results are not included in the list.");
+    	FunctionReturn ret;
+    	
+    	ret = new FunctionReturn(OUTPUT_JOBLIST, FunctionSpec.TYPE_OBJARRAY, OBJ_JOB_STATUS);
+    	ret.setDescription("List of job status information");
+    	spec.addReturn(ret);
+        
+    	FunctionExample ex;
+
+    	ex = new FunctionExample();
+    	List<Map<String, Object>> list = new ArrayList<Map<String, Object>>();
+    	Map<String, Object> rec = new OrderedMap<String, Object>();
+    	rec.put(OUTPUT_JOB_ID, "12");
+    	rec.put(OUTPUT_STATE, STATE_DONE);
+    	rec.put(OUTPUT_COMMAND, "interface");
+    	rec.put(OUTPUT_FUNCTION, "export_file");
+    	rec.put(OUTPUT_WAIT_MS, 15);
+    	rec.put(OUTPUT_RUN_MS, 61877);
+    	list.add(rec);
+    	rec = new OrderedMap<String, Object>();
+    	rec.put(OUTPUT_JOB_ID, "13");
+    	rec.put(OUTPUT_STATE, STATE_QUEUED);
+    	rec.put(OUTPUT_COMMAND, "file");
+    	rec.put(OUTPUT_FUNCTION, "regenerate");
+    	rec.put(OUTPUT_WAIT_MS, 1204);
+    	rec.put(OUTPUT_RUN_MS, 0);
+    	list.add(rec);
+    	ex.addOutput(OUTPUT_JOBLIST, list);
+    	template.addExample(ex);
+
+        return template;
+	}
+
+	private void addJobStatusReturns(FunctionSpec spec) {
+    	FunctionReturn ret;
+    	
+    	ret = new FunctionReturn(OUTPUT_JOB_ID, FunctionSpec.TYPE_STRING);
+    	ret.setDescription("Job ID");
+    	spec.addReturn(ret);
+        
+    	ret = new FunctionReturn(OUTPUT_STATE, FunctionSpec.TYPE_STRING);
+    	ret.setDescription("Job state: " + STATE_QUEUED + ", " + STATE_RUNNING + ", " + STATE_DONE + ", " + STATE_FAILED + " or " + STATE_CANCELLED);
+    	spec.addReturn(ret);
+        
+    	ret = new FunctionReturn(OUTPUT_COMMAND, FunctionSpec.TYPE_STRING);
+    	ret.setDescription("Command run by the job");
+    	spec.addReturn(ret);
+        
+    	ret = new FunctionReturn(OUTPUT_FUNCTION, FunctionSpec.TYPE_STRING);
+    	ret.setDescription("Function run by the job");
+    	spec.addReturn(ret);
+        
+    	ret = new FunctionReturn(OUTPUT_WAIT_MS, FunctionSpec.TYPE_INTEGER);
+    	ret.setDescription("Time the job waited before it started to run, in milliseconds");
+    	spec.addReturn(ret);
+        
+    	ret = new FunctionReturn(OUTPUT_RUN_MS, FunctionSpec.TYPE_INTEGER);
+    	ret.setDescription("Time the job has been running, in milliseconds");
+    	spec.addReturn(ret);
+        
+    	ret = new FunctionReturn(OUTPUT_RESULT, FunctionSpec.TYPE_OBJECT);
+    	ret.setDescription("The complete response from the job's request, once the job has finished");
+    	spec.addReturn(ret);
+	}
+
+	private FunctionObject helpJobStatus() {
+    	FunctionObject obj = new FunctionObject(OBJ_JOB_STATUS);
+    	obj.setDescription("Status information for a background job");
+
+    	FunctionArgument arg;
+    	arg = new FunctionArgument(OUTPUT_JOB_ID, FunctionSpec.TYPE_STRING);
+    	arg.setDescription("Job ID");
+    	arg.setRequired(true);
+    	obj.add(arg);
+
+    	arg = new FunctionArgument(OUTPUT_STATE, FunctionSpec.TYPE_STRING);
+    	arg.setDescription("Job state");
+    	arg.setRequired(true);
+    	obj.add(arg);
+
+    	arg = new FunctionArgument(OUTPUT_COMMAND, FunctionSpec.TYPE_STRING);
+    	arg.setDescription("Command run by the job");
+    	obj.add(arg);
+
+    	arg = new FunctionArgument(OUTPUT_FUNCTION, FunctionSpec.TYPE_STRING);
+    	arg.setDescription("Function run by the job");
+    	obj.add(arg);
+
+    	arg = new FunctionArgument(OUTPUT_WAIT_MS, FunctionSpec.TYPE_INTEGER);
+    	arg.setDescription("Time the job waited before it started to run, in milliseconds");
+    	obj.add(arg);
+
+    	arg = new FunctionArgument(OUTPUT_RUN_MS, FunctionSpec.TYPE_INTEGER);
+    	arg.setDescription("Time the job has been running, in milliseconds");
+    	obj.add(arg);
+
+        return obj;
+    }
+}
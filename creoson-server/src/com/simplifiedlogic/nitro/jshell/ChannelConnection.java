@@ -0,0 +1,528 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jshell;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.simplifiedlogic.nitro.jlink.data.RequestDeadline;
+import com.simplifiedlogic.nitro.jshell.json.CreoLaneExecutor;
+import com.simplifiedlogic.nitro.jshell.json.JShellJsonHandler;
+import com.simplifiedlogic.nitro.jshell.json.request.BaseRequest;
+import com.simplifiedlogic.nitro.jshell.json.response.BaseResponse;
+import com.simplifiedlogic.nitro.jshell.json.response.ServiceStatus;
+
+/**
+ * A single persistent WebSocket channel carrying CREOSON JSON requests.
+ * 
+ * <p>Each text message from the client is a standard JSON request, plus an optional "id" 
+ * property which is copied into the response so the client can match them up.  Requests 
+ * which call Creo are run one at a time in the order they were received.  Other requests, 
+ * such as job status checks, are answered as soon as they finish, so their responses may 
+ * arrive ahead of earlier Creo requests.
+ * 
+ * <p>The channel is bound to one CREOSON session.  The session ID returned by the first 
+ * connect call is used for all later requests which do not give their own session ID, and 
+ * the session's Creo connection is looked up once instead of on every request.
+ * 
+ * @author Adam Andrews
+ */
+public class ChannelConnection implements Runnable {
+
+	/**
+	 * Key suffix defined by the WebSocket protocol for the handshake
+	 */
+	private static final String WS_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+	private static final int OP_CONTINUATION	= 0x0;
+	private static final int OP_TEXT			= 0x1;
+	private static final int OP_BINARY			= 0x2;
+	private static final int OP_CLOSE			= 0x8;
+	private static final int OP_PING			= 0x9;
+	private static final int OP_PONG			= 0xA;
+
+	/**
+	 * Largest message the client may send, in bytes
+	 */
+	private static final int MAX_MESSAGE = 64 * 1024 * 1024;
+
+	/**
+	 * Property name for the request ID in channel messages
+	 */
+	public static final String PARAM_ID = "id";
+
+	/**
+	 * Suggested delay before retrying a request which was refused, in milliseconds
+	 */
+	private static final long BUSY_RETRY_MS = 1000;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private ChannelServer server;
+	private Socket socket;
+	private String name;
+	private InputStream in;
+	private OutputStream out;
+	private JShellJsonHandler handler;
+	private ObjectMapper mapper = new ObjectMapper();
+	
+	/**
+	 * Runs the requests which call Creo, one at a time in the order they were received.
+	 * It holds as many waiting requests as a Creo lane admits (sli.lane.queue), so that
+	 * a client cannot get around the lane's limit by sending requests without waiting.
+	 */
+	private ExecutorService creoQueue;
+	
+	/**
+	 * The session bound to this channel
+	 */
+	private volatile String sessionId = null;
+	/**
+	 * The Creo connection for the bound session, once it is known
+	 */
+	private volatile String connKey = null;
+	
+	private volatile boolean closed = false;
+	/**
+	 * Deadline of the Creo request which is running for this channel, so that it can be 
+	 * cancelled if the channel closes
+	 */
+	private volatile RequestDeadline running = null;
+
+	/**
+	 * @param server The server which accepted the channel
+	 * @param socket The channel's socket
+	 * @param name The name of the channel, used for its threads
+	 */
+	public ChannelConnection(ChannelServer server, Socket socket, final String name) {
+		this.server = server;
+		this.socket = socket;
+		this.name = name;
+		this.handler = server.getHandler();
+		int maxQueue = Integer.getInteger(CreoLaneExecutor.QUEUE_PROP, CreoLaneExecutor.DEFAULT_QUEUE).intValue();
+		creoQueue = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(maxQueue>0 ? maxQueue : Integer.MAX_VALUE),
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, name + "-creo");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+	}
+
+	/**
+	 * Start reading requests from the channel on a background thread
+	 */
+	public void start() {
+		Thread t = new Thread(this, name);
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run() {
+		try {
+			in = new BufferedInputStream(socket.getInputStream());
+			out = new BufferedOutputStream(socket.getOutputStream());
+			if (!handshake())
+				return;
+			String msg;
+			while ((msg = readMessage())!=null) {
+				dispatch(msg);
+			}
+		}
+		catch (IOException e) {
+			// the client went away
+		}
+		finally {
+			close();
+		}
+	}
+	
+	/**
+	 * Run a request from the client and send back its response
+	 * @param msg The JSON request
+	 */
+	private void dispatch(String msg) {
+		JsonNode id = null;
+		final BaseRequest req;
+		try {
+			JsonNode node = mapper.readTree(msg);
+			if (!(node instanceof ObjectNode))
+				throw new IOException("Request is not a JSON object");
+			id = ((ObjectNode)node).remove(PARAM_ID);
+			req = mapper.treeToValue(node, BaseRequest.class);
+		}
+		catch (IOException e) {
+			BaseResponse resp = new BaseResponse();
+			resp.setStatus(ServiceStatus.error("Invalid JSON input: " + msg));
+			send(id, resp);
+			return;
+		}
+		
+		final JsonNode reqId = id;
+		final boolean creo = handler.requiresCreo(req);
+		// the deadline counts from when the request arrives
+		final RequestDeadline deadline = new RequestDeadline(req.getDeadlineMs());
+		Runnable task = new Runnable() {
+			public void run() {
+				BaseResponse resp;
+				if (creo) {
+					boolean bound = req.getSessionId()==null || req.getSessionId().equals(sessionId);
+					if (req.getSessionId()==null)
+						req.setSessionId(sessionId);
+					running = deadline;
+					if (closed)
+						deadline.cancel();
+					try {
+						resp = handler.handleRequest(req, bound ? getConnectionKey() : null, deadline);
+					}
+					finally {
+						running = null;
+					}
+				}
+				else {
+					if (req.getSessionId()==null)
+						req.setSessionId(sessionId);
+					resp = handler.handleRequest(req);
+				}
+				bindSession(resp);
+				send(reqId, resp);
+			}
+		};
+		try {
+			if (creo)
+				creoQueue.execute(task);
+			else
+				server.getPool().execute(task);
+		}
+		catch (RejectedExecutionException e) {
+			// either the channel is closing, or it has too many Creo requests waiting
+			if (!closed && creo) {
+				BaseResponse resp = new BaseResponse();
+				resp.setStatus(ServiceStatus.busy("Creo is busy; too many requests are waiting on this channel", BUSY_RETRY_MS));
+				send(reqId, resp);
+			}
+		}
+	}
+	
+	/**
+	 * Get the Creo connection for the bound session, looking it up if it is not known yet
+	 * @return The Creo connection ID, or null if there is none yet
+	 */
+	private String getConnectionKey() {
+		if (connKey==null && sessionId!=null)
+			connKey = handler.getConnectionKey(sessionId);
+		return connKey;
+	}
+	
+	/**
+	 * Bind the channel to a new session returned in a response, or forget the 
+	 * session's Creo connection if the session has expired
+	 * @param resp The response
+	 */
+	private void bindSession(BaseResponse resp) {
+		if (resp.getSessionId()!=null && !resp.getSessionId().equals(sessionId)) {
+			sessionId = resp.getSessionId();
+			connKey = null;
+		}
+		else if (resp.getStatus()!=null && resp.getStatus().isExpired())
+			connKey = null;
+	}
+	
+	/**
+	 * Send a response to the client
+	 * @param id The request ID, or null if the request did not have one
+	 * @param resp The response
+	 */
+	private void send(JsonNode id, BaseResponse resp) {
+		if (resp.getStatus()==null)
+			resp.setStatus(new ServiceStatus());
+		try {
+			ObjectNode node = mapper.valueToTree(resp);
+			if (id!=null)
+				node.set(PARAM_ID, id);
+			writeFrame(OP_TEXT, mapper.writeValueAsBytes(node));
+		}
+		catch (IOException e) {
+			close();
+		}
+	}
+
+	/**
+	 * Perform the WebSocket opening handshake
+	 * @return Whether the handshake succeeded
+	 * @throws IOException
+	 */
+	private boolean handshake() throws IOException {
+		String requestLine = readLine();
+		if (requestLine==null)
+			return false;
+		String key = null;
+		boolean upgrade = false;
+		String line;
+		while ((line = readLine())!=null && line.length()>0) {
+			int pos = line.indexOf(':');
+			if (pos<0)
+				continue;
+			String header = line.substring(0, pos).trim();
+			String value = line.substring(pos+1).trim();
+			if (header.equalsIgnoreCase("Sec-WebSocket-Key"))
+				key = value;
+			else if (header.equalsIgnoreCase("Upgrade") && value.equalsIgnoreCase("websocket"))
+				upgrade = true;
+		}
+		
+		String[] parts = requestLine.split(" ");
+		if (parts.length<2 || !parts[0].equals("GET") || !MainServer.ENDPOINT_CHANNEL.equals(parts[1])) {
+			writeHttpError("404 Not Found");
+			return false;
+		}
+		if (!upgrade || key==null) {
+			writeHttpError("400 Bad Request");
+			return false;
+		}
+		
+		String accept;
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			accept = base64(md.digest((key + WS_GUID).getBytes(UTF8)));
+		}
+		catch (Exception e) {
+			writeHttpError("500 Internal Server Error");
+			return false;
+		}
+		StringBuilder buf = new StringBuilder();
+		buf.append("HTTP/1.1 101 Switching Protocols\r\n");
+		buf.append("Upgrade: websocket\r\n");
+		buf.append("Connection: Upgrade\r\n");
+		buf.append("Sec-WebSocket-Accept: ").append(accept).append("\r\n");
+		buf.append("\r\n");
+		out.write(buf.toString().getBytes(UTF8));
+		out.flush();
+		return true;
+	}
+	
+	private void writeHttpError(String status) throws IOException {
+		out.write(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n").getBytes(UTF8));
+		out.flush();
+	}
+	
+	/**
+	 * Read one line of the HTTP handshake
+	 * @return The line, without its line ending, or null at the end of the stream
+	 * @throws IOException
+	 */
+	private String readLine() throws IOException {
+		StringBuilder buf = new StringBuilder();
+		int c;
+		while ((c = in.read())>=0) {
+			if (c=='\n')
+				break;
+			if (c!='\r')
+				buf.append((char)c);
+			if (buf.length()>8192)
+				throw new IOException("Handshake line too long");
+		}
+		if (c<0 && buf.length()==0)
+			return null;
+		return buf.toString();
+	}
+	
+	/**
+	 * Read the next complete message from the client, answering any control frames 
+	 * which arrive along the way.
+	 * @return The text of the message, or null if the client closed the channel
+	 * @throws IOException
+	 */
+	private String readMessage() throws IOException {
+		ByteArrayOutputStream message = null;
+		while (true) {
+			int b0 = readByte();
+			int b1 = readByte();
+			boolean fin = (b0 & 0x80)!=0;
+			int opcode = b0 & 0x0F;
+			boolean masked = (b1 & 0x80)!=0;
+			long len = b1 & 0x7F;
+			if (len==126)
+				len = (readByte() << 8) | readByte();
+			else if (len==127) {
+				len = 0;
+				for (int i=0; i<8; i++)
+					len = (len << 8) | readByte();
+			}
+			if (!masked)
+				throw new IOException("Client frames must be masked");
+			if (len>MAX_MESSAGE || (message!=null && message.size()+len>MAX_MESSAGE))
+				throw new IOException("Message too large");
+			
+			byte[] mask = new byte[4];
+			readFully(mask);
+			byte[] payload = new byte[(int)len];
+			readFully(payload);
+			for (int i=0; i<payload.length; i++)
+				payload[i] ^= mask[i & 3];
+			
+			switch (opcode) {
+			case OP_CLOSE:
+				writeFrame(OP_CLOSE, new byte[0]);
+				return null;
+			case OP_PING:
+				writeFrame(OP_PONG, payload);
+				break;
+			case OP_PONG:
+				break;
+			case OP_TEXT:
+			case OP_BINARY:
+				message = new ByteArrayOutputStream();
+				if (appendFrame(message, payload, fin))
+					return new String(message.toByteArray(), UTF8);
+				break;
+			case OP_CONTINUATION:
+				if (message==null)
+					throw new IOException("Unexpected continuation frame");
+				if (appendFrame(message, payload, fin))
+					return new String(message.toByteArray(), UTF8);
+				break;
+			default:
+				throw new IOException("Unknown frame type: " + opcode);
+			}
+		}
+	}
+	
+	/**
+	 * Add a frame's payload to the message it belongs to
+	 * @param message The message so far
+	 * @param payload The frame's payload
+	 * @param fin Whether this is the message's last frame
+	 * @return Whether the message is complete
+	 * @throws IOException
+	 */
+	private static boolean appendFrame(ByteArrayOutputStream message, byte[] payload, boolean fin) throws IOException {
+		message.write(payload);
+		return fin;
+	}
+	
+	private int readByte() throws IOException {
+		int b = in.read();
+		if (b<0)
+			throw new EOFException();
+		return b;
+	}
+	
+	private void readFully(byte[] buf) throws IOException {
+		int pos = 0;
+		while (pos<buf.length) {
+			int len = in.read(buf, pos, buf.length-pos);
+			if (len<0)
+				throw new EOFException();
+			pos += len;
+		}
+	}
+	
+	/**
+	 * Send a single unmasked frame to the client
+	 * @param opcode The frame type
+	 * @param payload The frame data
+	 * @throws IOException
+	 */
+	private synchronized void writeFrame(int opcode, byte[] payload) throws IOException {
+		if (closed)
+			return;
+		out.write(0x80 | opcode);
+		if (payload.length<126)
+			out.write(payload.length);
+		else if (payload.length<65536) {
+			out.write(126);
+			out.write(payload.length >>> 8);
+			out.write(payload.length & 0xFF);
+		}
+		else {
+			out.write(127);
+			for (int i=7; i>=0; i--)
+				out.write(i>=4 ? 0 : (payload.length >>> (8*i)) & 0xFF);
+		}
+		out.write(payload);
+		out.flush();
+	}
+	
+	/**
+	 * Close the channel.  Requests which are already queued are dropped, and a running
+	 * Creo request is cancelled at its next check.
+	 */
+	private void close() {
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+		}
+		RequestDeadline deadline = running;
+		if (deadline!=null)
+			deadline.cancel();
+		creoQueue.shutdownNow();
+		try {
+			socket.close();
+		}
+		catch (IOException e) {
+		}
+	}
+
+	private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+	
+	/**
+	 * Base64-encode a byte array
+	 * @param data The bytes to encode
+	 * @return The encoded string
+	 */
+	private static String base64(byte[] data) {
+		StringBuilder buf = new StringBuilder();
+		for (int i=0; i<data.length; i+=3) {
+			int b = (data[i] & 0xFF) << 16;
+			if (i+1<data.length)
+				b |= (data[i+1] & 0xFF) << 8;
+			if (i+2<data.length)
+				b |= data[i+2] & 0xFF;
+			buf.append(BASE64[(b >> 18) & 0x3F]);
+			buf.append(BASE64[(b >> 12) & 0x3F]);
+			buf.append(i+1<data.length ? BASE64[(b >> 6) & 0x3F] : '=');
+			buf.append(i+2<data.length ? BASE64[b & 0x3F] : '=');
+		}
+		return buf.toString();
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jshell;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.simplifiedlogic.nitro.jshell.json.JShellJsonHandler;
+
+/**
+ * Listens for persistent WebSocket channels which carry CREOSON JSON requests.
+ * 
+ * <p>A channel avoids the cost of a new HTTP request for each call, which matters for
+ * interactive clients that send many small requests.  Each message on a channel is a
+ * standard JSON request with an optional "id" property, and the response to it is sent
+ * back with the same "id".  See {@link ChannelConnection} for details.
+ * 
+ * <p>The JDK's HTTP server cannot hand off a connection to another protocol, so channels 
+ * are served on their own port.
+ * 
+ * @author Adam Andrews
+ */
+public class ChannelServer implements Runnable {
+
+	/**
+	 * Handler for CREOSON JSON calls
+	 */
+	private JShellJsonHandler handler;
+	
+	/**
+	 * The socket which listens for new channels
+	 */
+	private ServerSocket serverSocket;
+	
+	/**
+	 * Shared pool for requests which do not call Creo, so that they can be answered
+	 * while Creo requests are still running
+	 */
+	private ExecutorService pool;
+	
+	private AtomicInteger channelCount = new AtomicInteger();
+
+	/**
+	 * @param port The port to listen on
+	 * @param handler Handler for CREOSON JSON calls
+	 * @throws IOException
+	 */
+	public ChannelServer(int port, JShellJsonHandler handler) throws IOException {
+		this.handler = handler;
+		this.serverSocket = new ServerSocket();
+		serverSocket.setReuseAddress(true);
+		serverSocket.bind(new InetSocketAddress(port));
+		
+		final AtomicInteger count = new AtomicInteger();
+		pool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+				new SynchronousQueue<Runnable>(),
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "creoson-channel-worker-" + count.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+	}
+	
+	/**
+	 * Start listening for channels on a background thread
+	 */
+	public void start() {
+		Thread t = new Thread(this, "creoson-channel-listener");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket sock = serverSocket.accept();
+				sock.setTcpNoDelay(true);
+				ChannelConnection conn = new ChannelConnection(this, sock, "creoson-channel-" + channelCount.incrementAndGet());
+				conn.start();
+			}
+			catch (IOException e) {
+				if (!serverSocket.isClosed())
+					System.err.println("Error accepting channel: " + e.getMessage());
+			}
+		}
+	}
+	
+	JShellJsonHandler getHandler() {
+		return handler;
+	}
+
+	ExecutorService getPool() {
+		return pool;
+	}
+}
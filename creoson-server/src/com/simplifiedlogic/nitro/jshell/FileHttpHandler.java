@@ -20,13 +20,24 @@ package com.simplifiedlogic.nitro.jshell;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
-import java.sql.Timestamp;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
 
+import com.simplifiedlogic.nitro.util.AsyncLog;
 import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
@@ -34,6 +45,12 @@ import com.sun.net.httpserver.HttpHandler;
 /**
  * Implementation of HttpHandler which handles requests for the internal website on this server
  * 
+ * <p>Files are sent with their MIME type, length, ETag and Last-Modified date, and requests 
+ * with a matching If-None-Match or If-Modified-Since header get a 304 (Not Modified) response.
+ * A compressed copy of a file has its own ETag, with the encoding appended.
+ * Small files are kept in a memory cache; larger files are copied straight from the file 
+ * channel to the response.
+ * 
  * @author Adam Andrews
  */
 public class FileHttpHandler implements HttpHandler {
@@ -43,9 +60,70 @@ public class FileHttpHandler implements HttpHandler {
 	private static final String root = System.getProperty("user.dir").toLowerCase() + "\\web";
 	
 	/**
-	 * The writer for the current log file.
+	 * Property which specifies the total size of the file cache, in bytes
+	 */
+	private static final String CACHE_SIZE_PROP = "sli.web.cache.size";
+	/**
+	 * Property which specifies how long browsers may use a file without checking 
+	 * whether it has changed, in seconds
+	 */
+	private static final String MAX_AGE_PROP = "sli.web.maxage";
+	
+	/**
+	 * Largest file which will be kept in the cache
+	 */
+	private static final int MAX_CACHED_FILE = 256 * 1024;
+	
+	/**
+	 * MIME types for the file extensions used on the website
+	 */
+	private static final Map<String, String> mimeTypes = new Hashtable<String, String>();
+	static {
+		mimeTypes.put("html", "text/html; charset=UTF-8");
+		mimeTypes.put("htm", "text/html; charset=UTF-8");
+		mimeTypes.put("css", "text/css; charset=UTF-8");
+		mimeTypes.put("js", "application/javascript; charset=UTF-8");
+		mimeTypes.put("json", "application/json; charset=UTF-8");
+		mimeTypes.put("map", "application/json; charset=UTF-8");
+		mimeTypes.put("txt", "text/plain; charset=UTF-8");
+		mimeTypes.put("md", "text/plain; charset=UTF-8");
+		mimeTypes.put("xml", "application/xml; charset=UTF-8");
+		mimeTypes.put("svg", "image/svg+xml");
+		mimeTypes.put("png", "image/png");
+		mimeTypes.put("jpg", "image/jpeg");
+		mimeTypes.put("jpeg", "image/jpeg");
+		mimeTypes.put("gif", "image/gif");
+		mimeTypes.put("ico", "image/x-icon");
+		mimeTypes.put("woff", "font/woff");
+		mimeTypes.put("woff2", "font/woff2");
+		mimeTypes.put("ttf", "font/ttf");
+		mimeTypes.put("eot", "application/vnd.ms-fontobject");
+		mimeTypes.put("pdf", "application/pdf");
+	}
+	
+	/**
+	 * Cache of recently used small files
 	 */
-	private FileWriter log = null;
+	private FileCache cache = new FileCache(getIntProperty(CACHE_SIZE_PROP, 8 * 1024 * 1024));
+	
+	/**
+	 * Value for the Cache-Control header
+	 */
+	private String cacheControl;
+	
+	/**
+	 * The log file, which is written in the background
+	 */
+	private AsyncLog log = AsyncLog.getLog("logs/web.log", "\r\n", false);
+	
+	public FileHttpHandler() {
+		int maxAge = getIntProperty(MAX_AGE_PROP, 0);
+		if (maxAge>0)
+			cacheControl = "max-age=" + maxAge;
+		else
+			// browsers must check whether the file has changed, which is answered with a 304 if it has not
+			cacheControl = "no-cache";
+	}
 
 	/* (non-Javadoc)
 	 * @see com.sun.net.httpserver.HttpHandler#handle(com.sun.net.httpserver.HttpExchange)
@@ -79,50 +157,266 @@ public class FileHttpHandler implements HttpHandler {
 			os.close();
 			return;
 		}
-		// Object exists and is a file: accept with response code 200.
-		logit("Request: " + file.getAbsolutePath() + " Response: 200");
+		// Object exists and is a file
+		long length = file.length();
+		long lastModified = file.lastModified();
 		Headers headers = t.getResponseHeaders();
-		// Workaround for Microsoft's blocking of CSS files that don't have a content type
-		if (file.getName().toLowerCase().endsWith(".css")) {
-			headers.add("Content-Type", "text/css");
+		String contentType = getContentType(file);
+		boolean compressible = isCompressible(contentType);
+		// the compressed and uncompressed copies of a file are different representations,
+		// so each gets its own ETag
+		String encoding = HttpCompression.getEncoding(t, length, compressible);
+		String etag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + 
+			(encoding!=null ? "-" + encoding : "") + "\"";
+		
+		if (contentType!=null)
+			headers.set("Content-Type", contentType);
+		headers.set("ETag", etag);
+		headers.set("Last-Modified", formatHttpDate(lastModified));
+		headers.set("Cache-Control", cacheControl);
+		
+		if (isNotModified(t.getRequestHeaders(), etag, lastModified)) {
+			// the browser's copy is current: respond with 304
+			logit("Request: " + file.getAbsolutePath() + " Response: 304");
+			if (compressible)
+				headers.add("Vary", "Accept-Encoding");
+			t.sendResponseHeaders(304, -1);
+			t.close();
+			return;
 		}
-		t.sendResponseHeaders(200, 0);
-		OutputStream os = t.getResponseBody();
+		
+		// accept with response code 200.
+		logit("Request: " + file.getAbsolutePath() + " Response: 200");
+		if ("HEAD".equals(t.getRequestMethod())) {
+			if (compressible)
+				headers.add("Vary", "Accept-Encoding");
+			if (encoding!=null)
+				headers.set("Content-Encoding", encoding);
+			else
+				headers.set("Content-Length", String.valueOf(length));
+			t.sendResponseHeaders(200, -1);
+			t.close();
+			return;
+		}
+		
+		byte[] data = null;
+		if (length<=MAX_CACHED_FILE) {
+			data = cache.get(file.getPath(), lastModified, length);
+			if (data==null) {
+				data = readFile(file);
+				if (data.length==length)
+					cache.put(file.getPath(), lastModified, data);
+			}
+		}
+		
+		if (data!=null) {
+			OutputStream os = HttpCompression.openResponse(t, 200, data.length, compressible);
+			os.write(data);
+			os.close();
+			return;
+		}
+		
+		// large file: copy it from the file channel to the response without a separate read buffer
+		OutputStream os = HttpCompression.openResponse(t, 200, length, compressible);
 		FileInputStream fs = new FileInputStream(file);
-		final byte[] buffer = new byte[0x10000];
-		int count = 0;
-		while ((count = fs.read(buffer)) >= 0) {
-			os.write(buffer, 0, count);
+		try {
+			FileChannel fc = fs.getChannel();
+			WritableByteChannel out = Channels.newChannel(os);
+			long pos = 0;
+			while (pos<length) {
+				long count = fc.transferTo(pos, length-pos, out);
+				if (count<=0)
+					break;
+				pos += count;
+			}
+		}
+		finally {
+			fs.close();
+			os.close();
 		}
-		fs.close();
-		os.close();
 	}
 
 	/**
-	 * Write a log message to the debug log.
-	 * 
-	 * <p>Properly speaking, this needs to be converted to log4j.
-	 * 
-	 * @param msg The message to write to the log.
+	 * Read the whole contents of a small file
+	 * @param file The file
+	 * @return The contents of the file
+	 * @throws IOException
 	 */
-	private void logit(String msg) {
+	private byte[] readFile(File file) throws IOException {
+		FileInputStream fs = new FileInputStream(file);
 		try {
-			if (log==null) {
-				File f = new File("logs");
-				if (!f.exists())
-					f.mkdir();
-				log = new FileWriter("logs/web.log");
+			FileChannel fc = fs.getChannel();
+			ByteBuffer buf = ByteBuffer.allocate((int)fc.size());
+			while (buf.hasRemaining()) {
+				if (fc.read(buf)<0)
+					break;
+			}
+			if (buf.hasRemaining()) {
+				// the file shrank while it was being read
+				byte[] data = new byte[buf.position()];
+				System.arraycopy(buf.array(), 0, data, 0, data.length);
+				return data;
 			}
-			Timestamp ts = new Timestamp(System.currentTimeMillis());
-			log.write(ts.toString());
-			log.write(": ");
-			log.write(msg);
-			log.write("\r\n");
-			log.flush();
+			return buf.array();
 		}
-		catch (Exception e) {
-			System.err.println("Error writing to log: " + e.getLocalizedMessage());
+		finally {
+			fs.close();
+		}
+	}
+
+	/**
+	 * Check whether the browser's cached copy of a file is still current
+	 * @param reqHeaders The request headers
+	 * @param etag The file's ETag
+	 * @param lastModified The time the file was last modified
+	 * @return True if a 304 response should be sent
+	 */
+	private boolean isNotModified(Headers reqHeaders, String etag, long lastModified) {
+		String ifNoneMatch = reqHeaders.getFirst("If-None-Match");
+		if (ifNoneMatch!=null) {
+			// If-Modified-Since is ignored when If-None-Match is present
+			for (String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (tag.startsWith("W/"))
+					tag = tag.substring(2);
+				if (tag.equals("*") || tag.equals(etag))
+					return true;
+			}
+			return false;
+		}
+		String ifModifiedSince = reqHeaders.getFirst("If-Modified-Since");
+		if (ifModifiedSince!=null) {
+			long since = parseHttpDate(ifModifiedSince);
+			// HTTP dates only have a resolution of one second
+			if (since>=0 && lastModified/1000 <= since/1000)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Get the MIME type for a file from its extension
+	 * @param file The file
+	 * @return The MIME type, or null if the extension is not known
+	 */
+	private String getContentType(File file) {
+		String name = file.getName().toLowerCase();
+		int pos = name.lastIndexOf('.');
+		if (pos<0)
+			return null;
+		return mimeTypes.get(name.substring(pos+1));
+	}
+
+	/**
+	 * Check whether a MIME type is a text type which is worth compressing
+	 * @param contentType The MIME type
+	 * @return True if the file should be compressed when the client allows it
+	 */
+	private boolean isCompressible(String contentType) {
+		if (contentType==null)
+			return false;
+		return contentType.startsWith("text/") || contentType.startsWith("application/javascript")
+				|| contentType.startsWith("application/json") || contentType.startsWith("application/xml")
+				|| contentType.startsWith("image/svg+xml");
+	}
+
+	private static SimpleDateFormat createHttpDateFormat() {
+		SimpleDateFormat fmt = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+		fmt.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return fmt;
+	}
+	
+	private static String formatHttpDate(long time) {
+		return createHttpDateFormat().format(new Date(time));
+	}
+	
+	private static long parseHttpDate(String str) {
+		try {
+			return createHttpDateFormat().parse(str.trim()).getTime();
+		}
+		catch (ParseException e) {
+			return -1;
+		}
+	}
+
+	private static int getIntProperty(String prop, int dflt) {
+		String str = System.getProperty(prop);
+		if (str!=null) {
+			try {
+				return Integer.parseInt(str.trim());
+			}
+			catch (NumberFormatException e) {
+				System.err.println("Invalid value for " + prop + ": " + str);
+			}
+		}
+		return dflt;
+	}
+
+	/**
+	 * A least-recently-used cache of file contents, limited by the total size of the files
+	 */
+	private static class FileCache {
+		private long maxSize;
+		private long size = 0;
+		private LinkedHashMap<String, CachedFile> files = new LinkedHashMap<String, CachedFile>(64, 0.75f, true);
+		
+		public FileCache(long maxSize) {
+			this.maxSize = maxSize;
 		}
 		
+		/**
+		 * Get a file's contents, if the cached copy is still current
+		 * @param path The file's path
+		 * @param lastModified The time the file was last modified
+		 * @param length The current length of the file
+		 * @return The file contents, or null if they are not cached
+		 */
+		public synchronized byte[] get(String path, long lastModified, long length) {
+			CachedFile cf = files.get(path);
+			if (cf==null)
+				return null;
+			if (cf.lastModified!=lastModified || cf.data.length!=length) {
+				files.remove(path);
+				size -= cf.data.length;
+				return null;
+			}
+			return cf.data;
+		}
+		
+		public synchronized void put(String path, long lastModified, byte[] data) {
+			if (data.length>maxSize)
+				return;
+			CachedFile old = files.put(path, new CachedFile(lastModified, data));
+			if (old!=null)
+				size -= old.data.length;
+			size += data.length;
+			while (size>maxSize && !files.isEmpty()) {
+				// the first entry is the least recently used
+				String eldest = files.keySet().iterator().next();
+				size -= files.remove(eldest).data.length;
+			}
+		}
+	}
+	
+	private static class CachedFile {
+		long lastModified;
+		byte[] data;
+		
+		CachedFile(long lastModified, byte[] data) {
+			this.lastModified = lastModified;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * Write a log message to the debug log.  The message is written by a background
+	 * thread, so this does not wait for the file.
+	 * 
+	 * <p>Properly speaking, this needs to be converted to log4j.
+	 * 
+	 * @param msg The message to write to the log.
+	 */
+	private void logit(String msg) {
+		log.log(msg);
 	}
 }
@@ -0,0 +1,348 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jshell;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * Utility methods for compressing HTTP responses and decompressing HTTP request bodies,
+ * and for counting the bytes which pass through the server.
+ * 
+ * <p>Responses are compressed with gzip or deflate when the client allows it in its 
+ * Accept-Encoding header and the response is at least as large as the size threshold.  
+ * Compressed responses are sent in chunks as they are written, so they do not have to be 
+ * buffered.  A response whose length is not known up front is held back until it reaches 
+ * the threshold, so a small one is still sent whole and uncompressed.  Request bodies are 
+ * decompressed according to their Content-Encoding header.
+ * 
+ * @author Adam Andrews
+ */
+public class HttpCompression {
+
+	/**
+	 * Property which specifies the smallest response, in bytes, that will be compressed
+	 */
+	private static final String THRESHOLD_PROP = "sli.compress.threshold";
+	
+	private static final String ENCODING_GZIP		= "gzip";
+	private static final String ENCODING_DEFLATE	= "deflate";
+	
+	/**
+	 * The smallest response that will be compressed
+	 */
+	private static int threshold = 1024;
+	
+	private static AtomicLong bytesIn = new AtomicLong();
+	private static AtomicLong bytesOut = new AtomicLong();
+	private static AtomicLong bytesOutUncompressed = new AtomicLong();
+	private static AtomicLong compressedResponses = new AtomicLong();
+	
+	static {
+		String str = System.getProperty(THRESHOLD_PROP);
+		if (str!=null) {
+			try {
+				threshold = Integer.parseInt(str.trim());
+			}
+			catch (NumberFormatException e) {
+				System.err.println("Invalid value for " + THRESHOLD_PROP + ": " + str);
+			}
+		}
+	}
+
+	/**
+	 * Get the body of a request, decompressing it if the client sent it compressed
+	 * @param t The HTTP exchange
+	 * @return A stream for reading the uncompressed request body
+	 * @throws IOException if the content encoding is not supported
+	 */
+	public static InputStream getRequestBody(HttpExchange t) throws IOException {
+		InputStream is = new CountingInputStream(t.getRequestBody(), bytesIn);
+		String encoding = t.getRequestHeaders().getFirst("Content-Encoding");
+		if (encoding==null)
+			return is;
+		encoding = encoding.trim().toLowerCase();
+		if (encoding.length()==0 || encoding.equals("identity"))
+			return is;
+		if (encoding.equals(ENCODING_GZIP) || encoding.equals("x-gzip"))
+			return new GZIPInputStream(is);
+		if (encoding.equals(ENCODING_DEFLATE))
+			return new InflaterInputStream(is);
+		throw new IOException("Unsupported Content-Encoding: " + encoding);
+	}
+
+	/**
+	 * Send a complete response, compressing it if the client allows it
+	 * @param t The HTTP exchange
+	 * @param code The HTTP response code
+	 * @param body The response body
+	 * @param contentType The MIME type of the response, or null to leave it unset
+	 * @throws IOException
+	 */
+	public static void sendResponse(HttpExchange t, int code, byte[] body, String contentType) throws IOException {
+		if (contentType!=null)
+			t.getResponseHeaders().set("Content-Type", contentType);
+		OutputStream os = openResponse(t, code, body.length, true);
+		os.write(body);
+		os.close();
+	}
+
+	/**
+	 * Send the response headers, and open the response body for writing.  If the response 
+	 * may be compressed and the client allows it, the returned stream compresses the data 
+	 * written to it.  Any response headers other than the length and encoding must be set
+	 * before calling this.
+	 * 
+	 * <p>If the length is not known, the headers are not sent until the first threshold's 
+	 * worth of the response has been written or the stream is closed, and flushes before 
+	 * then are held back.
+	 * 
+	 * @param t The HTTP exchange
+	 * @param code The HTTP response code
+	 * @param length The length of the uncompressed response, or -1 if it is not known
+	 * @param compressible Whether the type of content in the response is worth compressing
+	 * @return The stream for the response body; the caller must close it
+	 * @throws IOException
+	 */
+	public static OutputStream openResponse(HttpExchange t, int code, long length, boolean compressible) throws IOException {
+		if (length<0 && compressible && threshold>0)
+			return new ThresholdOutputStream(t, code);
+		return open(t, code, length, compressible);
+	}
+
+	/**
+	 * Send the response headers and open the response body, once the length is known or
+	 * the response is known to be large
+	 * @see #openResponse(HttpExchange, int, long, boolean)
+	 */
+	private static OutputStream open(HttpExchange t, int code, long length, boolean compressible) throws IOException {
+		if (compressible)
+			t.getResponseHeaders().add("Vary", "Accept-Encoding");
+		String encoding = getEncoding(t, length, compressible);
+		
+		if (encoding==null) {
+			// a length of 0 means "chunked" to the HTTP server, and -1 means "no body"
+			t.sendResponseHeaders(code, length<0 ? 0 : (length==0 ? -1 : length));
+			return new CountingOutputStream(new CountingOutputStream(t.getResponseBody(), bytesOut), bytesOutUncompressed);
+		}
+		
+		t.getResponseHeaders().set("Content-Encoding", encoding);
+		t.sendResponseHeaders(code, 0);
+		compressedResponses.incrementAndGet();
+		OutputStream os = new CountingOutputStream(t.getResponseBody(), bytesOut);
+		// when the length is not known, the response is being streamed, so flushes must reach the client
+		boolean syncFlush = length<0;
+		if (encoding.equals(ENCODING_GZIP))
+			os = new GZIPOutputStream(os, 8192, syncFlush);
+		else
+			os = new DeflaterOutputStream(os, new Deflater(), 8192, syncFlush);
+		return new CountingOutputStream(os, bytesOutUncompressed);
+	}
+	
+	/**
+	 * Find out which compression method a response of a given length will be sent with, so 
+	 * that a caller can label the representation (for example in its ETag) before sending it
+	 * @param t The HTTP exchange
+	 * @param length The length of the uncompressed response, or -1 if it is not known
+	 * @param compressible Whether the type of content in the response is worth compressing
+	 * @return The encoding that {@link #openResponse(HttpExchange, int, long, boolean)} will use, 
+	 * or null if the response will not be compressed
+	 */
+	public static String getEncoding(HttpExchange t, long length, boolean compressible) {
+		if (!compressible)
+			return null;
+		if (length<0 || (length>0 && length>=threshold))
+			return chooseEncoding(t.getRequestHeaders().getFirst("Accept-Encoding"));
+		return null;
+	}
+	
+	/**
+	 * Pick a compression method from the client's Accept-Encoding header
+	 * @param accept The Accept-Encoding header value
+	 * @return The encoding to use, or null if the response should not be compressed
+	 */
+	static String chooseEncoding(String accept) {
+		if (accept==null)
+			return null;
+		boolean gzip = false;
+		boolean deflate = false;
+		for (String item : accept.split(",")) {
+			String[] parts = item.split(";");
+			String name = parts[0].trim().toLowerCase();
+			boolean allowed = true;
+			for (int i=1; i<parts.length; i++) {
+				String param = parts[i].trim();
+				if (param.startsWith("q=")) {
+					try {
+						allowed = Double.parseDouble(param.substring(2).trim())>0;
+					}
+					catch (NumberFormatException e) {
+					}
+				}
+			}
+			if (name.equals(ENCODING_GZIP) || name.equals("x-gzip") || name.equals("*"))
+				gzip = gzip || allowed;
+			else if (name.equals(ENCODING_DEFLATE))
+				deflate = deflate || allowed;
+		}
+		if (gzip)
+			return ENCODING_GZIP;
+		if (deflate)
+			return ENCODING_DEFLATE;
+		return null;
+	}
+	
+	/**
+	 * @return Total bytes received in request bodies, before decompression
+	 */
+	public static long getBytesIn() {
+		return bytesIn.get();
+	}
+
+	/**
+	 * @return Total bytes sent in response bodies, after compression
+	 */
+	public static long getBytesOut() {
+		return bytesOut.get();
+	}
+
+	/**
+	 * @return Total bytes sent in response bodies, before compression
+	 */
+	public static long getBytesOutUncompressed() {
+		return bytesOutUncompressed.get();
+	}
+
+	/**
+	 * @return The number of responses which were compressed
+	 */
+	public static long getCompressedResponses() {
+		return compressedResponses.get();
+	}
+
+	/**
+	 * Output stream for a response of unknown length, which holds the response back until
+	 * it reaches the compression threshold.  A response which is closed before then is 
+	 * sent with its length and without compression.
+	 */
+	private static class ThresholdOutputStream extends OutputStream {
+		private HttpExchange t;
+		private int code;
+		private ByteArrayOutputStream head = new ByteArrayOutputStream();
+		private OutputStream out = null;
+		
+		public ThresholdOutputStream(HttpExchange t, int code) {
+			this.t = t;
+			this.code = code;
+		}
+
+		public void write(int b) throws IOException {
+			write(new byte[] {(byte)b}, 0, 1);
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (out==null) {
+				if (head.size() + len < threshold) {
+					head.write(b, off, len);
+					return;
+				}
+				out = open(t, code, -1, true);
+				head.writeTo(out);
+				head = null;
+			}
+			out.write(b, off, len);
+		}
+
+		public void flush() throws IOException {
+			if (out!=null)
+				out.flush();
+		}
+
+		public void close() throws IOException {
+			if (out==null) {
+				byte[] body = head.toByteArray();
+				head = null;
+				out = open(t, code, body.length, true);
+				out.write(body);
+			}
+			out.close();
+		}
+	}
+
+	/**
+	 * Input stream which adds the number of bytes read to a counter
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+		private AtomicLong counter;
+		
+		public CountingInputStream(InputStream in, AtomicLong counter) {
+			super(in);
+			this.counter = counter;
+		}
+
+		public int read() throws IOException {
+			int b = super.read();
+			if (b>=0)
+				counter.incrementAndGet();
+			return b;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n>0)
+				counter.addAndGet(n);
+			return n;
+		}
+	}
+
+	/**
+	 * Output stream which adds the number of bytes written to a counter
+	 */
+	private static class CountingOutputStream extends FilterOutputStream {
+		private AtomicLong counter;
+		
+		public CountingOutputStream(OutputStream out, AtomicLong counter) {
+			super(out);
+			this.counter = counter;
+		}
+
+		public void write(int b) throws IOException {
+			out.write(b);
+			counter.incrementAndGet();
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			// FilterOutputStream writes one byte at a time, so pass the whole array through
+			out.write(b, off, len);
+			counter.addAndGet(len);
+		}
+	}
+}
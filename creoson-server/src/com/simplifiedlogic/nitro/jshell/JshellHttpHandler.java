@@ -19,20 +19,23 @@
 package com.simplifiedlogic.nitro.jshell;
 
 import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileWriter;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
-import java.sql.Timestamp;
+import java.util.zip.CRC32;
 
 import com.simplifiedlogic.nitro.jshell.json.JShellJsonHandler;
+import com.simplifiedlogic.nitro.jshell.json.StreamOutput;
+import com.simplifiedlogic.nitro.jshell.json.WireFormat;
+import com.simplifiedlogic.nitro.util.AsyncLog;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
 /**
- * Implementation of HttpHandler which handles JSON requests for CREOSON functions
+ * Implementation of HttpHandler which handles JSON requests for CREOSON functions,
+ * either one at a time or in batches
  * 
  * @author Adam Andrews
  */
@@ -44,66 +47,150 @@ public class JshellHttpHandler implements HttpHandler {
 	private JShellJsonHandler handler = new JShellJsonHandler();
 
 	/**
-	 * The writer for the current log file.
+	 * The log file, which is written in the background
 	 */
-	private FileWriter log = null;
+	private AsyncLog log = AsyncLog.getLog("logs/json.log", "\r\n", false);
 
 	/* (non-Javadoc)
 	 * @see com.sun.net.httpserver.HttpHandler#handle(com.sun.net.httpserver.HttpExchange)
 	 */
 	@Override
-	public void handle(HttpExchange t) throws IOException {
+	public void handle(final HttpExchange t) throws IOException {
+		if (MainServer.isOverflow()) {
+			MainServer.sendOverflow(t);
+			return;
+		}
 
-		// retrieve the request json data
-		InputStream is = t.getRequestBody();
+		// retrieve the request json data, which may be compressed
 		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		byte[] buffer = new byte[2048];
-		int len;
-		while ((len = is.read(buffer))>0) {
-			bos.write(buffer, 0, len);
+		try {
+			InputStream is = HttpCompression.getRequestBody(t);
+			byte[] buffer = new byte[2048];
+			int len;
+			while ((len = is.read(buffer))>0) {
+				bos.write(buffer, 0, len);
+			}
+			bos.close();
+		}
+		catch (IOException e) {
+			logit("Invalid request body: " + e.getMessage());
+			HttpCompression.sendResponse(t, 400, ("400 (Bad Request) " + e.getMessage() + "\n").getBytes(Charset.forName("UTF-8")), "text/plain; charset=UTF-8");
+			return;
 		}
-		bos.close();
-		String data = new String(bos.toByteArray(), Charset.forName("UTF-8"));
-		logit("Request: \n    " + data);
-
-		// pass the data to the handler and receive a response
-		String response = handler.handleRequest(data);
-		logit("    " + response);
-		
-		// format and return the response to the user
-		t.sendResponseHeaders(200, response.getBytes(Charset.forName("UTF-8")).length);
-//		t.getResponseHeaders().set("Content-Type", "application/json");
-		t.getResponseHeaders().set("Content-Type", "application/json, charset=UTF-8");
-		OutputStream os = t.getResponseBody();
-		os.write(response.getBytes(Charset.forName("UTF-8")));
-		os.close();
+		byte[] data = bos.toByteArray();
+		boolean batch = MainServer.ENDPOINT_BATCH.equals(t.getHttpContext().getPath());
+
+		// work out the encoding of the request and the response; binary formats
+		// are only supported for single requests
+		final WireFormat format = WireFormat.forContentType(t.getRequestHeaders().getFirst("Content-Type"));
+		if (format==null || !format.isAvailable() || (batch && format.isBinary())) {
+			logit("Unsupported request type: " + t.getRequestHeaders().getFirst("Content-Type"));
+			HttpCompression.sendResponse(t, 415, "415 (Unsupported Media Type)\n".getBytes(Charset.forName("UTF-8")), "text/plain; charset=UTF-8");
+			return;
+		}
+		WireFormat responseFormat = batch ? WireFormat.JSON : WireFormat.forAccept(t.getRequestHeaders().getFirst("Accept"), format);
+		if (format.isBinary())
+			logit("Request: \n    [" + format.getName() + " request, length=" + data.length + "]");
+		else
+			logit("Request: \n    " + AsyncLog.truncate(new String(data, Charset.forName("UTF-8"))));
+
+		if (batch) {
+			// pass the data to the handler and receive a response
+			String response = handler.handleBatchRequest(new String(data, Charset.forName("UTF-8")));
+			logit("    " + AsyncLog.truncate(response));
+			
+			// format and return the response to the user, compressed if the user allows it
+			HttpCompression.sendResponse(t, 200, response.getBytes(Charset.forName("UTF-8")), "application/json; charset=UTF-8");
+			return;
+		}
+
+		// pass the data to the handler, which writes the response straight to the user;
+		// the length of the response is not known, so one which passes the compression
+		// threshold is sent chunked and compressed if the user allows it
+		final LogCaptureOutputStream[] capture = new LogCaptureOutputStream[1];
+		t.getResponseHeaders().add("Vary", "Accept");
+		handler.handleRequest(data, format, responseFormat, new StreamOutput() {
+			public OutputStream open(String contentType) throws IOException {
+				WireFormat outFormat = WireFormat.forContentType(contentType);
+				boolean binary = outFormat!=null && outFormat.isBinary();
+				t.getResponseHeaders().set("Content-Type", binary ? contentType : contentType + "; charset=UTF-8");
+				capture[0] = new LogCaptureOutputStream(HttpCompression.openResponse(t, 200, -1, true), 
+						binary ? -1 : AsyncLog.getTruncateLimit());
+				return capture[0];
+			}
+		});
+		if (capture[0]!=null)
+			logit("    " + capture[0].getLogText());
+		t.close();
+	}
+
+	/**
+	 * @return The handler for CREOSON JSON calls
+	 */
+	public JShellJsonHandler getJsonHandler() {
+		return handler;
 	}
 
 	/**
-	 * Write a log message to the debug log.
+	 * Write a log message to the debug log.  The message is written by a background
+	 * thread, so this does not wait for the file.
 	 * 
 	 * <p>Properly speaking, this needs to be converted to log4j.
 	 * 
 	 * @param msg The message to write to the log.
 	 */
 	private void logit(String msg) {
-		try {
-			if (log==null) {
-				File f = new File("logs");
-				if (!f.exists())
-					f.mkdir();
-				log = new FileWriter("logs/json.log");
-			}
-			Timestamp ts = new Timestamp(System.currentTimeMillis());
-			log.write(ts.toString());
-			log.write(": ");
-			log.write(msg);
-			log.write("\r\n");
-			log.flush();
+		log.log(msg);
+	}
+
+	/**
+	 * Output stream which keeps a copy of the beginning of the response for the log, 
+	 * along with its length and checksum.  Nothing is kept for binary responses.
+	 */
+	private static class LogCaptureOutputStream extends FilterOutputStream {
+		private ByteArrayOutputStream head = new ByteArrayOutputStream();
+		private int limit;
+		private long length = 0;
+		private CRC32 crc = new CRC32();
+
+		/**
+		 * @param out The output stream for the response
+		 * @param limit The number of bytes to keep for the log, 0 to keep all of them, 
+		 * or -1 for a binary response
+		 */
+		public LogCaptureOutputStream(OutputStream out, int limit) {
+			super(out);
+			this.limit = limit;
+		}
+
+		public void write(int b) throws IOException {
+			out.write(b);
+			if (limit==0 || length<limit)
+				head.write(b);
+			crc.update(b);
+			length++;
 		}
-		catch (Exception e) {
-			System.err.println("Error writing to log: " + e.getLocalizedMessage());
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			if (limit==0)
+				head.write(b, off, len);
+			else if (length<limit)
+				head.write(b, off, (int)Math.min(len, limit - length));
+			crc.update(b, off, len);
+			length += len;
+		}
+
+		/**
+		 * @return The text of the response to write to the log
+		 */
+		public String getLogText() {
+			if (limit<0)
+				return "[binary response, length=" + length + " hash=" + Long.toHexString(crc.getValue()) + "]";
+			String text = new String(head.toByteArray(), Charset.forName("UTF-8"));
+			if (limit==0 || length<=limit)
+				return text;
+			return AsyncLog.truncated(text, length, Long.toHexString(crc.getValue()));
 		}
-		
 	}
 }
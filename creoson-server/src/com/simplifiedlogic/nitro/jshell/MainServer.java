@@ -18,8 +18,19 @@
  */
 package com.simplifiedlogic.nitro.jshell;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.simplifiedlogic.nitro.jshell.json.WireFormat;
+import com.simplifiedlogic.nitro.jshell.json.response.BaseResponse;
+import com.simplifiedlogic.nitro.jshell.json.response.ServiceStatus;
+import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 
 /**
@@ -38,11 +49,43 @@ public class MainServer {
 	 * Property which specifies which port the server will listen on
 	 */
 	private static final String PORT_PROP = "sli.socket.port";
+	/**
+	 * Property which specifies the number of worker threads for handling requests
+	 */
+	private static final String THREADS_PROP = "sli.server.threads";
+	/**
+	 * Property which specifies how many requests may wait for a worker thread
+	 */
+	private static final String QUEUE_PROP = "sli.server.queue";
+	/**
+	 * Property which specifies which port the WebSocket channel listens on; if not set, 
+	 * the channel is not started
+	 */
+	private static final String CHANNEL_PORT_PROP = "sli.channel.port";
+	
+	/**
+	 * Suggested delay before retrying a request which the server had no room for, in milliseconds
+	 */
+	private static final long BUSY_RETRY_MS = 1000;
+	
+	/**
+	 * Set while the server's dispatcher thread handles a request which the worker pool 
+	 * had no room for
+	 */
+	private static ThreadLocal<Boolean> overflow = new ThreadLocal<Boolean>();
 	
 	/**
 	 * Endpoint for CREOSON JSON requests
 	 */
 	public static final String ENDPOINT_CREOSON	= "/creoson";
+	/**
+	 * Endpoint for batches of CREOSON JSON requests
+	 */
+	public static final String ENDPOINT_BATCH	= "/creoson/batch";
+	/**
+	 * Endpoint for persistent WebSocket channels carrying CREOSON JSON requests
+	 */
+	public static final String ENDPOINT_CHANNEL	= "/creoson/channel";
 	/**
 	 * Endpoint for Server HTTP status requests 
 	 */
@@ -51,6 +94,10 @@ public class MainServer {
 	 * Endpoint for Server JSON requests
 	 */
 	public static final String ENDPOINT_SERVER	= "/server";
+	/**
+	 * Endpoint for listing and draining the nodes, when the server is a router
+	 */
+	public static final String ENDPOINT_ROUTER	= "/router";
 	
 	/**
 	 * @param args command-line arguments
@@ -100,16 +147,125 @@ public class MainServer {
 			}
 */
 			HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
-			server.createContext(ENDPOINT_CREOSON, new JshellHttpHandler());
-			server.createContext(ENDPOINT_STATUS, new StatusHttpHandler());
+			String routerNodes = System.getProperty(RouterHttpHandler.NODES_PROP);
+			if (routerNodes!=null && routerNodes.trim().length()>0) {
+				// pass CREOSON requests on to other servers instead of handling them here
+				RouterHttpHandler router = new RouterHttpHandler(routerNodes);
+				server.createContext(ENDPOINT_CREOSON, router);
+				server.createContext(ENDPOINT_BATCH, router);
+				server.createContext(ENDPOINT_ROUTER, router);
+				server.createContext(ENDPOINT_STATUS, new StatusHttpHandler(null));
+				server.createContext("/", new FileHttpHandler());
+				server.setExecutor(createExecutor());
+				System.out.println("Starting router, listening on port " + port + ".");
+				server.start();
+				return;
+			}
+			JshellHttpHandler jshellHandler = new JshellHttpHandler();
+			server.createContext(ENDPOINT_CREOSON, jshellHandler);
+			server.createContext(ENDPOINT_BATCH, jshellHandler);
+			server.createContext(ENDPOINT_STATUS, new StatusHttpHandler(jshellHandler.getJsonHandler()));
 			server.createContext(ENDPOINT_SERVER, new ServerHttpHandler());
 			server.createContext("/", new FileHttpHandler());
-			server.setExecutor(null);
+			server.setExecutor(createExecutor());
 			System.out.println("Starting server, listening on port " + port + ".");
 			server.start();
+			
+			int channelPort = getIntProperty(CHANNEL_PORT_PROP, 0);
+			if (channelPort>0) {
+				ChannelServer channels = new ChannelServer(channelPort, jshellHandler.getJsonHandler());
+				System.out.println("Starting channel, listening on port " + channelPort + ".");
+				channels.start();
+			}
 		}
 		catch (Throwable e) {
 			e.printStackTrace();
 		}
 	}
+
+	/**
+	 * Create the bounded worker pool which handles incoming requests.  Requests which 
+	 * talk to Creo are further serialized per Creo connection by the JSON handler, so 
+	 * the pool only keeps slow Creo calls from blocking status and web requests.  When 
+	 * the queue is full, the request is handled on the server's dispatcher thread, but 
+	 * CREOSON requests are then only answered with a busy status (see isOverflow()), so 
+	 * the dispatcher is never held up by Creo.
+	 * 
+	 * @return The executor for the HTTP server
+	 */
+	private static ThreadPoolExecutor createExecutor() {
+		int threads = getIntProperty(THREADS_PROP, 8);
+		int queue = getIntProperty(QUEUE_PROP, 100);
+		final AtomicInteger count = new AtomicInteger();
+		ThreadPoolExecutor exec = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(queue),
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "creoson-worker-" + count.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				},
+				new RejectedExecutionHandler() {
+					public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+						overflow.set(Boolean.TRUE);
+						try {
+							r.run();
+						}
+						finally {
+							overflow.remove();
+						}
+					}
+				});
+		exec.allowCoreThreadTimeOut(true);
+		return exec;
+	}
+
+	/**
+	 * Check whether the current request is being handled on the dispatcher thread because
+	 * the worker pool was full.  Handlers which may call Creo must then answer with 
+	 * sendOverflow() instead.
+	 * @return Whether the worker pool had no room for the current request
+	 */
+	public static boolean isOverflow() {
+		return Boolean.TRUE.equals(overflow.get());
+	}
+
+	/**
+	 * Answer a CREOSON request which the worker pool had no room for with a busy status
+	 * @param t The HTTP exchange
+	 * @throws IOException
+	 */
+	static void sendOverflow(HttpExchange t) throws IOException {
+		BaseResponse resp = new BaseResponse();
+		resp.setStatus(ServiceStatus.busy("The server is busy; too many requests are waiting", BUSY_RETRY_MS));
+		try {
+			HttpCompression.sendResponse(t, 200, WireFormat.JSON.getResponseWriter().writeValueAsBytes(resp), 
+					"application/json; charset=UTF-8");
+		}
+		finally {
+			t.close();
+		}
+	}
+
+	/**
+	 * Read a positive integer value from a system property
+	 * @param prop The name of the system property
+	 * @param dflt The value to use if the property is missing or invalid
+	 * @return The property value
+	 */
+	private static int getIntProperty(String prop, int dflt) {
+		String str = System.getProperty(prop);
+		if (str!=null) {
+			try {
+				int val = Integer.parseInt(str);
+				if (val>0)
+					return val;
+			}
+			catch (Exception e) {
+			}
+			System.err.println("Invalid value for " + prop + ": " + str);
+		}
+		return dflt;
+	}
 }
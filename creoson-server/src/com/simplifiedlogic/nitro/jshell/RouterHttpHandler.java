@@ -0,0 +1,633 @@
+/*
+ * MIT LICENSE
+ * Copyright 2000-2023 Simplified Logic, Inc
+ * Permission is hereby granted, free of charge, to any person obtaining a copy 
+ * of this software and associated documentation files (the "Software"), to deal 
+ * in the Software without restriction, including without limitation the rights 
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell 
+ * copies of the Software, and to permit persons to whom the Software is 
+ * furnished to do so, subject to the following conditions: The above copyright 
+ * notice and this permission notice shall be included in all copies or 
+ * substantial portions of the Software. THE SOFTWARE IS PROVIDED "AS IS", 
+ * WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED 
+ * TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND 
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE 
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE 
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.simplifiedlogic.nitro.jshell;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simplifiedlogic.nitro.jshell.json.WireFormat;
+import com.simplifiedlogic.nitro.jshell.json.request.BaseRequest;
+import com.simplifiedlogic.nitro.jshell.json.request.JLConnectRequestParams;
+import com.simplifiedlogic.nitro.jshell.json.response.BaseResponse;
+import com.simplifiedlogic.nitro.jshell.json.response.ServiceStatus;
+import com.simplifiedlogic.nitro.util.AsyncLog;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Handles CREOSON requests when the server runs as a router in front of several other
+ * CREOSON servers (nodes), instead of calling Creo itself.
+ *
+ * <p>A connection.connect request is sent to the healthy node with the lowest load, as
+ * reported by the node's own /status?lanes page, and the new session is remembered so that
+ * the session's later requests go to the same node.  Requests for sessions which the router
+ * does not know, such as after the router restarts, are placed on a consistent hash ring of
+ * the healthy nodes, so that adding or removing a node moves as few sessions as possible.
+ * Requests without a session go to the node with the lowest load.
+ *
+ * <p>A node can be drained through /router?drain=url: it gets no new sessions, but keeps
+ * serving the sessions it has.  /router?undrain=url puts it back into use, and /router lists
+ * the nodes and their state.
+ *
+ * <p>The router is configured by these system properties:
+ * <ul>
+ * <li>sli.router.nodes - Comma-separated base URLs of the nodes, such as http://host:9056
+ * <li>sli.router.check - Milliseconds between node health checks (default 5000)
+ * <li>sli.router.timeout - Milliseconds to wait for a node's response, or 0 for no limit (default 0)
+ * <li>sli.router.session.ttl - Milliseconds after which the router forgets a session which has
+ * had no requests, or 0 to keep sessions until they are disconnected (default 86400000).  This
+ * should be longer than the nodes' own sli.session.ttl.
+ * </ul>
+ *
+ * <p>Sessions created or disconnected inside a /creoson/batch request are tracked as well.
+ *
+ * <p>Only the /creoson and /creoson/batch endpoints are routed; WebSocket channels are not.
+ *
+ * @author Adam Andrews
+ */
+public class RouterHttpHandler implements HttpHandler {
+
+	/**
+	 * Property which lists the base URLs of the nodes; if set, the server runs as a router
+	 */
+	public static final String NODES_PROP = "sli.router.nodes";
+	private static final String CHECK_PROP = "sli.router.check";
+	private static final String TIMEOUT_PROP = "sli.router.timeout";
+	private static final String SESSION_TTL_PROP = "sli.router.session.ttl";
+
+	/**
+	 * Number of points each node has on the hash ring, to even out the share of each node
+	 */
+	private static final int RING_POINTS = 64;
+
+	/**
+	 * Time to wait when connecting to a node or checking its health, in milliseconds
+	 */
+	private static final int CONNECT_TIMEOUT = 5000;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private List<Node> nodes = new ArrayList<Node>();
+
+	/**
+	 * Hash ring of the healthy nodes; replaced whenever the set of healthy nodes changes
+	 */
+	private volatile SortedMap<Long, Node> ring = new TreeMap<Long, Node>();
+
+	/**
+	 * The node for each session created through the router
+	 */
+	private ConcurrentHashMap<String, RoutedSession> sessions = new ConcurrentHashMap<String, RoutedSession>();
+
+	private long checkInterval;
+	private int timeout;
+	private long sessionTtl;
+
+	private ObjectMapper mapper = new ObjectMapper();
+
+	private AsyncLog log = AsyncLog.getLog("logs/router.log", "\r\n", false);
+
+	/**
+	 * @param nodeList Comma-separated base URLs of the nodes
+	 */
+	public RouterHttpHandler(String nodeList) {
+		for (String url : nodeList.split(",")) {
+			url = url.trim();
+			if (url.length()==0)
+				continue;
+			while (url.endsWith("/"))
+				url = url.substring(0, url.length()-1);
+			nodes.add(new Node(url));
+		}
+		checkInterval = Long.getLong(CHECK_PROP, 5000).longValue();
+		timeout = Integer.getInteger(TIMEOUT_PROP, 0).intValue();
+		sessionTtl = Long.getLong(SESSION_TTL_PROP, 24*60*60*1000L).longValue();
+
+		checkNodes();
+		Thread checker = new Thread("creoson-router-check") {
+			public void run() {
+				while (true) {
+					try {
+						Thread.sleep(checkInterval);
+					}
+					catch (InterruptedException e) {
+						return;
+					}
+					checkNodes();
+				}
+			}
+		};
+		checker.setDaemon(true);
+		checker.start();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.sun.net.httpserver.HttpHandler#handle(com.sun.net.httpserver.HttpExchange)
+	 */
+	@Override
+	public void handle(HttpExchange t) throws IOException {
+		String path = t.getHttpContext().getPath();
+		if (MainServer.ENDPOINT_ROUTER.equals(path)) {
+			handleAdmin(t);
+			return;
+		}
+		if (MainServer.isOverflow()) {
+			MainServer.sendOverflow(t);
+			return;
+		}
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try {
+			InputStream is = HttpCompression.getRequestBody(t);
+			byte[] buffer = new byte[2048];
+			int len;
+			while ((len = is.read(buffer))>0) {
+				bos.write(buffer, 0, len);
+			}
+			bos.close();
+		}
+		catch (IOException e) {
+			HttpCompression.sendResponse(t, 400, ("400 (Bad Request) " + e.getMessage() + "\n").getBytes(UTF8), "text/plain; charset=UTF-8");
+			return;
+		}
+		byte[] data = bos.toByteArray();
+		boolean batch = MainServer.ENDPOINT_BATCH.equals(path);
+		String contentType = t.getRequestHeaders().getFirst("Content-Type");
+		WireFormat format = WireFormat.forContentType(contentType);
+		if (format==null || !format.isAvailable() || (batch && format.isBinary())) {
+			HttpCompression.sendResponse(t, 415, "415 (Unsupported Media Type)\n".getBytes(UTF8), "text/plain; charset=UTF-8");
+			return;
+		}
+		WireFormat responseFormat = batch ? WireFormat.JSON : WireFormat.forAccept(t.getRequestHeaders().getFirst("Accept"), format);
+
+		// find the session and function; a request which cannot be read is passed on
+		// anyway, so that the node reports the error
+		String sessionId = null;
+		String command = null;
+		String function = null;
+		JsonNode batchTree = null;
+		boolean batchConnect = false;
+		try {
+			if (batch) {
+				batchTree = mapper.readTree(data);
+				if (batchTree.hasNonNull("sessionId"))
+					sessionId = batchTree.get("sessionId").asText();
+				batchConnect = hasSessionChange(batchTree);
+			}
+			else {
+				BaseRequest req = format.getRequestReader().readValue(data);
+				sessionId = req.getSessionId();
+				command = req.getCommand();
+				function = req.getFunction();
+			}
+		}
+		catch (Exception e) {
+		}
+		boolean connect = JLConnectRequestParams.COMMAND.equals(command) && JLConnectRequestParams.FUNC_CONNECT.equals(function);
+		boolean disconnect = JLConnectRequestParams.COMMAND.equals(command) && JLConnectRequestParams.FUNC_DISCONNECT.equals(function);
+
+		Node node;
+		if (sessionId!=null && !connect)
+			node = getSessionNode(sessionId);
+		else
+			node = getLeastLoaded();
+		if (node==null || !node.healthy) {
+			sendUnavailable(t, node, responseFormat);
+			return;
+		}
+
+		// pass the request on to the node
+		HttpURLConnection conn = null;
+		node.inFlight.incrementAndGet();
+		try {
+			conn = (HttpURLConnection)new URL(node.url + path).openConnection();
+			conn.setConnectTimeout(CONNECT_TIMEOUT);
+			conn.setReadTimeout(timeout);
+			conn.setDoOutput(true);
+			conn.setRequestMethod("POST");
+			if (contentType!=null)
+				conn.setRequestProperty("Content-Type", contentType);
+			String accept = t.getRequestHeaders().getFirst("Accept");
+			if (accept!=null)
+				conn.setRequestProperty("Accept", accept);
+			conn.setFixedLengthStreamingMode(data.length);
+			OutputStream os = conn.getOutputStream();
+			os.write(data);
+			os.close();
+
+			int code = conn.getResponseCode();
+			InputStream is = code>=400 ? conn.getErrorStream() : conn.getInputStream();
+			String respType = conn.getContentType();
+			t.getResponseHeaders().add("Vary", "Accept");
+			if (respType!=null)
+				t.getResponseHeaders().set("Content-Type", respType);
+
+			if (connect || disconnect || batchConnect) {
+				// the response is read first, to pick up the sessions it affects
+				byte[] resp = readAll(is);
+				if (batchConnect) {
+					if (code==200)
+						updateBatchSessions(batchTree, resp, node);
+				}
+				else {
+					if (code==200 && connect)
+						addSession(resp, responseFormat, node);
+					if (disconnect)
+						sessions.remove(sessionId);
+				}
+				HttpCompression.sendResponse(t, code, resp, null);
+			}
+			else {
+				// copy the response as it arrives, since it may be streamed
+				OutputStream out = HttpCompression.openResponse(t, code, -1, true);
+				try {
+					if (is!=null) {
+						byte[] buffer = new byte[8192];
+						int len;
+						while ((len = is.read(buffer))>0) {
+							out.write(buffer, 0, len);
+							if (is.available()==0)
+								out.flush();
+						}
+					}
+				}
+				finally {
+					out.close();
+				}
+			}
+			node.forwarded.incrementAndGet();
+		}
+		catch (IOException e) {
+			node.errors.incrementAndGet();
+			log.log("Error forwarding request to " + node.url + ": " + e.getMessage());
+			if (!headersSent(t))
+				sendUnavailable(t, node, responseFormat);
+		}
+		finally {
+			node.inFlight.decrementAndGet();
+			if (conn!=null)
+				conn.disconnect();
+			t.close();
+		}
+	}
+
+	/**
+	 * Handle a request to list, drain or undrain the nodes
+	 * @param t The HTTP exchange
+	 * @throws IOException
+	 */
+	private void handleAdmin(HttpExchange t) throws IOException {
+		URI uri = t.getRequestURI();
+		String query = uri.getQuery();
+		if (query!=null && (query.startsWith("drain=") || query.startsWith("undrain="))) {
+			boolean drain = query.startsWith("drain=");
+			String url = query.substring(query.indexOf('=')+1).trim();
+			while (url.endsWith("/"))
+				url = url.substring(0, url.length()-1);
+			Node node = findNode(url);
+			if (node==null) {
+				HttpCompression.sendResponse(t, 404, ("404 (Not Found) Unknown node: " + url + "\n").getBytes(UTF8), "text/plain; charset=UTF-8");
+				return;
+			}
+			node.draining = drain;
+			log.log((drain ? "Draining node " : "Undraining node ") + url);
+		}
+
+		StringBuilder buf = new StringBuilder();
+		for (Node node : nodes) {
+			int count = 0;
+			for (RoutedSession sess : sessions.values()) {
+				if (sess.node==node)
+					count++;
+			}
+			buf.append("node=").append(node.url);
+			buf.append(" healthy=").append(node.healthy);
+			buf.append(" draining=").append(node.draining);
+			buf.append(" load=").append(node.getLoad());
+			buf.append(" sessions=").append(count);
+			buf.append(" in_flight=").append(node.inFlight.get());
+			buf.append(" forwarded=").append(node.forwarded.get());
+			buf.append(" errors=").append(node.errors.get());
+			buf.append("\n");
+		}
+		HttpCompression.sendResponse(t, 200, buf.toString().getBytes(UTF8), "text/plain; charset=UTF-8");
+	}
+
+	/**
+	 * Get the node for a session: the node it was created on if the router knows it,
+	 * otherwise the node from the hash ring
+	 * @param sessionId The session ID
+	 * @return The node, or null if there are no healthy nodes
+	 */
+	private Node getSessionNode(String sessionId) {
+		RoutedSession sess = sessions.get(sessionId);
+		if (sess!=null) {
+			sess.lastUsed = System.currentTimeMillis();
+			return sess.node;
+		}
+		SortedMap<Long, Node> current = ring;
+		if (current.isEmpty())
+			return null;
+		SortedMap<Long, Node> tail = current.tailMap(Long.valueOf(hash(sessionId)));
+		return tail.isEmpty() ? current.get(current.firstKey()) : tail.get(tail.firstKey());
+	}
+
+	/**
+	 * Get the healthy node with the lowest load which is not being drained
+	 * @return The node, or null if there is none
+	 */
+	private Node getLeastLoaded() {
+		Node best = null;
+		for (Node node : nodes) {
+			if (!node.healthy || node.draining)
+				continue;
+			if (best==null || node.getLoad()<best.getLoad())
+				best = node;
+		}
+		return best;
+	}
+
+	private Node findNode(String url) {
+		for (Node node : nodes) {
+			if (node.url.equals(url))
+				return node;
+		}
+		return null;
+	}
+
+	/**
+	 * Remember the node for a session from a connect response
+	 * @param resp The encoded response
+	 * @param format The format of the response
+	 * @param node The node which created the session
+	 */
+	private void addSession(byte[] resp, WireFormat format, Node node) {
+		try {
+			BaseResponse out = format.getResponseReader().readValue(resp);
+			if (out.getSessionId()!=null)
+				sessions.put(out.getSessionId(), new RoutedSession(node));
+		}
+		catch (Exception e) {
+			log.log("Unable to read the session from " + node.url + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Check whether a batch request connects or disconnects a session
+	 * @param batchTree The batch request
+	 * @return Whether any request in the batch is a connection.connect or connection.disconnect
+	 */
+	private static boolean hasSessionChange(JsonNode batchTree) {
+		JsonNode reqs = batchTree.get("requests");
+		if (reqs==null || !reqs.isArray())
+			return false;
+		for (JsonNode req : reqs) {
+			if (isConnection(req, JLConnectRequestParams.FUNC_CONNECT) || isConnection(req, JLConnectRequestParams.FUNC_DISCONNECT))
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean isConnection(JsonNode req, String function) {
+		return JLConnectRequestParams.COMMAND.equals(getText(req, "command")) && function.equals(getText(req, "function"));
+	}
+
+	private static String getText(JsonNode node, String field) {
+		return node!=null && node.hasNonNull(field) ? node.get(field).asText() : null;
+	}
+
+	/**
+	 * Remember or forget the sessions which were connected or disconnected by a batch.
+	 * The requests are followed in order, the way the node runs them, so that a request 
+	 * without its own session uses the one from the requests before it.
+	 * @param batchTree The batch request
+	 * @param resp The encoded batch response
+	 * @param node The node which ran the batch
+	 */
+	private void updateBatchSessions(JsonNode batchTree, byte[] resp, Node node) {
+		try {
+			JsonNode reqs = batchTree.get("requests");
+			JsonNode outs = mapper.readTree(resp).get("responses");
+			if (reqs==null || outs==null)
+				return;
+			String current = getText(batchTree, "sessionId");
+			for (int i=0; i<reqs.size() && i<outs.size(); i++) {
+				JsonNode req = reqs.get(i);
+				String reqSession = getText(req, "sessionId");
+				if (reqSession==null)
+					reqSession = current;
+				String outSession = getText(outs.get(i), "sessionId");
+				if (isConnection(req, JLConnectRequestParams.FUNC_CONNECT) && outSession!=null)
+					sessions.put(outSession, new RoutedSession(node));
+				else if (isConnection(req, JLConnectRequestParams.FUNC_DISCONNECT) && reqSession!=null)
+					sessions.remove(reqSession);
+				if (outSession!=null)
+					current = outSession;
+			}
+		}
+		catch (Exception e) {
+			log.log("Unable to read the batch sessions from " + node.url + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Forget the sessions which have had no requests for longer than the session TTL
+	 */
+	private void expireSessions() {
+		if (sessionTtl<=0)
+			return;
+		long cutoff = System.currentTimeMillis() - sessionTtl;
+		for (Map.Entry<String, RoutedSession> entry : sessions.entrySet()) {
+			if (entry.getValue().lastUsed<cutoff)
+				sessions.remove(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Send a busy response because no node is able to handle a request
+	 * @param t The HTTP exchange
+	 * @param node The node for the request, or null if there was none
+	 * @param format The format for the response
+	 * @throws IOException
+	 */
+	private void sendUnavailable(HttpExchange t, Node node, WireFormat format) throws IOException {
+		String msg = node==null ? "No CREOSON node is available" : "CREOSON node " + node.url + " is not available";
+		BaseResponse resp = new BaseResponse();
+		resp.setStatus(ServiceStatus.busy(msg, checkInterval));
+		String type = format.getContentType();
+		HttpCompression.sendResponse(t, 200, format.getResponseWriter().writeValueAsBytes(resp),
+				format.isBinary() ? type : type + "; charset=UTF-8");
+	}
+
+	private static boolean headersSent(HttpExchange t) {
+		return t.getResponseCode()!=-1;
+	}
+
+	/**
+	 * Check the health and load of every node, and rebuild the hash ring if the set of
+	 * healthy nodes has changed
+	 */
+	private void checkNodes() {
+		boolean changed = false;
+		for (Node node : nodes) {
+			boolean healthy = node.check();
+			if (healthy!=node.healthy) {
+				log.log("Node " + node.url + (healthy ? " is healthy" : " is not responding"));
+				node.healthy = healthy;
+				changed = true;
+			}
+		}
+		if (changed || ring.isEmpty()) {
+			TreeMap<Long, Node> newRing = new TreeMap<Long, Node>();
+			for (Node node : nodes) {
+				if (!node.healthy)
+					continue;
+				for (int i=0; i<RING_POINTS; i++)
+					newRing.put(Long.valueOf(hash(node.url + "#" + i)), node);
+			}
+			ring = newRing;
+		}
+		expireSessions();
+	}
+
+	/**
+	 * Hash a string onto the ring
+	 * @param key The string
+	 * @return The first 8 bytes of the string's MD5 digest
+	 */
+	private static long hash(String key) {
+		try {
+			byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(UTF8));
+			long h = 0;
+			for (int i=0; i<8; i++)
+				h = (h << 8) | (digest[i] & 0xff);
+			return h;
+		}
+		catch (Exception e) {
+			return key.hashCode();
+		}
+	}
+
+	private static byte[] readAll(InputStream is) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		if (is!=null) {
+			byte[] buffer = new byte[8192];
+			int len;
+			while ((len = is.read(buffer))>0)
+				bos.write(buffer, 0, len);
+			is.close();
+		}
+		return bos.toByteArray();
+	}
+
+	/**
+	 * A session created through the router, and when it last had a request
+	 */
+	private static class RoutedSession {
+		Node node;
+		volatile long lastUsed = System.currentTimeMillis();
+
+		RoutedSession(Node node) {
+			this.node = node;
+		}
+	}
+
+	/**
+	 * A CREOSON server behind the router
+	 */
+	private static class Node {
+		String url;
+		volatile boolean healthy = false;
+		volatile boolean draining = false;
+		/**
+		 * Requests waiting or running on the node, from its last health check
+		 */
+		volatile int reportedLoad = 0;
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicLong forwarded = new AtomicLong();
+		AtomicLong errors = new AtomicLong();
+
+		Node(String url) {
+			this.url = url;
+		}
+
+		/**
+		 * @return The node's load, counting requests sent since its last health check
+		 */
+		int getLoad() {
+			return Math.max(reportedLoad, inFlight.get());
+		}
+
+		/**
+		 * Read the node's lane status, which gives the requests queued and running
+		 * on each of its Creo connections
+		 * @return Whether the node responded
+		 */
+		boolean check() {
+			HttpURLConnection conn = null;
+			try {
+				conn = (HttpURLConnection)new URL(url + MainServer.ENDPOINT_STATUS + "?lanes").openConnection();
+				conn.setConnectTimeout(CONNECT_TIMEOUT);
+				conn.setReadTimeout(CONNECT_TIMEOUT);
+				if (conn.getResponseCode()!=200)
+					return false;
+				BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream(), UTF8));
+				int load = 0;
+				String line;
+				while ((line = in.readLine())!=null) {
+					for (String item : line.split(" ")) {
+						if (item.startsWith("queued="))
+							load += Integer.parseInt(item.substring(7));
+						else if (item.equals("active=true"))
+							load++;
+					}
+				}
+				in.close();
+				reportedLoad = load;
+				return true;
+			}
+			catch (Exception e) {
+				return false;
+			}
+			finally {
+				if (conn!=null)
+					conn.disconnect();
+			}
+		}
+	}
+}
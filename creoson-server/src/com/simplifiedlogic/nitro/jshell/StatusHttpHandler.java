@@ -22,6 +22,18 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.simplifiedlogic.nitro.jlink.data.ConnectionStats;
+import com.simplifiedlogic.nitro.jlink.data.SessionStats;
+import com.simplifiedlogic.nitro.jshell.json.CommandMetrics;
+import com.simplifiedlogic.nitro.jshell.json.CreoLaneExecutor;
+import com.simplifiedlogic.nitro.jshell.json.CreoLaneExecutor.LaneStats;
+import com.simplifiedlogic.nitro.jshell.json.JShellJsonHandler;
+import com.simplifiedlogic.nitro.jshell.json.RequestCoalescer;
+import com.simplifiedlogic.nitro.jshell.json.ResponseCache;
+import com.simplifiedlogic.nitro.util.AsyncLog;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
@@ -34,6 +46,21 @@ import com.sun.net.httpserver.HttpHandler;
  */
 public class StatusHttpHandler implements HttpHandler {
 
+	private static final String TEXT_TYPE		= "text/plain; charset=UTF-8";
+	private static final String METRICS_TYPE	= "text/plain; version=0.0.4; charset=UTF-8";
+
+	/**
+	 * The request handler, used to look up the Creo connections
+	 */
+	private JShellJsonHandler jsonHandler;
+
+	/**
+	 * @param jsonHandler The request handler for the server, or null if the server is a router
+	 */
+	public StatusHttpHandler(JShellJsonHandler jsonHandler) {
+		this.jsonHandler = jsonHandler;
+	}
+
 	/* (non-Javadoc)
 	 * @see com.sun.net.httpserver.HttpHandler#handle(com.sun.net.httpserver.HttpExchange)
 	 */
@@ -53,5 +80,111 @@ public class StatusHttpHandler implements HttpHandler {
 			os.write("Connected!".getBytes(Charset.forName("UTF-8")));
 			os.close();
 		}
+		else if ("lanes".equals(query)) {
+			// report the queue depth and timing for each Creo connection lane
+			StringBuilder buf = new StringBuilder();
+			for (LaneStats stats : CreoLaneExecutor.getInstance().getStats()) {
+				buf.append("lane=").append(stats.getKey());
+				buf.append(" queued=").append(stats.getQueueDepth());
+				buf.append(" active=").append(stats.isActive());
+				buf.append(" completed=").append(stats.getCompleted());
+				buf.append(" wait_total_ms=").append(stats.getTotalWaitMs());
+				buf.append(" wait_max_ms=").append(stats.getMaxWaitMs());
+				buf.append(" run_total_ms=").append(stats.getTotalRunMs());
+				buf.append(" run_max_ms=").append(stats.getMaxRunMs());
+				buf.append(" rejected=").append(stats.getRejected());
+				buf.append("\n");
+			}
+			sendText(t, buf.toString(), TEXT_TYPE);
+		}
+		else if ("pool".equals(query)) {
+			// report the health and usage of each Creo connection in the pool
+			StringBuilder buf = new StringBuilder();
+			List<ConnectionStats> list = jsonHandler!=null ? jsonHandler.getConnectionStats() : new ArrayList<ConnectionStats>();
+			for (ConnectionStats stats : list) {
+				buf.append("connection=").append(stats.getConnectionId());
+				buf.append(" healthy=").append(stats.isHealthy());
+				buf.append(" sessions=").append(stats.getSessions());
+				buf.append(" uses=").append(stats.getUses());
+				buf.append(" failures=").append(stats.getFailures());
+				buf.append(" age_ms=").append(System.currentTimeMillis() - stats.getCreated());
+				buf.append("\n");
+			}
+			sendText(t, buf.toString(), TEXT_TYPE);
+		}
+		else if ("traffic".equals(query)) {
+			// report the number of bytes received and sent in request and response bodies
+			StringBuilder buf = new StringBuilder();
+			buf.append("bytes_in=").append(HttpCompression.getBytesIn());
+			buf.append(" bytes_out=").append(HttpCompression.getBytesOut());
+			buf.append(" bytes_out_uncompressed=").append(HttpCompression.getBytesOutUncompressed());
+			buf.append(" compressed_responses=").append(HttpCompression.getCompressedResponses());
+			buf.append("\n");
+			sendText(t, buf.toString(), TEXT_TYPE);
+		}
+		else if ("logs".equals(query)) {
+			// report the state of each asynchronous log, including any dropped messages
+			StringBuilder buf = new StringBuilder();
+			for (AsyncLog log : AsyncLog.getLogs()) {
+				buf.append("log=").append(log.getPath());
+				buf.append(" queued=").append(log.getQueued());
+				buf.append(" written=").append(log.getWritten());
+				buf.append(" dropped=").append(log.getDropped());
+				buf.append(" rotations=").append(log.getRotations());
+				buf.append(" errors=").append(log.getErrors());
+				buf.append("\n");
+			}
+			sendText(t, buf.toString(), TEXT_TYPE);
+		}
+		else if ("metrics".equals(query)) {
+			// report request counts, sizes and latency histograms for each command and function
+			String text = CommandMetrics.getInstance().format() + RequestCoalescer.getInstance().format()
+					+ ResponseCache.getInstance().format()
+					+ formatSessions(jsonHandler!=null ? jsonHandler.getSessionStats() : null);
+			sendText(t, text, METRICS_TYPE);
+		}
+	}
+
+	/**
+	 * Send a text report as a complete response
+	 * @param t The HTTP exchange
+	 * @param text The report
+	 * @param contentType The MIME type of the report
+	 * @throws IOException
+	 */
+	private static void sendText(HttpExchange t, String text, String contentType) throws IOException {
+		byte[] bytes = text.getBytes(Charset.forName("UTF-8"));
+		t.getResponseHeaders().set("Content-Type", contentType);
+		t.sendResponseHeaders(200, bytes.length);
+		OutputStream os = t.getResponseBody();
+		os.write(bytes);
+		os.close();
+	}
+
+	/**
+	 * Write the session counts and ages in the Prometheus text exposition format
+	 * @param stats The session statistics (optional)
+	 * @return The formatted values, or an empty string if there are no statistics
+	 */
+	private static String formatSessions(SessionStats stats) {
+		if (stats==null)
+			return "";
+		StringBuilder buf = new StringBuilder();
+		buf.append("# HELP creoson_sessions JShell sessions in memory.\n");
+		buf.append("# TYPE creoson_sessions gauge\n");
+		buf.append("creoson_sessions ").append(stats.getSessions()).append('\n');
+		buf.append("# HELP creoson_session_connections Creo connections which have sessions.\n");
+		buf.append("# TYPE creoson_session_connections gauge\n");
+		buf.append("creoson_session_connections ").append(stats.getConnections()).append('\n');
+		buf.append("# HELP creoson_session_oldest_age_seconds Age of the oldest session.\n");
+		buf.append("# TYPE creoson_session_oldest_age_seconds gauge\n");
+		buf.append("creoson_session_oldest_age_seconds ").append(stats.getOldestAge() / 1000.0).append('\n');
+		buf.append("# HELP creoson_session_longest_idle_seconds Longest time any session has gone unused.\n");
+		buf.append("# TYPE creoson_session_longest_idle_seconds gauge\n");
+		buf.append("creoson_session_longest_idle_seconds ").append(stats.getLongestIdle() / 1000.0).append('\n');
+		buf.append("# HELP creoson_sessions_reaped_total Sessions deleted for being idle longer than the session TTL.\n");
+		buf.append("# TYPE creoson_sessions_reaped_total counter\n");
+		buf.append("creoson_sessions_reaped_total ").append(stats.getReaped()).append('\n');
+		return buf.toString();
 	}
 }